@@ -2,8 +2,19 @@ package com.artyommameev.sunflowerplayer;
 
 import android.app.Application;
 
+import com.artyommameev.sunflowerplayer.database.DatabaseOpenHelper;
+import com.artyommameev.sunflowerplayer.database.ModificationSequence;
+import com.artyommameev.sunflowerplayer.database.TagChangePublisher;
 import com.artyommameev.sunflowerplayer.domain.DaoMaster;
 import com.artyommameev.sunflowerplayer.domain.DaoSession;
+import com.artyommameev.sunflowerplayer.repository.PlaybackStateStore;
+import com.artyommameev.sunflowerplayer.storage.ThumbnailPack;
+import com.artyommameev.sunflowerplayer.util.StartupTrace;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import lombok.val;
 
@@ -14,27 +25,124 @@ import lombok.val;
  */
 public class SunflowerPlayer extends Application {
 
-    private DaoSession daoSession;
+    private static final String THUMBNAIL_PACK_FILE = "thumbnails.pack";
+    private static final long THUMBNAIL_PACK_BYTES = 8 * 1024 * 1024;
+
+    private final TagChangePublisher tagChangePublisher =
+            new TagChangePublisher();
+    private final PlaybackStateStore playbackStateStore =
+            new PlaybackStateStore();
+
+    private final ExecutorService databaseExecutor =
+            Executors.newSingleThreadExecutor();
+
+    private CompletableFuture<DaoSession> daoSessionFuture;
+    private volatile ModificationSequence modificationSequence;
+
+    private ThumbnailPack thumbnailPack;
 
     @Override
     public void onCreate() {
+        StartupTrace.beginSection(StartupTrace.Phase.APP_CREATE);
+
         super.onCreate();
 
-        // regular SQLite database
-        val devOpenHelper = new DaoMaster.DevOpenHelper(this, getString(R.string.database_name));
+        // the database is opened (and upgraded) off the main thread
+        daoSessionFuture = CompletableFuture.supplyAsync(this::openDaoSession,
+                databaseExecutor);
 
-        val database = devOpenHelper.getWritableDb();
+        // the pack is only read when the first thumbnail is needed
+        thumbnailPack = new ThumbnailPack(new File(getCacheDir(),
+                THUMBNAIL_PACK_FILE), THUMBNAIL_PACK_BYTES);
 
-        daoSession = new DaoMaster(database).newSession();
+        StartupTrace.endSection(StartupTrace.Phase.APP_CREATE);
     }
 
     /**
      * Returns the greenDAO session to interact with the application database.
+     * <p>
+     * Blocks until the database is opened, so on the UI thread it should be
+     * called only after {@link SunflowerPlayer#getDaoSessionFuture()} has
+     * completed.
      *
      * @return the greenDAO {@link DaoSession}.
      */
     public DaoSession getDaoSession() {
-        return daoSession;
+        return daoSessionFuture.join();
+    }
+
+    /**
+     * Returns the future of the greenDAO session, which completes when the
+     * application database is opened.
+     *
+     * @return the {@link CompletableFuture} of the {@link DaoSession}.
+     */
+    public CompletableFuture<DaoSession> getDaoSessionFuture() {
+        return daoSessionFuture;
+    }
+
+    /**
+     * Returns the source of the modification sequence numbers of the tags
+     * stored in the application database.
+     * <p>
+     * Blocks until the database is opened, like
+     * {@link SunflowerPlayer#getDaoSession()}.
+     *
+     * @return the application-wide {@link ModificationSequence}.
+     */
+    public ModificationSequence getModificationSequence() {
+        daoSessionFuture.join();
+
+        return modificationSequence;
+    }
+
+    /**
+     * Returns the publisher of changes made to the tags stored in the
+     * application database.
+     *
+     * @return the application-wide {@link TagChangePublisher}.
+     */
+    public TagChangePublisher getTagChangePublisher() {
+        return tagChangePublisher;
+    }
+
+    /**
+     * Returns the store of the state of the playback, which the player
+     * service updates and any component can read or listen to.
+     *
+     * @return the application-wide {@link PlaybackStateStore}.
+     */
+    public PlaybackStateStore getPlaybackStateStore() {
+        return playbackStateStore;
     }
 
+    /**
+     * Returns the disk cache of the poster frames of the video clips shown
+     * in the file lists.
+     *
+     * @return the application-wide {@link ThumbnailPack}.
+     */
+    public ThumbnailPack getThumbnailPack() {
+        return thumbnailPack;
+    }
+
+    private DaoSession openDaoSession() {
+        StartupTrace.beginSection(StartupTrace.Phase.DATABASE_OPEN);
+
+        try {
+            // regular SQLite database, migrated on schema upgrades
+            val databaseOpenHelper = new DatabaseOpenHelper(this,
+                    getString(R.string.database_name));
+
+            val database = databaseOpenHelper.getWritableDb();
+
+            val daoSession = new DaoMaster(database).newSession();
+
+            modificationSequence = ModificationSequence.load(daoSession);
+
+            return daoSession;
+        } finally {
+            StartupTrace.endSection(StartupTrace.Phase.DATABASE_OPEN);
+        }
+    }
 }
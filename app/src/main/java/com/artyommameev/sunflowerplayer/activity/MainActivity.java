@@ -1,20 +1,23 @@
 package com.artyommameev.sunflowerplayer.activity;
 
 import android.Manifest;
+import android.content.ComponentName;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.IBinder;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.view.ContextMenu;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuItem;
-import android.view.View;
-import android.widget.AdapterView;
+import android.view.MotionEvent;
+import android.view.ViewTreeObserver;
 import android.widget.CheckBox;
 import android.widget.EditText;
-import android.widget.ListView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -23,19 +26,33 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.app.ActivityCompat;
 import androidx.preference.PreferenceManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.artyommameev.sunflowerplayer.R;
+import com.artyommameev.sunflowerplayer.SunflowerPlayer;
+import com.artyommameev.sunflowerplayer.adapter.FastScroller;
 import com.artyommameev.sunflowerplayer.adapter.FileAdapter;
 import com.artyommameev.sunflowerplayer.comparator.FileNameComparator;
 import com.artyommameev.sunflowerplayer.database.Database;
+import com.artyommameev.sunflowerplayer.database.TagChange;
+import com.artyommameev.sunflowerplayer.database.TagChangePublisher;
+import com.artyommameev.sunflowerplayer.domain.PlaybackPosition;
 import com.artyommameev.sunflowerplayer.domain.Tag;
 import com.artyommameev.sunflowerplayer.domain.VideoClip;
+import com.artyommameev.sunflowerplayer.service.PlayerService;
 import com.artyommameev.sunflowerplayer.storage.FileManager;
+import com.artyommameev.sunflowerplayer.util.StartupTrace;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import lombok.val;
 
@@ -43,6 +60,17 @@ import lombok.val;
  * The main activity of the application, which represents a file manager in
  * which the user can select a {@link VideoClip} to view or edit
  * {@link Tag} information.
+ * <p>
+ * A {@link VideoClip} is warmed up in the {@link PlayerService} as soon as
+ * its row is pressed, or when the list settles showing it as the only clip,
+ * so it starts faster if it is tapped.
+ * <p>
+ * The list is a RecyclerView: when the shown directory is reloaded or the
+ * tags of its clips change, only the changed rows are bound again, after
+ * the rows are compared off the main thread by the {@link FileAdapter}.
+ * The files of the directory and the {@link PlaybackPosition}s of its clips
+ * are loaded together on a background thread, and only the last requested
+ * listing is shown.
  *
  * @author Artyom Mameev
  */
@@ -57,36 +85,123 @@ public class MainActivity extends AppCompatActivity
 
     private static final String LIST_STATE = "listState";
 
-    private ListView listView;
+    private RecyclerView recyclerView;
+    private LinearLayoutManager layoutManager;
     private Parcelable listState = null;
 
     private List<File> currentFiles;
     private File currentFile;
+    private VideoClip contextMenuClip;
+
+    // the video clips in currentFiles by their file names
+    private final Map<String, VideoClip> clips = new HashMap<>();
+
+    private Map<String, PlaybackPosition> playbackPositions =
+            Collections.emptyMap();
+
+    private final ExecutorService listExecutor =
+            Executors.newSingleThreadExecutor();
+    // the number of the requested listings, so a stale one is not shown
+    private int listGeneration;
 
     private FileAdapter fileAdapter;
 
+    private SunflowerPlayer sunflowerPlayer;
     private Database database;
     private FileManager fileManager;
 
+    private TagChangePublisher tagChangePublisher;
+    private final TagChangePublisher.Listener tagChangeListener =
+            tagChange -> runOnUiThread(() -> applyTagChange(tagChange));
+
+    private PlayerService.PlayerServiceBinder playerServiceBinder;
+
+    // keeps the player service, and its player, alive between the clips
+    private final ServiceConnection playerServiceConnection =
+            new ServiceConnection() {
+                @Override
+                public void onServiceConnected(ComponentName componentName,
+                                               IBinder service) {
+                    playerServiceBinder =
+                            (PlayerService.PlayerServiceBinder) service;
+                }
+
+                @Override
+                public void onServiceDisconnected(
+                        ComponentName componentName) {
+                    playerServiceBinder = null;
+                }
+            };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
         Toolbar toolbar = findViewById(R.id.toolbar);
-        listView = findViewById(R.id.list);
+        recyclerView = findViewById(R.id.list);
+
+        /*the scroll position is saved and restored before the list is set
+        up, e.g. while the read permission is being requested*/
+        layoutManager = new LinearLayoutManager(this);
+
+        recyclerView.setLayoutManager(layoutManager);
 
         setSupportActionBar(toolbar);
 
+        traceFirstFrame();
+
         currentFiles = new ArrayList<>();
 
+        sunflowerPlayer = (SunflowerPlayer) getApplication();
+
         database = new Database(this);
 
         fileManager = new FileManager(database);
 
+        tagChangePublisher = sunflowerPlayer.getTagChangePublisher();
+
+        tagChangePublisher.addListener(tagChangeListener);
+
         checkReadPermission();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        bindService(new Intent(this, PlayerService.class),
+                playerServiceConnection, BIND_AUTO_CREATE);
+
+        // the clips may have been played since the list was shown
+        if (fileAdapter != null &&
+                sunflowerPlayer.getDaoSessionFuture().isDone()) {
+            updateList(false);
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+
+        unbindService(playerServiceConnection);
+
+        playerServiceBinder = null;
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        tagChangePublisher.removeListener(tagChangeListener);
+
+        listExecutor.shutdownNow();
+
+        if (fileAdapter != null) {
+            fileAdapter.release();
+        }
+    }
+
     @Override
     public void onBackPressed() {
         if (!fileManager.isParentDirectoryExists()) {
@@ -95,9 +210,7 @@ public class MainActivity extends AppCompatActivity
 
         fileManager.toParentDirectory();
 
-        updateList();
-
-        listView.setSelectionAfterHeaderView(); // scroll to top
+        updateList(true);
     }
 
     @Override
@@ -147,7 +260,7 @@ public class MainActivity extends AppCompatActivity
         super.onResume();
 
         if (listState != null) {
-            listView.onRestoreInstanceState(listState);
+            layoutManager.onRestoreInstanceState(listState);
         }
 
         listState = null;
@@ -157,35 +270,23 @@ public class MainActivity extends AppCompatActivity
     protected void onSaveInstanceState(@NonNull Bundle state) {
         super.onSaveInstanceState(state);
 
-        listState = listView.onSaveInstanceState();
+        listState = layoutManager.onSaveInstanceState();
 
         //save the list scroll position
         state.putParcelable(LIST_STATE, listState);
     }
 
-    @Override
-    public void onCreateContextMenu(ContextMenu contextMenu, View view,
-                                    ContextMenu.ContextMenuInfo contextMenuInfo) {
-        createListContextMenu(contextMenu, view,
-                (AdapterView.AdapterContextMenuInfo) contextMenuInfo);
-    }
+    private void createListContextMenu(ContextMenu contextMenu,
+                                       int position) {
+        val file = fileAdapter.getFile(position);
 
-    private void createListContextMenu(ContextMenu contextMenu, View view,
-                                       AdapterView.AdapterContextMenuInfo
-                                               contextMenuInfo) {
-        if (view.getId() != R.id.list) {
+        if (fileAdapter.getKind(position) !=
+                FileAdapter.Row.Kind.VIDEO_CLIP) {
             return;
         }
 
-        int contextPosition = contextMenuInfo.position;
-
-        boolean isDirectory = currentFiles.get(contextPosition).isDirectory();
-        boolean isNotVideoClip = !(currentFiles.get(contextPosition)
-                instanceof VideoClip);
-
-        if (isDirectory || isNotVideoClip) {
-            return;
-        }
+        // the rows may move before an item is selected
+        contextMenuClip = (VideoClip) file;
 
         contextMenu.add(Menu.NONE, EDIT_TAGS_ID, 0,
                 getString(R.string.edit_tags));
@@ -197,12 +298,11 @@ public class MainActivity extends AppCompatActivity
 
     @Override
     public boolean onContextItemSelected(MenuItem menuItem) {
-        val adapterContextMenuInfo = (AdapterView.AdapterContextMenuInfo)
-                menuItem.getMenuInfo();
+        val videoClip = contextMenuClip;
 
-        val position = adapterContextMenuInfo.position;
-
-        val videoClip = (VideoClip) currentFiles.get(position);
+        if (videoClip == null) {
+            return super.onContextItemSelected(menuItem);
+        }
 
         switch (menuItem.getItemId()) {
             case EDIT_TAGS_ID:
@@ -216,10 +316,7 @@ public class MainActivity extends AppCompatActivity
                 return true;
 
             case FIND_ALBUM_ID:
-                val albumsArray = database.findAlbumsByArtist(
-                        videoClip.getArtist());
-
-                showFindAlbumDialog(videoClip, albumsArray);
+                findAlbums(videoClip);
 
                 return true;
 
@@ -228,12 +325,65 @@ public class MainActivity extends AppCompatActivity
         }
     }
 
-    private void updateList() {
-        currentFiles.clear();
+    private void updateList(boolean isAnotherDirectory) {
+        val generation = ++listGeneration;
+
+        listExecutor.execute(() -> {
+            val files = fileManager.getFiles(new FileNameComparator());
+
+            val fileNames = new ArrayList<String>();
+
+            for (val file : files) {
+                if (file instanceof VideoClip) {
+                    fileNames.add(((VideoClip) file).getFileName());
+                }
+            }
 
-        currentFiles.addAll(fileManager.getFiles(new FileNameComparator()));
+            // a single query for the whole list instead of a query per row
+            val positions = database.findPlaybackPositionsByFileNames(
+                    fileNames);
 
-        fileAdapter.notifyDataSetChanged();
+            // the kinds of the files are read from the storage here too
+            val listing = fileAdapter.createListing(files, positions);
+
+            runOnUiThread(() -> {
+                if (isDestroyed() || generation != listGeneration) {
+                    return;
+                }
+
+                showList(files, positions, listing, isAnotherDirectory);
+            });
+        });
+    }
+
+    private void showList(List<File> files,
+                          Map<String, PlaybackPosition> positions,
+                          FileAdapter.Listing listing,
+                          boolean isAnotherDirectory) {
+        currentFiles = files;
+        playbackPositions = positions;
+
+        indexClips();
+
+        if (isAnotherDirectory) {
+            fileAdapter.replaceListing(listing);
+
+            recyclerView.scrollToPosition(0);
+        } else {
+            fileAdapter.updateListing(listing);
+        }
+
+        recyclerView.post(this::warmUpSettledClip);
+    }
+
+    private void indexClips() {
+        clips.clear();
+
+        for (val file : currentFiles) {
+            if (file instanceof VideoClip) {
+                clips.put(((VideoClip) file).getFileName(), (VideoClip) file);
+            }
+        }
     }
 
     private void checkReadPermission() {
@@ -263,24 +413,147 @@ public class MainActivity extends AppCompatActivity
 
         fileManager.toDirectory(new File(defaultDirectory));
 
-        currentFiles = fileManager.getFiles(new FileNameComparator());
+        val daoSessionFuture = sunflowerPlayer.getDaoSessionFuture();
 
-        fileAdapter = new FileAdapter(currentFiles, this);
+        if (daoSessionFuture.isDone()) {
+            currentFiles = fileManager.getFiles(new FileNameComparator());
+        } else { // show the directory while the database is being opened
+            currentFiles = fileManager.getUntaggedFiles(
+                    new FileNameComparator());
 
-        listView.setAdapter(fileAdapter);
-        listView.setOnItemClickListener(this::onListViewItemClick);
+            daoSessionFuture.thenRun(() -> runOnUiThread(() -> {
+                if (!isDestroyed()) {
+                    // the tags are shown in the rows of the same files
+                    updateList(false);
+                }
+            }));
+        }
+
+        indexClips();
+
+        fileAdapter = new FileAdapter(this, new FileAdapter.Listener() {
+            @Override
+            public void onFileClick(int position) {
+                onListItemClick(position);
+            }
+
+            @Override
+            public void onCreateFileContextMenu(ContextMenu contextMenu,
+                                                int position) {
+                createListContextMenu(contextMenu, position);
+            }
+        });
+
+        if (daoSessionFuture.isDone()) {
+            // the progress of the clips is shown when it is loaded
+            updateList(false);
+        }
+
+        // the first rows are shown at once, there is nothing to compare
+        fileAdapter.replaceFiles(currentFiles, playbackPositions);
+
+        recyclerView.setHasFixedSize(true);
+        recyclerView.setAdapter(fileAdapter);
+        recyclerView.addOnItemTouchListener(
+                new RecyclerView.SimpleOnItemTouchListener() {
+                    @Override
+                    public boolean onInterceptTouchEvent(
+                            @NonNull RecyclerView view,
+                            @NonNull MotionEvent event) {
+                        onListTouch(event);
+
+                        return false; // the list handles the touch as usual
+                    }
+                });
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView view,
+                                             int scrollState) {
+                if (scrollState == RecyclerView.SCROLL_STATE_IDLE) {
+                    warmUpSettledClip();
+                }
+            }
+        });
+
+        // jumps between the sections of the listing built with its rows
+        new FastScroller(recyclerView, fileAdapter::getSectionIndex);
+
+        StartupTrace.mark(StartupTrace.Phase.FIRST_LISTING);
+    }
+
+    private void traceFirstFrame() {
+        val viewTreeObserver = getWindow().getDecorView()
+                .getViewTreeObserver();
+
+        viewTreeObserver.addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        getWindow().getDecorView().getViewTreeObserver()
+                                .removeOnPreDrawListener(this);
+
+                        StartupTrace.mark(StartupTrace.Phase.FIRST_FRAME);
+
+                        return true;
+                    }
+                });
+    }
+
+    private void onListTouch(MotionEvent event) {
+        // the press comes a hundred or more milliseconds before the tap
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            val row = recyclerView.findChildViewUnder(event.getX(),
+                    event.getY());
+
+            if (row != null) {
+                warmUp(recyclerView.getChildAdapterPosition(row));
+            }
+        }
+    }
+
+    private void warmUpSettledClip() {
+        int clipPosition = RecyclerView.NO_POSITION;
+
+        // the shown rows may be behind currentFiles until they are compared
+        for (int i = layoutManager.findFirstVisibleItemPosition();
+             i != RecyclerView.NO_POSITION &&
+                     i <= layoutManager.findLastVisibleItemPosition() &&
+                     i < fileAdapter.getItemCount(); i++) {
+            if (!(fileAdapter.getFile(i) instanceof VideoClip)) {
+                continue;
+            }
+
+            if (clipPosition != RecyclerView.NO_POSITION) {
+                return; // no single clip to guess
+            }
+
+            clipPosition = i;
+        }
 
-        registerForContextMenu(listView);
+        warmUp(clipPosition);
     }
 
-    private void onListViewItemClick(AdapterView<?> arg0, View arg1,
-                                     int position, long arg3) {
-        currentFile = currentFiles.get(position);
+    private void warmUp(int position) {
+        if (playerServiceBinder == null || position < 0 ||
+                position >= fileAdapter.getItemCount()) {
+            return;
+        }
 
-        if (currentFile.isDirectory()) {
+        val file = fileAdapter.getFile(position);
+
+        if (file instanceof VideoClip) {
+            playerServiceBinder.warmUp((VideoClip) file);
+        }
+    }
+
+    private void onListItemClick(int position) {
+        currentFile = fileAdapter.getFile(position);
+
+        if (fileAdapter.getKind(position) ==
+                FileAdapter.Row.Kind.DIRECTORY) {
             fileManager.toDirectory(currentFile);
 
-            updateList();
+            updateList(true);
         }
 
         if (currentFile instanceof VideoClip) {
@@ -345,6 +618,20 @@ public class MainActivity extends AppCompatActivity
                 .show();
     }
 
+    private void findAlbums(VideoClip videoClip) {
+        // the database may still be opening
+        listExecutor.execute(() -> {
+            val albumsArray = database.findAlbumsByArtist(
+                    videoClip.getArtist());
+
+            runOnUiThread(() -> {
+                if (!isDestroyed()) {
+                    showFindAlbumDialog(videoClip, albumsArray);
+                }
+            });
+        });
+    }
+
     private void showFindAlbumDialog(VideoClip videoClip, String[] albumsArray) {
         new AlertDialog.Builder(this)
                 .setTitle(R.string.find_album)
@@ -383,21 +670,28 @@ public class MainActivity extends AppCompatActivity
             return;
         }
 
-        Tag tag = database.findTagByFileName(videoClip.getFileName());
+        // the tag is written off the main thread, the database may still be
+        // opening; the list is updated by the published tag change
+        listExecutor.execute(() -> saveTag(videoClip.getFileName(), newArtist,
+                newTitle, newAlbum));
+    }
+
+    private void saveTag(String fileName, String newArtist, String newTitle,
+                         String newAlbum) {
+        Tag tag = database.findTagByFileName(fileName);
 
         if (tag == null) { // create a new tag
-            tag = new Tag(videoClip.getFileName(), newArtist, newTitle,
-                    newAlbum);
+            tag = new Tag(fileName, newArtist, newTitle, newAlbum);
 
             database.insertTag(tag);
         } else { // update tag
             if (tag.getArtist().equals(newArtist) &&
                     tag.getTitle().equals(newTitle) &&
                     tag.getAlbum().equals(newAlbum)) {
-                Toast.makeText(MainActivity.this,
+                runOnUiThread(() -> Toast.makeText(MainActivity.this,
                         getString(R.string.nothing_to_change),
                         Toast.LENGTH_LONG)
-                        .show();
+                        .show());
 
                 return;
             }
@@ -408,24 +702,45 @@ public class MainActivity extends AppCompatActivity
 
             database.updateTag(tag);
         }
+    }
 
-        updateTagInList(tag);
+    private void applyTagChange(TagChange tagChange) {
+        if (fileAdapter == null) { // the list is not set up yet
+            return;
+        }
 
-        fileAdapter.notifyDataSetChanged();
-    }
+        if (tagChange.getType() == TagChange.Type.CLEARED) {
+            for (val videoClip : clips.values()) {
+                videoClip.resetTags();
+            }
+        } else {
+            boolean isChanged = false;
 
-    private void updateTagInList(Tag tag) {
-        for (val file : currentFiles) {
-            if (file instanceof VideoClip) {
-                val videoClip = (VideoClip) file;
+            for (val tag : tagChange.getTags()) {
+                val videoClip = clips.get(tag.getFileName());
+
+                if (videoClip == null) { // not in the current directory
+                    continue;
+                }
 
-                if (videoClip.getFileName().equals(tag.getFileName())) {
+                if (tagChange.getType() == TagChange.Type.DELETED) {
+                    videoClip.resetTags();
+                } else {
                     videoClip.setArtist(tag.getArtist());
                     videoClip.setTitle(tag.getTitle());
                     videoClip.setAlbum(tag.getAlbum());
                 }
+
+                isChanged = true;
+            }
+
+            if (!isChanged) {
+                return;
             }
         }
+
+        // the rows hold the shown names, so the changed ones are found
+        fileAdapter.updateFiles(currentFiles, playbackPositions);
     }
 
     private void startPlayerActivity() {
@@ -433,6 +748,8 @@ public class MainActivity extends AppCompatActivity
                 PlayerActivity.class);
 
         playerIntent.putExtra(getString(R.string.clip_key), currentFile);
+        playerIntent.putExtra(getString(R.string.request_time_key),
+                SystemClock.elapsedRealtime());
 
         startActivity(playerIntent);
     }
@@ -4,49 +4,90 @@ import android.content.ComponentName;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.media.session.MediaSession;
-import android.net.Uri;
 import android.os.Bundle;
 import android.os.IBinder;
-import android.os.RemoteException;
-import android.support.v4.media.session.MediaControllerCompat;
-import android.support.v4.media.session.PlaybackStateCompat;
+import android.os.SystemClock;
 import android.view.Window;
 import android.view.WindowManager;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.preference.PreferenceManager;
 
 import com.artyommameev.sunflowerplayer.R;
+import com.artyommameev.sunflowerplayer.comparator.FileNameComparator;
+import com.artyommameev.sunflowerplayer.database.Database;
 import com.artyommameev.sunflowerplayer.domain.VideoClip;
-import com.artyommameev.sunflowerplayer.repository.MusicRepository;
 import com.artyommameev.sunflowerplayer.service.PlayerService;
+import com.artyommameev.sunflowerplayer.storage.FileManager;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.Player;
-import com.google.android.exoplayer2.SimpleExoPlayer;
-import com.google.android.exoplayer2.source.ProgressiveMediaSource;
+import com.google.android.exoplayer2.ui.DefaultTimeBar;
 import com.google.android.exoplayer2.ui.PlayerView;
-import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
-import com.google.android.exoplayer2.util.Util;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import lombok.val;
 
 /**
- * The player activity, which allows user to view {@link VideoClip}s which
- * information automatically sends to {@link MediaSession}.
+ * The player activity, which allows user to view {@link VideoClip}s.
+ * <p>
+ * The player itself lives in {@link PlayerService}, which also sends the
+ * information about the playing {@link VideoClip} to {@link MediaSession},
+ * and the activity only shows it in a {@link PlayerView}.
+ * <p>
+ * The {@link VideoClip}s of the directory of the chosen clip are played as
+ * a playlist, starting with the chosen clip. The directory is listed and its
+ * tags are read in the background, and the playlist is started when they
+ * are loaded.
+ * <p>
+ * If the background playback is enabled, the playlist keeps playing when
+ * the activity is left, with the video disabled until the activity is shown
+ * again.
+ * <p>
+ * While the time bar is dragged, the {@link SeekPreview} shows the frame at
+ * the dragged position.
  *
  * @author Artyom Mameev
  */
 public class PlayerActivity extends AppCompatActivity {
 
-    private SimpleExoPlayer simpleExoPlayer;
+    private static final String CLIP_STARTED_KEY = "clipStarted";
 
-    private String artist, title, album;
+    private final ExecutorService executorService =
+            Executors.newSingleThreadExecutor();
+
+    private PlayerView playerView;
+    private SeekPreview seekPreview;
+
+    private VideoClip videoClip;
+    private boolean isClipStarted;
+    private boolean isPlaylistLoading;
+    private long requestTimeMs;
 
     private ServiceConnection serviceConnection;
     private PlayerService.PlayerServiceBinder playerServiceBinder;
-    private MediaControllerCompat mediaController;
+
+    private final Player.EventListener playerEventListener =
+            new Player.EventListener() {
+                @Override
+                public void onPlayerStateChanged(boolean playWhenReady,
+                                                 int playbackState) {
+                    if (playbackState == Player.STATE_ENDED) {
+                        finish();
+                    }
+                }
+
+                @Override
+                public void onPlayerError(
+                        @NonNull ExoPlaybackException error) {
+                    finish();
+                }
+            };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -57,44 +98,29 @@ public class PlayerActivity extends AppCompatActivity {
                 WindowManager.LayoutParams.FLAG_FULLSCREEN);
         setContentView(R.layout.activity_player);
 
-        simpleExoPlayer = new SimpleExoPlayer.Builder(this).build();
-
-        PlayerView playerView = findViewById(R.id.player);
-
-        playerView.setPlayer(simpleExoPlayer);
-
-        val dataSourceFactory = new DefaultDataSourceFactory(this,
-                Util.getUserAgent(this, getString(R.string.app_name)));
+        playerView = findViewById(R.id.player);
 
         val extras = getIntent().getExtras();
 
-        val videoClip = (VideoClip) Objects.requireNonNull(extras).get(getString(R.string.clip_key));
+        videoClip = (VideoClip) Objects.requireNonNull(extras).get(getString(R.string.clip_key));
 
         if (videoClip == null) {
             throw new NullPointerException("videoClip cannot be null");
         }
 
-        artist = videoClip.getArtist();
-        title = videoClip.getTitle();
-
-        if (videoClip.getAlbum().isPresent()) {
-            album = videoClip.getAlbum().get();
-        } else {
-            album = "";
-        }
+        // the time of the tap on the clip, for the playback telemetry
+        requestTimeMs = extras.getLong(getString(R.string.request_time_key),
+                SystemClock.elapsedRealtime());
 
-        val videoSource = new ProgressiveMediaSource
-                .Factory(dataSourceFactory)
-                .createMediaSource(Uri.fromFile(videoClip));
-
-        simpleExoPlayer.prepare(videoSource);
-        simpleExoPlayer.setPlayWhenReady(true);
+        // a recreated activity continues the clip that is already playing
+        isClipStarted = savedInstanceState != null &&
+                savedInstanceState.getBoolean(CLIP_STARTED_KEY);
 
         playerView.hideController();
 
-        setUpPlayerService();
+        setUpSeekPreview();
 
-        setUpPlayerEvents();
+        setUpPlayerService();
     }
 
     private void setUpPlayerService() {
@@ -104,55 +130,26 @@ public class PlayerActivity extends AppCompatActivity {
                                            IBinder service) {
                 playerServiceBinder = (PlayerService.PlayerServiceBinder) service;
 
-                try {
-                    mediaController = new MediaControllerCompat(
-                            PlayerActivity.this,
-                            playerServiceBinder.getMediaSessionToken());
-
-                    mediaController.registerCallback(
-                            new MediaControllerCompat.Callback() {
-                                @Override
-                                public void onPlaybackStateChanged(
-                                        PlaybackStateCompat state) {
-                                    if (state == null) {
-                                        return;
-                                    }
-
-                                    switch (state.getState()) {
-                                        case PlaybackStateCompat.STATE_PAUSED:
-                                            simpleExoPlayer.setPlayWhenReady(
-                                                    false);
-                                            break;
-
-                                        case PlaybackStateCompat.STATE_PLAYING:
-                                            simpleExoPlayer.setPlayWhenReady(
-                                                    true);
-                                            break;
-
-                                        case PlaybackStateCompat.STATE_BUFFERING:
-                                        case PlaybackStateCompat.STATE_CONNECTING:
-                                        case PlaybackStateCompat.STATE_ERROR:
-                                        case PlaybackStateCompat.STATE_FAST_FORWARDING:
-                                        case PlaybackStateCompat.STATE_NONE:
-                                        case PlaybackStateCompat.STATE_REWINDING:
-                                        case PlaybackStateCompat.STATE_SKIPPING_TO_NEXT:
-                                        case PlaybackStateCompat.STATE_SKIPPING_TO_PREVIOUS:
-                                        case PlaybackStateCompat.STATE_SKIPPING_TO_QUEUE_ITEM:
-                                        case PlaybackStateCompat.STATE_STOPPED:
-                                            break;
-                                    }
-                                }
-                            }
-                    );
-                } catch (RemoteException e) {
-                    mediaController = null;
+                if (seekPreview != null) {
+                    seekPreview.setPlayerServiceBinder(playerServiceBinder);
+                }
+
+                val player = playerServiceBinder.getPlayer();
+
+                player.addListener(playerEventListener);
+
+                playerServiceBinder.setVideoEnabled(true);
+
+                playerView.setPlayer(player);
+
+                if (!isClipStarted && !isPlaylistLoading) {
+                    playDirectory();
                 }
             }
 
             @Override
             public void onServiceDisconnected(ComponentName componentName) {
-                playerServiceBinder = null;
-                mediaController = null;
+                detachPlayer();
             }
         };
 
@@ -160,85 +157,150 @@ public class PlayerActivity extends AppCompatActivity {
                 serviceConnection, BIND_AUTO_CREATE);
     }
 
-    private void setUpPlayerEvents() {
-        simpleExoPlayer.addListener(new Player.EventListener() {
-            @Override
-            public void onPlayerStateChanged(boolean playWhenReady,
-                                             int playbackState) {
-                if (mediaController == null) {
+    private void setUpSeekPreview() {
+        DefaultTimeBar timeBar = playerView.findViewById(R.id.exo_progress);
+
+        if (timeBar == null) {
+            return;
+        }
+
+        seekPreview = new SeekPreview(findViewById(R.id.seek_preview),
+                timeBar);
+
+        timeBar.addListener(seekPreview);
+    }
+
+    private void playDirectory() {
+        isPlaylistLoading = true;
+
+        executorService.execute(() -> {
+            val playlist = loadPlaylist();
+            val index = playlist.indexOf(videoClip);
+
+            runOnUiThread(() -> {
+                isPlaylistLoading = false;
+
+                // a reconnected service starts the playlist again
+                if (isDestroyed() || playerServiceBinder == null) {
                     return;
                 }
 
-                if (playWhenReady & playbackState == Player.STATE_READY) { //play
-                    val track = new MusicRepository.Track(title, artist,
-                            album, simpleExoPlayer.getDuration());
+                playerServiceBinder.play(playlist, index, requestTimeMs);
 
-                    MusicRepository.setTrack(track);
+                isClipStarted = true;
+            });
+        });
+    }
 
-                    mediaController.getTransportControls().play();
-                }
+    private List<VideoClip> loadPlaylist() {
+        List<VideoClip> playlist = Collections.emptyList();
 
-                if (!playWhenReady & playbackState == Player.STATE_READY) { //pause
-                    mediaController.getTransportControls().pause();
-                }
+        val directory = videoClip.getParentFile();
 
-                if (playbackState == Player.STATE_ENDED) { //stop
-                    mediaController.getTransportControls().stop();
+        if (directory != null) {
+            val fileManager = new FileManager(new Database(this));
 
-                    finish();
-                }
-            }
+            fileManager.toDirectory(directory);
 
-            @Override
-            public void onPlayerError(@NonNull ExoPlaybackException error) {
-                simpleExoPlayer.stop();
-                simpleExoPlayer.release();
+            playlist = fileManager.getVideoClips(new FileNameComparator());
+        }
 
-                if (mediaController != null) {
-                    mediaController.getTransportControls().stop();
-                }
+        if (!playlist.contains(videoClip)) {
+            playlist = Collections.singletonList(videoClip);
+        }
 
-                finish();
-            }
-        });
+        return playlist;
+    }
+
+    private void detachPlayer() {
+        if (playerServiceBinder == null) {
+            return;
+        }
+
+        playerServiceBinder.getPlayer().removeListener(playerEventListener);
+
+        playerView.setPlayer(null);
+
+        if (seekPreview != null) {
+            seekPreview.setPlayerServiceBinder(null);
+        }
+
+        playerServiceBinder = null;
+    }
+
+    private boolean isBackgroundPlaybackEnabled() {
+        return PreferenceManager.getDefaultSharedPreferences(this).getBoolean(
+                getString(R.string.background_playback), false);
     }
 
     @Override
     public void onBackPressed() {
-        simpleExoPlayer.stop();
-        simpleExoPlayer.release();
+        if (playerServiceBinder != null && !isBackgroundPlaybackEnabled()) {
+            val player = playerServiceBinder.getPlayer();
 
-        if (mediaController != null) {
-            mediaController.getTransportControls().stop();
+            // the paused player saves the position of the clip
+            player.setPlayWhenReady(false);
+
+            // stops the clip, but keeps the player for the next one
+            player.stop(true);
         }
 
         finish();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        if (playerServiceBinder != null) {
+            // the video continues from the position of the audio
+            playerServiceBinder.setVideoEnabled(true);
+
+            playerView.setPlayer(playerServiceBinder.getPlayer());
+        }
+    }
+
     @Override
     protected void onPause() {
         super.onPause();
 
-        simpleExoPlayer.setPlayWhenReady(false);
+        if (playerServiceBinder != null && !isBackgroundPlaybackEnabled()) {
+            playerServiceBinder.getPlayer().setPlayWhenReady(false);
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+
+        if (playerServiceBinder != null && isBackgroundPlaybackEnabled()) {
+            // releases the surface, then the decoder of the video renderer
+            playerView.setPlayer(null);
 
-        if (serviceConnection != null) {
-            unbindService(serviceConnection);
+            playerServiceBinder.setVideoEnabled(false);
         }
     }
 
     @Override
-    public void onResume() {
-        super.onResume();
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
 
-        bindService(new Intent(this, PlayerService.class),
-                serviceConnection, BIND_AUTO_CREATE);
+        // a clip whose playlist is still loading is started again
+        outState.putBoolean(CLIP_STARTED_KEY, isClipStarted);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
 
-        simpleExoPlayer.stop();
-        simpleExoPlayer.release();
+        executorService.shutdownNow();
+
+        detachPlayer();
+
+        if (seekPreview != null) {
+            seekPreview.release();
+        }
+
+        unbindService(serviceConnection);
     }
 }
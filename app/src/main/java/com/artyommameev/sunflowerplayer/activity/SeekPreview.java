@@ -0,0 +1,183 @@
+package com.artyommameev.sunflowerplayer.activity;
+
+import android.graphics.Matrix;
+import android.view.View;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+import com.artyommameev.sunflowerplayer.service.PlayerService;
+import com.artyommameev.sunflowerplayer.storage.TrickplayCache;
+import com.google.android.exoplayer2.ui.TimeBar;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import lombok.val;
+
+/**
+ * Shows the frame of the trickplay sprite sheet of the playing
+ * {@link VideoClip} above the time bar while it is dragged, so the seek
+ * position can be found without seeking.
+ * <p>
+ * The sheet is read from the {@link TrickplayCache} of the
+ * {@link PlayerService} on a background thread when the dragging starts,
+ * and nothing is shown until it is read or if it is not generated yet.
+ *
+ * @author Artyom Mameev
+ */
+final class SeekPreview implements TimeBar.OnScrubListener {
+
+    private final ImageView previewView;
+    private final View timeBarView;
+    private final ExecutorService executorService =
+            Executors.newSingleThreadExecutor();
+
+    private final Matrix matrix = new Matrix();
+    private final int[] timeBarLocation = new int[2];
+    private final int[] parentLocation = new int[2];
+
+    private PlayerService.PlayerServiceBinder playerServiceBinder;
+    private File sheetClip;
+    private TrickplayCache.Sheet sheet;
+    private boolean isScrubbing;
+    private long scrubPositionMs;
+
+    /**
+     * Instantiates a new Seek Preview.
+     *
+     * @param previewView the view of the preview, placed in the same parent
+     *                    as the player, which is shown while the time bar
+     *                    is dragged.
+     * @param timeBarView the time bar of the player.
+     * @throws NullPointerException if any parameter is null.
+     */
+    SeekPreview(@lombok.NonNull ImageView previewView,
+                @lombok.NonNull View timeBarView) {
+        this.previewView = previewView;
+        this.timeBarView = timeBarView;
+    }
+
+    /**
+     * Sets the binder of the service that plays the clips, or null if the
+     * service is disconnected.
+     *
+     * @param playerServiceBinder the binder of the player service.
+     */
+    void setPlayerServiceBinder(
+            PlayerService.PlayerServiceBinder playerServiceBinder) {
+        this.playerServiceBinder = playerServiceBinder;
+    }
+
+    /**
+     * Stops reading the sheets.
+     */
+    void release() {
+        executorService.shutdownNow();
+    }
+
+    @Override
+    public void onScrubStart(@NonNull TimeBar timeBar, long position) {
+        isScrubbing = true;
+        scrubPositionMs = position;
+
+        loadSheet();
+
+        show();
+    }
+
+    @Override
+    public void onScrubMove(@NonNull TimeBar timeBar, long position) {
+        scrubPositionMs = position;
+
+        show();
+    }
+
+    @Override
+    public void onScrubStop(@NonNull TimeBar timeBar, long position,
+                            boolean canceled) {
+        isScrubbing = false;
+
+        previewView.setVisibility(View.GONE);
+    }
+
+    private void loadSheet() {
+        if (playerServiceBinder == null) {
+            return;
+        }
+
+        val tag = playerServiceBinder.getPlayer().getCurrentTag();
+
+        if (!(tag instanceof VideoClip) || tag.equals(sheetClip)) {
+            return;
+        }
+
+        val clip = (VideoClip) tag;
+        val trickplayCache = playerServiceBinder.getTrickplayCache();
+
+        sheetClip = clip;
+        sheet = null;
+
+        executorService.execute(() -> {
+            val loadedSheet = trickplayCache.get(clip);
+
+            previewView.post(() -> {
+                if (clip.equals(sheetClip)) {
+                    sheet = loadedSheet;
+
+                    show();
+                }
+            });
+        });
+    }
+
+    private void show() {
+        if (!isScrubbing || sheet == null || playerServiceBinder == null) {
+            previewView.setVisibility(View.GONE);
+
+            return;
+        }
+
+        val index = sheet.getIndex();
+        val frame = index.getFrame(scrubPositionMs);
+
+        val previewWidth = previewView.getLayoutParams().width;
+        val previewHeight = previewView.getLayoutParams().height;
+
+        val scale = Math.min(previewWidth / (float) index.getFrameWidth(),
+                previewHeight / (float) index.getFrameHeight());
+
+        matrix.setTranslate(-index.getFrameLeft(frame),
+                -index.getFrameTop(frame));
+        matrix.postScale(scale, scale);
+
+        if (previewView.getDrawable() == null ||
+                previewView.getTag() != sheet) {
+            previewView.setImageBitmap(sheet.getBitmap());
+            previewView.setTag(sheet);
+        }
+
+        previewView.setImageMatrix(matrix);
+
+        previewView.setTranslationX(getPreviewX(previewWidth));
+        previewView.setVisibility(View.VISIBLE);
+    }
+
+    private float getPreviewX(int previewWidth) {
+        val duration = playerServiceBinder.getPlayer().getDuration();
+        val fraction = duration > 0 ? scrubPositionMs / (float) duration : 0;
+
+        timeBarView.getLocationInWindow(timeBarLocation);
+        ((View) previewView.getParent()).getLocationInWindow(parentLocation);
+
+        val parentWidth = ((View) previewView.getParent()).getWidth();
+
+        val x = timeBarLocation[0] - parentLocation[0] +
+                fraction * timeBarView.getWidth() - previewWidth / 2f;
+
+        // the preview follows the scrubber, but stays on the screen
+        return Math.max(0, Math.min(x, parentWidth - previewWidth));
+    }
+}
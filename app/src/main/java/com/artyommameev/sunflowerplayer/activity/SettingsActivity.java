@@ -1,10 +1,12 @@
 package com.artyommameev.sunflowerplayer.activity;
 
+import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Environment;
 import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
 
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AlertDialog;
@@ -18,19 +20,44 @@ import androidx.preference.PreferenceManager;
 
 import com.artyommameev.sunflowerplayer.BuildConfig;
 import com.artyommameev.sunflowerplayer.R;
+import com.artyommameev.sunflowerplayer.backup.BackupChain;
+import com.artyommameev.sunflowerplayer.backup.BinaryTagBackupWriter;
+import com.artyommameev.sunflowerplayer.backup.MergePolicy;
+import com.artyommameev.sunflowerplayer.backup.RestoreNotification;
+import com.artyommameev.sunflowerplayer.backup.TagBackupDiff;
+import com.artyommameev.sunflowerplayer.backup.TagBackupInput;
+import com.artyommameev.sunflowerplayer.backup.TagBackupOutput;
+import com.artyommameev.sunflowerplayer.backup.TagBackupRestorer;
+import com.artyommameev.sunflowerplayer.backup.TagBackupWriter;
 import com.artyommameev.sunflowerplayer.database.Database;
-import com.artyommameev.sunflowerplayer.domain.Tag;
+import com.artyommameev.sunflowerplayer.database.OrphanTagCollector;
+import com.artyommameev.sunflowerplayer.storage.VideoClipScanner;
+import com.artyommameev.sunflowerplayer.service.PlayerService;
+import com.artyommameev.sunflowerplayer.storage.PlaybackSessionStore;
+import com.artyommameev.sunflowerplayer.util.BufferProfileTrace;
+import com.artyommameev.sunflowerplayer.util.ClipOpenTrace;
+import com.artyommameev.sunflowerplayer.util.NotificationTrace;
+import com.artyommameev.sunflowerplayer.util.PlaybackCpuMeter;
+import com.artyommameev.sunflowerplayer.util.PrepareTimeTrace;
+import com.artyommameev.sunflowerplayer.util.StartupTrace;
+import com.artyommameev.sunflowerplayer.util.StorageVolumeHelper;
 import com.artyommameev.sunflowerplayer.util.TreeUriHelper;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.InputStreamReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 import lombok.Cleanup;
 import lombok.val;
@@ -75,6 +102,9 @@ public class SettingsActivity extends AppCompatActivity {
         private final int REQUEST_DEFAULT_DIRECTORY = 9999;
         private final int REQUEST_LOAD_BACKUP = 9998;
 
+        private final ExecutorService executorService =
+                Executors.newSingleThreadExecutor();
+
         private Database database;
         private Preference defaultDirectoryPreference;
 
@@ -90,13 +120,52 @@ public class SettingsActivity extends AppCompatActivity {
 
             setUpCreateBackupPreference(
                     findPreference(getString(R.string.create_backup)));
+            setUpCreateIncrementalBackupPreference(findPreference(
+                    getString(R.string.create_incremental_backup)));
             setUpLoadBackupPreference(
                     findPreference(getString(R.string.load_backup)));
             setUpClearDatabasePreference(
                     findPreference(getString(R.string.clear_database)));
+            setUpCleanUpDatabasePreference(
+                    findPreference(getString(R.string.clean_up_database)));
             setUpDefaultDirectoryPreference(defaultDirectoryPreference);
             setUpResetDefaultDirectoryPreference(
                     findPreference(getString(R.string.reset_default_dir)));
+            setUpTracePreference(R.string.startup_timings,
+                    SettingsFragment::getStartupTimingsSummary);
+            setUpTracePreference(R.string.playback_cpu_time,
+                    PlaybackCpuMeter::getSummary);
+            setUpTracePreference(R.string.buffer_usage,
+                    BufferProfileTrace::getSummary);
+            setUpTracePreference(R.string.prepare_time,
+                    PrepareTimeTrace::getSummary);
+            setUpTracePreference(R.string.notification_updates,
+                    NotificationTrace::getSummary);
+
+            val playbackSessionStore = createPlaybackSessionStore();
+
+            // the summary may be built after the fragment is detached
+            val context = requireActivity().getApplicationContext();
+
+            setUpTracePreference(R.string.playback_sessions,
+                    () -> getPlaybackSessionsSummary(context,
+                            playbackSessionStore),
+                    () -> exportPlaybackSessions(playbackSessionStore));
+        }
+
+        @Override
+        public void onDestroy() {
+            super.onDestroy();
+
+            val activity = getActivity();
+
+            // a restore or a backup is not interrupted by a rotation, it
+            // only loses its dialogs
+            if (activity == null || activity.isFinishing()) {
+                executorService.shutdownNow();
+            } else {
+                executorService.shutdown();
+            }
         }
 
         @Override
@@ -110,7 +179,7 @@ public class SettingsActivity extends AppCompatActivity {
 
             switch (requestCode) {
                 case REQUEST_LOAD_BACKUP:
-                    showLoadBackupDialog(uri);
+                    showLoadBackupDialog(getUris(data));
                     break;
 
                 case REQUEST_DEFAULT_DIRECTORY:
@@ -119,6 +188,152 @@ public class SettingsActivity extends AppCompatActivity {
             }
         }
 
+        private List<Uri> getUris(Intent data) {
+            val uris = new ArrayList<Uri>();
+
+            if (data == null) {
+                return uris;
+            }
+
+            val clipData = data.getClipData();
+
+            if (clipData != null) {
+                for (int i = 0; i < clipData.getItemCount(); i++) {
+                    uris.add(clipData.getItemAt(i).getUri());
+                }
+            } else if (data.getData() != null) {
+                uris.add(data.getData());
+            }
+
+            return uris;
+        }
+
+        private void setUpTracePreference(int keyId,
+                                          Supplier<String> summarySupplier) {
+            setUpTracePreference(keyId, summarySupplier, null);
+        }
+
+        /*shows the summary of a trace in a dialog; it is built on the
+        executor, as some traces are read from files, and the export, if
+        any, is offered once there is something to export*/
+        private void setUpTracePreference(int keyId,
+                                          Supplier<String> summarySupplier,
+                                          Runnable exportAction) {
+            val key = getString(keyId);
+
+            Preference tracePreference = findPreference(key);
+
+            if (tracePreference == null) {
+                throw new RuntimeException("The preference " + key +
+                        " cannot be null!");
+            }
+
+            tracePreference.setOnPreferenceClickListener(preference -> {
+                executorService.execute(() -> {
+                    val summary = summarySupplier.get();
+
+                    runOnUiThreadIfAdded(() -> {
+                        if (summary.isEmpty()) {
+                            buildSimpleAlertDialog(key,
+                                    getString(R.string.no_playback_measured),
+                                    false)
+                                    .show();
+
+                            return;
+                        }
+
+                        val alertDialogBuilder = buildSimpleAlertDialog(key,
+                                summary, false);
+
+                        if (exportAction != null) {
+                            alertDialogBuilder.setNeutralButton(
+                                    getString(R.string.export),
+                                    (dialog, which) -> exportAction.run());
+                        }
+
+                        alertDialogBuilder.show();
+                    });
+                });
+
+                return true;
+            });
+        }
+
+        private static String getStartupTimingsSummary() {
+            val clipOpenSummary = ClipOpenTrace.getSummary();
+
+            return clipOpenSummary.isEmpty() ? StartupTrace.getSummary() :
+                    StartupTrace.getSummary() + "\n" + clipOpenSummary;
+        }
+
+        private static String getPlaybackSessionsSummary(
+                Context context, PlaybackSessionStore playbackSessionStore) {
+            val summary = playbackSessionStore.getSummary();
+
+            if (summary.getSessions() == 0) {
+                return "";
+            }
+
+            return context.getString(R.string.playback_sessions_report,
+                    summary.getSessions(),
+                    summary.getAverageTimeToFirstFrameMs(),
+                    summary.getAverageVideoDecoderInitMs(),
+                    summary.getDroppedFrames(),
+                    summary.getRebuffers(),
+                    summary.getRebufferMs());
+        }
+
+        private PlaybackSessionStore createPlaybackSessionStore() {
+            return new PlaybackSessionStore(new File(
+                    requireActivity().getFilesDir(),
+                    PlayerService.PLAYBACK_SESSIONS_FILE));
+        }
+
+        private void exportPlaybackSessions(
+                PlaybackSessionStore playbackSessionStore) {
+            val tempFolder = new File(requireActivity().getFilesDir(),
+                    "temp");
+
+            executorService.execute(() -> {
+                try {
+                    if (!tempFolder.exists()) {
+                        @SuppressWarnings("unused")
+                        val ignored = tempFolder.mkdir();
+                    }
+
+                    val file = new File(tempFolder, "playback-sessions.json");
+
+                    try (Writer writer = new OutputStreamWriter(
+                            new FileOutputStream(file),
+                            StandardCharsets.UTF_8)) {
+                        playbackSessionStore.exportTo(writer);
+                    }
+
+                    runOnUiThreadIfAdded(() -> sharePlaybackSessions(file));
+                } catch (IOException e) {
+                    runOnUiThreadIfAdded(() -> buildSimpleAlertDialog(
+                            getString(R.string.playback_sessions),
+                            getString(R.string.export_failed), false)
+                            .show());
+                }
+            });
+        }
+
+        private void sharePlaybackSessions(File file) {
+            val shareIntent = new Intent(Intent.ACTION_SEND);
+
+            shareIntent.setType("application/json");
+
+            val fileUri = FileProvider.getUriForFile(requireActivity(),
+                    BuildConfig.APPLICATION_ID + ".provider", file);
+
+            shareIntent.putExtra(Intent.EXTRA_STREAM, fileUri);
+            shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+            startActivity(Intent.createChooser(shareIntent,
+                    getString(R.string.share_via)));
+        }
+
         private void setUpResetDefaultDirectoryPreference(
                 Preference resetDefaultDirectoryPreference) {
             if (resetDefaultDirectoryPreference == null) {
@@ -184,6 +399,21 @@ public class SettingsActivity extends AppCompatActivity {
                     });
         }
 
+        private void setUpCleanUpDatabasePreference(
+                Preference cleanUpDatabasePreference) {
+            if (cleanUpDatabasePreference == null) {
+                throw new RuntimeException("cleanUpDatabasePreference " +
+                        "cannot be null!");
+            }
+
+            cleanUpDatabasePreference.setOnPreferenceClickListener(
+                    preference -> {
+                        cleanUpDatabase();
+
+                        return true;
+                    });
+        }
+
         private void setUpLoadBackupPreference(Preference loadBackupPreference) {
             if (loadBackupPreference == null) {
                 throw new RuntimeException("loadBackupPreference " +
@@ -206,12 +436,22 @@ public class SettingsActivity extends AppCompatActivity {
 
             createBackupPreference.setOnPreferenceClickListener(
                     preference -> {
-                        val backupJson = new Gson().toJson(
-                                database.findAll());
+                        createBackup();
 
-                        val backupFile = createTempBackupFile(backupJson);
+                        return true;
+                    });
+        }
 
-                        shareBackup(backupFile);
+        private void setUpCreateIncrementalBackupPreference(
+                Preference createIncrementalBackupPreference) {
+            if (createIncrementalBackupPreference == null) {
+                throw new RuntimeException(
+                        "createIncrementalBackupPreference cannot be null!");
+            }
+
+            createIncrementalBackupPreference.setOnPreferenceClickListener(
+                    preference -> {
+                        createIncrementalBackup();
 
                         return true;
                     });
@@ -246,28 +486,189 @@ public class SettingsActivity extends AppCompatActivity {
         private void showDatabaseClearedDialog() {
             buildSimpleAlertDialog(getString(R.string.clear_database),
                     getString(R.string.database_cleared), false)
-                    .setPositiveButton("OK", (dialog1, which1) ->
-                            reloadMainActivity())
                     .show();
         }
 
-        private void showLoadBackupDialog(Uri uri) {
-            if (uri == null) {
+        private void cleanUpDatabase() {
+            List<File> volumeRoots;
+
+            try {
+                // the tags of clips on any volume are kept
+                volumeRoots = StorageVolumeHelper.getVolumeRoots(
+                        requireActivity());
+            } catch (IllegalStateException e) {
+                showDatabaseCleanedUpDialog(null);
+
+                return;
+            }
+
+            val orphanTagCollector = new OrphanTagCollector(database,
+                    new VideoClipScanner(volumeRoots),
+                    PreferenceManager.getDefaultSharedPreferences(
+                            requireActivity()));
+
+            val progressDialog = buildSimpleAlertDialog(
+                    getString(R.string.clean_up_database),
+                    getString(R.string.cleaning_up_database), false)
+                    .setCancelable(false)
+                    .setPositiveButton(getString(R.string.cancel),
+                            (dialog, which) -> orphanTagCollector.cancel())
+                    .show();
+
+            executorService.execute(() -> {
+                OrphanTagCollector.Result result;
+
+                try {
+                    result = orphanTagCollector.collect();
+                } catch (IllegalStateException e) {
+                    result = null;
+                }
+
+                val collectorResult = result;
+
+                runOnUiThreadIfAdded(() -> {
+                    progressDialog.dismiss();
+
+                    showDatabaseCleanedUpDialog(collectorResult);
+                });
+            });
+        }
+
+        private void showDatabaseCleanedUpDialog(
+                OrphanTagCollector.Result result) {
+            String message;
+
+            if (result == null) {
+                message = getString(R.string.storage_not_readable);
+            } else if (result.isCompleted()) {
+                message = getString(R.string.database_cleaned_up,
+                        result.getReclaimedTags(), result.getDurationMs());
+            } else {
+                message = getString(R.string.database_clean_up_cancelled,
+                        result.getReclaimedTags());
+            }
+
+            buildSimpleAlertDialog(getString(R.string.clean_up_database),
+                    message, false)
+                    .show();
+        }
+
+        private void runOnUiThreadIfAdded(Runnable runnable) {
+            val activity = getActivity();
+
+            if (activity == null) {
+                return;
+            }
+
+            activity.runOnUiThread(() -> {
+                if (isAdded()) {
+                    runnable.run();
+                }
+            });
+        }
+
+        private void showLoadBackupDialog(List<Uri> uris) {
+            if (uris.isEmpty()) {
+                return;
+            }
+
+            // a chain is applied in order, so its links cannot be compared
+            // with the current tags one by one
+            if (uris.size() == 1) {
+                compareBackup(uris.get(0));
+
                 return;
             }
 
             buildSimpleAlertDialog(getString(R.string.load_backup),
                     getString(R.string.are_you_sure), true)
                     .setPositiveButton("OK", (dialog, which) ->
-                            loadBackup(uri))
+                            loadBackups(uris, MergePolicy.OVERWRITE))
                     .show();
         }
 
-        private void showBackupLoadedDialog() {
+        private void compareBackup(Uri uri) {
+            val context = requireActivity().getApplicationContext();
+
+            val tagBackupDiff = new TagBackupDiff(database);
+
+            val progressDialog = buildSimpleAlertDialog(
+                    getString(R.string.load_backup),
+                    getString(R.string.comparing_backup), false)
+                    .setCancelable(false)
+                    .setPositiveButton(getString(R.string.cancel),
+                            (dialog, which) -> tagBackupDiff.cancel())
+                    .show();
+
+            executorService.execute(() -> {
+                TagBackupDiff.Result result;
+
+                try {
+                    @Cleanup
+                    val inputStream = openInputStream(context, uri);
+
+                    result = tagBackupDiff.compute(inputStream);
+                } catch (IOException | RuntimeException e) {
+                    result = null;
+                }
+
+                val diffResult = result;
+
+                runOnUiThreadIfAdded(() -> {
+                    progressDialog.dismiss();
+
+                    showBackupDiffDialog(uri, diffResult);
+                });
+            });
+        }
+
+        private void showBackupDiffDialog(Uri uri,
+                                          TagBackupDiff.Result result) {
+            if (result == null) {
+                showBackupLoadedDialog(null, false);
+
+                return;
+            }
+
+            if (!result.isCompleted()) {
+                return;
+            }
+
+            val uris = Collections.singletonList(uri);
+
             buildSimpleAlertDialog(getString(R.string.load_backup),
-                    getString(R.string.backup_loaded), false)
-                    .setPositiveButton("OK", (dialog1, which1) ->
-                            reloadMainActivity())
+                    getString(R.string.backup_diff_summary,
+                            result.getNewTags(), result.getUnchangedTags(),
+                            result.getConflictingTags(),
+                            result.getRemovedTags(),
+                            result.getSkippedTags()), true)
+                    .setPositiveButton(getString(R.string.overwrite),
+                            (dialog, which) -> loadBackups(uris,
+                                    MergePolicy.OVERWRITE))
+                    .setNeutralButton(getString(R.string.keep_existing),
+                            (dialog, which) -> loadBackups(uris,
+                                    MergePolicy.KEEP_EXISTING))
+                    .show();
+        }
+
+        private void showBackupLoadedDialog(TagBackupRestorer.Result result,
+                                            boolean isChainBroken) {
+            String message;
+
+            if (isChainBroken) {
+                message = getString(R.string.backup_chain_broken);
+            } else if (result == null) {
+                message = getString(R.string.backup_not_readable);
+            } else {
+                message = getString(result.isCompleted() ?
+                                R.string.backup_loaded_summary :
+                                R.string.backup_load_cancelled_summary,
+                        result.getInserted(), result.getUpdated(),
+                        result.getDeleted(), result.getSkipped());
+            }
+
+            buildSimpleAlertDialog(getString(R.string.load_backup), message,
+                    false)
                     .show();
         }
 
@@ -276,6 +677,7 @@ public class SettingsActivity extends AppCompatActivity {
 
             intent.addCategory(Intent.CATEGORY_OPENABLE);
             intent.setType("*/*");
+            intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
 
             startActivityForResult(Intent.createChooser(intent,
                     getString(R.string.choose_file)), REQUEST_LOAD_BACKUP);
@@ -299,33 +701,168 @@ public class SettingsActivity extends AppCompatActivity {
             startActivity(intent);
         }
 
-        private File createTempBackupFile(String backupJson) {
+        private void createBackup() {
             val tempFolder = new File(requireActivity().getFilesDir(),
                     "temp");
 
+            val isBinary = getString(R.string.backup_format_binary).equals(
+                    PreferenceManager.getDefaultSharedPreferences(
+                            requireActivity())
+                            .getString(getString(R.string.backup_format),
+                                    getString(R.string.backup_format_json)));
+
+            executorService.execute(() -> {
+                try {
+                    val seq = database.getLastModSeq();
+
+                    val backupFile = createTempBackupFile(tempFolder,
+                            isBinary, seq);
+
+                    // the removals up to the full backup are in it
+                    saveBackupCheckpoint(seq);
+                    database.pruneDeletedTags(seq);
+
+                    runOnUiThreadIfAdded(() -> shareBackup(backupFile,
+                            isBinary));
+                } catch (IOException e) {
+                    runOnUiThreadIfAdded(() -> buildSimpleAlertDialog(
+                            getString(R.string.create_backup),
+                            getString(R.string.backup_failed), false)
+                            .show());
+                }
+            });
+        }
+
+        private File createTempBackupFile(File tempFolder, boolean isBinary,
+                                          long seq)
+                throws IOException {
             if (!tempFolder.exists()) {
                 @SuppressWarnings("unused")
                 val ignored = tempFolder.mkdir();
             }
 
-            try {
-                val file = new File(tempFolder, "tags-backup.json");
+            val file = new File(tempFolder, isBinary ? "tags-backup.sftb" :
+                    "tags-backup.json.gz");
 
-                @Cleanup
-                val writer = new BufferedWriter(new FileWriter(file));
+            // tags are streamed from the database cursor to the file, in
+            // the file name order that allows to compare the backup with
+            // the database by a merge join
+            @Cleanup
+            val tags = database.findAllOrderedByFileNameLazily();
+
+            @Cleanup
+            val backupOutput = createBackupOutput(new FileOutputStream(file),
+                    isBinary, seq);
+
+            for (val tag : tags) {
+                backupOutput.write(tag);
+            }
+
+            return file;
+        }
+
+        private TagBackupOutput createBackupOutput(OutputStream outputStream,
+                                                   boolean isBinary, long seq)
+                throws IOException {
+            if (isBinary) {
+                return BinaryTagBackupWriter.full(outputStream, seq);
+            }
+
+            return TagBackupWriter.full(outputStream, seq);
+        }
+
+        private void createIncrementalBackup() {
+            val sharedPreferences = PreferenceManager
+                    .getDefaultSharedPreferences(requireActivity());
+
+            val checkpointKey = getString(R.string.backup_checkpoint);
 
-                writer.write(backupJson);
+            if (!sharedPreferences.contains(checkpointKey)) {
+                buildSimpleAlertDialog(
+                        getString(R.string.create_incremental_backup),
+                        getString(R.string.no_full_backup), false)
+                        .show();
 
-                return file;
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+                return;
             }
+
+            val baseSeq = sharedPreferences.getLong(checkpointKey, 0);
+
+            val tempFolder = new File(requireActivity().getFilesDir(),
+                    "temp");
+
+            executorService.execute(() -> {
+                try {
+                    val seq = database.getLastModSeq();
+
+                    val backupFile = createTempIncrementalBackupFile(
+                            tempFolder, baseSeq, seq);
+
+                    saveBackupCheckpoint(seq);
+
+                    runOnUiThreadIfAdded(() -> shareBackup(backupFile,
+                            false));
+                } catch (IOException e) {
+                    runOnUiThreadIfAdded(() -> buildSimpleAlertDialog(
+                            getString(R.string.create_incremental_backup),
+                            getString(R.string.backup_failed), false)
+                            .show());
+                }
+            });
         }
 
-        private void shareBackup(File backupFile) {
+        private File createTempIncrementalBackupFile(File tempFolder,
+                                                     long baseSeq, long seq)
+                throws IOException {
+            if (!tempFolder.exists()) {
+                @SuppressWarnings("unused")
+                val ignored = tempFolder.mkdir();
+            }
+
+            // the sequence numbers keep the deltas of a chain apart
+            val file = new File(tempFolder, "tags-backup-" + baseSeq + "-" +
+                    seq + ".json.gz");
+
+            // only the changes after the checkpoint are read, by the indexes
+            @Cleanup
+            val deletedTags = database.findDeletedTagsAfterLazily(baseSeq);
+            @Cleanup
+            val tags = database.findTagsModifiedAfterLazily(baseSeq);
+
+            @Cleanup
+            val backupWriter = TagBackupWriter.delta(
+                    new FileOutputStream(file), baseSeq, seq);
+
+            for (val deletedTag : deletedTags) {
+                backupWriter.writeDeleted(deletedTag.getFileName());
+            }
+
+            for (val tag : tags) {
+                backupWriter.write(tag);
+            }
+
+            return file;
+        }
+
+        private void saveBackupCheckpoint(long seq) {
+            val activity = getActivity();
+
+            if (activity == null) {
+                return;
+            }
+
+            PreferenceManager.getDefaultSharedPreferences(activity)
+                    .edit()
+                    .putLong(activity.getString(R.string.backup_checkpoint),
+                            seq)
+                    .apply();
+        }
+
+        private void shareBackup(File backupFile, boolean isBinary) {
             val shareIntent = new Intent(Intent.ACTION_SEND);
 
-            shareIntent.setType("text/json");
+            shareIntent.setType(isBinary ? "application/octet-stream" :
+                    "application/gzip");
 
             val fileUri = FileProvider.getUriForFile(requireActivity(),
                     BuildConfig.APPLICATION_ID + ".provider", backupFile);
@@ -338,27 +875,102 @@ public class SettingsActivity extends AppCompatActivity {
                     getString(R.string.share_via)));
         }
 
-        private void loadBackup(Uri uri) {
-            try {
-                @Cleanup
-                val inputStream = requireActivity()
-                        .getContentResolver().openInputStream(uri);
+        private void loadBackups(List<Uri> uris, MergePolicy mergePolicy) {
+            val context = requireActivity().getApplicationContext();
+
+            val tagBackupRestorer = new TagBackupRestorer(database,
+                    mergePolicy);
+            val restoreNotification = new RestoreNotification(context);
+
+            val progressDialog = buildSimpleAlertDialog(
+                    getString(R.string.load_backup),
+                    getString(R.string.loading_backup), false)
+                    .setCancelable(false)
+                    .setPositiveButton(getString(R.string.cancel),
+                            (dialog, which) -> tagBackupRestorer.cancel())
+                    .show();
 
+            executorService.execute(() -> {
+                TagBackupRestorer.Result result = null;
+                boolean isChainBroken = false;
+
+                try {
+                    for (val link : orderBackupChain(context, uris)) {
+                        val uri = link.getSource();
+
+                        val linkResult = tagBackupRestorer.restore(
+                                () -> openInputStream(context, uri),
+                                querySize(context, uri),
+                                (restoredTags, percent) ->
+                                        restoreNotification.showProgress(
+                                                percent));
+
+                        result = result == null ? linkResult :
+                                result.plus(linkResult);
+
+                        if (!result.isCompleted()) {
+                            break;
+                        }
+                    }
+                } catch (IllegalArgumentException e) {
+                    isChainBroken = true;
+                } catch (IOException | RuntimeException e) {
+                    result = null;
+                } finally {
+                    restoreNotification.cancel();
+                }
+
+                val restorerResult = result;
+                val chainBroken = isChainBroken;
+
+                runOnUiThreadIfAdded(() -> {
+                    progressDialog.dismiss();
+
+                    showBackupLoadedDialog(restorerResult, chainBroken);
+                });
+            });
+        }
+
+        private List<BackupChain.Link<Uri>> orderBackupChain(
+                Context context, List<Uri> uris) throws IOException {
+            val links = new ArrayList<BackupChain.Link<Uri>>(uris.size());
+
+            // only the headers are read to order the chain
+            for (val uri : uris) {
                 @Cleanup
-                val bufferedReader = new BufferedReader(new InputStreamReader(
-                        inputStream));
+                val tagBackupInput = TagBackupInput.open(
+                        openInputStream(context, uri));
+
+                links.add(new BackupChain.Link<>(uri,
+                        tagBackupInput.getSeq(),
+                        tagBackupInput.getBaseSeq()));
+            }
 
-                val tagListType = new TypeToken<List<Tag>>() {
-                }.getType();
+            return BackupChain.order(links);
+        }
+
+        private InputStream openInputStream(Context context, Uri uri)
+                throws IOException {
+            val inputStream = context.getContentResolver()
+                    .openInputStream(uri);
+
+            if (inputStream == null) {
+                throw new IOException("Cannot open " + uri);
+            }
 
-                List<Tag> tags = new Gson().fromJson(bufferedReader, tagListType);
+            return inputStream;
+        }
 
-                database.saveAll(tags);
+        private long querySize(Context context, Uri uri) {
+            @Cleanup
+            val cursor = context.getContentResolver().query(uri,
+                    new String[]{OpenableColumns.SIZE}, null, null, null);
 
-                showBackupLoadedDialog();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+            if (cursor == null || !cursor.moveToFirst() || cursor.isNull(0)) {
+                return -1;
             }
+
+            return cursor.getLong(0);
         }
 
         private void changeDefaultDirectory(Uri uri) {
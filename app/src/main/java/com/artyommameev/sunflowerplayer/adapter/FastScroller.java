@@ -0,0 +1,231 @@
+package com.artyommameev.sunflowerplayer.adapter;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.view.MotionEvent;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.artyommameev.sunflowerplayer.R;
+
+import java.util.function.Supplier;
+
+import lombok.val;
+
+/**
+ * A fast-scroll thumb at the right edge of a long list, which is dragged to
+ * jump between the sections of a {@link SectionIndex} and shows the label
+ * of the current section in a popup.
+ * <p>
+ * While the thumb is not dragged, it follows the scroll position of the
+ * list. While it is dragged, every section takes an equal part of the
+ * track, so the short sections are as easy to hit as the long ones, and
+ * the position under the finger is taken from the index without scanning
+ * the list. The list should have a {@link LinearLayoutManager}.
+ *
+ * @author Artyom Mameev
+ */
+public final class FastScroller extends RecyclerView.ItemDecoration
+        implements RecyclerView.OnItemTouchListener {
+
+    // the list is scrolled by hand unless it is this many screens long
+    private static final int MIN_PAGES = 4;
+
+    private static final float POPUP_CORNER_RATIO = 0.25f;
+
+    private final RecyclerView recyclerView;
+    private final Supplier<SectionIndex> sectionIndexSupplier;
+
+    private final int thumbWidth;
+    private final int thumbHeight;
+    private final int touchWidth;
+    private final int popupSize;
+    private final int popupMargin;
+
+    private final Paint thumbPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint popupPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF rect = new RectF();
+
+    private boolean isDragging;
+    private float dragFraction;
+    private int draggedPosition = RecyclerView.NO_POSITION;
+
+    /**
+     * Instantiates a new Fast Scroller and attaches it to a list.
+     *
+     * @param recyclerView         the list with a {@link LinearLayoutManager}.
+     * @param sectionIndexSupplier the supplier of the {@link SectionIndex} of
+     *                             the shown rows.
+     * @throws NullPointerException if any parameter is null.
+     */
+    public FastScroller(@lombok.NonNull RecyclerView recyclerView,
+                        @lombok.NonNull Supplier<SectionIndex>
+                                sectionIndexSupplier) {
+        this.recyclerView = recyclerView;
+        this.sectionIndexSupplier = sectionIndexSupplier;
+
+        val context = recyclerView.getContext();
+        val resources = context.getResources();
+
+        thumbWidth = resources.getDimensionPixelSize(
+                R.dimen.fast_scroll_thumb_width);
+        thumbHeight = resources.getDimensionPixelSize(
+                R.dimen.fast_scroll_thumb_height);
+        touchWidth = resources.getDimensionPixelSize(
+                R.dimen.fast_scroll_touch_width);
+        popupSize = resources.getDimensionPixelSize(
+                R.dimen.fast_scroll_popup_size);
+        popupMargin = resources.getDimensionPixelSize(
+                R.dimen.fast_scroll_popup_margin);
+
+        thumbPaint.setColor(ContextCompat.getColor(context,
+                R.color.colorAccent));
+        popupPaint.setColor(ContextCompat.getColor(context,
+                R.color.colorPrimary));
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        textPaint.setTextSize(resources.getDimension(
+                R.dimen.fast_scroll_popup_text_size));
+
+        recyclerView.addItemDecoration(this);
+        recyclerView.addOnItemTouchListener(this);
+    }
+
+    @Override
+    public void onDrawOver(@NonNull Canvas canvas,
+                           @NonNull RecyclerView parent,
+                           @NonNull RecyclerView.State state) {
+        if (!isDragging && !isShown()) {
+            return;
+        }
+
+        val width = recyclerView.getWidth();
+        val thumbTop = getThumbFraction() * getTrackLength();
+
+        rect.set(width - thumbWidth, thumbTop, width,
+                thumbTop + thumbHeight);
+        canvas.drawRoundRect(rect, thumbWidth / 2f, thumbWidth / 2f,
+                thumbPaint);
+
+        if (!isDragging) {
+            return;
+        }
+
+        val sectionIndex = sectionIndexSupplier.get();
+        val section = sectionIndex.getSectionForFraction(dragFraction);
+
+        if (section < 0) {
+            return;
+        }
+
+        // the popup is centered on the thumb, but stays on the screen
+        val popupTop = Math.max(0, Math.min(
+                thumbTop + (thumbHeight - popupSize) / 2f,
+                recyclerView.getHeight() - popupSize));
+        val popupRight = width - thumbWidth - popupMargin;
+        val cornerRadius = popupSize * POPUP_CORNER_RATIO;
+
+        rect.set(popupRight - popupSize, popupTop, popupRight,
+                popupTop + popupSize);
+        canvas.drawRoundRect(rect, cornerRadius, cornerRadius, popupPaint);
+
+        val baseline = rect.centerY() -
+                (textPaint.ascent() + textPaint.descent()) / 2;
+
+        canvas.drawText(sectionIndex.getLabel(section), rect.centerX(),
+                baseline, textPaint);
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(@NonNull RecyclerView view,
+                                         @NonNull MotionEvent event) {
+        if (isDragging) {
+            return true;
+        }
+
+        if (event.getActionMasked() != MotionEvent.ACTION_DOWN ||
+                event.getX() < recyclerView.getWidth() - touchWidth ||
+                !isShown()) {
+            return false;
+        }
+
+        isDragging = true;
+        draggedPosition = RecyclerView.NO_POSITION;
+
+        recyclerView.stopScroll();
+        recyclerView.getParent().requestDisallowInterceptTouchEvent(true);
+
+        drag(event.getY());
+
+        return true;
+    }
+
+    @Override
+    public void onTouchEvent(@NonNull RecyclerView view,
+                             @NonNull MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_MOVE:
+                drag(event.getY());
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                isDragging = false;
+
+                recyclerView.invalidate();
+                break;
+        }
+    }
+
+    @Override
+    public void onRequestDisallowInterceptTouchEvent(
+            boolean disallowIntercept) {
+    }
+
+    private void drag(float y) {
+        dragFraction = Math.max(0, Math.min(
+                (y - thumbHeight / 2f) / getTrackLength(), 1));
+
+        val position = sectionIndexSupplier.get()
+                .getPositionForFraction(dragFraction);
+
+        // the moves within the rows of the same position do not scroll
+        if (position >= 0 && position != draggedPosition) {
+            draggedPosition = position;
+
+            ((LinearLayoutManager) recyclerView.getLayoutManager())
+                    .scrollToPositionWithOffset(position, 0);
+        }
+
+        recyclerView.invalidate();
+    }
+
+    private boolean isShown() {
+        return sectionIndexSupplier.get().getSectionCount() > 0 &&
+                recyclerView.computeVerticalScrollRange() >=
+                        recyclerView.computeVerticalScrollExtent() *
+                                MIN_PAGES;
+    }
+
+    private float getThumbFraction() {
+        if (isDragging) {
+            return dragFraction;
+        }
+
+        val scrollableRange = recyclerView.computeVerticalScrollRange() -
+                recyclerView.computeVerticalScrollExtent();
+
+        return scrollableRange <= 0 ? 0 :
+                Math.min((float) recyclerView.computeVerticalScrollOffset() /
+                        scrollableRange, 1);
+    }
+
+    private float getTrackLength() {
+        return Math.max(recyclerView.getHeight() - thumbHeight, 1);
+    }
+}
@@ -1,96 +1,467 @@
 package com.artyommameev.sunflowerplayer.adapter;
 
 import android.content.Context;
+import android.view.ContextMenu;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.ImageView;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.artyommameev.sunflowerplayer.R;
+import com.artyommameev.sunflowerplayer.SunflowerPlayer;
+import com.artyommameev.sunflowerplayer.domain.PlaybackPosition;
 import com.artyommameev.sunflowerplayer.domain.VideoClip;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import lombok.Getter;
 import lombok.val;
 
 /**
- * An adapter for presenting {@link File}s in ListView with separate icons for
- * normal files, folders and {@link VideoClip}s.
+ * An adapter for presenting {@link File}s in RecyclerView with separate
+ * icons for normal files, folders and {@link VideoClip}s.
+ * <p>
+ * The files are presented as immutable rows, which hold what is shown for
+ * every file: its name, its kind and the watched progress of a
+ * {@link VideoClip} from its {@link PlaybackPosition}. When the files of
+ * the shown directory change, the new rows are compared with the shown
+ * ones on a background thread and only the changed rows are bound again.
+ * Every file keeps its id for the lifetime of the adapter, so the rows
+ * keep their views and the list keeps its scroll position.
+ * <p>
+ * The rows are built into a {@link Listing}, which can be done on the
+ * background thread that loads the files, as the kind of a file is checked
+ * on the storage once per path. The {@link SectionIndex} of the rows is
+ * built in the same pass as the rows, and replaces the shown one together
+ * with them, so the fast scrolling never scans the list.
+ * <p>
+ * The icons of the {@link VideoClip}s are replaced by their poster frames,
+ * which are loaded in the background and cancelled when a row is recycled.
+ * The owner of the adapter should {@link FileAdapter#release()} the adapter
+ * when the list is destroyed.
  *
  * @author Artyom Mameev
  */
-public class FileAdapter extends ArrayAdapter<File> {
+public class FileAdapter extends ListAdapter<FileAdapter.Row,
+        FileAdapter.ViewHolder> {
+
+    static final DiffUtil.ItemCallback<Row> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<Row>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull Row oldRow,
+                                               @NonNull Row newRow) {
+                    return oldRow.id == newRow.id;
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull Row oldRow,
+                                                  @NonNull Row newRow) {
+                    return oldRow.kind == newRow.kind &&
+                            oldRow.progress == newRow.progress &&
+                            oldRow.label.equals(newRow.label);
+                }
+            };
 
     private final Context context;
+    private final Listener listener;
+    private final ThumbnailLoader thumbnailLoader;
+
+    // the ids and the kinds of the files by their paths, assigned once
+    private final Map<String, Identity> identities =
+            new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    private SectionIndex sectionIndex = SectionIndex.EMPTY;
 
     /**
-     * Instantiates a new File Adapter.
+     * Instantiates a new File Adapter without files.
      *
-     * @param files   the {@link File}s and {@link VideoClip}s that should be
-     *                presented in ListView.
-     * @param context the application context.
+     * @param context  the application context.
+     * @param listener the listener of the clicks on the rows.
+     * @throws NullPointerException if any parameter is null.
      */
-    public FileAdapter(List<File> files, Context context) {
-        super(context, R.layout.listview, files);
+    public FileAdapter(@lombok.NonNull Context context,
+                       @lombok.NonNull Listener listener) {
+        super(DIFF_CALLBACK);
+
         this.context = context;
+        this.listener = listener;
+
+        thumbnailLoader = new ThumbnailLoader(context,
+                ((SunflowerPlayer) context.getApplicationContext())
+                        .getThumbnailPack());
+
+        setHasStableIds(true);
+    }
+
+    /**
+     * Replaces the shown files with the files of another directory. The
+     * rows are not compared, the list is shown from its top.
+     *
+     * @param files             the {@link File}s and {@link VideoClip}s that
+     *                          should be presented.
+     * @param playbackPositions the {@link PlaybackPosition}s of the
+     *                          {@link VideoClip}s by file name.
+     * @throws NullPointerException if any parameter is null.
+     */
+    public void replaceFiles(@lombok.NonNull List<File> files,
+                             @lombok.NonNull Map<String, PlaybackPosition>
+                                     playbackPositions) {
+        replaceListing(createListing(files, playbackPositions));
+    }
+
+    /**
+     * Updates the shown files of the same directory, for example after
+     * their tags or their playback positions have changed. The rows are
+     * compared in the background, and only the changed ones are bound
+     * again.
+     *
+     * @param files             the {@link File}s and {@link VideoClip}s that
+     *                          should be presented, in their current state.
+     * @param playbackPositions the {@link PlaybackPosition}s of the
+     *                          {@link VideoClip}s by file name.
+     * @throws NullPointerException if any parameter is null.
+     */
+    public void updateFiles(@lombok.NonNull List<File> files,
+                            @lombok.NonNull Map<String, PlaybackPosition>
+                                    playbackPositions) {
+        updateListing(createListing(files, playbackPositions));
+    }
+
+    /**
+     * Builds the rows of the files. May be called on any thread: the kinds
+     * of the files met for the first time are read from the storage, so a
+     * new directory should be listed on a background thread.
+     *
+     * @param files             the {@link File}s and {@link VideoClip}s that
+     *                          should be presented.
+     * @param playbackPositions the {@link PlaybackPosition}s of the
+     *                          {@link VideoClip}s by file name.
+     * @return the {@link Listing} of the files.
+     * @throws NullPointerException if any parameter is null.
+     */
+    public Listing createListing(@lombok.NonNull List<File> files,
+                                 @lombok.NonNull Map<String, PlaybackPosition>
+                                         playbackPositions) {
+        val sectionIndexBuilder = new SectionIndex.Builder();
+        val rows = toRows(files, playbackPositions, sectionIndexBuilder);
 
+        return new Listing(rows, sectionIndexBuilder.build());
+    }
+
+    /**
+     * Shows the rows of another directory. The rows are not compared, the
+     * list is shown from its top.
+     *
+     * @param listing the {@link Listing} of the files of the directory.
+     * @throws NullPointerException if the listing is null.
+     */
+    public void replaceListing(@lombok.NonNull Listing listing) {
+        // the rows of two directories have nothing to compare
+        submitList(null);
+        submit(listing);
+    }
+
+    /**
+     * Shows the updated rows of the same directory. The rows are compared
+     * in the background, and only the changed ones are bound again.
+     *
+     * @param listing the {@link Listing} of the files of the directory.
+     * @throws NullPointerException if the listing is null.
+     */
+    public void updateListing(@lombok.NonNull Listing listing) {
+        submit(listing);
+    }
+
+    /**
+     * Returns the file shown in a row.
+     *
+     * @param position the position of the row.
+     * @return the {@link File} or the {@link VideoClip} of the row.
+     * @throws IndexOutOfBoundsException if the position is out of the list
+     *                                   bounds.
+     */
+    public File getFile(int position) {
+        return getItem(position).file;
+    }
+
+    /**
+     * Returns the kind of the file shown in a row, without reading the
+     * storage.
+     *
+     * @param position the position of the row.
+     * @return the {@link Row.Kind} of the row.
+     * @throws IndexOutOfBoundsException if the position is out of the list
+     *                                   bounds.
+     */
+    public Row.Kind getKind(int position) {
+        return getItem(position).kind;
+    }
+
+    /**
+     * Returns the index of the sections of the shown rows, which are the
+     * runs of the names starting with the same letter. As the files are
+     * sorted by their names, and the names of the {@link VideoClip}s start
+     * with their artists, the sections of the clips are their artists'
+     * initials. The directories, which are sorted before the files, make up
+     * a single section of their own, so an initial never gets two sections.
+     *
+     * @return the {@link SectionIndex} of the shown rows.
+     */
+    public SectionIndex getSectionIndex() {
+        return sectionIndex;
+    }
+
+    /**
+     * Cancels the loading of the poster frames and drops the cached ones.
+     */
+    public void release() {
+        thumbnailLoader.release();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).id;
     }
 
     @NonNull
     @Override
-    public View getView(int position, View convertView,
-                        @NonNull ViewGroup parent) {
-        val file = getItem(position);
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent,
+                                         int viewType) {
+        val view = LayoutInflater.from(parent.getContext()).inflate(
+                R.layout.listview, parent, false);
 
-        ViewHolder viewHolder;
+        return new ViewHolder(view);
+    }
 
-        if (convertView == null) {
-            viewHolder = new ViewHolder();
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder viewHolder,
+                                 int position) {
+        val row = getItem(position);
 
-            val layoutInflater = LayoutInflater.from(getContext());
+        viewHolder.label.setText(row.label);
 
-            convertView = layoutInflater.inflate(R.layout.listview, parent,
-                    false);
+        if (row.kind == Row.Kind.VIDEO_CLIP) {
+            thumbnailLoader.load(viewHolder.icon, (VideoClip) row.file,
+                    R.drawable.ic_movie_black_24dp);
+        } else {
+            thumbnailLoader.cancel(viewHolder.icon);
 
-            viewHolder.label = convertView.findViewById(R.id.label);
-            viewHolder.icon = convertView.findViewById(R.id.image);
+            val iconDrawable = row.kind == Row.Kind.DIRECTORY ?
+                    R.drawable.ic_folder_black_24dp :
+                    R.drawable.ic_insert_drive_file_black_24dp;
 
-            convertView.setTag(viewHolder);
-        } else {
-            viewHolder = (ViewHolder) convertView.getTag();
+            viewHolder.icon.setImageDrawable(ContextCompat.getDrawable(
+                    context, iconDrawable));
+        }
+
+        bindProgress(viewHolder.progress, row.progress);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder viewHolder) {
+        // the frame of a row scrolled off the screen is not loaded in vain
+        thumbnailLoader.cancel(viewHolder.icon);
+    }
+
+    private void submit(Listing listing) {
+        // the index is shown with its rows, after they are diffed
+        submitList(listing.rows, () -> sectionIndex = listing.sectionIndex);
+    }
+
+    private List<Row> toRows(List<File> files,
+                             Map<String, PlaybackPosition> playbackPositions,
+                             SectionIndex.Builder sectionIndexBuilder) {
+        val rows = new ArrayList<Row>(files.size());
+
+        for (val file : files) {
+            val identity = getIdentity(file);
+            int progress = Row.NO_PROGRESS;
+
+            if (identity.kind == Row.Kind.VIDEO_CLIP) {
+                progress = toProgress(playbackPositions.get(
+                        ((VideoClip) file).getFileName()));
+            }
+
+            rows.add(new Row(identity.id, file, file.getName(),
+                    identity.kind, progress));
+            sectionIndexBuilder.add(getSectionLabel(file.getName(),
+                    identity.kind));
         }
 
-        if (file == null) {
-            throw new NullPointerException("File cannot be null");
+        return rows;
+    }
+
+    private Identity getIdentity(File file) {
+        return identities.computeIfAbsent(file.getAbsolutePath(), path -> {
+            Row.Kind kind;
+
+            if (file instanceof VideoClip) {
+                kind = Row.Kind.VIDEO_CLIP;
+            } else if (file.isDirectory()) {
+                kind = Row.Kind.DIRECTORY;
+            } else {
+                kind = Row.Kind.FILE;
+            }
+
+            return new Identity(nextId.getAndIncrement(), kind);
+        });
+    }
+
+    static String getSectionLabel(String name, Row.Kind kind) {
+        return kind == Row.Kind.DIRECTORY ? SectionIndex.DIRECTORY_LABEL :
+                SectionIndex.getLabel(name);
+    }
+
+    static int toProgress(PlaybackPosition playbackPosition) {
+        if (playbackPosition == null || playbackPosition.getDuration() <= 0) {
+            return Row.NO_PROGRESS;
         }
 
-        viewHolder.label.setText(file.getName());
+        return playbackPosition.isFinished() ? Row.MAX_PROGRESS :
+                (int) (playbackPosition.getPosition() * Row.MAX_PROGRESS /
+                        playbackPosition.getDuration());
+    }
 
-        int iconDrawable;
+    private void bindProgress(ProgressBar progressBar, int progress) {
+        if (progress == Row.NO_PROGRESS) {
+            progressBar.setVisibility(View.GONE);
 
-        if (file.isDirectory()) {
-            iconDrawable = R.drawable.ic_folder_black_24dp;
-        } else if (file instanceof VideoClip) {
-            iconDrawable = R.drawable.ic_movie_black_24dp;
-        } else {
-            iconDrawable = R.drawable.ic_insert_drive_file_black_24dp;
+            return;
         }
 
-        viewHolder.icon.setImageDrawable(ContextCompat.getDrawable(
-                context, iconDrawable));
+        progressBar.setProgress(progress * progressBar.getMax() /
+                Row.MAX_PROGRESS);
+        progressBar.setVisibility(View.VISIBLE);
+    }
 
-        return convertView;
+    /**
+     * The rows of a list of files with their {@link SectionIndex}, built by
+     * {@link FileAdapter#createListing(List, Map)}.
+     */
+    public static final class Listing {
+
+        private final List<Row> rows;
+        private final SectionIndex sectionIndex;
+
+        private Listing(List<Row> rows, SectionIndex sectionIndex) {
+            this.rows = rows;
+            this.sectionIndex = sectionIndex;
+        }
     }
 
-    private static class ViewHolder {
-        TextView label;
-        ImageView icon;
+    private static final class Identity {
+
+        private final long id;
+        private final Row.Kind kind;
+
+        private Identity(long id, Row.Kind kind) {
+            this.id = id;
+            this.kind = kind;
+        }
     }
-}
 
+    /**
+     * A listener of the clicks on the rows.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a row is clicked.
+         *
+         * @param position the position of the row.
+         */
+        void onFileClick(int position);
+
+        /**
+         * Called when the context menu of a row is created.
+         *
+         * @param contextMenu the context menu of the row.
+         * @param position    the position of the row.
+         */
+        void onCreateFileContextMenu(ContextMenu contextMenu, int position);
+    }
+
+    /**
+     * The immutable presentation of a {@link File} in a row.
+     */
+    @Getter
+    public static final class Row {
+
+        static final int NO_PROGRESS = -1;
+        static final int MAX_PROGRESS = 1000;
+
+        private final long id;
+        private final File file;
+        private final String label;
+        private final Kind kind;
+        // the watched part of a clip in thousandths, or NO_PROGRESS
+        private final int progress;
+
+        Row(long id, File file, String label, Kind kind, int progress) {
+            this.id = id;
+            this.file = file;
+            this.label = label;
+            this.kind = kind;
+            this.progress = progress;
+        }
+
+        /**
+         * The kind of the file of a row, which defines its icon.
+         */
+        public enum Kind {
+            DIRECTORY,
+            VIDEO_CLIP,
+            FILE
+        }
+    }
+
+    /**
+     * Holds the views of a row.
+     */
+    public class ViewHolder extends RecyclerView.ViewHolder {
+
+        private final TextView label;
+        private final ImageView icon;
+        private final ProgressBar progress;
+
+        ViewHolder(@NonNull View itemView) {
+            super(itemView);
+
+            label = itemView.findViewById(R.id.label);
+            icon = itemView.findViewById(R.id.image);
+            progress = itemView.findViewById(R.id.progress);
+
+            itemView.setOnClickListener(view -> {
+                val position = getAdapterPosition();
+
+                if (position != RecyclerView.NO_POSITION) {
+                    listener.onFileClick(position);
+                }
+            });
+
+            itemView.setOnCreateContextMenuListener(
+                    (contextMenu, view, contextMenuInfo) -> {
+                        val position = getAdapterPosition();
+
+                        if (position != RecyclerView.NO_POSITION) {
+                            listener.onCreateFileContextMenu(contextMenu,
+                                    position);
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.artyommameev.sunflowerplayer.adapter;
+
+import java.util.Arrays;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * The sections of a sorted list, such as the runs of the names starting
+ * with the same letter, for the fast scrolling through the list.
+ * <p>
+ * The index is built in the same pass that builds the list, and is stored
+ * as two arrays: the labels of the sections and the positions where they
+ * start. The position of a section is an array lookup, and so is the
+ * position for a place on the fast-scroll track, where every section gets
+ * an equal part of the track, so the list is never scanned again.
+ *
+ * @author Artyom Mameev
+ */
+public final class SectionIndex {
+
+    /**
+     * The index of an empty list.
+     */
+    public static final SectionIndex EMPTY = new SectionIndex(new String[0],
+            new int[0], 0);
+
+    /**
+     * The label of a section of directories, which no sort key gets from
+     * {@link SectionIndex#getLabel(String)}.
+     */
+    public static final String DIRECTORY_LABEL = "/";
+
+    private static final String OTHER_LABEL = "#";
+
+    private final String[] labels;
+    private final int[] starts;
+    private final int itemCount;
+
+    private SectionIndex(String[] labels, int[] starts, int itemCount) {
+        this.labels = labels;
+        this.starts = starts;
+        this.itemCount = itemCount;
+    }
+
+    /**
+     * Returns the section label of a sort key: its first letter in upper
+     * case, or '#' if it starts with a digit or another character.
+     *
+     * @param sortKey the key the list is sorted by, such as a file name.
+     * @return the label of the section of the key.
+     * @throws NullPointerException if the sort key is null.
+     */
+    public static String getLabel(@NonNull String sortKey) {
+        if (sortKey.isEmpty()) {
+            return OTHER_LABEL;
+        }
+
+        val codePoint = sortKey.codePointAt(0);
+
+        if (!Character.isLetter(codePoint)) {
+            return OTHER_LABEL;
+        }
+
+        return new String(Character.toChars(
+                Character.toUpperCase(codePoint)));
+    }
+
+    /**
+     * Returns the number of the sections.
+     *
+     * @return the number of the sections, 0 if the list is empty.
+     */
+    public int getSectionCount() {
+        return starts.length;
+    }
+
+    /**
+     * Returns the number of the items of the indexed list.
+     *
+     * @return the number of the items.
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Returns the label of a section.
+     *
+     * @param section the index of the section.
+     * @return the label of the section.
+     * @throws IndexOutOfBoundsException if there is no such section.
+     */
+    public String getLabel(int section) {
+        checkSection(section);
+
+        return labels[section];
+    }
+
+    /**
+     * Returns the position of the first item of a section.
+     *
+     * @param section the index of the section.
+     * @return the position of the first item of the section.
+     * @throws IndexOutOfBoundsException if there is no such section.
+     */
+    public int getPositionForSection(int section) {
+        checkSection(section);
+
+        return starts[section];
+    }
+
+    /**
+     * Returns the section an item belongs to.
+     *
+     * @param position the position of the item.
+     * @return the index of the section of the item.
+     * @throws IndexOutOfBoundsException if the position is out of the list
+     *                                   bounds.
+     */
+    public int getSectionForPosition(int position) {
+        if (position < 0 || position >= itemCount) {
+            throw new IndexOutOfBoundsException("position " + position +
+                    " is out of the list bounds");
+        }
+
+        val index = Arrays.binarySearch(starts, position);
+
+        // the section that starts before the position
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Returns the section shown at a place on the fast-scroll track, where
+     * every section takes an equal part of the track.
+     *
+     * @param fraction the place on the track, from 0 at the top to 1 at the
+     *                 bottom. The values out of the range are clamped.
+     * @return the index of the section, or -1 if the list is empty.
+     */
+    public int getSectionForFraction(float fraction) {
+        if (starts.length == 0) {
+            return -1;
+        }
+
+        return Math.min((int) (clamp(fraction) * starts.length),
+                starts.length - 1);
+    }
+
+    /**
+     * Returns the position shown at a place on the fast-scroll track: the
+     * section at the place, and the item of the section as far into it as
+     * the place is into the part of the section.
+     *
+     * @param fraction the place on the track, from 0 at the top to 1 at the
+     *                 bottom. The values out of the range are clamped.
+     * @return the position of the item, or -1 if the list is empty.
+     */
+    public int getPositionForFraction(float fraction) {
+        val section = getSectionForFraction(fraction);
+
+        if (section < 0) {
+            return -1;
+        }
+
+        val start = starts[section];
+        val end = section + 1 < starts.length ? starts[section + 1] :
+                itemCount;
+        val sectionFraction = clamp(fraction) * starts.length - section;
+
+        return Math.min(start + (int) (sectionFraction * (end - start)),
+                end - 1);
+    }
+
+    private void checkSection(int section) {
+        if (section < 0 || section >= starts.length) {
+            throw new IndexOutOfBoundsException("section " + section +
+                    " is out of the index bounds");
+        }
+    }
+
+    private static float clamp(float fraction) {
+        return Math.max(0, Math.min(fraction, 1));
+    }
+
+    /**
+     * Builds a {@link SectionIndex} from the labels of the items of a list,
+     * which are added in the order of the list. A new section starts
+     * whenever the label differs from the label of the previous item.
+     */
+    public static final class Builder {
+
+        private String[] labels = new String[16];
+        private int[] starts = new int[16];
+        private int sectionCount;
+        private int itemCount;
+
+        /**
+         * Adds the next item of the list.
+         *
+         * @param label the label of the section of the item.
+         * @return this builder.
+         * @throws NullPointerException if the label is null.
+         */
+        public Builder add(@NonNull String label) {
+            if (sectionCount == 0 ||
+                    !labels[sectionCount - 1].equals(label)) {
+                if (sectionCount == starts.length) {
+                    labels = Arrays.copyOf(labels, sectionCount * 2);
+                    starts = Arrays.copyOf(starts, sectionCount * 2);
+                }
+
+                labels[sectionCount] = label;
+                starts[sectionCount] = itemCount;
+
+                sectionCount++;
+            }
+
+            itemCount++;
+
+            return this;
+        }
+
+        /**
+         * Builds the index of the added items.
+         *
+         * @return the built index.
+         */
+        public SectionIndex build() {
+            return new SectionIndex(Arrays.copyOf(labels, sectionCount),
+                    Arrays.copyOf(starts, sectionCount), itemCount);
+        }
+    }
+}
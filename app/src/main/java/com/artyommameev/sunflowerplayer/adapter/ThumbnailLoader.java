@@ -0,0 +1,402 @@
+package com.artyommameev.sunflowerplayer.adapter;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.artyommameev.sunflowerplayer.R;
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+import com.artyommameev.sunflowerplayer.storage.ThumbnailPack;
+import com.artyommameev.sunflowerplayer.storage.TrickplayCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Loads the poster frames of {@link VideoClip}s into the icons of the rows
+ * of a list.
+ * <p>
+ * The frames are looked up in a memory cache sized from the memory class of
+ * the device, then in a {@link ThumbnailPack} on the disk, and are only
+ * extracted from the clips if they are in neither. The lookups and the
+ * extractions run on a small pool of background threads, and the pending
+ * work of a row is cancelled when the row is rebound or scrolled off the
+ * screen, so a fling does not queue the frames of all the rows it passed.
+ * <p>
+ * All the frames have the same size, so the bitmaps evicted from the memory
+ * cache, which are not shown anymore, are decoded into again instead of
+ * allocating new ones. Except the background work, the methods should be
+ * called on the main thread.
+ *
+ * @author Artyom Mameev
+ */
+final class ThumbnailLoader {
+
+    private static final int THREADS = 2;
+    private static final int MAX_REUSABLE_BITMAPS = 8;
+    private static final int JPEG_QUALITY = 80;
+
+    // a part of the memory available to the application
+    private static final int MEMORY_CACHE_DIVIDER = 16;
+
+    private final ThumbnailPack thumbnailPack;
+    private final int width;
+    private final int height;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor executor;
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final Map<ImageView, Task> tasks = new HashMap<>();
+    private final Map<ImageView, Bitmap> shownBitmaps = new HashMap<>();
+    private final Set<Bitmap> evictedShownBitmaps =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<String> failedKeys = new HashSet<>();
+
+    private final Deque<Bitmap> reusableBitmaps = new ArrayDeque<>();
+
+    /**
+     * Instantiates a new Thumbnail Loader.
+     *
+     * @param context       the context of the list.
+     * @param thumbnailPack the disk cache of the frames.
+     * @throws NullPointerException if any parameter is null.
+     */
+    ThumbnailLoader(@NonNull Context context,
+                    @NonNull ThumbnailPack thumbnailPack) {
+        this.thumbnailPack = thumbnailPack;
+
+        val resources = context.getResources();
+
+        width = resources.getDimensionPixelSize(R.dimen.thumbnail_width);
+        height = resources.getDimensionPixelSize(R.dimen.thumbnail_height);
+
+        executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(THREADS,
+                runnable -> new Thread(() -> {
+                    Process.setThreadPriority(
+                            Process.THREAD_PRIORITY_BACKGROUND);
+
+                    runnable.run();
+                }, "ThumbnailLoader"));
+
+        val activityManager = (ActivityManager) context.getSystemService(
+                Context.ACTIVITY_SERVICE);
+
+        val memoryCacheBytes = activityManager.getMemoryClass() * 1024 *
+                1024 / MEMORY_CACHE_DIVIDER;
+
+        memoryCache = new LruCache<String, Bitmap>(memoryCacheBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key,
+                                        Bitmap oldBitmap, Bitmap newBitmap) {
+                if (oldBitmap != newBitmap) {
+                    recycleLater(oldBitmap);
+                }
+            }
+        };
+    }
+
+    /**
+     * Shows the poster frame of a clip in an icon, or the placeholder until
+     * the frame is loaded.
+     *
+     * @param imageView   the icon of the row of the clip.
+     * @param videoClip   the clip.
+     * @param placeholder the id of the drawable shown until the frame is
+     *                    loaded or if the frame cannot be extracted.
+     * @throws NullPointerException if the icon or the clip is null.
+     */
+    void load(@NonNull ImageView imageView, @NonNull VideoClip videoClip,
+              int placeholder) {
+        val key = TrickplayCache.getKey(videoClip);
+
+        val task = tasks.get(imageView);
+
+        if (task != null && task.key.equals(key)) {
+            return; // the frame of the clip is being loaded
+        }
+
+        cancel(imageView);
+
+        val bitmap = memoryCache.get(key);
+
+        if (bitmap != null) {
+            show(imageView, bitmap);
+
+            return;
+        }
+
+        imageView.setImageResource(placeholder);
+
+        if (failedKeys.contains(key)) {
+            return;
+        }
+
+        val newTask = new Task(imageView, videoClip, key);
+
+        tasks.put(imageView, newTask);
+
+        executor.execute(newTask);
+    }
+
+    /**
+     * Cancels the loading of the frame of an icon and forgets the frame
+     * shown in it, when its row is not a row of a clip anymore or has been
+     * scrolled off the screen.
+     *
+     * @param imageView the icon of the row.
+     * @throws NullPointerException if the icon is null.
+     */
+    void cancel(@NonNull ImageView imageView) {
+        val task = tasks.remove(imageView);
+
+        if (task != null) {
+            task.cancel(false);
+
+            // the cancelled frames do not wait in the queue of the executor
+            executor.remove(task);
+        }
+
+        val bitmap = shownBitmaps.remove(imageView);
+
+        if (bitmap != null) {
+            imageView.setImageDrawable(null);
+
+            if (evictedShownBitmaps.remove(bitmap)) {
+                recycleLater(bitmap);
+            }
+        }
+    }
+
+    /**
+     * Cancels all the loading and drops the cached frames.
+     */
+    void release() {
+        executor.shutdownNow();
+
+        tasks.clear();
+        shownBitmaps.clear();
+        evictedShownBitmaps.clear();
+
+        memoryCache.evictAll();
+
+        synchronized (reusableBitmaps) {
+            reusableBitmaps.clear();
+        }
+    }
+
+    private void show(ImageView imageView, Bitmap bitmap) {
+        imageView.setImageBitmap(bitmap);
+
+        shownBitmaps.put(imageView, bitmap);
+    }
+
+    private void recycleLater(Bitmap bitmap) {
+        // a bitmap that is still shown is reused when its icon is cleared
+        if (shownBitmaps.containsValue(bitmap)) {
+            evictedShownBitmaps.add(bitmap);
+
+            return;
+        }
+
+        synchronized (reusableBitmaps) {
+            if (reusableBitmaps.size() < MAX_REUSABLE_BITMAPS) {
+                reusableBitmaps.push(bitmap);
+            }
+        }
+    }
+
+    private Bitmap takeReusableBitmap() {
+        synchronized (reusableBitmaps) {
+            val bitmap = reusableBitmaps.poll();
+
+            if (bitmap != null && bitmap.isMutable() &&
+                    bitmap.getWidth() == width &&
+                    bitmap.getHeight() == height) {
+                return bitmap;
+            }
+        }
+
+        return Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+    }
+
+    private Bitmap loadThumbnail(VideoClip videoClip, String key) {
+        val bytes = thumbnailPack.get(key);
+
+        if (bytes != null) {
+            val bitmap = decode(bytes);
+
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+
+        val bitmap = extract(videoClip);
+
+        if (bitmap == null) {
+            return null;
+        }
+
+        val output = new ByteArrayOutputStream();
+
+        bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, output);
+
+        try {
+            thumbnailPack.put(key, output.toByteArray());
+        } catch (IOException | IllegalArgumentException e) {
+            // the frame is extracted again the next time
+        }
+
+        return bitmap;
+    }
+
+    private Bitmap decode(byte[] bytes) {
+        val options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        options.inMutable = true;
+        options.inBitmap = takeReusableBitmap();
+
+        try {
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length,
+                    options);
+        } catch (IllegalArgumentException e) {
+            // the frame does not fit into the reused bitmap
+            options.inBitmap = null;
+
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length,
+                    options);
+        }
+    }
+
+    private Bitmap extract(VideoClip videoClip) {
+        val retriever = new MediaMetadataRetriever();
+
+        try {
+            retriever.setDataSource(videoClip.getAbsolutePath());
+
+            // a negative time lets the retriever pick a representative
+            // key frame, which is decoded without the frames after it
+            Bitmap frame;
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                frame = retriever.getScaledFrameAtTime(-1,
+                        MediaMetadataRetriever.OPTION_CLOSEST_SYNC,
+                        width * 2, height * 2);
+            } else {
+                frame = retriever.getFrameAtTime(-1,
+                        MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            }
+
+            if (frame == null) {
+                return null;
+            }
+
+            val thumbnail = takeReusableBitmap();
+
+            drawCenterCrop(frame, thumbnail);
+
+            frame.recycle();
+
+            return thumbnail;
+        } catch (RuntimeException e) {
+            return null; // an unsupported or broken clip keeps its icon
+        } finally {
+            retriever.release();
+        }
+    }
+
+    private void drawCenterCrop(Bitmap frame, Bitmap thumbnail) {
+        val scale = Math.max(width / (float) frame.getWidth(),
+                height / (float) frame.getHeight());
+
+        val sourceWidth = Math.round(width / scale);
+        val sourceHeight = Math.round(height / scale);
+        val sourceLeft = (frame.getWidth() - sourceWidth) / 2;
+        val sourceTop = (frame.getHeight() - sourceHeight) / 2;
+
+        new Canvas(thumbnail).drawBitmap(frame,
+                new Rect(sourceLeft, sourceTop, sourceLeft + sourceWidth,
+                        sourceTop + sourceHeight),
+                new Rect(0, 0, width, height), null);
+    }
+
+    private final class Task extends FutureTask<Bitmap> {
+
+        private final ImageView imageView;
+        private final String key;
+
+        Task(ImageView imageView, VideoClip videoClip, String key) {
+            super(() -> loadThumbnail(videoClip, key));
+
+            this.imageView = imageView;
+            this.key = key;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+
+            mainHandler.post(() -> {
+                Bitmap bitmap;
+
+                try {
+                    bitmap = get();
+                } catch (Exception e) {
+                    bitmap = null;
+                }
+
+                if (executor.isShutdown()) {
+                    return;
+                }
+
+                if (bitmap == null) {
+                    failedKeys.add(key);
+                } else {
+                    memoryCache.put(key, bitmap);
+                }
+
+                // the icon may have been bound to another row meanwhile
+                if (tasks.get(imageView) != this) {
+                    return;
+                }
+
+                tasks.remove(imageView);
+
+                if (bitmap != null) {
+                    show(imageView, bitmap);
+                }
+            });
+        }
+    }
+}
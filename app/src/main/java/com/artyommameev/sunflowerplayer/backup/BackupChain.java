@@ -0,0 +1,127 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Orders a full backup of {@link Tag}s and the incremental backups created
+ * after it into the chain in which they should be restored.
+ * <p>
+ * The chain starts with the full backup, if there is one, followed by the
+ * incremental backups ordered by their base sequence numbers. Every
+ * incremental backup must continue exactly where the previous backup ended,
+ * otherwise some changes would be missing. A full backup without a sequence
+ * number (created by the older versions of the application) is accepted as
+ * the base of any chain.
+ *
+ * @author Artyom Mameev
+ */
+public class BackupChain {
+
+    private BackupChain() {
+    }
+
+    /**
+     * Orders the backups into a chain.
+     *
+     * @param links the backups in any order.
+     * @param <T>   the type of the backup sources.
+     * @return the list of the backups in the order in which they should be
+     * restored.
+     * @throws IllegalArgumentException if there is more than one full backup,
+     *                                  or the backups don't form a continuous
+     *                                  chain.
+     * @throws NullPointerException     if the links list is null.
+     */
+    public static <T> List<Link<T>> order(@NonNull List<Link<T>> links) {
+        Link<T> full = null;
+
+        val deltas = new ArrayList<Link<T>>();
+
+        for (val link : links) {
+            if (!link.isDelta()) {
+                if (full != null) {
+                    throw new IllegalArgumentException("A chain of backups " +
+                            "cannot contain more than one full backup!");
+                }
+
+                full = link;
+            } else {
+                deltas.add(link);
+            }
+        }
+
+        deltas.sort(Comparator.comparingLong(Link::getBaseSeq));
+
+        val chain = new ArrayList<Link<T>>(links.size());
+
+        long seq = -1;
+
+        if (full != null) {
+            chain.add(full);
+
+            seq = full.getSeq();
+        }
+
+        for (val delta : deltas) {
+            if (seq != -1 && delta.getBaseSeq() != seq) {
+                throw new IllegalArgumentException("The backup after " +
+                        "sequence number " + seq + " is missing!");
+            }
+
+            chain.add(delta);
+
+            seq = delta.getSeq();
+        }
+
+        return chain;
+    }
+
+    /**
+     * A backup of a chain.
+     *
+     * @param <T> the type of the backup source.
+     */
+    public static class Link<T> {
+
+        @Getter
+        private final T source;
+        @Getter
+        private final long seq;
+        @Getter
+        private final long baseSeq;
+
+        /**
+         * Instantiates a new Link.
+         *
+         * @param source  the source from which the backup is read.
+         * @param seq     the modification sequence number of the backup, or
+         *                -1 if the backup doesn't have it.
+         * @param baseSeq the modification sequence number of the previous
+         *                backup, or -1 if the backup is not incremental.
+         * @throws NullPointerException if the source is null.
+         */
+        public Link(@NonNull T source, long seq, long baseSeq) {
+            this.source = source;
+            this.seq = seq;
+            this.baseSeq = baseSeq;
+        }
+
+        /**
+         * Checks if the backup is incremental.
+         *
+         * @return true if the backup contains only the changes made after a
+         * previous backup.
+         */
+        public boolean isDelta() {
+            return baseSeq != -1;
+        }
+    }
+}
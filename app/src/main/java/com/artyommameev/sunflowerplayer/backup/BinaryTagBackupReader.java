@@ -0,0 +1,249 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Reads a backup of {@link Tag}s written by {@link BinaryTagBackupWriter}
+ * one {@link Tag} at a time.
+ * <p>
+ * The checksum is verified when the end of the backup is reached, so a
+ * corrupted backup is reported by the last {@link #read()} call, and
+ * {@link TagBackupRestorer} reads the whole backup before it saves any
+ * {@link Tag}. A corrupted length is reported as an {@link IOException}
+ * before anything is allocated for it.
+ *
+ * @author Artyom Mameev
+ */
+public class BinaryTagBackupReader implements TagBackupInput {
+
+    // a string longer than this is treated as a corrupted length
+    private static final int MAX_STRING_BYTES = 64 * 1024;
+    // written by the previous version, without the sequence number
+    private static final int VERSION_WITHOUT_SEQ = 1;
+
+    private final InputStream inputStream;
+    private final CheckedInputStream checkedInputStream;
+    private final List<String> dictionary = new ArrayList<>();
+
+    private boolean started;
+    private boolean finished;
+    private long seq = -1;
+
+    /**
+     * Instantiates a new Binary Tag Backup Reader.
+     *
+     * @param inputStream the buffered stream from which the backup should be
+     *                    read, closed together with the reader.
+     * @throws NullPointerException if the input stream is null.
+     */
+    public BinaryTagBackupReader(@NonNull InputStream inputStream) {
+        this.inputStream = inputStream;
+
+        checkedInputStream = new CheckedInputStream(inputStream, new CRC32());
+    }
+
+    @Override
+    public Tag read() throws IOException {
+        if (finished) {
+            return null;
+        }
+
+        start();
+
+        val fileNameLength = readVarint();
+
+        if (fileNameLength == 0) {
+            verifyChecksum();
+
+            finished = true;
+
+            return null;
+        }
+
+        val fileName = readString(fileNameLength - 1);
+        val title = readString(readVarint());
+        val artist = readReference();
+        val album = readReference();
+
+        return new Tag(fileName, artist, title, album);
+    }
+
+    @Override
+    public long getSeq() throws IOException {
+        start();
+
+        return seq;
+    }
+
+    /**
+     * Returns the number of skipped entries, which is always 0, since a
+     * binary backup contains only complete {@link Tag}s.
+     *
+     * @return 0.
+     */
+    @Override
+    public long getSkippedTags() {
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    private void start() throws IOException {
+        if (!started) {
+            readHeader();
+
+            started = true;
+        }
+    }
+
+    private void readHeader() throws IOException {
+        val magic = new byte[BinaryTagBackupWriter.MAGIC.length];
+
+        readFully(magic);
+
+        if (!Arrays.equals(magic, BinaryTagBackupWriter.MAGIC)) {
+            throw new IOException("Not a binary backup");
+        }
+
+        val version = readByte();
+
+        if (version == VERSION_WITHOUT_SEQ) {
+            return;
+        }
+
+        if (version != BinaryTagBackupWriter.VERSION) {
+            throw new IOException("Unsupported backup version " + version);
+        }
+
+        seq = readVarlong() - 1;
+    }
+
+    private void verifyChecksum() throws IOException {
+        val expected = checkedInputStream.getChecksum().getValue();
+
+        long actual = 0;
+
+        for (int i = 0; i < 4; i++) {
+            val b = inputStream.read();
+
+            if (b < 0) {
+                throw new EOFException();
+            }
+
+            actual = (actual << 8) | b;
+        }
+
+        if (actual != expected) {
+            throw new IOException("The backup is corrupted");
+        }
+    }
+
+    private String readReference() throws IOException {
+        val reference = readVarint();
+
+        if (reference == 0) {
+            val string = readString(readVarint());
+
+            dictionary.add(string);
+
+            return string;
+        }
+
+        if (reference > dictionary.size()) {
+            throw new IOException("The backup is corrupted");
+        }
+
+        return dictionary.get(reference - 1);
+    }
+
+    private String readString(int length) throws IOException {
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("The backup is corrupted");
+        }
+
+        val bytes = new byte[length];
+
+        readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readVarint() throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            val b = readByte();
+
+            value |= (long) (b & 0x7f) << shift;
+
+            if ((b & 0x80) == 0) {
+                // the lengths and the references are never negative
+                if (value > Integer.MAX_VALUE) {
+                    break;
+                }
+
+                return (int) value;
+            }
+        }
+
+        throw new IOException("The backup is corrupted");
+    }
+
+    private long readVarlong() throws IOException {
+        long value = 0;
+
+        // at most 63 bits, as the sequence numbers are never negative
+        for (int shift = 0; shift < 63; shift += 7) {
+            val b = readByte();
+
+            value |= (long) (b & 0x7f) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("The backup is corrupted");
+    }
+
+    private int readByte() throws IOException {
+        val b = checkedInputStream.read();
+
+        if (b < 0) {
+            throw new EOFException();
+        }
+
+        return b;
+    }
+
+    private void readFully(byte[] bytes) throws IOException {
+        int offset = 0;
+
+        while (offset < bytes.length) {
+            val read = checkedInputStream.read(bytes, offset,
+                    bytes.length - offset);
+
+            if (read < 0) {
+                throw new EOFException();
+            }
+
+            offset += read;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Writes a backup of {@link Tag}s in the compact binary format, one
+ * {@link Tag} at a time.
+ * <p>
+ * The format is:
+ * <pre>
+ * header:  MAGIC ("SFTB"), VERSION (1 byte), varint (seq + 1)
+ * record:  varint (file name length + 1), file name,
+ *          varint title length, title,
+ *          artist string reference, album string reference
+ * end:     varint 0, CRC32 of all previous bytes (4 bytes, big-endian)
+ * </pre>
+ * Strings are UTF-8, varints are unsigned LEB128. Artists and albums share
+ * a string dictionary that is built while writing: a reference is either 0
+ * followed by the length and bytes of a new string, which gets the next
+ * dictionary index, or (index + 1) of a string written before. The seq
+ * is the modification sequence number up to which the backup contains the
+ * changes, 0 is written if it is unknown.
+ *
+ * @author Artyom Mameev
+ */
+public class BinaryTagBackupWriter implements TagBackupOutput {
+
+    static final byte[] MAGIC = {'S', 'F', 'T', 'B'};
+    static final int VERSION = 2;
+
+    private final OutputStream outputStream;
+    private final CheckedOutputStream checkedOutputStream;
+    private final BufferedOutputStream bufferedOutputStream;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    @Getter
+    private long writtenTags;
+
+    /**
+     * Instantiates a new Binary Tag Backup Writer and writes the header of
+     * a full backup without a modification sequence number.
+     *
+     * @param outputStream the stream to which the backup should be written,
+     *                     closed together with the writer.
+     * @throws IOException          if the stream cannot be written.
+     * @throws NullPointerException if the output stream is null.
+     */
+    public BinaryTagBackupWriter(@NonNull OutputStream outputStream)
+            throws IOException {
+        this(outputStream, -1);
+    }
+
+    private BinaryTagBackupWriter(OutputStream outputStream, long seq)
+            throws IOException {
+        this.outputStream = outputStream;
+
+        checkedOutputStream = new CheckedOutputStream(outputStream,
+                new CRC32());
+        bufferedOutputStream = new BufferedOutputStream(checkedOutputStream);
+
+        bufferedOutputStream.write(MAGIC);
+        bufferedOutputStream.write(VERSION);
+
+        writeVarint(seq + 1);
+    }
+
+    /**
+     * Starts a full backup of all {@link Tag}s.
+     *
+     * @param outputStream the stream to which the backup should be written,
+     *                     closed together with the writer.
+     * @param seq          the modification sequence number up to which the
+     *                     backup contains the changes.
+     * @return the {@link BinaryTagBackupWriter} of the backup.
+     * @throws IOException          if the stream cannot be written.
+     * @throws NullPointerException if the output stream is null.
+     */
+    public static BinaryTagBackupWriter full(@NonNull OutputStream outputStream,
+                                             long seq) throws IOException {
+        return new BinaryTagBackupWriter(outputStream, seq);
+    }
+
+    @Override
+    public void write(@NonNull Tag tag) throws IOException {
+        val fileName = tag.getFileName().getBytes(StandardCharsets.UTF_8);
+
+        writeVarint(fileName.length + 1);
+        bufferedOutputStream.write(fileName);
+
+        writeString(tag.getTitle());
+        writeReference(tag.getArtist());
+        writeReference(tag.getAlbum());
+
+        writtenTags++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeVarint(0);
+
+            bufferedOutputStream.flush();
+
+            val checksum = checkedOutputStream.getChecksum().getValue();
+
+            // the checksum itself is not a part of the checksum
+            outputStream.write((int) (checksum >>> 24));
+            outputStream.write((int) (checksum >>> 16));
+            outputStream.write((int) (checksum >>> 8));
+            outputStream.write((int) checksum);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private void writeReference(String string) throws IOException {
+        val index = dictionary.get(string);
+
+        if (index != null) {
+            writeVarint(index + 1);
+
+            return;
+        }
+
+        dictionary.put(string, dictionary.size());
+
+        writeVarint(0);
+        writeString(string);
+    }
+
+    private void writeString(String string) throws IOException {
+        val bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        writeVarint(bytes.length);
+        bufferedOutputStream.write(bytes);
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            bufferedOutputStream.write((int) (value & 0x7f) | 0x80);
+
+            value >>>= 7;
+        }
+
+        bufferedOutputStream.write((int) value);
+    }
+}
@@ -0,0 +1,62 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import lombok.NonNull;
+
+/**
+ * An {@link InputStream} that counts the bytes read from the underlying
+ * stream, to report the progress of reading it.
+ *
+ * @author Artyom Mameev
+ */
+class CountingInputStream extends FilterInputStream {
+
+    private volatile long count;
+
+    CountingInputStream(@NonNull InputStream inputStream) {
+        super(inputStream);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int result = super.read();
+
+        if (result != -1) {
+            count++;
+        }
+
+        return result;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int result = super.read(buffer, offset, length);
+
+        if (result != -1) {
+            count += result;
+        }
+
+        return result;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long result = super.skip(n);
+
+        count += result;
+
+        return result;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,25 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+/**
+ * Decides what happens to the stored {@link Tag}s that conflict with the
+ * {@link Tag}s of a restored backup.
+ *
+ * @author Artyom Mameev
+ */
+public enum MergePolicy {
+
+    /**
+     * The {@link Tag}s of the backup replace the conflicting stored
+     * {@link Tag}s, and the removals carried by an incremental backup are
+     * applied.
+     */
+    OVERWRITE,
+
+    /**
+     * The stored {@link Tag}s are kept, only the {@link Tag}s for new file
+     * names are inserted, and the removals are not applied.
+     */
+    KEEP_EXISTING
+}
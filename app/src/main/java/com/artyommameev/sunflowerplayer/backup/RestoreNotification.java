@@ -0,0 +1,87 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Build;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+
+import com.artyommameev.sunflowerplayer.R;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * A notification showing the progress of a {@link TagBackupRestorer} run.
+ * <p>
+ * The notification is posted only when the shown percent changes, so it
+ * can be updated after every restored chunk.
+ *
+ * @author Artyom Mameev
+ */
+public class RestoreNotification {
+
+    private static final int NOTIFICATION_ID = 405;
+
+    private final Context context;
+    private final NotificationCompat.Builder builder;
+
+    private int shownPercent = Integer.MIN_VALUE;
+
+    /**
+     * Instantiates a new Restore Notification.
+     *
+     * @param context the application context.
+     * @throws NullPointerException if the context is null.
+     */
+    public RestoreNotification(@NonNull Context context) {
+        this.context = context;
+
+        val channelId = context.getString(R.string.backup_channel_id);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            val notificationChannel = new NotificationChannel(channelId,
+                    context.getString(R.string.backup_channel_name),
+                    NotificationManager.IMPORTANCE_LOW);
+
+            val notificationManager = (NotificationManager) context
+                    .getSystemService(Context.NOTIFICATION_SERVICE);
+
+            notificationManager.createNotificationChannel(notificationChannel);
+        }
+
+        builder = new NotificationCompat.Builder(context, channelId)
+                .setSmallIcon(R.drawable.ic_sync_white_24dp)
+                .setContentTitle(context.getString(R.string.loading_backup))
+                .setOnlyAlertOnce(true)
+                .setOngoing(true);
+    }
+
+    /**
+     * Shows the progress of the restore.
+     *
+     * @param percent the read part of the backup in percent, or -1 if the
+     *                size of the backup is unknown.
+     */
+    public void showProgress(int percent) {
+        if (percent == shownPercent) {
+            return;
+        }
+
+        shownPercent = percent;
+
+        builder.setProgress(100, Math.max(percent, 0), percent < 0);
+
+        NotificationManagerCompat.from(context).notify(NOTIFICATION_ID,
+                builder.build());
+    }
+
+    /**
+     * Removes the notification.
+     */
+    public void cancel() {
+        NotificationManagerCompat.from(context).cancel(NOTIFICATION_ID);
+    }
+}
@@ -0,0 +1,277 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import com.artyommameev.sunflowerplayer.comparator.CodePointComparator;
+import com.artyommameev.sunflowerplayer.database.Database;
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Compares a backup of {@link Tag}s in any {@link TagBackupInput} format
+ * with the {@link Tag}s stored in the database without changing anything,
+ * so the user can see what a restore would do.
+ * <p>
+ * The backups created by the application are ordered by file name, so the
+ * backup stream is merge joined with a database cursor ordered by the file
+ * name index in a single pass, with constant memory. Once a {@link Tag} out
+ * of that order is met (in a backup of an older version), the rest of the
+ * backup is compared by lookups of {@link TagBackupDiff#CHUNK_SIZE} file
+ * names at a time.
+ *
+ * @author Artyom Mameev
+ */
+public class TagBackupDiff {
+
+    static final int CHUNK_SIZE = 500;
+
+    private final Database database;
+    private final CodePointComparator codePointComparator =
+            new CodePointComparator();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    private long newTags;
+    private long unchangedTags;
+    private long conflictingTags;
+
+    /**
+     * Instantiates a new Tag Backup Diff.
+     *
+     * @param database the application database.
+     * @throws NullPointerException if the database is null.
+     */
+    public TagBackupDiff(@NonNull Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Compares the backup on the calling thread, which should not be the UI
+     * thread.
+     *
+     * @param inputStream the stream of the backup, closed when the
+     *                    comparison ends.
+     * @return the {@link Result} of the comparison.
+     * @throws IOException          if the stream cannot be read or is not a
+     *                              backup.
+     * @throws NullPointerException if the input stream is null.
+     */
+    public Result compute(@NonNull InputStream inputStream)
+            throws IOException {
+        newTags = unchangedTags = conflictingTags = 0;
+
+        @Cleanup
+        val tagBackupInput = TagBackupInput.open(inputStream);
+
+        val removedTags = countRemovedTags(tagBackupInput);
+
+        if (removedTags < 0) {
+            return result(0, tagBackupInput, false, true);
+        }
+
+        @Cleanup
+        val tagsInDatabase = database.findAllOrderedByFileNameLazily();
+
+        val databaseIterator = tagsInDatabase.iterator();
+
+        Tag tagInDatabase = nextOrNull(databaseIterator);
+
+        String previousFileName = null;
+        boolean isMergeJoined = true;
+
+        val unorderedChunk = new ArrayList<Tag>(CHUNK_SIZE);
+
+        long readTags = 0;
+
+        Tag tag;
+
+        while ((tag = tagBackupInput.read()) != null) {
+            if (++readTags % CHUNK_SIZE == 0 && isCancelled()) {
+                return result(removedTags, tagBackupInput, isMergeJoined,
+                        false);
+            }
+
+            val fileName = tag.getFileName();
+
+            if (isMergeJoined && previousFileName != null &&
+                    codePointComparator.compare(fileName,
+                            previousFileName) < 0) {
+                isMergeJoined = false;
+            }
+
+            if (!isMergeJoined) {
+                unorderedChunk.add(tag);
+
+                if (unorderedChunk.size() == CHUNK_SIZE) {
+                    compareChunk(unorderedChunk);
+                }
+
+                continue;
+            }
+
+            previousFileName = fileName;
+
+            while (tagInDatabase != null &&
+                    (tagInDatabase.getFileName() == null ||
+                            codePointComparator.compare(
+                                    tagInDatabase.getFileName(),
+                                    fileName) < 0)) {
+                tagInDatabase = nextOrNull(databaseIterator);
+            }
+
+            // the cursor is not moved past a match, which repeated file
+            // names of the backup are compared with again
+            if (tagInDatabase != null &&
+                    fileName.equals(tagInDatabase.getFileName())) {
+                count(tag, tagInDatabase);
+            } else {
+                count(tag, null);
+            }
+        }
+
+        if (!unorderedChunk.isEmpty()) {
+            compareChunk(unorderedChunk);
+        }
+
+        return result(removedTags, tagBackupInput, isMergeJoined, true);
+    }
+
+    /**
+     * Requests the running comparison to stop (the comparison also stops if
+     * its thread is interrupted).
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    // returns -1 if cancelled
+    private long countRemovedTags(TagBackupInput tagBackupInput)
+            throws IOException {
+        val chunk = new ArrayList<String>(CHUNK_SIZE);
+
+        long removedTags = 0;
+
+        String fileName;
+
+        do {
+            fileName = tagBackupInput.readDeleted();
+
+            if (fileName != null) {
+                chunk.add(fileName);
+            }
+
+            if (chunk.size() == CHUNK_SIZE ||
+                    (fileName == null && !chunk.isEmpty())) {
+                if (isCancelled()) {
+                    return -1;
+                }
+
+                removedTags += database.findTagsByFileNames(chunk).size();
+
+                chunk.clear();
+            }
+        } while (fileName != null);
+
+        return removedTags;
+    }
+
+    private void compareChunk(List<Tag> chunk) {
+        val tagsInDatabase = new HashMap<String, Tag>();
+
+        for (val tagInDatabase : database.findTagsByFileNames(chunk.stream()
+                .map(Tag::getFileName)
+                .collect(Collectors.toSet()))) {
+            tagsInDatabase.put(tagInDatabase.getFileName(), tagInDatabase);
+        }
+
+        for (val tag : chunk) {
+            count(tag, tagsInDatabase.get(tag.getFileName()));
+        }
+
+        chunk.clear();
+    }
+
+    private void count(Tag tag, Tag tagInDatabase) {
+        if (tagInDatabase == null) {
+            newTags++;
+        } else if (tagInDatabase.hasSameContent(tag)) {
+            unchangedTags++;
+        } else {
+            conflictingTags++;
+        }
+    }
+
+    private Tag nextOrNull(Iterator<Tag> iterator) {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private Result result(long removedTags, TagBackupInput tagBackupInput,
+                          boolean isMergeJoined, boolean completed) {
+        return new Result(newTags, unchangedTags, conflictingTags,
+                removedTags, tagBackupInput.getSkippedTags(), isMergeJoined,
+                completed);
+    }
+
+    private boolean isCancelled() {
+        return cancelled.get() || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * The result of a {@link TagBackupDiff} run.
+     */
+    public static class Result {
+
+        @Getter
+        private final long newTags;
+        @Getter
+        private final long unchangedTags;
+        @Getter
+        private final long conflictingTags;
+        @Getter
+        private final long removedTags;
+        @Getter
+        private final long skippedTags;
+        @Getter
+        private final boolean mergeJoined;
+        @Getter
+        private final boolean completed;
+
+        /**
+         * Instantiates a new Result.
+         *
+         * @param newTags         the number of {@link Tag}s for file names
+         *                        that are not stored.
+         * @param unchangedTags   the number of {@link Tag}s that are stored
+         *                        with the same content.
+         * @param conflictingTags the number of {@link Tag}s that are stored
+         *                        with a different content.
+         * @param removedTags     the number of stored {@link Tag}s that an
+         *                        incremental backup removes.
+         * @param skippedTags     the number of invalid backup entries.
+         * @param mergeJoined     false if the backup was not ordered by
+         *                        file name and was compared by lookups.
+         * @param completed       false if the comparison was cancelled.
+         */
+        public Result(long newTags, long unchangedTags, long conflictingTags,
+                      long removedTags, long skippedTags, boolean mergeJoined,
+                      boolean completed) {
+            this.newTags = newTags;
+            this.unchangedTags = unchangedTags;
+            this.conflictingTags = conflictingTags;
+            this.removedTags = removedTags;
+            this.skippedTags = skippedTags;
+            this.mergeJoined = mergeJoined;
+            this.completed = completed;
+        }
+    }
+}
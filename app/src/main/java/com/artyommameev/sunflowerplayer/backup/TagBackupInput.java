@@ -0,0 +1,118 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * A backup of {@link Tag}s that is read one {@link Tag} at a time.
+ * <p>
+ * An incremental backup also carries the file names of the removed
+ * {@link Tag}s, which are read before the {@link Tag}s.
+ *
+ * @author Artyom Mameev
+ */
+public interface TagBackupInput extends Closeable {
+
+    /**
+     * Opens a backup in any supported format, which is detected by the
+     * stream header.
+     *
+     * @param inputStream the stream from which the backup should be read,
+     *                    closed together with the returned input.
+     * @return the {@link BinaryTagBackupReader} if the stream starts with
+     * {@link BinaryTagBackupWriter#MAGIC}, otherwise the
+     * {@link TagBackupReader}.
+     * @throws IOException          if the stream cannot be read.
+     * @throws NullPointerException if the input stream is null.
+     */
+    static TagBackupInput open(@NonNull InputStream inputStream)
+            throws IOException {
+        val bufferedInputStream = new BufferedInputStream(inputStream);
+
+        val magic = BinaryTagBackupWriter.MAGIC;
+
+        bufferedInputStream.mark(magic.length);
+
+        boolean isBinary = true;
+
+        for (val magicByte : magic) {
+            if (bufferedInputStream.read() != (magicByte & 0xff)) {
+                isBinary = false;
+
+                break;
+            }
+        }
+
+        bufferedInputStream.reset();
+
+        if (isBinary) {
+            return new BinaryTagBackupReader(bufferedInputStream);
+        }
+
+        return new TagBackupReader(bufferedInputStream);
+    }
+
+    /**
+     * Reads the next {@link Tag} of the backup.
+     *
+     * @return the next {@link Tag}, or null if the end of the backup is
+     * reached.
+     * @throws IOException if the stream cannot be read or is not a valid
+     *                     backup.
+     */
+    Tag read() throws IOException;
+
+    /**
+     * Returns the number of invalid backup entries that were skipped.
+     *
+     * @return the number of the skipped entries read so far.
+     */
+    long getSkippedTags();
+
+    /**
+     * Returns the modification sequence number up to which the backup
+     * contains the changes.
+     *
+     * @return the modification sequence number of the backup, or -1 if the
+     * backup doesn't have it.
+     * @throws IOException if the stream cannot be read or is not a valid
+     *                     backup.
+     */
+    default long getSeq() throws IOException {
+        return -1;
+    }
+
+    /**
+     * Returns the modification sequence number of the previous backup, after
+     * which an incremental backup contains the changes.
+     *
+     * @return the modification sequence number of the previous backup, or
+     * -1 if the backup is not incremental.
+     * @throws IOException if the stream cannot be read or is not a valid
+     *                     backup.
+     */
+    default long getBaseSeq() throws IOException {
+        return -1;
+    }
+
+    /**
+     * Reads the file name of the next removed {@link Tag} of an incremental
+     * backup. Must be called before {@link TagBackupInput#read()}, the
+     * removals that were not read by then are skipped.
+     *
+     * @return the file name of the next removed {@link Tag}, or null if
+     * there are no more removals.
+     * @throws IOException if the stream cannot be read or is not a valid
+     *                     backup.
+     */
+    default String readDeleted() throws IOException {
+        return null;
+    }
+}
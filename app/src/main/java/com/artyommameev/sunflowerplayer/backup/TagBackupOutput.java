@@ -0,0 +1,33 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import lombok.NonNull;
+
+/**
+ * A backup of {@link Tag}s that is written one {@link Tag} at a time.
+ *
+ * @author Artyom Mameev
+ */
+public interface TagBackupOutput extends Closeable {
+
+    /**
+     * Appends the {@link Tag} to the backup.
+     *
+     * @param tag the {@link Tag} that should be written.
+     * @throws IOException          if the stream cannot be written.
+     * @throws NullPointerException if the tag is null.
+     */
+    void write(@NonNull Tag tag) throws IOException;
+
+    /**
+     * Finishes the backup and closes the underlying stream.
+     *
+     * @throws IOException if the stream cannot be written.
+     */
+    @Override
+    void close() throws IOException;
+}
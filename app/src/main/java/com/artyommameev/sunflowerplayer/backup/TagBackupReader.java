@@ -0,0 +1,290 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Reads a backup of {@link Tag}s written by {@link TagBackupWriter} (or an
+ * uncompressed backup written by the older versions of the application)
+ * one {@link Tag} at a time.
+ * <p>
+ * Both a plain array of {@link Tag}s and an object with the modification
+ * sequence numbers, the removals and the array of {@link Tag}s are
+ * accepted.
+ * <p>
+ * Gzip compression is detected by the stream header. Unknown fields, such
+ * as the database id written by the older versions, are ignored, and
+ * elements that are not complete {@link Tag}s are skipped.
+ *
+ * @author Artyom Mameev
+ */
+public class TagBackupReader implements TagBackupInput {
+
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    private final JsonReader jsonReader;
+
+    private boolean started;
+    private boolean hasHeader;
+    private boolean readingDeleted;
+    private boolean readingTags;
+    private boolean finished;
+    private long seq = -1;
+    private long baseSeq = -1;
+
+    @Getter
+    private long skippedTags;
+
+    /**
+     * Instantiates a new Tag Backup Reader.
+     *
+     * @param inputStream the stream from which the backup should be read,
+     *                    closed together with the reader.
+     * @throws IOException          if the stream cannot be read.
+     * @throws NullPointerException if the input stream is null.
+     */
+    public TagBackupReader(@NonNull InputStream inputStream)
+            throws IOException {
+        jsonReader = new JsonReader(new BufferedReader(new InputStreamReader(
+                decompressIfNeeded(inputStream), StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public long getSeq() throws IOException {
+        start();
+
+        return seq;
+    }
+
+    @Override
+    public long getBaseSeq() throws IOException {
+        start();
+
+        return baseSeq;
+    }
+
+    @Override
+    public String readDeleted() throws IOException {
+        start();
+
+        while (readingDeleted) {
+            if (!jsonReader.hasNext()) {
+                jsonReader.endArray();
+
+                readingDeleted = false;
+
+                readHeader();
+
+                break;
+            }
+
+            if (jsonReader.peek() == JsonToken.STRING) {
+                return jsonReader.nextString();
+            }
+
+            jsonReader.skipValue();
+        }
+
+        return null;
+    }
+
+    @Override
+    public Tag read() throws IOException {
+        if (finished) {
+            return null;
+        }
+
+        start();
+
+        // skips the removals that were not read
+        while (readingDeleted) {
+            readDeleted();
+        }
+
+        // every backup has the tags, even if there are none
+        if (!readingTags) {
+            throw new IOException("Not a backup");
+        }
+
+        while (jsonReader.hasNext()) {
+            val tag = readTag();
+
+            if (tag != null) {
+                return tag;
+            }
+
+            skippedTags++;
+        }
+
+        jsonReader.endArray();
+
+        readingTags = false;
+
+        finish();
+
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        jsonReader.close();
+    }
+
+    private void start() throws IOException {
+        if (started) {
+            return;
+        }
+
+        started = true;
+
+        val token = jsonReader.peek();
+
+        if (token == JsonToken.BEGIN_ARRAY) {
+            jsonReader.beginArray();
+
+            readingTags = true;
+        } else if (token == JsonToken.BEGIN_OBJECT) {
+            jsonReader.beginObject();
+
+            hasHeader = true;
+
+            readHeader();
+        } else {
+            throw new IOException("Not a backup");
+        }
+    }
+
+    // reads the header fields up to the removals or the tags
+    private void readHeader() throws IOException {
+        while (jsonReader.hasNext()) {
+            val name = jsonReader.nextName();
+
+            val token = jsonReader.peek();
+
+            if (token == JsonToken.NUMBER && (name.equals(
+                    TagBackupWriter.SEQ) || name.equals(
+                    TagBackupWriter.BASE_SEQ))) {
+                if (name.equals(TagBackupWriter.SEQ)) {
+                    seq = jsonReader.nextLong();
+                } else {
+                    baseSeq = jsonReader.nextLong();
+                }
+            } else if (token == JsonToken.BEGIN_ARRAY && name.equals(
+                    TagBackupWriter.DELETED)) {
+                jsonReader.beginArray();
+
+                readingDeleted = true;
+
+                return;
+            } else if (token == JsonToken.BEGIN_ARRAY && name.equals(
+                    TagBackupWriter.TAGS)) {
+                jsonReader.beginArray();
+
+                readingTags = true;
+
+                return;
+            } else {
+                jsonReader.skipValue();
+            }
+        }
+    }
+
+    // skips the fields after the tags
+    private void finish() throws IOException {
+        if (hasHeader) {
+            while (jsonReader.hasNext()) {
+                jsonReader.nextName();
+                jsonReader.skipValue();
+            }
+
+            jsonReader.endObject();
+        }
+
+        finished = true;
+    }
+
+    private Tag readTag() throws IOException {
+        if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+            jsonReader.skipValue();
+
+            return null;
+        }
+
+        String fileName = null, artist = null, title = null, album = null;
+
+        jsonReader.beginObject();
+
+        while (jsonReader.hasNext()) {
+            val name = jsonReader.nextName();
+
+            if (jsonReader.peek() != JsonToken.STRING) {
+                jsonReader.skipValue();
+
+                continue;
+            }
+
+            switch (name) {
+                case TagBackupWriter.FILE_NAME:
+                    fileName = jsonReader.nextString();
+                    break;
+
+                case TagBackupWriter.ARTIST:
+                    artist = jsonReader.nextString();
+                    break;
+
+                case TagBackupWriter.TITLE:
+                    title = jsonReader.nextString();
+                    break;
+
+                case TagBackupWriter.ALBUM:
+                    album = jsonReader.nextString();
+                    break;
+
+                default:
+                    jsonReader.skipValue();
+                    break;
+            }
+        }
+
+        jsonReader.endObject();
+
+        if (fileName == null || artist == null || title == null ||
+                album == null) {
+            return null;
+        }
+
+        return new Tag(fileName, artist, title, album);
+    }
+
+    private static InputStream decompressIfNeeded(InputStream inputStream)
+            throws IOException {
+        val bufferedInputStream = new BufferedInputStream(inputStream);
+
+        bufferedInputStream.mark(2);
+
+        val magic1 = bufferedInputStream.read();
+        val magic2 = bufferedInputStream.read();
+
+        bufferedInputStream.reset();
+
+        if (magic1 == GZIP_MAGIC_1 && magic2 == GZIP_MAGIC_2) {
+            return new GZIPInputStream(bufferedInputStream);
+        }
+
+        return bufferedInputStream;
+    }
+}
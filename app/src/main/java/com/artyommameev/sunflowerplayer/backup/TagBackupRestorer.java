@@ -0,0 +1,291 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import com.artyommameev.sunflowerplayer.database.Database;
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Restores a backup of {@link Tag}s in any {@link TagBackupInput} format into
+ * the database, in transactional chunks of
+ * {@link TagBackupRestorer#CHUNK_SIZE} {@link Tag}s.
+ * <p>
+ * The removals carried by an incremental backup are applied before its
+ * {@link Tag}s, in chunks of the same size. The {@link MergePolicy} decides
+ * what happens to the conflicting stored {@link Tag}s. A cancelled restore
+ * keeps the chunks that were already saved.
+ * <p>
+ * The whole backup is read once before anything is saved, so a backup
+ * whose end is missing or whose checksum does not match changes nothing,
+ * although the checksum of a binary backup and the trailer of a compressed
+ * one are only checked at their end.
+ *
+ * @author Artyom Mameev
+ */
+public class TagBackupRestorer {
+
+    static final int CHUNK_SIZE = 500;
+
+    private final Database database;
+    private final MergePolicy mergePolicy;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    /**
+     * Instantiates a new Tag Backup Restorer that overwrites the conflicting
+     * stored {@link Tag}s.
+     *
+     * @param database the application database.
+     * @throws NullPointerException if the database is null.
+     */
+    public TagBackupRestorer(@NonNull Database database) {
+        this(database, MergePolicy.OVERWRITE);
+    }
+
+    /**
+     * Instantiates a new Tag Backup Restorer.
+     *
+     * @param database    the application database.
+     * @param mergePolicy the {@link MergePolicy} for the conflicting stored
+     *                    {@link Tag}s.
+     * @throws NullPointerException if any parameter is null.
+     */
+    public TagBackupRestorer(@NonNull Database database,
+                             @NonNull MergePolicy mergePolicy) {
+        this.database = database;
+        this.mergePolicy = mergePolicy;
+    }
+
+    /**
+     * Restores the backup on the calling thread, which should not be the UI
+     * thread.
+     *
+     * @param streamSource     the source of the stream of the backup, which
+     *                         is opened twice: to check the backup and to
+     *                         restore it.
+     * @param totalBytes       the size of the backup in bytes, or -1 if it
+     *                         is unknown.
+     * @param progressListener the listener that is notified after every
+     *                         chunk.
+     * @return the {@link Result} of the restore.
+     * @throws IOException          if the stream cannot be read or is not a
+     *                              valid backup, in which case nothing is
+     *                              saved.
+     * @throws NullPointerException if the stream source or the progress
+     *                              listener is null.
+     */
+    public Result restore(@NonNull StreamSource streamSource,
+                          long totalBytes,
+                          @NonNull ProgressListener progressListener)
+            throws IOException {
+        if (!check(streamSource)) {
+            return new Result(0, 0, 0, 0, false);
+        }
+
+        val countingInputStream = new CountingInputStream(
+                streamSource.open());
+
+        @Cleanup
+        val tagBackupInput = TagBackupInput.open(countingInputStream);
+
+        val deletedChunk = new ArrayList<String>(CHUNK_SIZE);
+
+        long deleted = 0;
+
+        String deletedFileName;
+
+        do {
+            deletedFileName = tagBackupInput.readDeleted();
+
+            if (deletedFileName != null &&
+                    mergePolicy == MergePolicy.OVERWRITE) {
+                deletedChunk.add(deletedFileName);
+            }
+
+            if (deletedChunk.size() == CHUNK_SIZE ||
+                    (deletedFileName == null && !deletedChunk.isEmpty())) {
+                if (isCancelled()) {
+                    return new Result(0, 0, deleted,
+                            tagBackupInput.getSkippedTags(), false);
+                }
+
+                deleted += database.deleteTagsByFileNames(deletedChunk);
+
+                deletedChunk.clear();
+
+                progressListener.onProgress(deleted,
+                        percent(countingInputStream.getCount(), totalBytes));
+            }
+        } while (deletedFileName != null);
+
+        val chunk = new ArrayList<Tag>(CHUNK_SIZE);
+
+        int inserted = 0, updated = 0, unchanged = 0;
+
+        Tag tag;
+
+        do {
+            tag = tagBackupInput.read();
+
+            if (tag != null) {
+                chunk.add(tag);
+            }
+
+            if (chunk.size() == CHUNK_SIZE || (tag == null &&
+                    !chunk.isEmpty())) {
+                if (isCancelled()) {
+                    return new Result(inserted, updated, deleted,
+                            unchanged + tagBackupInput.getSkippedTags(),
+                            false);
+                }
+
+                val saveResult = database.saveAll(chunk,
+                        mergePolicy == MergePolicy.OVERWRITE);
+
+                inserted += saveResult.getInserted();
+                updated += saveResult.getUpdated();
+                unchanged += saveResult.getUnchanged();
+
+                chunk.clear();
+
+                progressListener.onProgress(
+                        deleted + inserted + updated + unchanged,
+                        percent(countingInputStream.getCount(), totalBytes));
+            }
+        } while (tag != null);
+
+        return new Result(inserted, updated, deleted,
+                unchanged + tagBackupInput.getSkippedTags(), true);
+    }
+
+    /**
+     * Requests the running restore to stop before the next chunk is saved
+     * (the restore also stops if its thread is interrupted).
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    private boolean check(StreamSource streamSource) throws IOException {
+        @Cleanup
+        val tagBackupInput = TagBackupInput.open(streamSource.open());
+
+        long entries = 0;
+
+        while (tagBackupInput.readDeleted() != null) {
+            if (++entries % CHUNK_SIZE == 0 && isCancelled()) {
+                return false;
+            }
+        }
+
+        // the tags are read to the end, where the checksum is verified
+        while (tagBackupInput.read() != null) {
+            if (++entries % CHUNK_SIZE == 0 && isCancelled()) {
+                return false;
+            }
+        }
+
+        return !isCancelled();
+    }
+
+    private boolean isCancelled() {
+        return cancelled.get() || Thread.currentThread().isInterrupted();
+    }
+
+    private int percent(long readBytes, long totalBytes) {
+        if (totalBytes <= 0) {
+            return -1;
+        }
+
+        return (int) Math.min(100, readBytes * 100 / totalBytes);
+    }
+
+    /**
+     * A source of the stream of a backup, which can be opened more than
+     * once.
+     */
+    public interface StreamSource {
+
+        /**
+         * Opens a new stream of the backup from its start.
+         *
+         * @return the stream, which is closed by the restorer.
+         * @throws IOException if the stream cannot be opened.
+         */
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * A listener of the restore progress.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Called after every saved chunk.
+         *
+         * @param restoredTags the number of {@link Tag}s restored or
+         *                     removed so far.
+         * @param percent      the read part of the backup in percent, or -1
+         *                     if the size of the backup is unknown.
+         */
+        void onProgress(long restoredTags, int percent);
+    }
+
+    /**
+     * The result of a {@link TagBackupRestorer} run.
+     */
+    public static class Result {
+
+        @Getter
+        private final long inserted;
+        @Getter
+        private final long updated;
+        @Getter
+        private final long deleted;
+        @Getter
+        private final long skipped;
+        @Getter
+        private final boolean completed;
+
+        /**
+         * Instantiates a new Result.
+         *
+         * @param inserted  the number of inserted {@link Tag}s.
+         * @param updated   the number of updated {@link Tag}s.
+         * @param deleted   the number of removed {@link Tag}s.
+         * @param skipped   the number of {@link Tag}s that were already
+         *                  stored with the same content or were invalid.
+         * @param completed false if the restore was cancelled.
+         */
+        public Result(long inserted, long updated, long deleted,
+                      long skipped, boolean completed) {
+            this.inserted = inserted;
+            this.updated = updated;
+            this.deleted = deleted;
+            this.skipped = skipped;
+            this.completed = completed;
+        }
+
+        /**
+         * Sums the result with the result of the next backup of a chain.
+         *
+         * @param next the {@link Result} of the next backup.
+         * @return the {@link Result} of both backups, completed if the next
+         * backup was restored completely.
+         * @throws NullPointerException if the next result is null.
+         */
+        public Result plus(@NonNull Result next) {
+            return new Result(inserted + next.inserted,
+                    updated + next.updated, deleted + next.deleted,
+                    skipped + next.skipped, next.completed);
+        }
+    }
+}
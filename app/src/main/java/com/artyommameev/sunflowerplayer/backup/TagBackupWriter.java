@@ -0,0 +1,201 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Writes a backup of {@link Tag}s as gzip-compressed JSON, one {@link Tag}
+ * at a time, so the memory used doesn't depend on the number of
+ * {@link Tag}s.
+ * <p>
+ * The {@link Tag}s have the same fields as the {@link Tag}s serialized by
+ * Gson, except for the database id, which is not portable between devices.
+ * A backup created by {@link TagBackupWriter#full(OutputStream, long)} or
+ * {@link TagBackupWriter#delta(OutputStream, long, long)} is an object
+ * with the modification sequence numbers of the backup, the file names of
+ * the removed {@link Tag}s (only in a delta) and the array of the
+ * {@link Tag}s, in this order, so the reader doesn't have to look ahead:
+ * <pre>
+ * {"seq":120,"baseSeq":100,"deleted":["a.mp4"],"tags":[{...},{...}]}
+ * </pre>
+ *
+ * @author Artyom Mameev
+ */
+public class TagBackupWriter implements TagBackupOutput {
+
+    static final String FILE_NAME = "fileName";
+    static final String ARTIST = "artist";
+    static final String TITLE = "title";
+    static final String ALBUM = "album";
+    static final String SEQ = "seq";
+    static final String BASE_SEQ = "baseSeq";
+    static final String DELETED = "deleted";
+    static final String TAGS = "tags";
+
+    private final JsonWriter jsonWriter;
+    private final boolean hasHeader;
+
+    private boolean writingDeleted;
+    private boolean writingTags;
+
+    @Getter
+    private long writtenTags;
+
+    /**
+     * Instantiates a new Tag Backup Writer and starts a full backup without
+     * modification sequence numbers, in the format of the older versions of
+     * the application.
+     *
+     * @param outputStream the stream to which the backup should be written,
+     *                     closed together with the writer.
+     * @throws IOException          if the stream cannot be written.
+     * @throws NullPointerException if the output stream is null.
+     */
+    public TagBackupWriter(@NonNull OutputStream outputStream)
+            throws IOException {
+        this(outputStream, false);
+
+        startTags();
+    }
+
+    private TagBackupWriter(OutputStream outputStream, boolean hasHeader)
+            throws IOException {
+        jsonWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(outputStream), StandardCharsets.UTF_8)));
+
+        this.hasHeader = hasHeader;
+    }
+
+    /**
+     * Starts a full backup of all {@link Tag}s.
+     *
+     * @param outputStream the stream to which the backup should be written,
+     *                     closed together with the writer.
+     * @param seq          the modification sequence number up to which the
+     *                     backup contains the changes.
+     * @return the {@link TagBackupWriter} of the backup.
+     * @throws IOException          if the stream cannot be written.
+     * @throws NullPointerException if the output stream is null.
+     */
+    public static TagBackupWriter full(@NonNull OutputStream outputStream,
+                                       long seq) throws IOException {
+        val tagBackupWriter = new TagBackupWriter(outputStream, true);
+
+        tagBackupWriter.jsonWriter.beginObject()
+                .name(SEQ).value(seq);
+
+        return tagBackupWriter;
+    }
+
+    /**
+     * Starts an incremental backup of the {@link Tag}s changed after a
+     * previous backup. The removed {@link Tag}s are written by
+     * {@link TagBackupWriter#writeDeleted(String)} before the changed
+     * {@link Tag}s.
+     *
+     * @param outputStream the stream to which the backup should be written,
+     *                     closed together with the writer.
+     * @param baseSeq      the modification sequence number of the previous
+     *                     backup, after which the backup contains the
+     *                     changes.
+     * @param seq          the modification sequence number up to which the
+     *                     backup contains the changes.
+     * @return the {@link TagBackupWriter} of the backup.
+     * @throws IOException          if the stream cannot be written.
+     * @throws NullPointerException if the output stream is null.
+     */
+    public static TagBackupWriter delta(@NonNull OutputStream outputStream,
+                                        long baseSeq, long seq)
+            throws IOException {
+        val tagBackupWriter = new TagBackupWriter(outputStream, true);
+
+        tagBackupWriter.jsonWriter.beginObject()
+                .name(SEQ).value(seq)
+                .name(BASE_SEQ).value(baseSeq)
+                .name(DELETED).beginArray();
+
+        tagBackupWriter.writingDeleted = true;
+
+        return tagBackupWriter;
+    }
+
+    /**
+     * Writes the file name of a removed {@link Tag} into an incremental
+     * backup.
+     *
+     * @param fileName the file name of the {@link VideoClip} which
+     *                 {@link Tag} was removed.
+     * @throws IOException           if the stream cannot be written.
+     * @throws IllegalStateException if the backup is not incremental, or
+     *                               {@link Tag}s were already written.
+     * @throws NullPointerException  if the file name is null.
+     */
+    public void writeDeleted(@NonNull String fileName) throws IOException {
+        if (!writingDeleted) {
+            throw new IllegalStateException("Removed tags can only be " +
+                    "written to a delta before the changed tags!");
+        }
+
+        jsonWriter.value(fileName);
+    }
+
+    @Override
+    public void write(@NonNull Tag tag) throws IOException {
+        startTags();
+
+        jsonWriter.beginObject()
+                .name(FILE_NAME).value(tag.getFileName())
+                .name(ARTIST).value(tag.getArtist())
+                .name(TITLE).value(tag.getTitle())
+                .name(ALBUM).value(tag.getAlbum())
+                .endObject();
+
+        writtenTags++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            startTags();
+
+            jsonWriter.endArray();
+
+            if (hasHeader) {
+                jsonWriter.endObject();
+            }
+        } finally {
+            jsonWriter.close();
+        }
+    }
+
+    private void startTags() throws IOException {
+        if (writingTags) {
+            return;
+        }
+
+        if (writingDeleted) {
+            jsonWriter.endArray();
+
+            writingDeleted = false;
+        }
+
+        if (hasHeader) {
+            jsonWriter.name(TAGS);
+        }
+
+        jsonWriter.beginArray();
+
+        writingTags = true;
+    }
+}
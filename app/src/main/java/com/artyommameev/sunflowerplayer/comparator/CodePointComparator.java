@@ -0,0 +1,41 @@
+package com.artyommameev.sunflowerplayer.comparator;
+
+import java.util.Comparator;
+
+import lombok.NonNull;
+
+/**
+ * A comparator that sorts strings by Unicode code points, which is the
+ * order of the SQLite BINARY collation of UTF-8 text. Unlike
+ * {@link String#compareTo(String)}, which compares UTF-16 chars, it sorts
+ * the characters outside the Basic Multilingual Plane after all others.
+ *
+ * @author Artyom Mameev
+ */
+public final class CodePointComparator implements Comparator<String> {
+
+    /**
+     * The compare method.
+     *
+     * @return a negative number, zero or a positive number if string1 is
+     * less than, equal to or greater than string2 by code points.
+     * @throws NullPointerException if any parameter is null.
+     */
+    public int compare(@NonNull String string1, @NonNull String string2) {
+        int i1 = 0, i2 = 0;
+
+        while (i1 < string1.length() && i2 < string2.length()) {
+            int codePoint1 = string1.codePointAt(i1);
+            int codePoint2 = string2.codePointAt(i2);
+
+            if (codePoint1 != codePoint2) {
+                return Integer.compare(codePoint1, codePoint2);
+            }
+
+            i1 += Character.charCount(codePoint1);
+            i2 += Character.charCount(codePoint2);
+        }
+
+        return Integer.compare(string1.length() - i1, string2.length() - i2);
+    }
+}
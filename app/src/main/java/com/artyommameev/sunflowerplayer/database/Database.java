@@ -3,36 +3,83 @@ package com.artyommameev.sunflowerplayer.database;
 import android.app.Activity;
 
 import com.artyommameev.sunflowerplayer.SunflowerPlayer;
+import com.artyommameev.sunflowerplayer.domain.ClipMediaInfo;
+import com.artyommameev.sunflowerplayer.domain.ClipMediaInfoDao;
+import com.artyommameev.sunflowerplayer.domain.DeletedTag;
+import com.artyommameev.sunflowerplayer.domain.DeletedTagDao;
+import com.artyommameev.sunflowerplayer.domain.PlaybackPosition;
+import com.artyommameev.sunflowerplayer.domain.PlaybackPositionDao;
 import com.artyommameev.sunflowerplayer.domain.Tag;
 import com.artyommameev.sunflowerplayer.domain.TagDao;
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
 
+import org.greenrobot.greendao.query.LazyList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import lombok.Getter;
 import lombok.val;
 import lombok.NonNull;
 
 /**
  * An abstraction for querying, saving and updating {@link Tag}s of
  * {@link VideoClip}s saved in the database.
+ * <p>
+ * Every write transaction takes a new number of the
+ * {@link ModificationSequence} and stores it in the written {@link Tag}s,
+ * and every removal leaves a {@link DeletedTag} with that number, so the
+ * changes made after a certain number can be found for an incremental
+ * backup. The numbers are only taken inside transactions, so they are
+ * committed in order.
+ * <p>
+ * The {@link PlaybackPosition}s and the {@link ClipMediaInfo}s of the
+ * {@link VideoClip}s are stored in the same database, but they are not a
+ * part of the backups and are written without modification sequence numbers.
  *
  * @author Artyom Mameev
  */
 public class Database {
 
-    private final TagDao tagDao;
+    // the number of the parameters of an IN condition in a query
+    private static final int IN_CHUNK_SIZE = 500;
+
+    private final SunflowerPlayer sunflowerPlayer;
+    private final TagChangePublisher tagChangePublisher;
 
     /**
      * Instantiates a new Database object.
+     * <p>
+     * Doesn't wait for the database to be opened, the first query does.
      *
      * @param context the application context.
      * @throws NullPointerException if the context is null.
      */
     public Database(@NonNull Activity context) {
-        val daoSession = ((SunflowerPlayer) context.getApplication())
-                .getDaoSession();
+        this((SunflowerPlayer) context.getApplication());
+    }
 
-        tagDao = daoSession.getTagDao();
+    /**
+     * Instantiates a new Database object outside of an activity, for
+     * example in a service.
+     * <p>
+     * Doesn't wait for the database to be opened, the first query does.
+     *
+     * @param sunflowerPlayer the application.
+     * @throws NullPointerException if the application is null.
+     */
+    public Database(@NonNull SunflowerPlayer sunflowerPlayer) {
+        this.sunflowerPlayer = sunflowerPlayer;
+
+        tagChangePublisher = sunflowerPlayer.getTagChangePublisher();
     }
 
     /**
@@ -41,7 +88,24 @@ public class Database {
      * @return the list of all {@link Tag}s saved in the database.
      */
     public List<Tag> findAll() {
-        return tagDao.loadAll();
+        return getTagDao().loadAll();
+    }
+
+    /**
+     * Queries all {@link Tag}s saved in the database without loading them
+     * into memory at once: every {@link Tag} is read from the database cursor
+     * when it is reached by iteration and is not cached.
+     * <p>
+     * The {@link Tag}s are ordered by the file name index, in the order of
+     * Unicode code points.
+     *
+     * @return the lazy list of all {@link Tag}s ordered by file name, which
+     * must be closed after use.
+     */
+    public LazyList<Tag> findAllOrderedByFileNameLazily() {
+        return getTagDao().queryBuilder()
+                .orderAsc(TagDao.Properties.FileName)
+                .listLazyUncached();
     }
 
     /**
@@ -55,7 +119,7 @@ public class Database {
      * @throws NullPointerException if the file name is null.
      */
     public Tag findTagByFileName(@NonNull String fileName) {
-        return tagDao.queryBuilder()
+        return getTagDao().queryBuilder()
                 .where(TagDao.Properties.FileName
                         .eq(fileName))
                 .unique();
@@ -71,7 +135,7 @@ public class Database {
      * @throws NullPointerException if the artist is null.
      */
     public String[] findAlbumsByArtist(@NonNull String artist) {
-        val tags = tagDao.queryBuilder()
+        val tags = getTagDao().queryBuilder()
                 .where(TagDao.Properties.Artist
                         .eq(artist))
                 .list();
@@ -90,55 +154,529 @@ public class Database {
     }
 
     /**
-     * Stores {@link Tag} of a certain {@link VideoClip} in the database.
+     * Stores {@link Tag} of a certain {@link VideoClip} in the database and
+     * publishes a {@link TagChange.Type#INSERTED} change.
      *
      * @param tag the {@link Tag} of a certain {@link VideoClip} that should be
      *            added to the database.
      * @throws NullPointerException if the tag is null.
      */
     public void insertTag(@NonNull Tag tag) {
-        tagDao.insert(tag);
+        sunflowerPlayer.getDaoSession().runInTx(() -> {
+            tag.setModSeq(nextModSeq());
+
+            getTagDao().insert(tag);
+
+            removeDeletedTags(Collections.singletonList(tag));
+        });
+
+        publish(TagChange.Type.INSERTED, Collections.singletonList(tag));
     }
 
     /**
-     * Updates {@link Tag} of a certain {@link VideoClip} in the database.
+     * Updates {@link Tag} of a certain {@link VideoClip} in the database and
+     * publishes a {@link TagChange.Type#UPDATED} change.
      *
      * @param tag the {@link Tag} of a certain {@link VideoClip} that should be
      *            updated in the database.
      * @throws NullPointerException if the tag is null.
      */
     public void updateTag(@NonNull Tag tag) {
-        tagDao.update(tag);
+        sunflowerPlayer.getDaoSession().runInTx(() -> {
+            tag.setModSeq(nextModSeq());
+
+            getTagDao().update(tag);
+        });
+
+        publish(TagChange.Type.UPDATED, Collections.singletonList(tag));
     }
 
     /**
-     * Saves all {@link Tag}s into the database.
+     * Saves all {@link Tag}s into the database in a single transaction.
+     * <p>
+     * A {@link Tag} for a file name that is already present in the database
+     * updates the stored one, if it differs. The stored {@link Tag}s are
+     * looked up with a single query, so the list should be a chunk of no
+     * more than 500 {@link Tag}s.
+     * <p>
+     * Publishes at most one {@link TagChange.Type#INSERTED} and one
+     * {@link TagChange.Type#UPDATED} change for the whole list.
      *
      * @param tags the list of {@link Tag}s which should be
      *             saved into the database.
+     * @return the {@link SaveResult} with the numbers of inserted, updated
+     * and unchanged {@link Tag}s.
      * @throws NullPointerException if the tags list is null.
      */
-    public void saveAll(@NonNull List<Tag> tags) {
-        for (val tag : tags) {
-            val tagInDatabase = findTagByFileName(tag.getFileName());
+    public SaveResult saveAll(@NonNull List<Tag> tags) {
+        return saveAll(tags, true);
+    }
 
-            if (tagInDatabase != null) {
-                tagInDatabase.setArtist(tag.getArtist());
-                tagInDatabase.setTitle(tag.getTitle());
-                tagInDatabase.setAlbum(tag.getAlbum());
+    /**
+     * Saves all {@link Tag}s into the database in a single transaction, like
+     * {@link Database#saveAll(List)}, but keeps the stored {@link Tag}s
+     * that differ unless they should be overwritten.
+     *
+     * @param tags      the list of {@link Tag}s which should be
+     *                  saved into the database.
+     * @param overwrite false if the stored {@link Tag}s should be kept,
+     *                  in which case they are counted as unchanged.
+     * @return the {@link SaveResult} with the numbers of inserted, updated
+     * and unchanged {@link Tag}s.
+     * @throws NullPointerException if the tags list is null.
+     */
+    public SaveResult saveAll(@NonNull List<Tag> tags, boolean overwrite) {
+        val insertedTags = new ArrayList<Tag>();
+        val updatedTags = new ArrayList<Tag>();
+        val unchangedTags = new ArrayList<Tag>();
 
-                updateTag(tagInDatabase);
-            } else {
-                insertTag(tag);
+        sunflowerPlayer.getDaoSession().runInTx(() -> {
+            val modSeq = nextModSeq();
+
+            val tagsInDatabase = new HashMap<String, Tag>();
+            val updatedIds = new HashSet<Long>();
+
+            for (val tagInDatabase : findTagsByFileNames(
+                    tags.stream().map(Tag::getFileName)
+                            .collect(Collectors.toSet()))) {
+                tagsInDatabase.put(tagInDatabase.getFileName(),
+                        tagInDatabase);
             }
+
+            for (val tag : tags) {
+                val tagInDatabase = tagsInDatabase.get(tag.getFileName());
+
+                if (tagInDatabase == null) {
+                    tag.setModSeq(modSeq);
+
+                    insertedTags.add(tag);
+
+                    // a repeated file name updates the tag inserted here
+                    tagsInDatabase.put(tag.getFileName(), tag);
+                } else if (!overwrite ||
+                        tagInDatabase.hasSameContent(tag)) {
+                    unchangedTags.add(tag);
+                } else {
+                    tagInDatabase.setArtist(tag.getArtist());
+                    tagInDatabase.setTitle(tag.getTitle());
+                    tagInDatabase.setAlbum(tag.getAlbum());
+                    tagInDatabase.setModSeq(modSeq);
+
+                    // a tag inserted by this chunk has no id yet and is
+                    // inserted with its latest content
+                    if (tagInDatabase.getId() != null &&
+                            updatedIds.add(tagInDatabase.getId())) {
+                        updatedTags.add(tagInDatabase);
+                    }
+                }
+            }
+
+            if (!insertedTags.isEmpty()) {
+                getTagDao().insertInTx(insertedTags);
+
+                removeDeletedTags(insertedTags);
+            }
+
+            if (!updatedTags.isEmpty()) {
+                getTagDao().updateInTx(updatedTags);
+            }
+        });
+
+        publish(TagChange.Type.INSERTED, insertedTags);
+        publish(TagChange.Type.UPDATED, updatedTags);
+
+        return new SaveResult(insertedTags.size(), updatedTags.size(),
+                unchangedTags.size());
+    }
+
+    /**
+     * Queries and returns the {@link Tag}s with the given file names.
+     *
+     * @param fileNames the file names of the {@link VideoClip}s which
+     *                  {@link Tag}s should be returned, no more than 500.
+     * @return the list of the found {@link Tag}s, empty if no {@link Tag}s
+     * were found.
+     * @throws NullPointerException if the file names collection is null.
+     */
+    public List<Tag> findTagsByFileNames(@NonNull Collection<String> fileNames) {
+        if (fileNames.isEmpty()) {
+            return Collections.emptyList();
         }
 
+        return getTagDao().queryBuilder()
+                .where(TagDao.Properties.FileName.in(fileNames))
+                .list();
+    }
+
+    /**
+     * Queries and returns a batch of {@link Tag}s ordered by id.
+     *
+     * @param id    the id after which the batch starts (exclusive).
+     * @param limit the maximum number of {@link Tag}s in the batch.
+     * @return the list of {@link Tag}s with ids greater than the given id,
+     * empty if there are no such {@link Tag}s.
+     */
+    public List<Tag> findTagsAfterId(long id, int limit) {
+        return getTagDao().queryBuilder()
+                .where(TagDao.Properties.Id.gt(id))
+                .orderAsc(TagDao.Properties.Id)
+                .limit(limit)
+                .list();
+    }
+
+    /**
+     * Queries all {@link Tag}s written after a certain modification
+     * sequence number without loading them into memory at once.
+     *
+     * @param modSeq the modification sequence number after which the
+     *               {@link Tag}s were written (exclusive).
+     * @return the lazy list of the {@link Tag}s ordered by the modification
+     * sequence number, which must be closed after use.
+     */
+    public LazyList<Tag> findTagsModifiedAfterLazily(long modSeq) {
+        return getTagDao().queryBuilder()
+                .where(TagDao.Properties.ModSeq.gt(modSeq))
+                .orderAsc(TagDao.Properties.ModSeq)
+                .listLazyUncached();
+    }
+
+    /**
+     * Queries all {@link DeletedTag}s of the {@link Tag}s removed after a
+     * certain modification sequence number without loading them into
+     * memory at once.
+     *
+     * @param modSeq the modification sequence number after which the
+     *               {@link Tag}s were removed (exclusive).
+     * @return the lazy list of the {@link DeletedTag}s ordered by the
+     * modification sequence number, which must be closed after use.
+     */
+    public LazyList<DeletedTag> findDeletedTagsAfterLazily(long modSeq) {
+        return getDeletedTagDao().queryBuilder()
+                .where(DeletedTagDao.Properties.ModSeq.gt(modSeq))
+                .orderAsc(DeletedTagDao.Properties.ModSeq)
+                .listLazyUncached();
+    }
+
+    /**
+     * Forgets the removals of {@link Tag}s made up to a certain modification
+     * sequence number, which are no longer needed by incremental backups
+     * once a full backup containing them was exported.
+     *
+     * @param modSeq the modification sequence number up to which the
+     *               {@link DeletedTag}s should be removed (inclusive).
+     */
+    public void pruneDeletedTags(long modSeq) {
+        getDeletedTagDao().queryBuilder()
+                .where(DeletedTagDao.Properties.ModSeq.le(modSeq))
+                .buildDelete()
+                .executeDeleteWithoutDetachingEntities();
+    }
+
+    /**
+     * Returns the modification sequence number of the last committed write
+     * of the database.
+     * <p>
+     * The number is read in a transaction, which waits for the running
+     * write transactions, so no write with a lower number can be committed
+     * after it is returned.
+     *
+     * @return the last used modification sequence number.
+     */
+    public long getLastModSeq() {
+        return sunflowerPlayer.getDaoSession().callInTxNoException(() ->
+                sunflowerPlayer.getModificationSequence().current());
+    }
+
+    /**
+     * Removes the {@link Tag}s from the database in a single transaction
+     * and publishes a {@link TagChange.Type#DELETED} change.
+     *
+     * @param tags the {@link Tag}s that should be removed.
+     * @throws NullPointerException if the tags list is null.
+     */
+    public void deleteTags(@NonNull List<Tag> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+
+        sunflowerPlayer.getDaoSession().runInTx(() -> {
+            val modSeq = nextModSeq();
+
+            val deletedTags = new ArrayList<DeletedTag>(tags.size());
+
+            for (val tag : tags) {
+                deletedTags.add(new DeletedTag(tag.getFileName(), modSeq));
+            }
+
+            getTagDao().deleteInTx(tags);
+
+            // the unique file name index replaces an earlier removal
+            getDeletedTagDao().insertOrReplaceInTx(deletedTags);
+        });
+
+        publish(TagChange.Type.DELETED, tags);
+    }
+
+    /**
+     * Removes the {@link Tag}s with the given file names from the database
+     * in a single transaction and publishes a
+     * {@link TagChange.Type#DELETED} change.
+     *
+     * @param fileNames the file names of the {@link VideoClip}s which
+     *                  {@link Tag}s should be removed, no more than 500.
+     * @return the number of the removed {@link Tag}s.
+     * @throws NullPointerException if the file names collection is null.
+     */
+    public int deleteTagsByFileNames(@NonNull Collection<String> fileNames) {
+        val tags = findTagsByFileNames(fileNames);
+
+        deleteTags(tags);
+
+        return tags.size();
     }
 
     /**
-     * Removes all {@link Tag}s from the database.
+     * Removes all {@link Tag}s from the database and publishes a
+     * {@link TagChange.Type#CLEARED} change.
      */
     public void deleteAllTags() {
-        tagDao.deleteAll();
+        val daoSession = sunflowerPlayer.getDaoSession();
+
+        daoSession.runInTx(() -> {
+            daoSession.getDatabase().execSQL("INSERT OR REPLACE INTO " +
+                            DeletedTagDao.TABLENAME + " (" +
+                            DeletedTagDao.Properties.FileName.columnName +
+                            ", " + DeletedTagDao.Properties.ModSeq.columnName +
+                            ") SELECT " +
+                            TagDao.Properties.FileName.columnName + ", ? FROM " +
+                            TagDao.TABLENAME,
+                    new Object[]{nextModSeq()});
+
+            getTagDao().deleteAll();
+        });
+
+        tagChangePublisher.publish(new TagChange(TagChange.Type.CLEARED,
+                Collections.emptyList()));
+    }
+
+    /**
+     * Queries and returns the {@link PlaybackPosition} of a certain
+     * {@link VideoClip} by file name.
+     *
+     * @param fileName the file name of the {@link VideoClip} which
+     *                 {@link PlaybackPosition} should be returned.
+     * @return the {@link PlaybackPosition} of the {@link VideoClip} with the
+     * given file name if it was found in the database, otherwise null.
+     * @throws NullPointerException if the file name is null.
+     */
+    public PlaybackPosition findPlaybackPositionByFileName(
+            @NonNull String fileName) {
+        return getPlaybackPositionDao().queryBuilder()
+                .where(PlaybackPositionDao.Properties.FileName.eq(fileName))
+                .unique();
+    }
+
+    /**
+     * Queries and returns the {@link PlaybackPosition}s of the
+     * {@link VideoClip}s with the given file names in a few queries, one per
+     * 500 file names, instead of a query per {@link VideoClip}.
+     *
+     * @param fileNames the file names of the {@link VideoClip}s which
+     *                  {@link PlaybackPosition}s should be returned.
+     * @return the map of the found {@link PlaybackPosition}s by file name,
+     * empty if no {@link PlaybackPosition}s were found.
+     * @throws NullPointerException if the file names collection is null.
+     */
+    public Map<String, PlaybackPosition> findPlaybackPositionsByFileNames(
+            @NonNull Collection<String> fileNames) {
+        val playbackPositions = new HashMap<String, PlaybackPosition>();
+
+        val fileNamesList = new ArrayList<String>(fileNames);
+
+        for (int i = 0; i < fileNamesList.size(); i += IN_CHUNK_SIZE) {
+            val chunk = fileNamesList.subList(i,
+                    Math.min(i + IN_CHUNK_SIZE, fileNamesList.size()));
+
+            for (val playbackPosition : getPlaybackPositionDao().queryBuilder()
+                    .where(PlaybackPositionDao.Properties.FileName.in(chunk))
+                    .list()) {
+                playbackPositions.put(playbackPosition.getFileName(),
+                        playbackPosition);
+            }
+        }
+
+        return playbackPositions;
+    }
+
+    /**
+     * Saves the {@link PlaybackPosition}s in a single transaction, replacing
+     * the saved {@link PlaybackPosition}s of the same {@link VideoClip}s.
+     *
+     * @param playbackPositions the {@link PlaybackPosition}s that should be
+     *                          saved, no more than one per file name,
+     *                          which are not modified.
+     * @throws NullPointerException if the playback positions collection is
+     *                              null.
+     */
+    public void savePlaybackPositions(
+            @NonNull Collection<PlaybackPosition> playbackPositions) {
+        if (playbackPositions.isEmpty()) {
+            return;
+        }
+
+        sunflowerPlayer.getDaoSession().runInTx(() -> {
+            val savedPlaybackPositions = findPlaybackPositionsByFileNames(
+                    playbackPositions.stream()
+                            .map(PlaybackPosition::getFileName)
+                            .collect(Collectors.toList()));
+
+            // the given positions may be shared, so their copies get the ids
+            val rows = new ArrayList<PlaybackPosition>(
+                    playbackPositions.size());
+
+            for (val playbackPosition : playbackPositions) {
+                val savedPlaybackPosition = savedPlaybackPositions.get(
+                        playbackPosition.getFileName());
+
+                rows.add(new PlaybackPosition(savedPlaybackPosition == null ?
+                        null : savedPlaybackPosition.getId(),
+                        playbackPosition.getFileName(),
+                        playbackPosition.getPosition(),
+                        playbackPosition.getDuration()));
+            }
+
+            getPlaybackPositionDao().insertOrReplaceInTx(rows);
+        });
+    }
+
+    /**
+     * Queries and returns the {@link ClipMediaInfo} of a certain
+     * {@link VideoClip} by file name.
+     *
+     * @param fileName the file name of the {@link VideoClip} which
+     *                 {@link ClipMediaInfo} should be returned.
+     * @return the {@link ClipMediaInfo} of the {@link VideoClip} with the
+     * given file name if it was found in the database, otherwise null. The
+     * returned information may describe a previous version of the file.
+     * @throws NullPointerException if the file name is null.
+     */
+    public ClipMediaInfo findClipMediaInfoByFileName(@NonNull String fileName) {
+        return getClipMediaInfoDao().queryBuilder()
+                .where(ClipMediaInfoDao.Properties.FileName.eq(fileName))
+                .unique();
+    }
+
+    /**
+     * Updates the {@link ClipMediaInfo} of a {@link VideoClip} in a single
+     * transaction. If no {@link ClipMediaInfo} is saved, or the saved one
+     * describes a previous version of the file, the update is applied to a
+     * new {@link ClipMediaInfo} of the current version.
+     *
+     * @param videoClip the {@link VideoClip} which {@link ClipMediaInfo}
+     *                  should be updated.
+     * @param update    the update of the {@link ClipMediaInfo}.
+     * @throws NullPointerException if any parameter is null.
+     */
+    public void updateClipMediaInfo(@NonNull VideoClip videoClip,
+                                    @NonNull Consumer<ClipMediaInfo> update) {
+        sunflowerPlayer.getDaoSession().runInTx(() -> {
+            val savedClipMediaInfo = findClipMediaInfoByFileName(
+                    videoClip.getFileName());
+
+            ClipMediaInfo clipMediaInfo;
+
+            if (savedClipMediaInfo != null &&
+                    savedClipMediaInfo.isValidFor(videoClip)) {
+                clipMediaInfo = savedClipMediaInfo;
+            } else {
+                clipMediaInfo = new ClipMediaInfo(videoClip, null);
+                clipMediaInfo.setId(savedClipMediaInfo == null ? null :
+                        savedClipMediaInfo.getId());
+            }
+
+            update.accept(clipMediaInfo);
+
+            getClipMediaInfoDao().insertOrReplace(clipMediaInfo);
+        });
+    }
+
+    /**
+     * Deletes the {@link ClipMediaInfo} of a certain {@link VideoClip} by
+     * file name, if it is saved.
+     *
+     * @param fileName the file name of the {@link VideoClip} which
+     *                 {@link ClipMediaInfo} should be deleted.
+     * @throws NullPointerException if the file name is null.
+     */
+    public void deleteClipMediaInfoByFileName(@NonNull String fileName) {
+        getClipMediaInfoDao().queryBuilder()
+                .where(ClipMediaInfoDao.Properties.FileName.eq(fileName))
+                .buildDelete()
+                .executeDeleteWithoutDetachingEntities();
+    }
+
+    private void publish(TagChange.Type type, List<Tag> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+
+        tagChangePublisher.publish(new TagChange(type, tags));
+    }
+
+    private long nextModSeq() {
+        return sunflowerPlayer.getModificationSequence().next();
+    }
+
+    private void removeDeletedTags(List<Tag> tags) {
+        val fileNames = tags.stream().map(Tag::getFileName)
+                .collect(Collectors.toList());
+
+        getDeletedTagDao().queryBuilder()
+                .where(DeletedTagDao.Properties.FileName.in(fileNames))
+                .buildDelete()
+                .executeDeleteWithoutDetachingEntities();
+    }
+
+    private TagDao getTagDao() {
+        return sunflowerPlayer.getDaoSession().getTagDao();
+    }
+
+    private DeletedTagDao getDeletedTagDao() {
+        return sunflowerPlayer.getDaoSession().getDeletedTagDao();
+    }
+
+    private PlaybackPositionDao getPlaybackPositionDao() {
+        return sunflowerPlayer.getDaoSession().getPlaybackPositionDao();
+    }
+
+    private ClipMediaInfoDao getClipMediaInfoDao() {
+        return sunflowerPlayer.getDaoSession().getClipMediaInfoDao();
+    }
+
+    /**
+     * The result of {@link Database#saveAll(List)}.
+     */
+    public static class SaveResult {
+
+        @Getter
+        private final int inserted;
+        @Getter
+        private final int updated;
+        @Getter
+        private final int unchanged;
+
+        /**
+         * Instantiates a new Save Result.
+         *
+         * @param inserted  the number of inserted {@link Tag}s.
+         * @param updated   the number of updated {@link Tag}s.
+         * @param unchanged the number of {@link Tag}s that were already
+         *                  stored with the same content.
+         */
+        public SaveResult(int inserted, int updated, int unchanged) {
+            this.inserted = inserted;
+            this.updated = updated;
+            this.unchanged = unchanged;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+package com.artyommameev.sunflowerplayer.database;
+
+import android.content.Context;
+
+import com.artyommameev.sunflowerplayer.domain.ClipMediaInfoDao;
+import com.artyommameev.sunflowerplayer.domain.DaoMaster;
+import com.artyommameev.sunflowerplayer.domain.DeletedTagDao;
+import com.artyommameev.sunflowerplayer.domain.PlaybackPositionDao;
+
+import org.greenrobot.greendao.database.Database;
+
+import lombok.NonNull;
+
+/**
+ * Opens the application database and migrates it between schema versions
+ * without losing the stored tags (unlike {@link DaoMaster.DevOpenHelper},
+ * which drops all tables on upgrade).
+ * <p>
+ * Every schema version has its own migration step, and the steps are
+ * applied in order starting from the version of the opened database. A
+ * step that creates a table spells out the table as it was in its version,
+ * as the generated DAOs always create the table of the latest version, and
+ * the later steps would alter it again.
+ *
+ * @author Artyom Mameev
+ */
+public class DatabaseOpenHelper extends DaoMaster.OpenHelper {
+
+    /**
+     * Instantiates a new Database Open Helper.
+     *
+     * @param context the application context.
+     * @param name    the name of the database file.
+     * @throws NullPointerException if any parameter is null.
+     */
+    public DatabaseOpenHelper(@NonNull Context context, @NonNull String name) {
+        super(context, name);
+    }
+
+    @Override
+    public void onUpgrade(Database database, int oldVersion, int newVersion) {
+        migrate(database, oldVersion);
+    }
+
+    /**
+     * Migrates a database to the current schema version.
+     *
+     * @param database   the database to migrate.
+     * @param oldVersion the schema version of the database.
+     * @throws NullPointerException if the database is null.
+     */
+    static void migrate(@NonNull Database database, int oldVersion) {
+        if (oldVersion < 2) {
+            migrateToVersion2(database);
+        }
+
+        if (oldVersion < 3) {
+            migrateToVersion3(database);
+        }
+
+        if (oldVersion < 4) {
+            migrateToVersion4(database);
+        }
+
+        if (oldVersion < 5) {
+            migrateToVersion5(database);
+        }
+    }
+
+    private static void migrateToVersion2(Database database) {
+        database.execSQL("ALTER TABLE \"TAG\" ADD COLUMN " +
+                "\"MOD_SEQ\" INTEGER NOT NULL DEFAULT 0");
+        database.execSQL("CREATE INDEX IF NOT EXISTS IDX_TAG_FILE_NAME " +
+                "ON \"TAG\" (\"FILE_NAME\" ASC)");
+        database.execSQL("CREATE INDEX IF NOT EXISTS IDX_TAG_MOD_SEQ " +
+                "ON \"TAG\" (\"MOD_SEQ\" ASC)");
+
+        DeletedTagDao.createTable(database, true);
+    }
+
+    private static void migrateToVersion3(Database database) {
+        PlaybackPositionDao.createTable(database, true);
+    }
+
+    private static void migrateToVersion4(Database database) {
+        // without the SEEK_INDEX column, which is added by the next step
+        database.execSQL("CREATE TABLE IF NOT EXISTS \"" +
+                ClipMediaInfoDao.TABLENAME + "\" (" +
+                "\"_id\" INTEGER PRIMARY KEY AUTOINCREMENT ," +
+                "\"FILE_NAME\" TEXT NOT NULL ," +
+                "\"FILE_SIZE\" INTEGER NOT NULL ," +
+                "\"LAST_MODIFIED\" INTEGER NOT NULL ," +
+                "\"CONTAINER\" TEXT);");
+        database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " +
+                "IDX_CLIP_MEDIA_INFO_FILE_NAME ON \"" +
+                ClipMediaInfoDao.TABLENAME + "\" (\"FILE_NAME\" ASC);");
+    }
+
+    private static void migrateToVersion5(Database database) {
+        database.execSQL("ALTER TABLE \"" + ClipMediaInfoDao.TABLENAME +
+                "\" ADD COLUMN \"SEEK_INDEX\" BLOB");
+    }
+}
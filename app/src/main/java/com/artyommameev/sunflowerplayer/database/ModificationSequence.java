@@ -0,0 +1,77 @@
+package com.artyommameev.sunflowerplayer.database;
+
+import com.artyommameev.sunflowerplayer.domain.DaoSession;
+import com.artyommameev.sunflowerplayer.domain.DeletedTagDao;
+import com.artyommameev.sunflowerplayer.domain.Tag;
+import com.artyommameev.sunflowerplayer.domain.TagDao;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Cleanup;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * The source of modification sequence numbers, which order all writes of
+ * {@link Tag}s, so that the changes made since a certain moment can be
+ * found by a single indexed query.
+ *
+ * @author Artyom Mameev
+ */
+public class ModificationSequence {
+
+    private final AtomicLong last;
+
+    /**
+     * Instantiates a new Modification Sequence.
+     *
+     * @param last the last used sequence number.
+     */
+    public ModificationSequence(long last) {
+        this.last = new AtomicLong(last);
+    }
+
+    /**
+     * Instantiates a new Modification Sequence that continues the sequence
+     * numbers stored in the database.
+     *
+     * @param daoSession the greenDAO session of the application database.
+     * @return the {@link ModificationSequence} that continues after the
+     * greatest stored sequence number.
+     * @throws NullPointerException if the DAO session is null.
+     */
+    public static ModificationSequence load(@NonNull DaoSession daoSession) {
+        val database = daoSession.getDatabase();
+
+        @Cleanup
+        val cursor = database.rawQuery("SELECT MAX(" +
+                "(SELECT IFNULL(MAX(" + TagDao.Properties.ModSeq.columnName +
+                "), 0) FROM " + TagDao.TABLENAME + "), " +
+                "(SELECT IFNULL(MAX(" +
+                DeletedTagDao.Properties.ModSeq.columnName + "), 0) FROM " +
+                DeletedTagDao.TABLENAME + "))", null);
+
+        return new ModificationSequence(cursor.moveToFirst() ?
+                cursor.getLong(0) : 0);
+    }
+
+    /**
+     * Returns a new sequence number, greater than all numbers returned
+     * before.
+     *
+     * @return the new sequence number.
+     */
+    public long next() {
+        return last.incrementAndGet();
+    }
+
+    /**
+     * Returns the last used sequence number.
+     *
+     * @return the last sequence number returned by
+     * {@link ModificationSequence#next()}.
+     */
+    public long current() {
+        return last.get();
+    }
+}
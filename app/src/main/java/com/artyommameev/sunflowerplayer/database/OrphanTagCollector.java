@@ -0,0 +1,159 @@
+package com.artyommameev.sunflowerplayer.database;
+
+import android.content.SharedPreferences;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+import com.artyommameev.sunflowerplayer.storage.VideoClipScanner;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * A maintenance job that removes {@link Tag}s of {@link VideoClip}s which
+ * no longer exist in the library.
+ * <p>
+ * {@link Tag}s are checked in batches ordered by id, and the orphans of
+ * every batch are removed in their own transaction. The id of the last
+ * checked {@link Tag} is saved after every batch, so a cancelled or
+ * interrupted collection continues where it stopped the next time it is
+ * run.
+ *
+ * @author Artyom Mameev
+ */
+public class OrphanTagCollector {
+
+    static final String CHECKPOINT_KEY = "ORPHAN_TAG_COLLECTOR_LAST_ID";
+    static final int BATCH_SIZE = 500;
+
+    private final Database database;
+    private final VideoClipScanner videoClipScanner;
+    private final SharedPreferences sharedPreferences;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    /**
+     * Instantiates a new Orphan Tag Collector.
+     *
+     * @param database          the application database.
+     * @param videoClipScanner  the scanner of the directory trees of all the
+     *                          storage volumes.
+     * @param sharedPreferences the preferences in which the progress of the
+     *                          collection is saved.
+     * @throws NullPointerException if any parameter is null.
+     */
+    public OrphanTagCollector(@NonNull Database database,
+                              @NonNull VideoClipScanner videoClipScanner,
+                              @NonNull SharedPreferences sharedPreferences) {
+        this.database = database;
+        this.videoClipScanner = videoClipScanner;
+        this.sharedPreferences = sharedPreferences;
+    }
+
+    /**
+     * Runs the collection on the calling thread, which should not be the UI
+     * thread.
+     *
+     * @return the {@link Result} of the collection.
+     * @throws IllegalStateException if the library cannot be read, in which
+     *                               case nothing is removed.
+     */
+    public Result collect() {
+        val startTime = System.nanoTime();
+
+        long reclaimed = 0;
+
+        try {
+            val existingFileNames = videoClipScanner.scanFileNames(
+                    this::isCancelled);
+
+            long lastId = sharedPreferences.getLong(CHECKPOINT_KEY, 0);
+
+            while (true) {
+                if (isCancelled()) {
+                    throw new CancellationException();
+                }
+
+                val tags = database.findTagsAfterId(lastId, BATCH_SIZE);
+
+                if (tags.isEmpty()) {
+                    break;
+                }
+
+                val orphans = new ArrayList<Tag>();
+
+                for (val tag : tags) {
+                    if (!existingFileNames.contains(tag.getFileName())) {
+                        orphans.add(tag);
+                    }
+                }
+
+                database.deleteTags(orphans);
+
+                reclaimed += orphans.size();
+                lastId = tags.get(tags.size() - 1).getId();
+
+                sharedPreferences.edit()
+                        .putLong(CHECKPOINT_KEY, lastId)
+                        .apply();
+            }
+
+            sharedPreferences.edit()
+                    .remove(CHECKPOINT_KEY)
+                    .apply();
+
+            return new Result(reclaimed, elapsedMs(startTime), true);
+        } catch (CancellationException e) {
+            return new Result(reclaimed, elapsedMs(startTime), false);
+        }
+    }
+
+    /**
+     * Requests the running collection to stop after the current batch (the
+     * collection also stops if its thread is interrupted). The removed
+     * {@link Tag}s stay removed, and the next collection continues from the
+     * next batch.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    private boolean isCancelled() {
+        return cancelled.get() || Thread.currentThread().isInterrupted();
+    }
+
+    private long elapsedMs(long startTime) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
+    /**
+     * The result of an {@link OrphanTagCollector} run.
+     */
+    public static class Result {
+
+        @Getter
+        private final long reclaimedTags;
+        @Getter
+        private final long durationMs;
+        @Getter
+        private final boolean completed;
+
+        /**
+         * Instantiates a new Result.
+         *
+         * @param reclaimedTags the number of removed {@link Tag}s.
+         * @param durationMs    the duration of the run in milliseconds.
+         * @param completed     false if the run was cancelled.
+         */
+        public Result(long reclaimedTags, long durationMs, boolean completed) {
+            this.reclaimedTags = reclaimedTags;
+            this.durationMs = durationMs;
+            this.completed = completed;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.artyommameev.sunflowerplayer.database;
+
+import android.os.SystemClock;
+
+import com.artyommameev.sunflowerplayer.domain.PlaybackPosition;
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Buffers the {@link PlaybackPosition}s recorded during the playback in
+ * memory and writes them behind to the {@link Database}.
+ * <p>
+ * Only the last position of every {@link VideoClip} is kept, and the buffer
+ * is saved in a single transaction on a background thread when
+ * {@link PlaybackPositionWriter#FLUSH_INTERVAL_MS} has passed since the
+ * previous write, or when it is flushed explicitly, for example on pause.
+ *
+ * @author Artyom Mameev
+ */
+public class PlaybackPositionWriter {
+
+    static final long FLUSH_INTERVAL_MS = 5000;
+
+    // shared by all writers, so the writes are serialized
+    private static final Executor WRITE_EXECUTOR =
+            Executors.newSingleThreadExecutor();
+
+    private final Database database;
+    private final Executor executor;
+    private final LongSupplier clock;
+
+    private final Object lock = new Object();
+    private Map<String, PlaybackPosition> pendingPlaybackPositions =
+            new LinkedHashMap<>();
+    // the positions recorded by this writer that may not be saved yet,
+    // removed once they are written
+    private final Map<String, PlaybackPosition> recordedPlaybackPositions =
+            new HashMap<>();
+    private long lastFlushMs;
+
+    /**
+     * Instantiates a new Playback Position Writer, which writes to the
+     * database on a background thread.
+     *
+     * @param database the application database.
+     * @throws NullPointerException if the database is null.
+     */
+    public PlaybackPositionWriter(@NonNull Database database) {
+        this(database, WRITE_EXECUTOR, SystemClock::elapsedRealtime);
+    }
+
+    PlaybackPositionWriter(@NonNull Database database,
+                           @NonNull Executor executor,
+                           @NonNull LongSupplier clock) {
+        this.database = database;
+        this.executor = executor;
+        this.clock = clock;
+
+        lastFlushMs = clock.getAsLong();
+    }
+
+    /**
+     * Records the position of the playback of a {@link VideoClip},
+     * replacing the position recorded for it before. Flushes the buffer if
+     * the flush interval has passed.
+     *
+     * @param fileName the file name of the {@link VideoClip}.
+     * @param position the position of the playback in milliseconds.
+     * @param duration the duration of the {@link VideoClip} in milliseconds,
+     *                 or 0 if it is unknown.
+     * @throws NullPointerException if the file name is null.
+     */
+    public void record(@NonNull String fileName, long position,
+                       long duration) {
+        boolean isFlushDue;
+
+        val playbackPosition = new PlaybackPosition(fileName, position,
+                duration);
+
+        synchronized (lock) {
+            pendingPlaybackPositions.put(fileName, playbackPosition);
+            recordedPlaybackPositions.put(fileName, playbackPosition);
+
+            isFlushDue = clock.getAsLong() - lastFlushMs >= FLUSH_INTERVAL_MS;
+        }
+
+        if (isFlushDue) {
+            flush();
+        }
+    }
+
+    /**
+     * Returns the position of the playback of a {@link VideoClip}, which
+     * is the last position recorded by this writer, even if it is not saved
+     * yet, or the position saved in the database.
+     *
+     * @param fileName the file name of the {@link VideoClip}.
+     * @return the {@link PlaybackPosition} of the {@link VideoClip} if it was
+     * recorded or found in the database, otherwise null.
+     * @throws NullPointerException if the file name is null.
+     */
+    public PlaybackPosition findPlaybackPosition(@NonNull String fileName) {
+        synchronized (lock) {
+            val playbackPosition = recordedPlaybackPositions.get(fileName);
+
+            if (playbackPosition != null) {
+                return playbackPosition;
+            }
+        }
+
+        return database.findPlaybackPositionByFileName(fileName);
+    }
+
+    /**
+     * Saves the recorded positions in a single transaction on the
+     * background thread, after which they are read from the database again.
+     * Does nothing if no positions were recorded since the previous flush.
+     */
+    public void flush() {
+        Map<String, PlaybackPosition> playbackPositions;
+
+        synchronized (lock) {
+            lastFlushMs = clock.getAsLong();
+
+            if (pendingPlaybackPositions.isEmpty()) {
+                return;
+            }
+
+            playbackPositions = pendingPlaybackPositions;
+
+            pendingPlaybackPositions = new LinkedHashMap<>();
+        }
+
+        val batch = new ArrayList<PlaybackPosition>(
+                playbackPositions.values());
+
+        executor.execute(() -> {
+            database.savePlaybackPositions(batch);
+
+            forget(batch);
+        });
+    }
+
+    private void forget(Iterable<PlaybackPosition> savedPlaybackPositions) {
+        synchronized (lock) {
+            for (val playbackPosition : savedPlaybackPositions) {
+                // a position recorded since is kept until it is written
+                recordedPlaybackPositions.remove(
+                        playbackPosition.getFileName(), playbackPosition);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.artyommameev.sunflowerplayer.database;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+import java.util.Collections;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Describes a single write to the {@link Tag}s stored in the database.
+ *
+ * @author Artyom Mameev
+ */
+public final class TagChange {
+
+    @Getter
+    private final Type type;
+    @Getter
+    private final List<Tag> tags;
+
+    /**
+     * Instantiates a new Tag Change.
+     *
+     * @param type the type of the change.
+     * @param tags the {@link Tag}s affected by the change, in the state in
+     *             which they were written (or removed).
+     * @throws NullPointerException if any parameter is null.
+     */
+    public TagChange(@NonNull Type type, @NonNull List<Tag> tags) {
+        this.type = type;
+        this.tags = Collections.unmodifiableList(tags);
+    }
+
+    /**
+     * The type of {@link TagChange}.
+     */
+    public enum Type {
+        /**
+         * New {@link Tag}s were added to the database.
+         */
+        INSERTED,
+        /**
+         * Existing {@link Tag}s were changed.
+         */
+        UPDATED,
+        /**
+         * {@link Tag}s were removed from the database.
+         */
+        DELETED,
+        /**
+         * All {@link Tag}s were removed from the database, the change holds
+         * no tags.
+         */
+        CLEARED
+    }
+}
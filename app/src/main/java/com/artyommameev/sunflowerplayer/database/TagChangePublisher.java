@@ -0,0 +1,68 @@
+package com.artyommameev.sunflowerplayer.database;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import lombok.NonNull;
+
+/**
+ * Delivers {@link TagChange}s made through {@link Database} to the
+ * registered listeners.
+ * <p>
+ * Changes are delivered synchronously on the thread that made the write,
+ * so listeners that touch views should move the work to the UI thread
+ * themselves.
+ *
+ * @author Artyom Mameev
+ */
+public class TagChangePublisher {
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a listener of {@link Tag} changes.
+     *
+     * @param listener the listener that should be notified about changes.
+     * @throws NullPointerException if the listener is null.
+     */
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a previously registered listener of {@link Tag} changes.
+     *
+     * @param listener the listener that should not be notified anymore.
+     * @throws NullPointerException if the listener is null.
+     */
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Delivers the change to all registered listeners.
+     *
+     * @param tagChange the change that should be delivered.
+     * @throws NullPointerException if the change is null.
+     */
+    public void publish(@NonNull TagChange tagChange) {
+        for (Listener listener : listeners) {
+            listener.onTagsChanged(tagChange);
+        }
+    }
+
+    /**
+     * A listener of {@link Tag} changes.
+     */
+    public interface Listener {
+
+        /**
+         * Called after {@link Tag}s have been written to the database.
+         *
+         * @param tagChange the change that has been made.
+         */
+        void onTagsChanged(@NonNull TagChange tagChange);
+    }
+}
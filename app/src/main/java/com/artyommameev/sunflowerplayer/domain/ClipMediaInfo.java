@@ -0,0 +1,134 @@
+package com.artyommameev.sunflowerplayer.domain;
+
+import org.greenrobot.greendao.annotation.Entity;
+import org.greenrobot.greendao.annotation.Id;
+import org.greenrobot.greendao.annotation.Index;
+import org.greenrobot.greendao.annotation.Keep;
+import org.greenrobot.greendao.annotation.NotNull;
+
+import java.io.File;
+
+import lombok.NonNull;
+
+/**
+ * Encapsulates what was learned about the file of a {@link VideoClip} when it
+ * was played, keyed by the file name as a {@link Tag} is, so it does not
+ * have to be learned again on the next playback.
+ * <p>
+ * The information is only valid while the file has the size and the
+ * modification time it had when the information was stored. The seek index
+ * is stored as the bytes of a
+ * {@link com.artyommameev.sunflowerplayer.storage.SeekIndex}, and as no bytes
+ * if the file was scanned but has nothing to index.
+ *
+ * @author Artyom Mameev
+ */
+@Entity
+public class ClipMediaInfo {
+
+    @Id(autoincrement = true)
+    private Long id;
+
+    @Index(unique = true)
+    @NotNull
+    private String fileName;
+
+    private long fileSize;
+    private long lastModified;
+
+    private String container;
+
+    private byte[] seekIndex;
+
+    /**
+     * Instantiates a new Clip Media Info of the current version of a file.
+     *
+     * @param videoClip the {@link VideoClip} of the file.
+     * @param container the name of the container format of the file, or
+     *                  null if it is not known yet.
+     * @throws NullPointerException if the video clip is null.
+     */
+    public ClipMediaInfo(@NonNull VideoClip videoClip, String container) {
+        this.fileName = videoClip.getFileName();
+        this.fileSize = videoClip.length();
+        this.lastModified = videoClip.lastModified();
+        this.container = container;
+    }
+
+    @Keep
+    public ClipMediaInfo(Long id, String fileName, long fileSize,
+                         long lastModified, String container,
+                         byte[] seekIndex) {
+        this.id = id;
+        this.fileName = fileName;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.container = container;
+        this.seekIndex = seekIndex;
+    }
+
+    @SuppressWarnings("unused")
+    @Keep
+    public ClipMediaInfo() {
+    }
+
+    /**
+     * Checks if the information describes the current version of a file.
+     *
+     * @param file the file of the {@link VideoClip}.
+     * @return true if the file has not been changed since the information
+     * was stored, otherwise false.
+     * @throws NullPointerException if the file is null.
+     */
+    public boolean isValidFor(@NonNull File file) {
+        return file.length() == fileSize && file.lastModified() == lastModified;
+    }
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    public void setFileName(@NonNull String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getFileSize() {
+        return this.fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public long getLastModified() {
+        return this.lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public String getContainer() {
+        return this.container;
+    }
+
+    public void setContainer(String container) {
+        this.container = container;
+    }
+
+    public byte[] getSeekIndex() {
+        return this.seekIndex;
+    }
+
+    public void setSeekIndex(byte[] seekIndex) {
+        this.seekIndex = seekIndex;
+    }
+}
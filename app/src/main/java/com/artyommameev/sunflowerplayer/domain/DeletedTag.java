@@ -0,0 +1,79 @@
+package com.artyommameev.sunflowerplayer.domain;
+
+import org.greenrobot.greendao.annotation.Entity;
+import org.greenrobot.greendao.annotation.Id;
+import org.greenrobot.greendao.annotation.Index;
+import org.greenrobot.greendao.annotation.Keep;
+import org.greenrobot.greendao.annotation.NotNull;
+
+import lombok.NonNull;
+
+/**
+ * Records the removal of a {@link Tag}, so that an incremental backup can
+ * carry the removal.
+ *
+ * @author Artyom Mameev
+ */
+@Entity
+public class DeletedTag {
+
+    @Id(autoincrement = true)
+    private Long id;
+
+    @Index(unique = true)
+    @NotNull
+    private String fileName;
+
+    // the modification sequence number of the removal
+    @Index
+    private long modSeq;
+
+    /**
+     * Instantiates a new Deleted Tag.
+     *
+     * @param fileName a file name of the {@link VideoClip} which {@link Tag}
+     *                 was removed.
+     * @param modSeq   the modification sequence number of the removal.
+     * @throws NullPointerException if the file name is null.
+     */
+    public DeletedTag(@NonNull String fileName, long modSeq) {
+        this.fileName = fileName;
+        this.modSeq = modSeq;
+    }
+
+    @Keep
+    public DeletedTag(Long id, String fileName, long modSeq) {
+        this.id = id;
+        this.fileName = fileName;
+        this.modSeq = modSeq;
+    }
+
+    @SuppressWarnings("unused")
+    @Keep
+    public DeletedTag() {
+    }
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    public void setFileName(@NonNull String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getModSeq() {
+        return this.modSeq;
+    }
+
+    public void setModSeq(long modSeq) {
+        this.modSeq = modSeq;
+    }
+}
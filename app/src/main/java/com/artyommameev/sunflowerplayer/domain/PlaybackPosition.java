@@ -0,0 +1,113 @@
+package com.artyommameev.sunflowerplayer.domain;
+
+import org.greenrobot.greendao.annotation.Entity;
+import org.greenrobot.greendao.annotation.Id;
+import org.greenrobot.greendao.annotation.Index;
+import org.greenrobot.greendao.annotation.Keep;
+import org.greenrobot.greendao.annotation.NotNull;
+
+import lombok.NonNull;
+
+/**
+ * Encapsulates the position at which the playback of a {@link VideoClip} was
+ * left, keyed by the file name as a {@link Tag} is.
+ *
+ * @author Artyom Mameev
+ */
+@Entity
+public class PlaybackPosition {
+
+    // a clip left this close to its end is considered watched
+    private static final long FINISHED_THRESHOLD_MS = 5000;
+
+    @Id(autoincrement = true)
+    private Long id;
+
+    @Index(unique = true)
+    @NotNull
+    private String fileName;
+
+    private long position;
+    private long duration;
+
+    /**
+     * Instantiates a new Playback Position.
+     *
+     * @param fileName a file name of the {@link VideoClip}.
+     * @param position the position of the playback in milliseconds.
+     * @param duration the duration of the {@link VideoClip} in milliseconds,
+     *                 or 0 if it is unknown.
+     * @throws NullPointerException if the file name is null.
+     */
+    public PlaybackPosition(@NonNull String fileName, long position,
+                            long duration) {
+        this.fileName = fileName;
+        this.position = position;
+        this.duration = duration;
+    }
+
+    @Keep
+    public PlaybackPosition(Long id, String fileName, long position,
+                            long duration) {
+        this.id = id;
+        this.fileName = fileName;
+        this.position = position;
+        this.duration = duration;
+    }
+
+    @SuppressWarnings("unused")
+    @Keep
+    public PlaybackPosition() {
+    }
+
+    /**
+     * Checks if the {@link VideoClip} was played to its end or almost to it.
+     *
+     * @return true if the position is close to the end of the known
+     * duration, otherwise false.
+     */
+    public boolean isFinished() {
+        return duration > 0 && position >= duration - FINISHED_THRESHOLD_MS;
+    }
+
+    /**
+     * Returns the position from which the playback should be resumed.
+     *
+     * @return the saved position, or 0 if the {@link VideoClip} was finished.
+     */
+    public long getResumePosition() {
+        return isFinished() ? 0 : position;
+    }
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    public void setFileName(@NonNull String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getPosition() {
+        return this.position;
+    }
+
+    public void setPosition(long position) {
+        this.position = position;
+    }
+
+    public long getDuration() {
+        return this.duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+}
@@ -0,0 +1,47 @@
+package com.artyommameev.sunflowerplayer.domain;
+
+import lombok.Data;
+import lombok.NonNull;
+
+/**
+ * Encapsulates the performance measurements of the playback of a single
+ * {@link VideoClip}, from the request to play it to the end of its
+ * playback.
+ * <p>
+ * The measurements that were not taken are -1.
+ *
+ * @author Artyom Mameev
+ */
+@Data
+public class PlaybackSession {
+
+    private String fileName;
+    // the wall clock time of the start of the session
+    private long startedAt;
+    private long timeToFirstFrameMs = -1;
+    private long videoDecoderInitMs = -1;
+    private long audioDecoderInitMs = -1;
+    private int droppedFrames;
+    private int rebuffers;
+    private long rebufferMs;
+    private int bitrate = -1;
+    private int width = -1;
+    private int height = -1;
+
+    /**
+     * Instantiates a new Playback Session.
+     *
+     * @param fileName  a file name of the {@link VideoClip}.
+     * @param startedAt the wall clock time of the start of the session in
+     *                  milliseconds.
+     * @throws NullPointerException if the file name is null.
+     */
+    public PlaybackSession(@NonNull String fileName, long startedAt) {
+        this.fileName = fileName;
+        this.startedAt = startedAt;
+    }
+
+    @SuppressWarnings("unused")
+    public PlaybackSession() {
+    }
+}
@@ -1,10 +1,12 @@
 package com.artyommameev.sunflowerplayer.domain;
 
 import org.greenrobot.greendao.annotation.Entity;
-import org.greenrobot.greendao.annotation.Generated;
 import org.greenrobot.greendao.annotation.Id;
+import org.greenrobot.greendao.annotation.Index;
 import org.greenrobot.greendao.annotation.Keep;
 
+import java.util.Objects;
+
 import lombok.Data;
 import lombok.NonNull;
 
@@ -20,11 +22,16 @@ public class Tag {
     @Id(autoincrement = true)
     private Long id;
 
+    @Index
     private String fileName;
     private String artist;
     private String title;
     private String album;
 
+    // the modification sequence number of the last write of the tag
+    @Index
+    private long modSeq;
+
     /**
      * Instantiates a new Tag.
      *
@@ -42,7 +49,7 @@ public class Tag {
         this.album = album;
     }
 
-    @Generated(hash = 827609346)
+    @Keep
     public Tag(Long id, String fileName, String artist, String title,
                String album) {
         this.id = id;
@@ -52,6 +59,17 @@ public class Tag {
         this.album = album;
     }
 
+    @Keep
+    public Tag(Long id, String fileName, String artist, String title,
+               String album, long modSeq) {
+        this.id = id;
+        this.fileName = fileName;
+        this.artist = artist;
+        this.title = title;
+        this.album = album;
+        this.modSeq = modSeq;
+    }
+
     @SuppressWarnings("unused")
     @Keep
     public Tag() {
@@ -97,6 +115,28 @@ public class Tag {
         this.album = album;
     }
 
+    /**
+     * Checks if the tag has the same artist, title and album as another tag,
+     * regardless of the file name and the database fields.
+     *
+     * @param tag the tag to compare with.
+     * @return true if the artists, titles and albums of the tags are equal.
+     * @throws NullPointerException if the tag is null.
+     */
+    public boolean hasSameContent(@NonNull Tag tag) {
+        return Objects.equals(artist, tag.artist) &&
+                Objects.equals(title, tag.title) &&
+                Objects.equals(album, tag.album);
+    }
+
+    public long getModSeq() {
+        return this.modSeq;
+    }
+
+    public void setModSeq(long modSeq) {
+        this.modSeq = modSeq;
+    }
+
     /**
      * Returns a string representation of the object.
      *
@@ -46,6 +46,15 @@ public class VideoClip extends File {
 
         this.fileName = file.getName();
 
+        resetTags();
+    }
+
+    /**
+     * Discards the tag information of the video clip and restores the artist
+     * and title extracted from the file name, as it is done when the Video
+     * Clip is created. The album is reset to null.
+     */
+    public void resetTags() {
         if (isTagsCreatableFromFileName(fileName)) {
             this.artist = getArtistFromFileName(fileName);
             this.title = getTitleFromFileName(fileName);
@@ -53,6 +62,8 @@ public class VideoClip extends File {
             this.artist = "Unknown Artist";
             this.title = removeExtension(fileName);
         }
+
+        this.album = null;
     }
 
     /**
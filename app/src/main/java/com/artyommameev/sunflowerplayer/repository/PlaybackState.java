@@ -0,0 +1,205 @@
+package com.artyommameev.sunflowerplayer.repository;
+
+import android.support.v4.media.session.PlaybackStateCompat;
+
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * An immutable snapshot of the playback: the playing track, the queue of
+ * {@link VideoClip}s and the state and the position of the player.
+ * <p>
+ * A snapshot is never changed, the "with" methods return a new snapshot
+ * with the given values, or the same snapshot if the values are already
+ * set, so a snapshot can be shared between threads and an unchanged one is
+ * recognized by its identity.
+ *
+ * @author Artyom Mameev
+ */
+@Getter
+public final class PlaybackState {
+
+    /**
+     * The state before anything is played.
+     */
+    public static final PlaybackState EMPTY = new PlaybackState(null,
+            Collections.emptyList(), -1, PlaybackStateCompat.STATE_NONE, 0,
+            0, 0);
+
+    private final Track track;
+    private final List<VideoClip> queue;
+    private final int queueIndex;
+    private final int state;
+    private final long positionMs;
+    private final float speed;
+    private final long updateTimeMs;
+
+    private PlaybackState(Track track, List<VideoClip> queue, int queueIndex,
+                          int state, long positionMs, float speed,
+                          long updateTimeMs) {
+        this.track = track;
+        this.queue = queue;
+        this.queueIndex = queueIndex;
+        this.state = state;
+        this.positionMs = positionMs;
+        this.speed = speed;
+        this.updateTimeMs = updateTimeMs;
+    }
+
+    /**
+     * Returns the snapshot with another playing track.
+     *
+     * @param track the playing track.
+     * @return the snapshot with the track.
+     * @throws NullPointerException if the track is null.
+     */
+    public PlaybackState withTrack(@NonNull Track track) {
+        if (track.equals(this.track)) {
+            return this;
+        }
+
+        return new PlaybackState(track, queue, queueIndex, state, positionMs,
+                speed, updateTimeMs);
+    }
+
+    /**
+     * Returns the snapshot with another queue. The queue is copied.
+     *
+     * @param queue      the {@link VideoClip}s that are played one after
+     *                   another.
+     * @param queueIndex the index of the playing {@link VideoClip} in the
+     *                   queue.
+     * @return the snapshot with the queue.
+     * @throws NullPointerException      if the queue is null.
+     * @throws IndexOutOfBoundsException if the index is out of the queue
+     *                                   bounds.
+     */
+    public PlaybackState withQueue(@NonNull List<VideoClip> queue,
+                                   int queueIndex) {
+        checkQueueIndex(queue, queueIndex);
+
+        return new PlaybackState(track, Collections.unmodifiableList(
+                new ArrayList<>(queue)), queueIndex, state, positionMs, speed,
+                updateTimeMs);
+    }
+
+    /**
+     * Returns the snapshot with another playing {@link VideoClip} of the
+     * same queue.
+     *
+     * @param queueIndex the index of the playing {@link VideoClip} in the
+     *                   queue.
+     * @return the snapshot with the index.
+     * @throws IndexOutOfBoundsException if the index is out of the queue
+     *                                   bounds.
+     */
+    public PlaybackState withQueueIndex(int queueIndex) {
+        if (queueIndex == this.queueIndex) {
+            return this;
+        }
+
+        checkQueueIndex(queue, queueIndex);
+
+        return new PlaybackState(track, queue, queueIndex, state, positionMs,
+                speed, updateTimeMs);
+    }
+
+    /**
+     * Returns the snapshot with another state of the player.
+     *
+     * @param state        the state, one of the {@link PlaybackStateCompat}
+     *                     states.
+     * @param positionMs   the position in the playing clip in milliseconds.
+     * @param speed        the speed of the playback, 0 unless playing.
+     * @param updateTimeMs the time of the position, as
+     *                     {@link android.os.SystemClock#elapsedRealtime()}.
+     * @return the snapshot with the state of the player.
+     */
+    public PlaybackState withPlayback(int state, long positionMs, float speed,
+                                      long updateTimeMs) {
+        if (state == this.state && positionMs == this.positionMs &&
+                speed == this.speed && updateTimeMs == this.updateTimeMs) {
+            return this;
+        }
+
+        return new PlaybackState(track, queue, queueIndex, state, positionMs,
+                speed, updateTimeMs);
+    }
+
+    /**
+     * Returns the playing {@link VideoClip}.
+     *
+     * @return the {@link VideoClip} at the queue index, or null if the queue
+     * is empty.
+     */
+    public VideoClip getCurrentClip() {
+        return queueIndex < 0 ? null : queue.get(queueIndex);
+    }
+
+    /**
+     * Extrapolates the position at a given time from the position, the
+     * speed and the update time, as the media session controllers do.
+     *
+     * @param nowMs the time, as
+     *              {@link android.os.SystemClock#elapsedRealtime()}.
+     * @return the position at the time in milliseconds.
+     */
+    public long getPositionMs(long nowMs) {
+        return positionMs + (long) ((nowMs - updateTimeMs) * speed);
+    }
+
+    private static void checkQueueIndex(List<VideoClip> queue, int index) {
+        if (index < 0 || index >= queue.size()) {
+            throw new IndexOutOfBoundsException("index " + index +
+                    " is out of the queue bounds");
+        }
+    }
+
+    /**
+     * Represents a currently playing music track.
+     */
+    @Getter
+    @EqualsAndHashCode
+    public static final class Track {
+
+        private final String title;
+        private final String artist;
+        private final String album;
+        private final long duration; // in ms
+
+        /**
+         * Instantiates a new Track.
+         *
+         * @param title    a title of the the track.
+         * @param artist   an artist the track.
+         * @param album    an album the track.
+         * @param duration duration of the track in milliseconds.
+         * @throws NullPointerException if any parameter is null
+         */
+        public Track(@NonNull String title, @NonNull String artist,
+                     @NonNull String album, long duration) {
+            this.title = title;
+            this.artist = artist;
+            this.album = album;
+            this.duration = duration;
+        }
+
+        /**
+         * Returns the same track with another duration.
+         *
+         * @param duration duration of the track in milliseconds.
+         * @return the track with the duration.
+         */
+        public Track withDuration(long duration) {
+            return duration == this.duration ? this :
+                    new Track(title, artist, album, duration);
+        }
+    }
+}
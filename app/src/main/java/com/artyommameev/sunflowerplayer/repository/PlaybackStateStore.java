@@ -0,0 +1,185 @@
+package com.artyommameev.sunflowerplayer.repository;
+
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Holds the current {@link PlaybackState} of the application and notifies
+ * the registered listeners about its changes.
+ * <p>
+ * The state is an immutable snapshot in an atomic reference, so it can be
+ * read and updated from any thread without locks, and a reader always sees
+ * a whole snapshot, never a half-written one. An update is applied with a
+ * compare-and-set, and is retried on the newer snapshot if another thread
+ * has updated the state meanwhile.
+ * <p>
+ * Changes are delivered synchronously on the thread that made the update,
+ * so listeners that touch views should move the work to the UI thread
+ * themselves. The changes made concurrently by several threads may be
+ * delivered out of order, but every change holds the snapshots before and
+ * after its own update.
+ *
+ * @author Artyom Mameev
+ */
+public final class PlaybackStateStore {
+
+    private final AtomicReference<PlaybackState> state =
+            new AtomicReference<>(PlaybackState.EMPTY);
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Returns the current snapshot of the playback.
+     *
+     * @return the current {@link PlaybackState}.
+     */
+    public PlaybackState getState() {
+        return state.get();
+    }
+
+    /**
+     * Updates the state and notifies the listeners if it has changed.
+     *
+     * @param update the function that returns the new snapshot from the
+     *               current one, or the same snapshot to leave the state
+     *               unchanged. It may be called more than once, so it
+     *               should not have side effects.
+     * @return the snapshot the state was updated to.
+     * @throws NullPointerException if the update or its result is null.
+     */
+    public PlaybackState update(@NonNull UnaryOperator<PlaybackState> update) {
+        PlaybackState previous;
+        PlaybackState current;
+
+        do {
+            previous = state.get();
+            current = update.apply(previous);
+
+            if (current == null) {
+                throw new NullPointerException("update returned null");
+            }
+
+            if (current == previous) {
+                return previous;
+            }
+        } while (!state.compareAndSet(previous, current));
+
+        val change = new Change(previous, current);
+
+        for (Listener listener : listeners) {
+            listener.onPlaybackStateChanged(change);
+        }
+
+        return current;
+    }
+
+    /**
+     * Registers a listener of the changes of the state.
+     *
+     * @param listener the listener that should be notified about changes.
+     * @throws NullPointerException if the listener is null.
+     */
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a previously registered listener of the changes of the
+     * state.
+     *
+     * @param listener the listener that should not be notified anymore.
+     * @throws NullPointerException if the listener is null.
+     */
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Describes a single update of the {@link PlaybackState}: the snapshots
+     * before and after it and which parts of the state it has changed.
+     */
+    @Getter
+    public static final class Change {
+
+        private final PlaybackState previous;
+        private final PlaybackState current;
+
+        /**
+         * Instantiates a new Change.
+         *
+         * @param previous the snapshot before the update.
+         * @param current  the snapshot after the update.
+         * @throws NullPointerException if any parameter is null.
+         */
+        public Change(@NonNull PlaybackState previous,
+                      @NonNull PlaybackState current) {
+            this.previous = previous;
+            this.current = current;
+        }
+
+        /**
+         * Checks if the playing track has changed, including its duration.
+         *
+         * @return true if the track has changed, otherwise false.
+         */
+        public boolean isTrackChanged() {
+            return previous.getTrack() == null ?
+                    current.getTrack() != null :
+                    !previous.getTrack().equals(current.getTrack());
+        }
+
+        /**
+         * Checks if the queue has been replaced. A queue replaced by an equal
+         * one is a change as well.
+         *
+         * @return true if the queue has been replaced, otherwise false.
+         */
+        public boolean isQueueChanged() {
+            return previous.getQueue() != current.getQueue();
+        }
+
+        /**
+         * Checks if another {@link VideoClip} of the queue is playing, or the
+         * queue has been replaced.
+         *
+         * @return true if the playing clip has changed, otherwise false.
+         */
+        public boolean isQueueIndexChanged() {
+            return isQueueChanged() ||
+                    previous.getQueueIndex() != current.getQueueIndex();
+        }
+
+        /**
+         * Checks if the state, the position or the speed of the player has
+         * changed.
+         *
+         * @return true if the player has changed, otherwise false.
+         */
+        public boolean isPlaybackChanged() {
+            return previous.getState() != current.getState() ||
+                    previous.getPositionMs() != current.getPositionMs() ||
+                    previous.getSpeed() != current.getSpeed() ||
+                    previous.getUpdateTimeMs() != current.getUpdateTimeMs();
+        }
+    }
+
+    /**
+     * A listener of the changes of the {@link PlaybackState}.
+     */
+    public interface Listener {
+
+        /**
+         * Called after the state has been updated.
+         *
+         * @param change the change that has been made.
+         */
+        void onPlaybackStateChanged(@NonNull Change change);
+    }
+}
@@ -0,0 +1,358 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * The library of {@link VideoClip}s as a tree that media browsers can walk:
+ * the clips grouped by folder, by artist and by album, and the recently
+ * played clips.
+ * <p>
+ * The groups are sorted once, when the tree is created, so a page of the
+ * children of any node is a slice of a ready list and only the items of the
+ * page are created, however many clips the node has.
+ * <p>
+ * The media id of a group is the id of its category and an opaque id of the
+ * key of the group, and the media id of a clip is the id of the node it is
+ * listed in and an opaque id of its path, so playing a clip queues the
+ * clips of the same node. The opaque ids are salted hashes, so the ids do
+ * not disclose the paths on the storage, and an id made up from a guessed
+ * path does not match anything.
+ *
+ * @author Artyom Mameev
+ */
+final class BrowseTree {
+
+    static final String ROOT_ID = "root";
+    static final String FOLDERS_ID = "folders";
+    static final String ARTISTS_ID = "artists";
+    static final String ALBUMS_ID = "albums";
+    static final String RECENTS_ID = "recents";
+
+    private static final char GROUP_SEPARATOR = '/';
+    private static final char CLIP_SEPARATOR = '\u001F';
+
+    private static final Comparator<String> KEY_ORDER =
+            String.CASE_INSENSITIVE_ORDER;
+
+    // the bytes of the digest of a key in an opaque id
+    private static final int OPAQUE_ID_BYTES = 8;
+
+    private final String salt;
+
+    // the keys of the groups of every category in their order
+    private final Map<String, List<String>> keysByCategory;
+    // the clips of every group by its opaque media id
+    private final Map<String, List<VideoClip>> clipsByGroup;
+    private final Map<String, VideoClip> clipsByFileName;
+    private final List<VideoClip> recents;
+
+    /**
+     * Instantiates a new Browse Tree without recently played clips.
+     *
+     * @param videoClips the clips of the library with their tags.
+     * @param salt       the salt of the opaque ids, which should be the same
+     *                   for the trees of the same browser so the ids of the
+     *                   nodes outlive a rebuild of the tree.
+     * @throws NullPointerException if any parameter is null.
+     */
+    BrowseTree(@NonNull Collection<VideoClip> videoClips,
+               @NonNull String salt) {
+        this.salt = salt;
+        keysByCategory = new HashMap<>();
+        clipsByGroup = new HashMap<>();
+        clipsByFileName = new HashMap<>();
+        recents = Collections.emptyList();
+
+        val folders = new HashMap<String, List<VideoClip>>();
+        val artists = new HashMap<String, List<VideoClip>>();
+        val albums = new HashMap<String, List<VideoClip>>();
+
+        for (val videoClip : videoClips) {
+            val folder = videoClip.getParent();
+
+            if (folder != null) {
+                add(folders, folder, videoClip);
+            }
+
+            add(artists, videoClip.getArtist(), videoClip);
+
+            videoClip.getAlbum().ifPresent(album ->
+                    add(albums, album, videoClip));
+
+            clipsByFileName.putIfAbsent(videoClip.getFileName(), videoClip);
+        }
+
+        addCategory(FOLDERS_ID, folders, Comparator.comparing(
+                VideoClip::getFileName, KEY_ORDER));
+        addCategory(ARTISTS_ID, artists, Comparator.comparing(
+                (VideoClip videoClip) -> videoClip.getAlbum().orElse(""),
+                KEY_ORDER).thenComparing(VideoClip::getTitle, KEY_ORDER));
+        addCategory(ALBUMS_ID, albums, Comparator.comparing(
+                VideoClip::getArtist, KEY_ORDER)
+                .thenComparing(VideoClip::getTitle, KEY_ORDER));
+    }
+
+    private BrowseTree(BrowseTree browseTree, List<VideoClip> recents) {
+        salt = browseTree.salt;
+        keysByCategory = browseTree.keysByCategory;
+        clipsByGroup = browseTree.clipsByGroup;
+        clipsByFileName = browseTree.clipsByFileName;
+        this.recents = recents;
+    }
+
+    /**
+     * Returns a tree with the same library and the given recently played
+     * clips.
+     *
+     * @param fileNames the file names of the recently played clips from the
+     *                  most recent one, possibly repeated. The clips that
+     *                  are not in the library are skipped.
+     * @return the new tree, which shares the groups with this one.
+     * @throws NullPointerException if the file names are null.
+     */
+    BrowseTree withRecents(@NonNull List<String> fileNames) {
+        val recentClips = new LinkedHashMap<String, VideoClip>();
+
+        for (val fileName : fileNames) {
+            val videoClip = clipsByFileName.get(fileName);
+
+            if (videoClip != null) {
+                recentClips.putIfAbsent(fileName, videoClip);
+            }
+        }
+
+        return new BrowseTree(this, Collections.unmodifiableList(
+                new ArrayList<>(recentClips.values())));
+    }
+
+    /**
+     * Returns a page of the children of a category or a group. The root
+     * has the fixed categories, which are listed by the service itself.
+     *
+     * @param parentId the media id of the category or the group.
+     * @param page     the index of the page, from 0.
+     * @param pageSize the number of the children on a page.
+     * @return the children on the page, empty if the page is past the last
+     * child, or null if there is no such node.
+     * @throws NullPointerException     if the parent id is null.
+     * @throws IllegalArgumentException if the page is negative or the page
+     *                                  size is not positive.
+     */
+    List<Item> getChildren(@NonNull String parentId, int page, int pageSize) {
+        if (page < 0 || pageSize <= 0) {
+            throw new IllegalArgumentException("Invalid page " + page +
+                    " of size " + pageSize);
+        }
+
+        val keys = keysByCategory.get(parentId);
+
+        if (keys != null) {
+            val groups = slice(keys, page, pageSize);
+            val items = new ArrayList<Item>(groups.size());
+
+            for (val key : groups) {
+                items.add(new Item(getGroupId(parentId, key),
+                        getGroupTitle(parentId, key), null, false));
+            }
+
+            return items;
+        }
+
+        val clips = getClips(parentId);
+
+        if (clips == null) {
+            return null;
+        }
+
+        val pageClips = slice(clips, page, pageSize);
+        val items = new ArrayList<Item>(pageClips.size());
+
+        for (val videoClip : pageClips) {
+            items.add(new Item(parentId + CLIP_SEPARATOR +
+                    getClipId(videoClip), videoClip.getTitle(),
+                    videoClip.getArtist(), true));
+        }
+
+        return items;
+    }
+
+    /**
+     * Returns all children of a category or a group.
+     *
+     * @param parentId the media id of the category or the group.
+     * @return the children, or null if there is no such node.
+     * @throws NullPointerException if the parent id is null.
+     */
+    List<Item> getChildren(@NonNull String parentId) {
+        return getChildren(parentId, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the clips that should be queued when a node is played: the
+     * clips of a group from the first one, or the clips of the node a clip
+     * is listed in from that clip.
+     *
+     * @param mediaId the media id of the group or the clip.
+     * @return the selection of the clips, or null if the node is not
+     * playable or is empty, or there is no such node.
+     * @throws NullPointerException if the media id is null.
+     */
+    Selection select(@NonNull String mediaId) {
+        val clipSeparatorIndex = mediaId.indexOf(CLIP_SEPARATOR);
+
+        if (clipSeparatorIndex < 0) {
+            val clips = getClips(mediaId);
+
+            return clips == null || clips.isEmpty() ? null :
+                    new Selection(clips, 0);
+        }
+
+        val clips = getClips(mediaId.substring(0, clipSeparatorIndex));
+
+        if (clips == null) {
+            return null;
+        }
+
+        val clipId = mediaId.substring(clipSeparatorIndex + 1);
+
+        for (int i = 0; i < clips.size(); i++) {
+            if (getClipId(clips.get(i)).equals(clipId)) {
+                return new Selection(clips, i);
+            }
+        }
+
+        return null;
+    }
+
+    private List<VideoClip> getClips(String nodeId) {
+        return nodeId.equals(RECENTS_ID) ? recents : clipsByGroup.get(nodeId);
+    }
+
+    private String getGroupId(String category, String key) {
+        return category + GROUP_SEPARATOR + toOpaqueId(key);
+    }
+
+    private String getClipId(VideoClip videoClip) {
+        return toOpaqueId(videoClip.getAbsolutePath());
+    }
+
+    private String toOpaqueId(String key) {
+        MessageDigest messageDigest;
+
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        messageDigest.update(salt.getBytes(StandardCharsets.UTF_8));
+
+        val digest = messageDigest.digest(key.getBytes(
+                StandardCharsets.UTF_8));
+        val opaqueId = new StringBuilder(OPAQUE_ID_BYTES * 2);
+
+        for (int i = 0; i < OPAQUE_ID_BYTES; i++) {
+            opaqueId.append(Character.forDigit((digest[i] >> 4) & 0xF, 16))
+                    .append(Character.forDigit(digest[i] & 0xF, 16));
+        }
+
+        return opaqueId.toString();
+    }
+
+    private String getGroupTitle(String category, String key) {
+        if (!category.equals(FOLDERS_ID)) {
+            return key;
+        }
+
+        val nameIndex = key.lastIndexOf('/');
+
+        return nameIndex < 0 || nameIndex == key.length() - 1 ? key :
+                key.substring(nameIndex + 1);
+    }
+
+    private void addCategory(String category,
+                             Map<String, List<VideoClip>> groups,
+                             Comparator<VideoClip> clipOrder) {
+        val keys = new ArrayList<String>(groups.keySet());
+
+        keys.sort(KEY_ORDER);
+
+        keysByCategory.put(category, Collections.unmodifiableList(keys));
+
+        for (val group : groups.entrySet()) {
+            val clips = group.getValue();
+
+            clips.sort(clipOrder);
+
+            clipsByGroup.put(getGroupId(category, group.getKey()),
+                    Collections.unmodifiableList(clips));
+        }
+    }
+
+    private static void add(Map<String, List<VideoClip>> groups, String key,
+                            VideoClip videoClip) {
+        groups.computeIfAbsent(key, k -> new ArrayList<>()).add(videoClip);
+    }
+
+    private static <T> List<T> slice(List<T> list, int page, int pageSize) {
+        val fromIndex = (long) page * pageSize;
+
+        if (fromIndex >= list.size()) {
+            return Collections.emptyList();
+        }
+
+        return list.subList((int) fromIndex,
+                (int) Math.min(fromIndex + pageSize, list.size()));
+    }
+
+    /**
+     * A child of a node, as shown by the media browsers.
+     */
+    @Getter
+    static final class Item {
+
+        private final String mediaId;
+        private final String title;
+        private final String subtitle;
+        private final boolean isPlayable;
+
+        Item(String mediaId, String title, String subtitle,
+             boolean isPlayable) {
+            this.mediaId = mediaId;
+            this.title = title;
+            this.subtitle = subtitle;
+            this.isPlayable = isPlayable;
+        }
+    }
+
+    /**
+     * The clips that should be queued and the clip to start with.
+     */
+    @Getter
+    static final class Selection {
+
+        private final List<VideoClip> playlist;
+        private final int index;
+
+        Selection(List<VideoClip> playlist, int index) {
+            this.playlist = playlist;
+            this.index = index;
+        }
+    }
+}
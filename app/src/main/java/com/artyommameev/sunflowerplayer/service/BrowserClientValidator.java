@@ -0,0 +1,173 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.pm.Signature;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import com.artyommameev.sunflowerplayer.R;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Decides which packages may browse the library of a {@link PlayerService}
+ * and control its session, as the media ids and the titles of the library
+ * describe the clips on the storage of the user.
+ * <p>
+ * The application itself, the system, the packages signed with the
+ * platform key and the packages holding
+ * {@link Manifest.permission#MEDIA_CONTENT_CONTROL} are trusted, and so are
+ * the known controllers listed in {@code allowed_browser_callers} with the
+ * SHA-256 digests of their signing certificates. A package is only trusted
+ * if it really belongs to the uid of the caller, and the decisions are
+ * cached for the lifetime of the validator.
+ *
+ * @author Artyom Mameev
+ */
+final class BrowserClientValidator {
+
+    private static final String TAG = "BrowserClientValidator";
+
+    private static final int ROOT_UID = 0;
+    private static final String PLATFORM_PACKAGE = "android";
+    private static final char ALLOWED_CALLER_SEPARATOR = ':';
+
+    private final PackageManager packageManager;
+    private final Set<String> allowedCallers;
+    private final Map<String, Boolean> decisions = new HashMap<>();
+
+    private String platformDigest;
+
+    /**
+     * Instantiates a new Browser Client Validator.
+     *
+     * @param context the context of the service.
+     * @throws NullPointerException if the context is null.
+     */
+    BrowserClientValidator(@NonNull Context context) {
+        packageManager = context.getPackageManager();
+        allowedCallers = new HashSet<>(Arrays.asList(context.getResources()
+                .getStringArray(R.array.allowed_browser_callers)));
+    }
+
+    /**
+     * Checks if a caller may browse the library. Should be called on the
+     * main thread.
+     *
+     * @param packageName the package name the caller claims.
+     * @param uid         the uid of the caller.
+     * @return true if the caller is trusted, otherwise false.
+     * @throws NullPointerException if the package name is null.
+     */
+    boolean isTrusted(@NonNull String packageName, int uid) {
+        if (uid == Process.myUid() || uid == Process.SYSTEM_UID ||
+                uid == ROOT_UID) {
+            return true;
+        }
+
+        val key = packageName + ALLOWED_CALLER_SEPARATOR + uid;
+        val decision = decisions.get(key);
+
+        if (decision != null) {
+            return decision;
+        }
+
+        val isTrusted = check(packageName, uid);
+
+        if (!isTrusted) {
+            Log.w(TAG, "Untrusted media browser " + packageName + " (" +
+                    uid + ")");
+        }
+
+        decisions.put(key, isTrusted);
+
+        return isTrusted;
+    }
+
+    private boolean check(String packageName, int uid) {
+        val packages = packageManager.getPackagesForUid(uid);
+
+        // a caller can claim any package name
+        if (packages == null ||
+                !Arrays.asList(packages).contains(packageName)) {
+            return false;
+        }
+
+        val digest = getCertificateDigest(packageName);
+
+        if (digest == null) {
+            return false;
+        }
+
+        if (platformDigest == null) {
+            platformDigest = getCertificateDigest(PLATFORM_PACKAGE);
+        }
+
+        return digest.equals(platformDigest) ||
+                allowedCallers.contains(packageName +
+                        ALLOWED_CALLER_SEPARATOR + digest) ||
+                packageManager.checkPermission(
+                        Manifest.permission.MEDIA_CONTENT_CONTROL,
+                        packageName) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    @SuppressLint("PackageManagerGetSignatures")
+    @SuppressWarnings("deprecation")
+    private String getCertificateDigest(String packageName) {
+        Signature[] signatures;
+
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                val signingInfo = packageManager.getPackageInfo(packageName,
+                        PackageManager.GET_SIGNING_CERTIFICATES).signingInfo;
+
+                signatures = signingInfo == null ? null :
+                        signingInfo.getApkContentsSigners();
+            } else {
+                signatures = packageManager.getPackageInfo(packageName,
+                        PackageManager.GET_SIGNATURES).signatures;
+            }
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+
+        // the packages signed by several keys are not trusted
+        if (signatures == null || signatures.length != 1) {
+            return null;
+        }
+
+        return sha256(signatures[0].toByteArray());
+    }
+
+    private static String sha256(byte[] bytes) {
+        MessageDigest messageDigest;
+
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        val digest = messageDigest.digest(bytes);
+        val hex = new StringBuilder(digest.length * 2);
+
+        for (val b : digest) {
+            hex.append(String.format("%02x", b));
+        }
+
+        return hex.toString();
+    }
+}
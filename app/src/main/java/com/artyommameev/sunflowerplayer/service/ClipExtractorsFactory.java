@@ -0,0 +1,284 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import android.util.Log;
+
+import com.artyommameev.sunflowerplayer.database.Database;
+import com.artyommameev.sunflowerplayer.domain.ClipMediaInfo;
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+import com.artyommameev.sunflowerplayer.storage.SeekIndex;
+import com.artyommameev.sunflowerplayer.util.PrepareTimeTrace;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Creates the extractors of a single {@link VideoClip}, ordered so that the
+ * container format of the clip is found with as few sniffs as possible.
+ * <p>
+ * If the format of the clip was remembered on a previous playback and the
+ * file has not been changed since then, only the extractor of that format is
+ * created, and the player uses it without sniffing. Otherwise the extractors
+ * of the formats usual for the extension of the clip are sniffed first, then
+ * all the other extractors, and the format that is found is remembered in
+ * the {@link ClipMediaInfo} of the clip.
+ * <p>
+ * If the clip is an MPEG-TS or FLV clip and its {@link SeekIndex} has been
+ * saved, its extractor seeks by the index, see {@link IndexedSeekExtractor}.
+ * <p>
+ * The extractors are created on a loading thread of the player, so the
+ * database is accessed there.
+ *
+ * @author Artyom Mameev
+ */
+final class ClipExtractorsFactory implements ExtractorsFactory {
+
+    private static final String TAG = "ClipExtractorsFactory";
+
+    private final VideoClip videoClip;
+    private final Database database;
+
+    /**
+     * Instantiates a new Clip Extractors Factory.
+     *
+     * @param videoClip the clip which extractors should be created.
+     * @param database  the database of the {@link ClipMediaInfo}s.
+     * @throws NullPointerException if any parameter is null.
+     */
+    ClipExtractorsFactory(@NonNull VideoClip videoClip,
+                          @NonNull Database database) {
+        this.videoClip = videoClip;
+        this.database = database;
+    }
+
+    @Override
+    public Extractor[] createExtractors() {
+        val clipMediaInfo = findClipMediaInfo();
+
+        val rememberedFormat = clipMediaInfo == null ? null :
+                ContainerFormat.fromName(clipMediaInfo.getContainer());
+        val seekIndex = clipMediaInfo == null ? null :
+                readSeekIndex(clipMediaInfo.getSeekIndex());
+
+        if (rememberedFormat != null) {
+            PrepareTimeTrace.containerResolved(rememberedFormat.name(), false);
+
+            // a single extractor is used without sniffing
+            return new Extractor[]{new ContainerExtractor(
+                    createExtractor(rememberedFormat, seekIndex),
+                    rememberedFormat, true)};
+        }
+
+        val extractors = new ArrayList<Extractor>();
+        val extensionFormats = new HashSet<ContainerFormat>();
+
+        for (val containerFormat : ContainerFormat.forFileName(
+                videoClip.getFileName())) {
+            extractors.add(new ContainerExtractor(createExtractor(
+                    containerFormat, seekIndex), containerFormat, false));
+            extensionFormats.add(containerFormat);
+        }
+
+        // the clip may have a container unusual for its extension
+        for (val extractor : new DefaultExtractorsFactory()
+                .createExtractors()) {
+            val containerFormat = ContainerFormat.forExtractor(extractor);
+
+            if (containerFormat == null ||
+                    !extensionFormats.contains(containerFormat)) {
+                extractors.add(new ContainerExtractor(extractor,
+                        containerFormat, false));
+            }
+        }
+
+        return extractors.toArray(new Extractor[0]);
+    }
+
+    /**
+     * Finds the container format of the clip ahead of its playback, by the
+     * remembered format or by sniffing the known formats, and remembers the
+     * sniffed format, so the playback creates a single extractor.
+     *
+     * @param input the input of the clip, at its start.
+     * @return the container format, or null if the clip is not in any of
+     * the known formats.
+     * @throws IOException          if the clip cannot be read.
+     * @throws InterruptedException if the thread is interrupted.
+     * @throws NullPointerException if the input is null.
+     */
+    ContainerFormat resolveContainerFormat(@NonNull ExtractorInput input)
+            throws IOException, InterruptedException {
+        val clipMediaInfo = findClipMediaInfo();
+
+        val rememberedFormat = clipMediaInfo == null ? null :
+                ContainerFormat.fromName(clipMediaInfo.getContainer());
+
+        if (rememberedFormat != null) {
+            return rememberedFormat;
+        }
+
+        val containerFormats = new LinkedHashSet<ContainerFormat>(
+                ContainerFormat.forFileName(videoClip.getFileName()));
+
+        containerFormats.addAll(Arrays.asList(ContainerFormat.values()));
+
+        for (val containerFormat : containerFormats) {
+            val extractor = containerFormat.createExtractor();
+
+            try {
+                if (extractor.sniff(input)) {
+                    rememberFormat(containerFormat);
+
+                    return containerFormat;
+                }
+            } catch (EOFException e) {
+                // the clip is too short for the format
+            } finally {
+                extractor.release();
+
+                input.resetPeekPosition();
+            }
+        }
+
+        return null;
+    }
+
+    private ClipMediaInfo findClipMediaInfo() {
+        try {
+            val clipMediaInfo = database.findClipMediaInfoByFileName(
+                    videoClip.getFileName());
+
+            if (clipMediaInfo == null || !clipMediaInfo.isValidFor(videoClip)) {
+                return null;
+            }
+
+            return clipMediaInfo;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Cannot read the container of " + videoClip, e);
+
+            return null;
+        }
+    }
+
+    private SeekIndex readSeekIndex(byte[] bytes) {
+        // an empty index means the clip has nothing to index
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        try {
+            return SeekIndex.fromBytes(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read the seek index of " + videoClip, e);
+
+            return null;
+        }
+    }
+
+    private static Extractor createExtractor(ContainerFormat containerFormat,
+                                             SeekIndex seekIndex) {
+        if (seekIndex != null && (containerFormat == ContainerFormat.TS ||
+                containerFormat == ContainerFormat.FLV)) {
+            return new IndexedSeekExtractor(containerFormat, seekIndex);
+        }
+
+        return containerFormat.createExtractor();
+    }
+
+    private void rememberFormat(ContainerFormat containerFormat) {
+        try {
+            database.updateClipMediaInfo(videoClip, clipMediaInfo ->
+                    clipMediaInfo.setContainer(containerFormat.name()));
+        } catch (RuntimeException e) {
+            // the container is sniffed again on the next playback
+            Log.w(TAG, "Cannot remember the container of " + videoClip, e);
+        }
+    }
+
+    private void forgetFormat() {
+        try {
+            database.deleteClipMediaInfoByFileName(videoClip.getFileName());
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Cannot forget the container of " + videoClip, e);
+        }
+    }
+
+    /**
+     * Delegates to the extractor of a container format, remembering the
+     * format when the sniffing chooses the extractor, and forgetting the
+     * remembered format if the extractor cannot read the clip.
+     */
+    private final class ContainerExtractor implements Extractor {
+
+        private final Extractor extractor;
+        private final ContainerFormat containerFormat;
+        private final boolean isRemembered;
+
+        ContainerExtractor(Extractor extractor,
+                           ContainerFormat containerFormat,
+                           boolean isRemembered) {
+            this.extractor = extractor;
+            this.containerFormat = containerFormat;
+            this.isRemembered = isRemembered;
+        }
+
+        @Override
+        public boolean sniff(ExtractorInput input)
+                throws IOException, InterruptedException {
+            val sniffed = extractor.sniff(input);
+
+            if (sniffed) {
+                PrepareTimeTrace.containerResolved(containerFormat == null ?
+                        null : containerFormat.name(), true);
+
+                if (containerFormat != null) {
+                    rememberFormat(containerFormat);
+                }
+            }
+
+            return sniffed;
+        }
+
+        @Override
+        public void init(ExtractorOutput output) {
+            extractor.init(output);
+        }
+
+        @Override
+        public int read(ExtractorInput input, PositionHolder seekPosition)
+                throws IOException, InterruptedException {
+            try {
+                return extractor.read(input, seekPosition);
+            } catch (ParserException e) {
+                if (isRemembered) {
+                    forgetFormat();
+                }
+
+                throw e;
+            }
+        }
+
+        @Override
+        public void seek(long position, long timeUs) {
+            extractor.seek(position, timeUs);
+        }
+
+        @Override
+        public void release() {
+            extractor.release();
+        }
+    }
+}
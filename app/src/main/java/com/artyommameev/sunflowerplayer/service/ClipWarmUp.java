@@ -0,0 +1,208 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import android.net.Uri;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.artyommameev.sunflowerplayer.database.Database;
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lombok.Cleanup;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Prepares a {@link VideoClip} the user is likely to play next, before it is
+ * played: reads the beginning of its file, where the containers keep their
+ * headers, into memory, and finds and remembers its container format.
+ * <p>
+ * When the clip is played soon after, the player adopts the read bytes
+ * instead of reading them from the file again, and creates the single
+ * extractor of the remembered format instead of sniffing. A clip that is
+ * not played in {@link ClipWarmUp#TTL_MS} is dropped, and only one clip is
+ * kept at a time.
+ *
+ * @author Artyom Mameev
+ */
+final class ClipWarmUp {
+
+    static final long TTL_MS = 10_000;
+    static final int HEAD_BYTES = 256 * 1024;
+
+    private static final String TAG = "ClipWarmUp";
+
+    private final DataSource.Factory dataSourceFactory;
+    private final Database database;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                runnable.run();
+            }, TAG));
+
+    private final Object lock = new Object();
+    private VideoClip pendingClip;
+    private Future<?> pendingTask;
+    private WarmClip warmClip;
+
+    /**
+     * Instantiates a new Clip Warm Up.
+     *
+     * @param dataSourceFactory the factory of the sources of the files.
+     * @param database          the database the container formats are
+     *                          remembered in.
+     * @throws NullPointerException if any parameter is null.
+     */
+    ClipWarmUp(@NonNull DataSource.Factory dataSourceFactory,
+               @NonNull Database database) {
+        this.dataSourceFactory = dataSourceFactory;
+        this.database = database;
+    }
+
+    /**
+     * Starts preparing a clip in the background, replacing the previously
+     * prepared one. Does nothing if the clip is being prepared or is
+     * already prepared.
+     *
+     * @param videoClip the clip that is likely to be played.
+     * @throws NullPointerException if the clip is null.
+     */
+    void warmUp(@NonNull VideoClip videoClip) {
+        synchronized (lock) {
+            if (executor.isShutdown() || videoClip.equals(pendingClip) ||
+                    (warmClip != null && warmClip.videoClip.equals(videoClip) &&
+                            !warmClip.isExpired())) {
+                return;
+            }
+
+            if (pendingTask != null) {
+                pendingTask.cancel(true);
+            }
+
+            warmClip = null;
+            pendingClip = videoClip;
+            pendingTask = executor.submit(() -> prepare(videoClip));
+        }
+    }
+
+    /**
+     * Takes the prepared clip for its playback.
+     *
+     * @param videoClip the clip that is played.
+     * @return the factory of the sources serving the read beginning of the
+     * clip, or null if the clip is not prepared, or it has expired or its
+     * file has changed.
+     * @throws NullPointerException if the clip is null.
+     */
+    DataSource.Factory adopt(@NonNull VideoClip videoClip) {
+        synchronized (lock) {
+            val clip = warmClip;
+
+            warmClip = null;
+
+            if (clip == null || !clip.videoClip.equals(videoClip) ||
+                    clip.isExpired() ||
+                    clip.fileLength != videoClip.length() ||
+                    clip.lastModified != videoClip.lastModified()) {
+                return null;
+            }
+
+            return () -> new PrefetchedDataSource(
+                    dataSourceFactory.createDataSource(), clip.head,
+                    clip.fileLength);
+        }
+    }
+
+    /**
+     * Stops the preparing and drops the prepared clip.
+     */
+    void release() {
+        synchronized (lock) {
+            executor.shutdownNow();
+
+            warmClip = null;
+            pendingClip = null;
+        }
+    }
+
+    private void prepare(VideoClip videoClip) {
+        try {
+            val fileLength = videoClip.length();
+            val lastModified = videoClip.lastModified();
+            val head = new byte[(int) Math.min(HEAD_BYTES, fileLength)];
+
+            @Cleanup val input = new DataInputStream(
+                    new FileInputStream(videoClip));
+
+            input.readFully(head);
+
+            // the sniffing reads the bytes in memory
+            val dataSource = new PrefetchedDataSource(
+                    dataSourceFactory.createDataSource(), head, fileLength);
+
+            try {
+                dataSource.open(new DataSpec(Uri.fromFile(videoClip)));
+
+                new ClipExtractorsFactory(videoClip, database)
+                        .resolveContainerFormat(new DefaultExtractorInput(
+                                dataSource, 0, fileLength));
+            } finally {
+                dataSource.close();
+            }
+
+            synchronized (lock) {
+                if (!videoClip.equals(pendingClip)) {
+                    return; // replaced by another clip meanwhile
+                }
+
+                warmClip = new WarmClip(videoClip, head, fileLength,
+                        lastModified);
+                pendingClip = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            // the clip is just played cold
+            Log.w(TAG, "Cannot warm up " + videoClip, e);
+
+            synchronized (lock) {
+                if (videoClip.equals(pendingClip)) {
+                    pendingClip = null;
+                }
+            }
+        }
+    }
+
+    private static final class WarmClip {
+
+        private final VideoClip videoClip;
+        private final byte[] head;
+        private final long fileLength;
+        private final long lastModified;
+        private final long preparedMs = SystemClock.elapsedRealtime();
+
+        WarmClip(VideoClip videoClip, byte[] head, long fileLength,
+                 long lastModified) {
+            this.videoClip = videoClip;
+            this.head = head;
+            this.fileLength = fileLength;
+            this.lastModified = lastModified;
+        }
+
+        boolean isExpired() {
+            return SystemClock.elapsedRealtime() - preparedMs > TTL_MS;
+        }
+    }
+}
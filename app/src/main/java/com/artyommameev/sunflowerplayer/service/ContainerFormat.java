@@ -0,0 +1,142 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.flv.FlvExtractor;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
+import com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * The container formats of the video clips, with the file extensions that
+ * usually have them and the extractors that read them.
+ * <p>
+ * The formats of an extension are declared in the order they should be
+ * tried, so the plain MP4 goes before the fragmented one.
+ *
+ * @author Artyom Mameev
+ */
+public enum ContainerFormat {
+
+    MATROSKA(MatroskaExtractor.class, "mkv", "webm") {
+        @Override
+        Extractor createExtractor() {
+            return new MatroskaExtractor();
+        }
+    },
+
+    MP4(Mp4Extractor.class, "mp4", "m4v") {
+        @Override
+        Extractor createExtractor() {
+            return new Mp4Extractor();
+        }
+    },
+
+    FRAGMENTED_MP4(FragmentedMp4Extractor.class, "mp4", "m4v") {
+        @Override
+        Extractor createExtractor() {
+            return new FragmentedMp4Extractor();
+        }
+    },
+
+    TS(TsExtractor.class, "ts") {
+        @Override
+        Extractor createExtractor() {
+            return new TsExtractor();
+        }
+    },
+
+    FLV(FlvExtractor.class, "flv") {
+        @Override
+        Extractor createExtractor() {
+            return new FlvExtractor();
+        }
+    };
+
+    private final Class<? extends Extractor> extractorClass;
+    private final String[] extensions;
+
+    ContainerFormat(Class<? extends Extractor> extractorClass,
+                    String... extensions) {
+        this.extractorClass = extractorClass;
+        this.extensions = extensions;
+    }
+
+    /**
+     * Creates a new extractor of the format.
+     *
+     * @return the new extractor.
+     */
+    abstract Extractor createExtractor();
+
+    /**
+     * Returns the format with the given name.
+     *
+     * @param name the name of the format, as returned by
+     *             {@link ContainerFormat#name()}, or null.
+     * @return the format with the given name, or null if there is no such
+     * format.
+     */
+    public static ContainerFormat fromName(String name) {
+        for (ContainerFormat containerFormat : values()) {
+            if (containerFormat.name().equals(name)) {
+                return containerFormat;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the format read by the given extractor.
+     *
+     * @param extractor the extractor.
+     * @return the format of the extractor, or null if the extractor does
+     * not read any of the formats.
+     * @throws NullPointerException if the extractor is null.
+     */
+    public static ContainerFormat forExtractor(@NonNull Extractor extractor) {
+        for (ContainerFormat containerFormat : values()) {
+            if (containerFormat.extractorClass == extractor.getClass()) {
+                return containerFormat;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the formats that the files with the given name usually have,
+     * judging by the extension.
+     *
+     * @param fileName the name of the file.
+     * @return the formats of the extension of the file in the order they
+     * should be tried, empty if the extension is unknown.
+     * @throws NullPointerException if the file name is null.
+     */
+    public static List<ContainerFormat> forFileName(@NonNull String fileName) {
+        val extension = fileName.substring(fileName.lastIndexOf('.') + 1)
+                .toLowerCase(Locale.ROOT);
+
+        val containerFormats = new ArrayList<ContainerFormat>();
+
+        for (ContainerFormat containerFormat : values()) {
+            for (String formatExtension : containerFormat.extensions) {
+                if (formatExtension.equals(extension)) {
+                    containerFormats.add(containerFormat);
+
+                    break;
+                }
+            }
+        }
+
+        return containerFormats;
+    }
+}
@@ -0,0 +1,425 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.artyommameev.sunflowerplayer.storage.SeekIndex;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+
+import java.io.IOException;
+
+import lombok.val;
+
+/**
+ * Seeks in an MPEG-TS or FLV clip by its {@link SeekIndex} instead of the
+ * seeking of the extractor of the container, which has to search the file
+ * for the position of a time (MPEG-TS) or cannot seek at all (FLV).
+ * <p>
+ * The seek map of the extractor is replaced by the index. On a seek, the
+ * MPEG-TS extractor is told to read from the indexed position as from the
+ * start of a clip, so it does not search, and the FLV extractor is replaced
+ * by a new one that reads the header of the index before the indexed
+ * position. In both cases the extractor times the first sample after the
+ * seek from zero, so the time of the key frame is added to the samples.
+ *
+ * @author Artyom Mameev
+ */
+final class IndexedSeekExtractor implements Extractor {
+
+    private final ContainerFormat containerFormat;
+    private final SeekIndex seekIndex;
+
+    private final SparseArray<OffsetTrackOutput> trackOutputs =
+            new SparseArray<>();
+
+    private Extractor extractor;
+    private ExtractorOutput extractorOutput;
+    private boolean isSeekMapOutput;
+
+    // the MPEG-TS extractor keeps the timing of its first samples
+    private boolean isSampleOutput;
+    private long sampleTimeOffsetUs;
+
+    private byte[] header;
+    private int headerPosition;
+    private HeaderExtractorInput headerInput;
+
+    /**
+     * Instantiates a new Indexed Seek Extractor.
+     *
+     * @param containerFormat the container format of the clip, either
+     *                        {@link ContainerFormat#TS} or
+     *                        {@link ContainerFormat#FLV}.
+     * @param seekIndex       the index of the clip.
+     * @throws IllegalArgumentException if the container format is neither
+     *                                  MPEG-TS nor FLV.
+     * @throws NullPointerException     if any parameter is null.
+     */
+    IndexedSeekExtractor(@lombok.NonNull ContainerFormat containerFormat,
+                         @lombok.NonNull SeekIndex seekIndex) {
+        if (containerFormat != ContainerFormat.TS &&
+                containerFormat != ContainerFormat.FLV) {
+            throw new IllegalArgumentException("Only MPEG-TS and FLV " +
+                    "clips are indexed");
+        }
+
+        this.containerFormat = containerFormat;
+        this.seekIndex = seekIndex;
+
+        extractor = containerFormat.createExtractor();
+    }
+
+    @Override
+    public boolean sniff(ExtractorInput input)
+            throws IOException, InterruptedException {
+        return extractor.sniff(input);
+    }
+
+    @Override
+    public void init(ExtractorOutput output) {
+        extractorOutput = output;
+
+        extractor.init(indexedOutput);
+    }
+
+    @Override
+    public int read(ExtractorInput input, PositionHolder seekPosition)
+            throws IOException, InterruptedException {
+        if (header == null) {
+            return extractor.read(input, seekPosition);
+        }
+
+        if (headerPosition >= header.length) {
+            header = null;
+            headerInput = null;
+
+            return extractor.read(input, seekPosition);
+        }
+
+        if (headerInput == null || headerInput.input != input) {
+            headerInput = new HeaderExtractorInput(input);
+        }
+
+        return extractor.read(headerInput, seekPosition);
+    }
+
+    @Override
+    public void seek(long position, long timeUs) {
+        header = null;
+        headerInput = null;
+
+        if (containerFormat == ContainerFormat.TS) {
+            // a zero time keeps the extractor from searching for the time
+            extractor.seek(position, 0);
+
+            // the samples are timed from zero until the first one is read
+            if (!isSampleOutput) {
+                sampleTimeOffsetUs = position == 0 ? 0 : timeUs;
+            }
+
+            return;
+        }
+
+        // the FLV extractor can only start reading from the header
+        extractor.release();
+        extractor = containerFormat.createExtractor();
+        extractor.init(indexedOutput);
+
+        if (position == 0) {
+            sampleTimeOffsetUs = 0;
+        } else {
+            header = seekIndex.getHeader();
+            headerPosition = 0;
+            sampleTimeOffsetUs = timeUs;
+        }
+    }
+
+    @Override
+    public void release() {
+        extractor.release();
+    }
+
+    private final ExtractorOutput indexedOutput = new ExtractorOutput() {
+        @Override
+        public TrackOutput track(int id, int type) {
+            OffsetTrackOutput trackOutput = trackOutputs.get(id);
+
+            if (trackOutput == null) {
+                trackOutput = new OffsetTrackOutput(
+                        extractorOutput.track(id, type));
+
+                trackOutputs.put(id, trackOutput);
+            }
+
+            return trackOutput;
+        }
+
+        @Override
+        public void endTracks() {
+            extractorOutput.endTracks();
+        }
+
+        @Override
+        public void seekMap(SeekMap seekMap) {
+            // a replaced FLV extractor outputs its seek map again
+            if (isSeekMapOutput) {
+                return;
+            }
+
+            isSeekMapOutput = true;
+
+            val durationUs = seekMap.getDurationUs() != C.TIME_UNSET ?
+                    seekMap.getDurationUs() : seekIndex.getDurationUs() >= 0 ?
+                    seekIndex.getDurationUs() : C.TIME_UNSET;
+
+            extractorOutput.seekMap(new IndexSeekMap(durationUs));
+        }
+    };
+
+    private final class IndexSeekMap implements SeekMap {
+
+        private final long durationUs;
+
+        IndexSeekMap(long durationUs) {
+            this.durationUs = durationUs;
+        }
+
+        @Override
+        public boolean isSeekable() {
+            return true;
+        }
+
+        @Override
+        public long getDurationUs() {
+            return durationUs;
+        }
+
+        @NonNull
+        @Override
+        public SeekPoints getSeekPoints(long timeUs) {
+            val index = seekIndex.floorIndex(timeUs);
+
+            if (index < 0) {
+                return new SeekPoints(SeekPoint.START);
+            }
+
+            val floor = new SeekPoint(seekIndex.getTimeUs(index),
+                    seekIndex.getPosition(index));
+
+            if (floor.timeUs == timeUs || index + 1 >= seekIndex.size()) {
+                return new SeekPoints(floor);
+            }
+
+            return new SeekPoints(floor, new SeekPoint(
+                    seekIndex.getTimeUs(index + 1),
+                    seekIndex.getPosition(index + 1)));
+        }
+    }
+
+    /**
+     * Adds the time of the key frame the reading started from to the times
+     * of the samples.
+     */
+    private final class OffsetTrackOutput implements TrackOutput {
+
+        private final TrackOutput trackOutput;
+
+        OffsetTrackOutput(TrackOutput trackOutput) {
+            this.trackOutput = trackOutput;
+        }
+
+        @Override
+        public void format(@NonNull Format format) {
+            trackOutput.format(format);
+        }
+
+        @Override
+        public int sampleData(@NonNull ExtractorInput input, int length,
+                              boolean allowEndOfInput)
+                throws IOException, InterruptedException {
+            return trackOutput.sampleData(input, length, allowEndOfInput);
+        }
+
+        @Override
+        public void sampleData(@NonNull ParsableByteArray data, int length) {
+            trackOutput.sampleData(data, length);
+        }
+
+        @Override
+        public void sampleMetadata(long timeUs, int flags, int size,
+                                   int offset,
+                                   @Nullable CryptoData cryptoData) {
+            isSampleOutput = true;
+
+            trackOutput.sampleMetadata(timeUs + sampleTimeOffsetUs, flags,
+                    size, offset, cryptoData);
+        }
+    }
+
+    /**
+     * Reads the rest of the header of the index before the input. The peeks
+     * are not supported before the header is read, the extractors do not
+     * peek while reading.
+     */
+    private final class HeaderExtractorInput implements ExtractorInput {
+
+        private final ExtractorInput input;
+
+        HeaderExtractorInput(ExtractorInput input) {
+            this.input = input;
+        }
+
+        private int remaining() {
+            return header == null ? 0 : header.length - headerPosition;
+        }
+
+        @Override
+        public int read(@NonNull byte[] target, int offset, int length)
+                throws IOException, InterruptedException {
+            if (remaining() == 0) {
+                return input.read(target, offset, length);
+            }
+
+            val headerLength = Math.min(length, remaining());
+
+            System.arraycopy(header, headerPosition, target, offset,
+                    headerLength);
+
+            headerPosition += headerLength;
+
+            return headerLength;
+        }
+
+        @Override
+        public boolean readFully(@NonNull byte[] target, int offset,
+                                 int length, boolean allowEndOfInput)
+                throws IOException, InterruptedException {
+            val headerLength = Math.min(length, remaining());
+
+            if (headerLength > 0) {
+                System.arraycopy(header, headerPosition, target, offset,
+                        headerLength);
+
+                headerPosition += headerLength;
+            }
+
+            return headerLength == length || input.readFully(target,
+                    offset + headerLength, length - headerLength,
+                    allowEndOfInput && headerLength == 0);
+        }
+
+        @Override
+        public void readFully(@NonNull byte[] target, int offset, int length)
+                throws IOException, InterruptedException {
+            readFully(target, offset, length, false);
+        }
+
+        @Override
+        public int skip(int length) throws IOException, InterruptedException {
+            if (remaining() == 0) {
+                return input.skip(length);
+            }
+
+            val headerLength = Math.min(length, remaining());
+
+            headerPosition += headerLength;
+
+            return headerLength;
+        }
+
+        @Override
+        public boolean skipFully(int length, boolean allowEndOfInput)
+                throws IOException, InterruptedException {
+            val headerLength = Math.min(length, remaining());
+
+            headerPosition += headerLength;
+
+            return headerLength == length || input.skipFully(
+                    length - headerLength,
+                    allowEndOfInput && headerLength == 0);
+        }
+
+        @Override
+        public void skipFully(int length)
+                throws IOException, InterruptedException {
+            skipFully(length, false);
+        }
+
+        @Override
+        public boolean peekFully(@NonNull byte[] target, int offset,
+                                 int length, boolean allowEndOfInput)
+                throws IOException, InterruptedException {
+            checkHeaderRead();
+
+            return input.peekFully(target, offset, length, allowEndOfInput);
+        }
+
+        @Override
+        public void peekFully(@NonNull byte[] target, int offset, int length)
+                throws IOException, InterruptedException {
+            checkHeaderRead();
+
+            input.peekFully(target, offset, length);
+        }
+
+        @Override
+        public boolean advancePeekPosition(int length, boolean allowEndOfInput)
+                throws IOException, InterruptedException {
+            checkHeaderRead();
+
+            return input.advancePeekPosition(length, allowEndOfInput);
+        }
+
+        @Override
+        public void advancePeekPosition(int length)
+                throws IOException, InterruptedException {
+            checkHeaderRead();
+
+            input.advancePeekPosition(length);
+        }
+
+        @Override
+        public void resetPeekPosition() {
+            input.resetPeekPosition();
+        }
+
+        @Override
+        public long getPeekPosition() {
+            return input.getPeekPosition() - remaining();
+        }
+
+        @Override
+        public long getPosition() {
+            return input.getPosition() - remaining();
+        }
+
+        @Override
+        public long getLength() {
+            return input.getLength();
+        }
+
+        @Override
+        public <E extends Throwable> void setRetryPosition(long position,
+                                                           E e) throws E {
+            input.setRetryPosition(position, e);
+        }
+
+        private void checkHeaderRead() {
+            if (remaining() > 0) {
+                throw new IllegalStateException("Cannot peek before the " +
+                        "header is read");
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.v4.media.MediaBrowserCompat;
+import android.support.v4.media.MediaDescriptionCompat;
+import android.util.Log;
+
+import androidx.media.MediaBrowserServiceCompat;
+
+import com.artyommameev.sunflowerplayer.R;
+import com.artyommameev.sunflowerplayer.database.Database;
+import com.artyommameev.sunflowerplayer.database.TagChangePublisher;
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+import com.artyommameev.sunflowerplayer.storage.PlaybackSessionStore;
+import com.artyommameev.sunflowerplayer.storage.VideoClipScanner;
+
+import java.io.File;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import lombok.Cleanup;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Serves the library of {@link VideoClip}s to the media browsers connected
+ * to a {@link PlayerService} as a {@link BrowseTree}.
+ * <p>
+ * The tree is built on a background thread when it is first browsed, from
+ * the clips found on the external storage and their tags, and is rebuilt
+ * after the tags change. The recently played clips are read again after
+ * a clip is played. The browsers get the children in pages, when they ask
+ * for them, so a large node is sent without creating the items of all its
+ * clips.
+ *
+ * @author Artyom Mameev
+ */
+final class LibraryBrowser {
+
+    private static final String TAG = "LibraryBrowser";
+
+    private final Context context;
+    private final Database database;
+    private final PlaybackSessionStore playbackSessionStore;
+    private final TagChangePublisher tagChangePublisher;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                runnable.run();
+            }, TAG));
+
+    // the media ids of the nodes are valid while the service lives
+    private final String salt = Long.toHexString(
+            new SecureRandom().nextLong());
+
+    private final TagChangePublisher.Listener tagChangeListener =
+            tagChange -> invalidate();
+
+    // accessed on the background thread only
+    private BrowseTree browseTree;
+    private volatile boolean isLibraryChanged = true;
+    private volatile boolean isRecentsChanged = true;
+
+    /**
+     * Instantiates a new Library Browser.
+     *
+     * @param context              the context of the service, for the
+     *                             titles of the categories.
+     * @param database             the database the tags are read from.
+     * @param playbackSessionStore the store the recently played clips are
+     *                             read from.
+     * @param tagChangePublisher   the publisher of the changes of the tags,
+     *                             which rebuild the tree.
+     * @throws NullPointerException if any parameter is null.
+     */
+    LibraryBrowser(@NonNull Context context, @NonNull Database database,
+                   @NonNull PlaybackSessionStore playbackSessionStore,
+                   @NonNull TagChangePublisher tagChangePublisher) {
+        this.context = context;
+        this.database = database;
+        this.playbackSessionStore = playbackSessionStore;
+        this.tagChangePublisher = tagChangePublisher;
+
+        tagChangePublisher.addListener(tagChangeListener);
+    }
+
+    /**
+     * Sends the children of a node to a media browser, in the page the
+     * browser asked for in the options, or all of them otherwise. The
+     * result is sent later from the main thread.
+     *
+     * @param parentId the media id of the node.
+     * @param options  the options of the browser, with the page and the page
+     *                 size in {@link MediaBrowserCompat#EXTRA_PAGE} and
+     *                 {@link MediaBrowserCompat#EXTRA_PAGE_SIZE}.
+     * @param result   the result the children should be sent to, which is
+     *                 sent null if there is no such node.
+     * @throws NullPointerException if the parent id or the result is null.
+     */
+    void loadChildren(@NonNull String parentId, Bundle options,
+                      @NonNull MediaBrowserServiceCompat.Result<
+                              List<MediaBrowserCompat.MediaItem>> result) {
+        if (parentId.equals(BrowseTree.ROOT_ID)) {
+            // the categories are known without the library
+            result.sendResult(getCategories());
+
+            return;
+        }
+
+        result.detach();
+
+        val page = options == null ? 0 :
+                options.getInt(MediaBrowserCompat.EXTRA_PAGE, 0);
+        val pageSize = options == null ? Integer.MAX_VALUE :
+                options.getInt(MediaBrowserCompat.EXTRA_PAGE_SIZE,
+                        Integer.MAX_VALUE);
+
+        execute(() -> {
+            val items = page < 0 || pageSize <= 0 ? null :
+                    getBrowseTree().getChildren(parentId, page, pageSize);
+
+            if (items == null) {
+                return null;
+            }
+
+            val mediaItems = new ArrayList<MediaBrowserCompat.MediaItem>(
+                    items.size());
+
+            for (val item : items) {
+                mediaItems.add(toMediaItem(item));
+            }
+
+            return mediaItems;
+        }, result::sendResult);
+    }
+
+    /**
+     * Finds the clips that should be queued when a node is played.
+     *
+     * @param mediaId  the media id of the node.
+     * @param callback called on the main thread with the selection, or with
+     *                 null if the node cannot be played.
+     * @throws NullPointerException if any parameter is null.
+     */
+    void select(@NonNull String mediaId,
+                @NonNull Consumer<BrowseTree.Selection> callback) {
+        execute(() -> getBrowseTree().select(mediaId), callback);
+    }
+
+    /**
+     * Makes the recently played clips be read again when they are browsed
+     * next time.
+     */
+    void recentsChanged() {
+        isRecentsChanged = true;
+    }
+
+    /**
+     * Stops building the tree and stops listening to the changes of the
+     * tags.
+     */
+    void release() {
+        tagChangePublisher.removeListener(tagChangeListener);
+
+        executor.shutdownNow();
+    }
+
+    private void invalidate() {
+        isLibraryChanged = true;
+    }
+
+    private <T> void execute(Supplier<T> task, Consumer<T> callback) {
+        if (executor.isShutdown()) {
+            callback.accept(null);
+
+            return;
+        }
+
+        executor.execute(() -> {
+            T value = null;
+
+            try {
+                value = task.get();
+            } catch (RuntimeException e) {
+                // the browser gets an error instead of waiting forever
+                Log.w(TAG, "Cannot browse the library", e);
+            }
+
+            val callbackValue = value;
+
+            mainHandler.post(() -> callback.accept(callbackValue));
+        });
+    }
+
+    private BrowseTree getBrowseTree() {
+        if (isLibraryChanged) {
+            isLibraryChanged = false;
+            isRecentsChanged = true;
+
+            browseTree = new BrowseTree(scanLibrary(), salt);
+        }
+
+        if (isRecentsChanged) {
+            isRecentsChanged = false;
+
+            browseTree = browseTree.withRecents(findRecentFileNames());
+        }
+
+        return browseTree;
+    }
+
+    private List<VideoClip> scanLibrary() {
+        List<File> files;
+
+        try {
+            files = new VideoClipScanner(
+                    Environment.getExternalStorageDirectory()).scanFiles(
+                    () -> Thread.currentThread().isInterrupted());
+        } catch (IllegalStateException e) {
+            // the storage is not mounted or readable
+            files = Collections.emptyList();
+        }
+
+        val videoClips = new HashMap<String, List<VideoClip>>();
+
+        for (val file : files) {
+            val videoClip = new VideoClip(file);
+
+            videoClips.computeIfAbsent(videoClip.getFileName(),
+                    fileName -> new ArrayList<>(1)).add(videoClip);
+        }
+
+        // a single pass over the tags instead of a query per clip
+        @Cleanup val tags = database.findAllOrderedByFileNameLazily();
+
+        for (val tag : tags) {
+            val taggedClips = videoClips.get(tag.getFileName());
+
+            if (taggedClips == null) {
+                continue;
+            }
+
+            for (val videoClip : taggedClips) {
+                videoClip.setArtist(tag.getArtist());
+                videoClip.setTitle(tag.getTitle());
+                videoClip.setAlbum(tag.getAlbum());
+            }
+        }
+
+        val library = new ArrayList<VideoClip>(files.size());
+
+        for (val taggedClips : videoClips.values()) {
+            library.addAll(taggedClips);
+        }
+
+        return library;
+    }
+
+    private List<String> findRecentFileNames() {
+        val playbackSessions = playbackSessionStore.findAll();
+        val fileNames = new ArrayList<String>(playbackSessions.size());
+
+        // the sessions are stored from the oldest one
+        for (int i = playbackSessions.size() - 1; i >= 0; i--) {
+            fileNames.add(playbackSessions.get(i).getFileName());
+        }
+
+        return fileNames;
+    }
+
+    private List<MediaBrowserCompat.MediaItem> getCategories() {
+        return Arrays.asList(
+                toMediaItem(new BrowseTree.Item(BrowseTree.FOLDERS_ID,
+                        context.getString(R.string.browse_folders), null,
+                        false)),
+                toMediaItem(new BrowseTree.Item(BrowseTree.ARTISTS_ID,
+                        context.getString(R.string.browse_artists), null,
+                        false)),
+                toMediaItem(new BrowseTree.Item(BrowseTree.ALBUMS_ID,
+                        context.getString(R.string.browse_albums), null,
+                        false)),
+                toMediaItem(new BrowseTree.Item(BrowseTree.RECENTS_ID,
+                        context.getString(R.string.browse_recents), null,
+                        false)));
+    }
+
+    private MediaBrowserCompat.MediaItem toMediaItem(BrowseTree.Item item) {
+        return new MediaBrowserCompat.MediaItem(
+                new MediaDescriptionCompat.Builder()
+                        .setMediaId(item.getMediaId())
+                        .setTitle(item.getTitle())
+                        .setSubtitle(item.getSubtitle())
+                        .build(),
+                item.isPlayable() ? MediaBrowserCompat.MediaItem.FLAG_PLAYABLE :
+                        MediaBrowserCompat.MediaItem.FLAG_BROWSABLE);
+    }
+}
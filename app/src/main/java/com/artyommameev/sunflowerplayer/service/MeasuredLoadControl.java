@@ -0,0 +1,92 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import com.artyommameev.sunflowerplayer.util.BufferProfileTrace;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+
+import lombok.NonNull;
+
+/**
+ * A {@link LoadControl} of a {@link PlaybackProfile} that reports the
+ * memory held by its buffer to {@link BufferProfileTrace}.
+ * <p>
+ * The memory is sampled every time the player asks whether to continue
+ * loading, which it does after every loaded chunk.
+ *
+ * @author Artyom Mameev
+ */
+final class MeasuredLoadControl implements LoadControl {
+
+    private final PlaybackProfile playbackProfile;
+    private final LoadControl loadControl;
+
+    /**
+     * Instantiates a new Measured Load Control.
+     *
+     * @param playbackProfile the profile that creates the load control.
+     * @throws NullPointerException if the playback profile is null.
+     */
+    MeasuredLoadControl(@NonNull PlaybackProfile playbackProfile) {
+        this.playbackProfile = playbackProfile;
+
+        loadControl = playbackProfile.createLoadControl();
+    }
+
+    @Override
+    public void onPrepared() {
+        loadControl.onPrepared();
+    }
+
+    @Override
+    public void onTracksSelected(Renderer[] renderers,
+                                 TrackGroupArray trackGroups,
+                                 TrackSelectionArray trackSelections) {
+        loadControl.onTracksSelected(renderers, trackGroups, trackSelections);
+    }
+
+    @Override
+    public void onStopped() {
+        loadControl.onStopped();
+    }
+
+    @Override
+    public void onReleased() {
+        loadControl.onReleased();
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return loadControl.getAllocator();
+    }
+
+    @Override
+    public long getBackBufferDurationUs() {
+        return loadControl.getBackBufferDurationUs();
+    }
+
+    @Override
+    public boolean retainBackBufferFromKeyframe() {
+        return loadControl.retainBackBufferFromKeyframe();
+    }
+
+    @Override
+    public boolean shouldContinueLoading(long bufferedDurationUs,
+                                         float playbackSpeed) {
+        BufferProfileTrace.bufferAllocated(playbackProfile.getValue(),
+                loadControl.getAllocator().getTotalBytesAllocated());
+
+        return loadControl.shouldContinueLoading(bufferedDurationUs,
+                playbackSpeed);
+    }
+
+    @Override
+    public boolean shouldStartPlayback(long bufferedDurationUs,
+                                       float playbackSpeed,
+                                       boolean rebuffering) {
+        return loadControl.shouldStartPlayback(bufferedDurationUs,
+                playbackSpeed, rebuffering);
+    }
+}
@@ -0,0 +1,343 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import android.app.Notification;
+import android.app.Service;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.support.v4.media.session.PlaybackStateCompat;
+import android.view.Choreographer;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.content.ContextCompat;
+import androidx.media.session.MediaButtonReceiver;
+
+import com.artyommameev.sunflowerplayer.R;
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+import com.artyommameev.sunflowerplayer.storage.ThumbnailPack;
+import com.artyommameev.sunflowerplayer.storage.TrickplayCache;
+import com.artyommameev.sunflowerplayer.util.MediaStyleHelper;
+import com.artyommameev.sunflowerplayer.util.NotificationTrace;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Posts the playback notification of a {@link PlayerService} and keeps the
+ * service in the foreground while it plays.
+ * <p>
+ * The builders of the notification are created once, one with the pause
+ * action and one with the play action, and only the information of the
+ * clip is updated on them. The artwork is the poster frame of the clip from
+ * the {@link ThumbnailPack}, if the file list has extracted it, or the
+ * launcher icon otherwise, downsampled to the size of the large icon and
+ * decoded once per clip on a background thread.
+ * <p>
+ * The updates requested during a frame are coalesced into a single
+ * notification posted on the next frame, so the state changes that come
+ * in bursts, such as the buffering of a seek, post it once. Only the update
+ * that brings the service to the foreground is posted at once, as the
+ * service must call {@link Service#startForeground(int, Notification)}
+ * without a delay once playback starts, and a frame may never come while
+ * the screen is off. The methods should be called on the main thread.
+ *
+ * @author Artyom Mameev
+ */
+final class NotificationPublisher implements Choreographer.FrameCallback {
+
+    private final Service service;
+    private final MediaSessionCompat mediaSession;
+    private final ThumbnailPack thumbnailPack;
+    private final int notificationId;
+
+    private final NotificationCompat.Builder playingBuilder;
+    private final NotificationCompat.Builder pausedBuilder;
+
+    private final int artworkWidth;
+    private final int artworkHeight;
+    private final Bitmap defaultArtwork;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService artworkExecutor =
+            Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                runnable.run();
+            }, "NotificationArtwork"));
+
+    private VideoClip artworkClip;
+    private Bitmap artwork;
+
+    private int pendingState = PlaybackStateCompat.STATE_NONE;
+    private boolean isFrameScheduled;
+    private boolean isForeground;
+    private boolean isReleased;
+
+    /**
+     * Instantiates a new Notification Publisher.
+     *
+     * @param service        the service the notification belongs to.
+     * @param mediaSession   the session the information of the clip is
+     *                       taken from.
+     * @param thumbnailPack  the cache of the poster frames of the clips.
+     * @param channelId      the id of the channel of the notification.
+     * @param notificationId the id of the notification.
+     * @throws NullPointerException if any object parameter is null.
+     */
+    NotificationPublisher(@NonNull Service service,
+                          @NonNull MediaSessionCompat mediaSession,
+                          @NonNull ThumbnailPack thumbnailPack,
+                          @NonNull String channelId, int notificationId) {
+        this.service = service;
+        this.mediaSession = mediaSession;
+        this.thumbnailPack = thumbnailPack;
+        this.notificationId = notificationId;
+
+        val resources = service.getResources();
+
+        artworkWidth = resources.getDimensionPixelSize(
+                android.R.dimen.notification_large_icon_width);
+        artworkHeight = resources.getDimensionPixelSize(
+                android.R.dimen.notification_large_icon_height);
+
+        defaultArtwork = decodeDefaultArtwork(resources);
+
+        playingBuilder = createBuilder(channelId, new NotificationCompat.Action(
+                android.R.drawable.ic_media_pause,
+                service.getString(R.string.pause),
+                MediaButtonReceiver.buildMediaButtonPendingIntent(service,
+                        PlaybackStateCompat.ACTION_PLAY_PAUSE)));
+        pausedBuilder = createBuilder(channelId, new NotificationCompat.Action(
+                android.R.drawable.ic_media_play,
+                service.getString(R.string.play),
+                MediaButtonReceiver.buildMediaButtonPendingIntent(service,
+                        PlaybackStateCompat.ACTION_PLAY_PAUSE)));
+    }
+
+    /**
+     * Sets the clip which artwork should be shown, and starts loading the
+     * artwork if the clip has changed. The notification is updated when the
+     * artwork is loaded.
+     *
+     * @param videoClip the playing clip.
+     * @throws NullPointerException if the clip is null.
+     */
+    void setClip(@NonNull VideoClip videoClip) {
+        if (isReleased || videoClip.equals(artworkClip)) {
+            return;
+        }
+
+        artworkClip = videoClip;
+        artwork = null;
+
+        artworkExecutor.execute(() -> {
+            val bitmap = loadArtwork(videoClip);
+
+            if (bitmap == null) {
+                return;
+            }
+
+            mainHandler.post(() -> {
+                if (isReleased || !videoClip.equals(artworkClip)) {
+                    return;
+                }
+
+                artwork = bitmap;
+
+                update(pendingState);
+            });
+        });
+    }
+
+    /**
+     * Requests the notification of a playback state to be posted on the
+     * next frame, replacing the state requested before in the same frame.
+     * The playing state is posted at once if the service is not in the
+     * foreground yet.
+     *
+     * @param playbackState the state of the session, one of the
+     *                      {@link PlaybackStateCompat} states.
+     */
+    void update(int playbackState) {
+        if (isReleased) {
+            return;
+        }
+
+        NotificationTrace.updateRequested();
+
+        pendingState = playbackState;
+
+        if (playbackState == PlaybackStateCompat.STATE_PLAYING &&
+                !isForeground) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            isFrameScheduled = false;
+
+            publish(playbackState);
+
+            return;
+        }
+
+        if (!isFrameScheduled) {
+            isFrameScheduled = true;
+
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Cancels the pending update and stops loading the artwork. The posted
+     * notification is left to the service.
+     */
+    void release() {
+        isReleased = true;
+
+        Choreographer.getInstance().removeFrameCallback(this);
+
+        artworkExecutor.shutdownNow();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        isFrameScheduled = false;
+
+        if (!isReleased) {
+            publish(pendingState);
+        }
+    }
+
+    private void publish(int playbackState) {
+        switch (playbackState) {
+            case PlaybackStateCompat.STATE_PLAYING: {
+                service.startForeground(notificationId,
+                        build(playingBuilder));
+                isForeground = true;
+
+                break;
+            }
+
+            case PlaybackStateCompat.STATE_PAUSED: {
+                NotificationManagerCompat.from(service).notify(
+                        notificationId, build(pausedBuilder));
+                service.stopForeground(false);
+                isForeground = false;
+
+                break;
+            }
+
+            case PlaybackStateCompat.STATE_BUFFERING: {
+                // keeps the notification of the playing state
+                break;
+            }
+
+            default: {
+                service.stopForeground(true);
+                isForeground = false;
+
+                break;
+            }
+        }
+    }
+
+    private Notification build(NotificationCompat.Builder builder) {
+        NotificationTrace.buildStarted();
+
+        val startNs = SystemClock.elapsedRealtimeNanos();
+
+        MediaStyleHelper.update(builder, mediaSession);
+
+        builder.setLargeIcon(artwork != null ? artwork : defaultArtwork);
+
+        val notification = builder.build();
+
+        NotificationTrace.posted(SystemClock.elapsedRealtimeNanos() - startNs);
+
+        return notification;
+    }
+
+    private NotificationCompat.Builder createBuilder(
+            String channelId, NotificationCompat.Action playPauseAction) {
+        val builder = MediaStyleHelper.from(service, mediaSession);
+
+        builder.addAction(new NotificationCompat.Action(
+                android.R.drawable.ic_media_previous,
+                service.getString(R.string.previous),
+                MediaButtonReceiver.buildMediaButtonPendingIntent(service,
+                        PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS)));
+        builder.addAction(playPauseAction);
+        builder.addAction(new NotificationCompat.Action(
+                android.R.drawable.ic_media_next,
+                service.getString(R.string.next),
+                MediaButtonReceiver.buildMediaButtonPendingIntent(service,
+                        PlaybackStateCompat.ACTION_SKIP_TO_NEXT)));
+
+        builder.setStyle(new androidx.media.app.NotificationCompat.MediaStyle()
+                .setShowActionsInCompactView(0, 1, 2)
+                .setShowCancelButton(true)
+                .setCancelButtonIntent(MediaButtonReceiver
+                        .buildMediaButtonPendingIntent(service,
+                                PlaybackStateCompat.ACTION_STOP))
+                .setMediaSession(mediaSession.getSessionToken()));
+        builder.setSmallIcon(R.drawable.ic_wb_sunny_black_24dp);
+        builder.setColor(ContextCompat.getColor(service,
+                R.color.colorPrimaryDark));
+        builder.setShowWhen(false);
+        builder.setPriority(NotificationCompat.PRIORITY_HIGH);
+        builder.setOnlyAlertOnce(true);
+        builder.setChannelId(channelId);
+
+        return builder;
+    }
+
+    private Bitmap decodeDefaultArtwork(Resources resources) {
+        val options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+
+        BitmapFactory.decodeResource(resources, R.mipmap.ic_launcher, options);
+
+        options.inSampleSize = sampleSize(options);
+        options.inJustDecodeBounds = false;
+
+        return BitmapFactory.decodeResource(resources, R.mipmap.ic_launcher,
+                options);
+    }
+
+    private Bitmap loadArtwork(VideoClip videoClip) {
+        val bytes = thumbnailPack.get(TrickplayCache.getKey(videoClip));
+
+        if (bytes == null) {
+            return null;
+        }
+
+        val options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+
+        options.inSampleSize = sampleSize(options);
+        options.inJustDecodeBounds = false;
+
+        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    }
+
+    private int sampleSize(BitmapFactory.Options options) {
+        int sampleSize = 1;
+
+        // the largest power of two that keeps the bitmap at least the size
+        // of the icon
+        while (options.outWidth / (sampleSize * 2) >= artworkWidth &&
+                options.outHeight / (sampleSize * 2) >= artworkHeight) {
+            sampleSize *= 2;
+        }
+
+        return sampleSize;
+    }
+}
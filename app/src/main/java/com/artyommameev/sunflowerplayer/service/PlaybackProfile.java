@@ -0,0 +1,99 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The buffering profiles of the player.
+ * <p>
+ * The default profile of ExoPlayer buffers up to 50 seconds of media, which
+ * suits the streaming over a network. The video clips are read from
+ * the local storage, which delivers the data much faster than it is played,
+ * so a few seconds of buffer are enough and the playback can start as soon
+ * as the first frames are loaded.
+ * <p>
+ * The size limit of the low memory profile only stops the buffering beyond
+ * its minimum duration: the buffer durations take priority over it, so a
+ * clip of a high bitrate still gets its few seconds of buffer instead of
+ * stalling on a full buffer.
+ * <p>
+ * The profile is read from the settings only when the {@link PlayerService}
+ * is created, so a changed profile applies once the service is started
+ * again.
+ *
+ * @author Artyom Mameev
+ */
+public enum PlaybackProfile {
+
+    DEFAULT("default",
+            DefaultLoadControl.DEFAULT_MIN_BUFFER_MS,
+            DefaultLoadControl.DEFAULT_MAX_BUFFER_MS,
+            DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS,
+            DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS,
+            DefaultLoadControl.DEFAULT_TARGET_BUFFER_BYTES,
+            DefaultLoadControl.DEFAULT_PRIORITIZE_TIME_OVER_SIZE_THRESHOLDS),
+
+    LOCAL_LOW_MEMORY("local_low_memory",
+            5_000, 10_000, 250, 500, 8 * 1024 * 1024, true);
+
+    @Getter
+    private final String value;
+    private final int minBufferMs;
+    private final int maxBufferMs;
+    private final int bufferForPlaybackMs;
+    private final int bufferForPlaybackAfterRebufferMs;
+    private final int targetBufferBytes;
+    private final boolean prioritizeTimeOverSizeThresholds;
+
+    PlaybackProfile(String value, int minBufferMs, int maxBufferMs,
+                    int bufferForPlaybackMs,
+                    int bufferForPlaybackAfterRebufferMs,
+                    int targetBufferBytes,
+                    boolean prioritizeTimeOverSizeThresholds) {
+        this.value = value;
+        this.minBufferMs = minBufferMs;
+        this.maxBufferMs = maxBufferMs;
+        this.bufferForPlaybackMs = bufferForPlaybackMs;
+        this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+        this.targetBufferBytes = targetBufferBytes;
+        this.prioritizeTimeOverSizeThresholds =
+                prioritizeTimeOverSizeThresholds;
+    }
+
+    /**
+     * Returns the profile with the given preference value.
+     *
+     * @param value the preference value of the profile.
+     * @return the profile with the given value, or
+     * {@link PlaybackProfile#LOCAL_LOW_MEMORY} if there is no such profile.
+     * @throws NullPointerException if the value is null.
+     */
+    public static PlaybackProfile fromValue(@NonNull String value) {
+        for (PlaybackProfile playbackProfile : values()) {
+            if (playbackProfile.value.equals(value)) {
+                return playbackProfile;
+            }
+        }
+
+        return LOCAL_LOW_MEMORY;
+    }
+
+    /**
+     * Creates a load control that buffers the media as the profile
+     * specifies.
+     *
+     * @return the new load control.
+     */
+    public LoadControl createLoadControl() {
+        return new DefaultLoadControl.Builder()
+                .setBufferDurationsMs(minBufferMs, maxBufferMs,
+                        bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs)
+                .setTargetBufferBytes(targetBufferBytes)
+                .setPrioritizeTimeOverSizeThresholds(
+                        prioritizeTimeOverSizeThresholds)
+                .createDefaultLoadControl();
+    }
+}
@@ -0,0 +1,180 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.annotation.Nullable;
+
+import com.artyommameev.sunflowerplayer.domain.PlaybackSession;
+import com.artyommameev.sunflowerplayer.storage.PlaybackSessionStore;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import lombok.NonNull;
+
+/**
+ * Records a {@link PlaybackSession} for every played clip from the
+ * analytics events of the player, and saves the finished sessions to a
+ * {@link PlaybackSessionStore} on a background thread.
+ * <p>
+ * Must be used on the main thread, where the player reports the events.
+ *
+ * @author Artyom Mameev
+ */
+final class PlaybackTelemetry implements AnalyticsListener {
+
+    private static final String TAG = "PlaybackTelemetry";
+
+    private final PlaybackSessionStore playbackSessionStore;
+    private final Executor executor;
+
+    private PlaybackSession session;
+    private long requestTimeMs;
+    private boolean isReady;
+    private boolean isSeeking;
+    private long rebufferStartMs = -1;
+
+    /**
+     * Instantiates a new Playback Telemetry.
+     *
+     * @param playbackSessionStore the store of the finished sessions.
+     * @param executor             the executor of the writes to the store.
+     * @throws NullPointerException if any parameter is null.
+     */
+    PlaybackTelemetry(@NonNull PlaybackSessionStore playbackSessionStore,
+                      @NonNull Executor executor) {
+        this.playbackSessionStore = playbackSessionStore;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts the session of a clip, ending the current one.
+     *
+     * @param fileName      the file name of the clip.
+     * @param requestTimeMs the time of the request to play the clip, as
+     *                      {@link SystemClock#elapsedRealtime()}.
+     * @throws NullPointerException if the file name is null.
+     */
+    void sessionStarted(@NonNull String fileName, long requestTimeMs) {
+        sessionEnded();
+
+        session = new PlaybackSession(fileName, System.currentTimeMillis());
+
+        this.requestTimeMs = requestTimeMs;
+    }
+
+    /**
+     * Ends the current session and saves it. Does nothing if no session is
+     * started.
+     */
+    void sessionEnded() {
+        if (session == null) {
+            return;
+        }
+
+        if (rebufferStartMs >= 0) {
+            session.setRebufferMs(session.getRebufferMs() +
+                    SystemClock.elapsedRealtime() - rebufferStartMs);
+        }
+
+        final PlaybackSession endedSession = session;
+
+        executor.execute(() -> {
+            try {
+                playbackSessionStore.add(endedSession);
+            } catch (IOException e) {
+                Log.w(TAG, "The playback session cannot be saved", e);
+            }
+        });
+
+        session = null;
+        isReady = false;
+        isSeeking = false;
+        rebufferStartMs = -1;
+    }
+
+    @Override
+    public void onPlayerStateChanged(EventTime eventTime,
+                                     boolean playWhenReady,
+                                     int playbackState) {
+        if (session == null) {
+            return;
+        }
+
+        if (playbackState == Player.STATE_READY) {
+            if (rebufferStartMs >= 0) {
+                session.setRebufferMs(session.getRebufferMs() +
+                        eventTime.realtimeMs - rebufferStartMs);
+
+                rebufferStartMs = -1;
+            }
+
+            isReady = true;
+            isSeeking = false;
+        } else if (playbackState == Player.STATE_BUFFERING && isReady &&
+                !isSeeking && rebufferStartMs < 0) {
+            // the buffer ran out during the playback, not after a seek
+            session.setRebuffers(session.getRebuffers() + 1);
+
+            rebufferStartMs = eventTime.realtimeMs;
+        }
+    }
+
+    @Override
+    public void onSeekStarted(EventTime eventTime) {
+        isSeeking = true;
+    }
+
+    @Override
+    public void onRenderedFirstFrame(EventTime eventTime,
+                                     @Nullable Surface surface) {
+        if (session != null && session.getTimeToFirstFrameMs() < 0) {
+            session.setTimeToFirstFrameMs(eventTime.realtimeMs -
+                    requestTimeMs);
+        }
+    }
+
+    @Override
+    public void onDecoderInitialized(EventTime eventTime,
+                                     int trackType,
+                                     String decoderName,
+                                     long initializationDurationMs) {
+        if (session == null) {
+            return;
+        }
+
+        if (trackType == C.TRACK_TYPE_VIDEO) {
+            session.setVideoDecoderInitMs(initializationDurationMs);
+        } else if (trackType == C.TRACK_TYPE_AUDIO) {
+            session.setAudioDecoderInitMs(initializationDurationMs);
+        }
+    }
+
+    @Override
+    public void onDecoderInputFormatChanged(EventTime eventTime,
+                                            int trackType,
+                                            Format format) {
+        if (session == null || trackType != C.TRACK_TYPE_VIDEO) {
+            return;
+        }
+
+        session.setBitrate(format.bitrate);
+        session.setWidth(format.width);
+        session.setHeight(format.height);
+    }
+
+    @Override
+    public void onDroppedVideoFrames(EventTime eventTime,
+                                     int droppedFrames, long elapsedMs) {
+        if (session != null) {
+            session.setDroppedFrames(session.getDroppedFrames() +
+                    droppedFrames);
+        }
+    }
+}
@@ -1,46 +1,129 @@
 package com.artyommameev.sunflowerplayer.service;
 
 import android.annotation.SuppressLint;
-import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.Service;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.graphics.BitmapFactory;
 import android.media.AudioManager;
 import android.media.session.MediaSession;
+import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v4.media.MediaBrowserCompat;
 import android.support.v4.media.MediaMetadataCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
 
 import androidx.annotation.NonNull;
-import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
-import androidx.core.content.ContextCompat;
+import androidx.media.MediaBrowserServiceCompat;
 import androidx.media.session.MediaButtonReceiver;
+import androidx.preference.PreferenceManager;
 
 import com.artyommameev.sunflowerplayer.R;
-import com.artyommameev.sunflowerplayer.repository.MusicRepository;
-import com.artyommameev.sunflowerplayer.util.MediaStyleHelper;
+import com.artyommameev.sunflowerplayer.SunflowerPlayer;
+import com.artyommameev.sunflowerplayer.database.Database;
+import com.artyommameev.sunflowerplayer.database.PlaybackPositionWriter;
+import com.artyommameev.sunflowerplayer.storage.PlaybackSessionStore;
+import com.artyommameev.sunflowerplayer.storage.TrickplayCache;
+import com.artyommameev.sunflowerplayer.domain.PlaybackPosition;
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+import com.artyommameev.sunflowerplayer.repository.PlaybackState;
+import com.artyommameev.sunflowerplayer.repository.PlaybackStateStore;
+import com.artyommameev.sunflowerplayer.util.BufferProfileTrace;
+import com.artyommameev.sunflowerplayer.util.ClipOpenTrace;
+import com.artyommameev.sunflowerplayer.util.PrepareTimeTrace;
+import com.artyommameev.sunflowerplayer.util.PlaybackCpuMeter;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
+import com.google.android.exoplayer2.source.ProgressiveMediaSource;
+import com.google.android.exoplayer2.source.ShuffleOrder;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.util.Util;
+import com.google.android.exoplayer2.video.VideoListener;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import lombok.val;
 
 /**
- * A service for updating the {@link MediaSession} with currently playing
- * music track.
+ * A service that owns the player of {@link VideoClip}s and keeps the
+ * {@link MediaSession} in sync with it.
+ * <p>
+ * The player lives as long as the service and is reused for every clip, so
+ * its renderers are created once. The state of the player (including the
+ * position) is mapped onto the media session by a player listener, and the
+ * media session callbacks drive the player directly, so the session and the
+ * player cannot disagree.
+ * <p>
+ * A playlist is played as one concatenated source, so the next clip is
+ * prepared while the current one is playing and the transition between
+ * them is gapless. Only the metadata of the session changes between the
+ * clips of a playlist.
+ * <p>
+ * While no activity shows the video, the video renderer can be disabled, so
+ * the video is not decoded and only the audio is played.
+ * <p>
+ * The position of the playing clip is recorded every second and written
+ * behind to the database in batches, and a clip is resumed from its saved
+ * position when a playlist is started from it.
+ * <p>
+ * The buffering of the player is set up by the {@link PlaybackProfile}
+ * chosen in the settings when the service is created, and the performance
+ * of the playback of every clip is recorded by {@link PlaybackTelemetry}.
+ * <p>
+ * The trickplay sprite sheets of the clips of a playlist are generated
+ * while nothing is playing, for the seek previews, and its MPEG-TS and FLV
+ * clips are indexed by {@link SeekIndexer} for the seeking.
+ * <p>
+ * A clip the user is about to play can be warmed up by {@link ClipWarmUp},
+ * so it opens without sniffing and without reading its headers again.
+ * <p>
+ * The playing track, the queue and the state of the player are published
+ * to the application-wide {@link PlaybackStateStore}, and the metadata of
+ * the session follows the track in the store, whoever updates it.
+ * <p>
+ * The notification is posted by {@link NotificationPublisher}, which keeps
+ * its builders and the artwork of the clip, and posts at most once a frame.
+ * <p>
+ * The service is also a media browser service: the library is browsed as
+ * the tree of {@link LibraryBrowser} in pages, and playing a node of the
+ * tree queues its clips. The activities of the application bind to the
+ * service without the browser action and get {@link PlayerServiceBinder}.
+ * Only the callers trusted by {@link BrowserClientValidator} can connect as
+ * media browsers.
  *
  * @author Sergey Vinyarsky
  * <a>https://github.com/SergeyVinyar/AndroidAudioExample</a>
  */
-final public class PlayerService extends Service {
+final public class PlayerService extends MediaBrowserServiceCompat {
 
     private final static int NOTIFICATION_ID = 404;
+    private final static long POSITION_RECORD_INTERVAL_MS = 1000;
+    public final static String PLAYBACK_SESSIONS_FILE =
+            "playback-sessions.json";
+    private final static String TRICKPLAY_DIRECTORY = "trickplay";
+    private final static long TRICKPLAY_CACHE_BYTES = 32 * 1024 * 1024;
     private final MediaMetadataCompat.Builder metadataBuilder =
             new MediaMetadataCompat.Builder();
     private final PlaybackStateCompat.Builder stateBuilder =
@@ -48,7 +131,11 @@ final public class PlayerService extends Service {
                     .setActions(PlaybackStateCompat.ACTION_PLAY |
                             PlaybackStateCompat.ACTION_STOP |
                             PlaybackStateCompat.ACTION_PAUSE |
-                            PlaybackStateCompat.ACTION_PLAY_PAUSE
+                            PlaybackStateCompat.ACTION_PLAY_PAUSE |
+                            PlaybackStateCompat.ACTION_SEEK_TO |
+                            PlaybackStateCompat.ACTION_SKIP_TO_NEXT |
+                            PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS |
+                            PlaybackStateCompat.ACTION_PLAY_FROM_MEDIA_ID
                     );
     private final BroadcastReceiver becomingNoisyReceiver = new BroadcastReceiver() {
         @Override
@@ -62,75 +149,214 @@ final public class PlayerService extends Service {
     };
     private String NOTIFICATION_DEFAULT_CHANNEL_ID;
     private MediaSessionCompat mediaSession;
+    private NotificationPublisher notificationPublisher;
+    private SimpleExoPlayer player;
+    private DefaultTrackSelector trackSelector;
+    private PlaybackProfile playbackProfile;
+    private PlaybackTelemetry playbackTelemetry;
+    private TrickplayCache trickplayCache;
+    private TrickplayGenerator trickplayGenerator;
+    private SeekIndexer seekIndexer;
+    private ClipWarmUp clipWarmUp;
+    private LibraryBrowser libraryBrowser;
+    private BrowserClientValidator browserClientValidator;
+    private PlaybackStateStore playbackStateStore;
+    private final ExecutorService telemetryExecutor =
+            Executors.newSingleThreadExecutor();
+    // not queued behind the session writes, as a clip waits for it
+    private final ExecutorService positionExecutor =
+            Executors.newSingleThreadExecutor();
+    // the started clips, to drop the ones replaced while being looked up
+    private int playGeneration;
+    private boolean isVideoEnabled = true;
+    private PlaybackPositionWriter playbackPositionWriter;
+    private VideoClip currentClip;
+    private long currentClipDuration;
+    // kept here, as the player forgets its error when it is stopped
+    private ExoPlaybackException playbackError;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable positionRecorder = new Runnable() {
+        @Override
+        public void run() {
+            recordPosition();
+
+            handler.postDelayed(this, POSITION_RECORD_INTERVAL_MS);
+        }
+    };
+    private DefaultDataSourceFactory dataSourceFactory;
+    private Database database;
+    private boolean isBecomingNoisyReceiverRegistered;
+    private final SessionStateTracker sessionStateTracker =
+            new SessionStateTracker(this::sendPlaybackState);
+    private int currentWindowIndex = C.INDEX_UNSET;
+    private final PlaybackStateStore.Listener playbackStateListener =
+            change -> {
+                if (!change.isTrackChanged() ||
+                        change.getCurrent().getTrack() == null) {
+                    return;
+                }
+
+                val track = change.getCurrent().getTrack();
+
+                // the store may be updated from any thread
+                if (Looper.myLooper() == Looper.getMainLooper()) {
+                    updateMetadataFromTrack(track);
+                } else {
+                    handler.post(() -> updateMetadataFromTrack(track));
+                }
+            };
     private final MediaSessionCompat.Callback mediaSessionCallback =
             new MediaSessionCompat.Callback() {
-                int currentState = PlaybackStateCompat.STATE_STOPPED;
-
                 @Override
                 public void onPlay() {
-                    startService(new Intent(getApplicationContext(),
-                            PlayerService.class));
+                    activateSession();
 
-                    val track = MusicRepository.getCurrent();
+                    player.setPlayWhenReady(true);
+                }
 
-                    updateMetadataFromTrack(track);
+                @Override
+                public void onPlayFromMediaId(String mediaId, Bundle extras) {
+                    val requestTimeMs = SystemClock.elapsedRealtime();
+
+                    libraryBrowser.select(mediaId, selection -> {
+                        if (selection != null) {
+                            play(selection.getPlaylist(),
+                                    selection.getIndex(), requestTimeMs);
+                        }
+                    });
+                }
+
+                @Override
+                public void onPause() {
+                    player.setPlayWhenReady(false);
+                }
+
+                @Override
+                public void onSeekTo(long position) {
+                    player.seekTo(position);
+                }
+
+                @Override
+                public void onSkipToNext() {
+                    if (player.hasNext()) {
+                        player.next();
+                    }
+                }
 
-                    mediaSession.setActive(true);
+                @Override
+                public void onSkipToPrevious() {
+                    if (player.hasPrevious()) {
+                        player.previous();
+                    } else {
+                        player.seekTo(0);
+                    }
+                }
 
-                    registerReceiver(becomingNoisyReceiver, new IntentFilter(
-                            AudioManager.ACTION_AUDIO_BECOMING_NOISY));
+                @Override
+                public void onStop() {
+                    recordPosition();
 
-                    mediaSession.setPlaybackState(stateBuilder.setState(
-                            PlaybackStateCompat.STATE_PLAYING,
-                            PlaybackStateCompat.PLAYBACK_POSITION_UNKNOWN, 1)
-                            .build());
+                    playbackTelemetry.sessionEnded();
 
-                    currentState = PlaybackStateCompat.STATE_PLAYING;
+                    playbackError = null;
 
-                    refreshNotificationAndForegroundStatus(currentState);
+                    // the clip that is being looked up is not started
+                    playGeneration++;
+
+                    player.stop(true);
+
+                    deactivateSession();
+                }
+            };
+    private final Player.EventListener playerEventListener =
+            new Player.EventListener() {
+                @Override
+                public void onPlayerStateChanged(boolean playWhenReady,
+                                                 int playbackState) {
+                    if (playbackState == Player.STATE_READY) {
+                        BufferProfileTrace.ready();
+                        PrepareTimeTrace.ready();
+
+                        updateDuration();
+                    }
+
+                    updatePlaybackState();
+
+                    if (playbackState == Player.STATE_ENDED) {
+                        recordFinished();
+
+                        playbackTelemetry.sessionEnded();
+
+                        deactivateSession();
+                    }
                 }
 
                 @Override
-                public void onPause() {
-                    mediaSession.setPlaybackState(stateBuilder.setState(
-                            PlaybackStateCompat.STATE_PAUSED,
-                            PlaybackStateCompat.PLAYBACK_POSITION_UNKNOWN, 1)
-                            .build());
+                public void onPositionDiscontinuity(int reason) {
+                    if (reason == Player.DISCONTINUITY_REASON_PERIOD_TRANSITION) {
+                        recordFinished();
+                    }
+
+                    // also called on the transition to the next clip
+                    updateCurrentClip();
 
-                    currentState = PlaybackStateCompat.STATE_PAUSED;
+                    // a seek or a transition is always sent
+                    sessionStateTracker.invalidate();
 
-                    refreshNotificationAndForegroundStatus(currentState);
+                    updatePlaybackState();
                 }
 
                 @Override
-                public void onStop() {
-                    mediaSession.setActive(false);
+                public void onPlaybackParametersChanged(
+                        @NonNull PlaybackParameters playbackParameters) {
+                    updatePlaybackState();
+                }
+
+                @Override
+                public void onTimelineChanged(@NonNull Timeline timeline,
+                                              int reason) {
+                    updateCurrentClip();
+                }
+
+                @Override
+                public void onIsPlayingChanged(boolean isPlaying) {
+                    handler.removeCallbacks(positionRecorder);
+
+                    trickplayGenerator.setPlaying(isPlaying);
 
-                    mediaSession.setPlaybackState(stateBuilder.setState(
-                            PlaybackStateCompat.STATE_STOPPED,
-                            PlaybackStateCompat.PLAYBACK_POSITION_UNKNOWN, 1)
-                            .build());
+                    if (isPlaying) {
+                        PlaybackCpuMeter.playbackStarted(isVideoEnabled);
 
-                    currentState = PlaybackStateCompat.STATE_STOPPED;
+                        handler.post(positionRecorder);
+                    } else {
+                        PlaybackCpuMeter.playbackStopped();
 
-                    refreshNotificationAndForegroundStatus(currentState);
+                        recordPosition();
 
-                    stopSelf();
+                        playbackPositionWriter.flush();
+                    }
                 }
 
-                private void updateMetadataFromTrack(MusicRepository.Track track) {
-                    metadataBuilder.putString(MediaMetadataCompat.METADATA_KEY_TITLE,
-                            track.getTitle());
-                    metadataBuilder.putString(MediaMetadataCompat.METADATA_KEY_ALBUM,
-                            track.getAlbum());
-                    metadataBuilder.putString(MediaMetadataCompat.METADATA_KEY_ARTIST,
-                            track.getArtist());
-                    metadataBuilder.putLong(MediaMetadataCompat.METADATA_KEY_DURATION,
-                            track.getDuration());
+                @Override
+                public void onPlayerError(
+                        @NonNull ExoPlaybackException error) {
+                    playbackTelemetry.sessionEnded();
 
-                    mediaSession.setMetadata(metadataBuilder.build());
+                    playbackError = error;
+
+                    player.stop(true);
+
+                    updatePlaybackState();
+
+                    deactivateSession();
                 }
             };
+    private final VideoListener videoListener = new VideoListener() {
+        @Override
+        public void onRenderedFirstFrame() {
+            ClipOpenTrace.firstFrameRendered();
+        }
+    };
 
     @Override
     public void onCreate() {
@@ -155,6 +381,57 @@ final public class PlayerService extends Service {
         mediaSession.setFlags(MediaSessionCompat.FLAG_HANDLES_MEDIA_BUTTONS |
                 MediaSessionCompat.FLAG_HANDLES_TRANSPORT_CONTROLS);
         mediaSession.setCallback(mediaSessionCallback);
+
+        playbackStateStore = ((SunflowerPlayer) getApplication())
+                .getPlaybackStateStore();
+
+        setSessionToken(mediaSession.getSessionToken());
+
+        notificationPublisher = new NotificationPublisher(this, mediaSession,
+                ((SunflowerPlayer) getApplication()).getThumbnailPack(),
+                NOTIFICATION_DEFAULT_CHANNEL_ID, NOTIFICATION_ID);
+
+        dataSourceFactory = new DefaultDataSourceFactory(this,
+                Util.getUserAgent(this, getString(R.string.app_name)));
+
+        database = new Database((SunflowerPlayer) getApplication());
+
+        playbackPositionWriter = new PlaybackPositionWriter(database);
+
+        trackSelector = new DefaultTrackSelector(this);
+
+        // read once, the player keeps its load control until it is released
+        playbackProfile = PlaybackProfile.fromValue(Objects.requireNonNull(
+                PreferenceManager.getDefaultSharedPreferences(this).getString(
+                        getString(R.string.playback_profile),
+                        PlaybackProfile.LOCAL_LOW_MEMORY.getValue())));
+
+        player = new SimpleExoPlayer.Builder(this)
+                .setTrackSelector(trackSelector)
+                .setLoadControl(new MeasuredLoadControl(playbackProfile))
+                .build();
+
+        val playbackSessionStore = new PlaybackSessionStore(
+                new File(getFilesDir(), PLAYBACK_SESSIONS_FILE));
+
+        playbackTelemetry = new PlaybackTelemetry(playbackSessionStore,
+                telemetryExecutor);
+
+        trickplayCache = new TrickplayCache(new File(getCacheDir(),
+                TRICKPLAY_DIRECTORY), TRICKPLAY_CACHE_BYTES);
+        trickplayGenerator = new TrickplayGenerator(trickplayCache);
+        seekIndexer = new SeekIndexer(database);
+        clipWarmUp = new ClipWarmUp(dataSourceFactory, database);
+        browserClientValidator = new BrowserClientValidator(this);
+        libraryBrowser = new LibraryBrowser(this, database,
+                playbackSessionStore,
+                ((SunflowerPlayer) getApplication()).getTagChangePublisher());
+
+        player.addListener(playerEventListener);
+        player.addVideoListener(videoListener);
+        player.addAnalyticsListener(playbackTelemetry);
+
+        playbackStateStore.addListener(playbackStateListener);
     }
 
     @Override
@@ -168,79 +445,433 @@ final public class PlayerService extends Service {
     public void onDestroy() {
         super.onDestroy();
 
+        playbackStateStore.removeListener(playbackStateListener);
+
+        handler.removeCallbacks(positionRecorder);
+
+        recordPosition();
+
+        playbackPositionWriter.flush();
+
+        trickplayGenerator.release();
+        seekIndexer.release();
+        clipWarmUp.release();
+        libraryBrowser.release();
+
+        playbackTelemetry.sessionEnded();
+
+        // the last session is still written before the thread ends
+        telemetryExecutor.shutdown();
+
+        playGeneration++;
+
+        positionExecutor.shutdownNow();
+
+        player.removeListener(playerEventListener);
+        player.removeVideoListener(videoListener);
+        player.removeAnalyticsListener(playbackTelemetry);
+        player.release();
+
+        PlaybackCpuMeter.playbackStopped();
+
+        notificationPublisher.release();
+
         mediaSession.release();
 
-        unregisterReceiver(becomingNoisyReceiver);
+        if (isBecomingNoisyReceiverRegistered) {
+            unregisterReceiver(becomingNoisyReceiver);
+        }
     }
 
-    @NonNull
     @Override
     public IBinder onBind(Intent intent) {
+        if (SERVICE_INTERFACE.equals(intent.getAction())) {
+            return super.onBind(intent);
+        }
+
         return new PlayerServiceBinder();
     }
 
-    private void refreshNotificationAndForegroundStatus(int playbackState) {
-        switch (playbackState) {
-            case PlaybackStateCompat.STATE_PLAYING: {
-                startForeground(NOTIFICATION_ID, getNotification(playbackState));
+    @Override
+    public BrowserRoot onGetRoot(@NonNull String clientPackageName,
+                                 int clientUid, Bundle rootHints) {
+        // the library lists the clips of the user, so others get nothing
+        if (!browserClientValidator.isTrusted(clientPackageName, clientUid)) {
+            return null;
+        }
+
+        return new BrowserRoot(BrowseTree.ROOT_ID, null);
+    }
+
+    @Override
+    public void onLoadChildren(@NonNull String parentId,
+                               @NonNull Result<List<MediaBrowserCompat.MediaItem>>
+                                       result) {
+        libraryBrowser.loadChildren(parentId, null, result);
+    }
 
-                break;
-            }
+    @Override
+    public void onLoadChildren(@NonNull String parentId,
+                               @NonNull Result<List<MediaBrowserCompat.MediaItem>>
+                                       result, @NonNull Bundle options) {
+        libraryBrowser.loadChildren(parentId, options, result);
+    }
+
+    private void play(List<VideoClip> playlist, int index,
+                      long requestTimeMs) {
+        if (index < 0 || index >= playlist.size()) {
+            throw new IndexOutOfBoundsException("index " + index +
+                    " is out of the playlist bounds");
+        }
 
-            case PlaybackStateCompat.STATE_PAUSED: {
-                NotificationManagerCompat.from(PlayerService.this).notify(
-                        NOTIFICATION_ID, getNotification(playbackState));
-                stopForeground(false);
+        val videoClip = playlist.get(index);
 
-                break;
-            }
+        val generation = ++playGeneration;
 
-            default: {
-                stopForeground(true);
+        /*the resume position is read off the main thread, as the database
+        may still be opening; the current clip plays until it is found*/
+        positionExecutor.execute(() -> {
+            val playbackPosition = playbackPositionWriter
+                    .findPlaybackPosition(videoClip.getFileName());
 
-                break;
+            handler.post(() -> {
+                // another clip was started, or the playback was stopped
+                if (generation == playGeneration) {
+                    play(playlist, index, requestTimeMs, playbackPosition);
+                }
+            });
+        });
+    }
+
+    private void play(List<VideoClip> playlist, int index,
+                      long requestTimeMs, PlaybackPosition playbackPosition) {
+        val videoClip = playlist.get(index);
+
+        // the started clip may have been read ahead from the file list
+        val warmDataSourceFactory = clipWarmUp.adopt(videoClip);
+
+        ClipOpenTrace.clipOpening(requestTimeMs,
+                warmDataSourceFactory != null);
+
+        // with the lazy preparation the player only prepares the clips it
+        // buffers, that is the current one and then the next one
+        val mediaSource = new ConcatenatingMediaSource(false, true,
+                new ShuffleOrder.DefaultShuffleOrder(0));
+
+        for (int i = 0; i < playlist.size(); i++) {
+            val clip = playlist.get(i);
+
+            // every clip has its own extractors, ordered by its container
+            mediaSource.addMediaSource(new ProgressiveMediaSource.Factory(
+                    i == index && warmDataSourceFactory != null ?
+                            warmDataSourceFactory : dataSourceFactory,
+                    new ClipExtractorsFactory(clip, database))
+                    .setTag(clip)
+                    .createMediaSource(Uri.fromFile(clip)));
+        }
+
+        currentWindowIndex = index;
+        currentClip = videoClip;
+        currentClipDuration = 0;
+
+        playbackStateStore.update(state -> state.withQueue(playlist, index));
+
+        playbackTelemetry.sessionStarted(videoClip.getFileName(),
+                requestTimeMs);
+
+        recentsChanged();
+
+        // the previews of the started clip are generated first
+        val trickplayClips = new ArrayList<VideoClip>(playlist.subList(index,
+                playlist.size()));
+        trickplayClips.addAll(playlist.subList(0, index));
+
+        trickplayGenerator.enqueue(trickplayClips);
+        seekIndexer.enqueue(trickplayClips);
+
+        updateMetadataFromClip(videoClip);
+
+        activateSession();
+
+        BufferProfileTrace.preparing(playbackProfile.getValue());
+        PrepareTimeTrace.preparing();
+
+        playbackError = null;
+
+        /*the player keeps its renderers, only the source is replaced; the
+        old timeline is dropped first, as the seek would be checked against
+        it, and is resolved when the new timeline is known*/
+        player.prepare(mediaSource, true, true);
+        player.seekTo(index, playbackPosition == null ? 0 :
+                playbackPosition.getResumePosition());
+        player.setPlayWhenReady(true);
+    }
+
+    private void setVideoEnabled(boolean videoEnabled) {
+        if (videoEnabled == isVideoEnabled) {
+            return;
+        }
+
+        isVideoEnabled = videoEnabled;
+
+        val parameters = trackSelector.buildUponParameters();
+
+        for (int i = 0; i < player.getRendererCount(); i++) {
+            if (player.getRendererType(i) == C.TRACK_TYPE_VIDEO) {
+                // a disabled renderer releases its decoder, and the enabled
+                // one continues from the current position
+                parameters.setRendererDisabled(i, !videoEnabled);
             }
         }
+
+        trackSelector.setParameters(parameters);
+
+        if (player.isPlaying()) {
+            PlaybackCpuMeter.playbackStarted(videoEnabled);
+        }
+    }
+
+    private void updateCurrentClip() {
+        val windowIndex = player.getCurrentWindowIndex();
+        val tag = player.getCurrentTag();
+
+        if (windowIndex == currentWindowIndex ||
+                !(tag instanceof VideoClip)) {
+            return;
+        }
+
+        currentWindowIndex = windowIndex;
+        currentClip = (VideoClip) tag;
+        currentClipDuration = 0;
+
+        playbackStateStore.update(state ->
+                windowIndex < state.getQueue().size() ?
+                        state.withQueueIndex(windowIndex) : state);
+
+        // the next clip is requested by the transition or the skip
+        playbackTelemetry.sessionStarted(currentClip.getFileName(),
+                SystemClock.elapsedRealtime());
+
+        recentsChanged();
+
+        updateMetadataFromClip(currentClip);
+
+        // the next clip is already prepared, so its duration may be known
+        updateDuration();
+    }
+
+    private void recentsChanged() {
+        // queued behind the writing of the ended session
+        telemetryExecutor.execute(() -> {
+            libraryBrowser.recentsChanged();
+
+            handler.post(() -> notifyChildrenChanged(BrowseTree.RECENTS_ID));
+        });
+    }
+
+    private void recordPosition() {
+        val playbackState = player.getPlaybackState();
+
+        // the position of a stopped or ended player is not the clip's one
+        if (currentClip == null || (playbackState != Player.STATE_READY &&
+                playbackState != Player.STATE_BUFFERING)) {
+            return;
+        }
+
+        if (player.getDuration() != C.TIME_UNSET) {
+            currentClipDuration = player.getDuration();
+        }
+
+        playbackPositionWriter.record(currentClip.getFileName(),
+                player.getCurrentPosition(), currentClipDuration);
+    }
+
+    private void recordFinished() {
+        if (currentClip == null || currentClipDuration == 0) {
+            return;
+        }
+
+        playbackPositionWriter.record(currentClip.getFileName(),
+                currentClipDuration, currentClipDuration);
     }
 
-    private Notification getNotification(int playbackState) {
-        NotificationCompat.Builder builder = MediaStyleHelper.from(
-                this, mediaSession);
-
-        if (playbackState == PlaybackStateCompat.STATE_PLAYING)
-            builder.addAction(new NotificationCompat.Action(
-                    android.R.drawable.ic_media_pause,
-                    getString(R.string.pause), MediaButtonReceiver.buildMediaButtonPendingIntent(
-                    this, PlaybackStateCompat.ACTION_PLAY_PAUSE)));
-        else
-            builder.addAction(new NotificationCompat.Action(
-                    android.R.drawable.ic_media_play,
-                    getString(R.string.play), MediaButtonReceiver.buildMediaButtonPendingIntent(
-                    this, PlaybackStateCompat.ACTION_PLAY_PAUSE)));
-
-        builder.setStyle(new androidx.media.app.NotificationCompat.MediaStyle()
-                .setShowActionsInCompactView(0)
-                .setShowCancelButton(true)
-                .setCancelButtonIntent(MediaButtonReceiver
-                        .buildMediaButtonPendingIntent(this,
-                                PlaybackStateCompat.ACTION_STOP))
-                .setMediaSession(mediaSession.getSessionToken()));
-        builder.setLargeIcon(BitmapFactory.decodeResource(getResources(),
-                R.mipmap.ic_launcher));
-        builder.setSmallIcon(R.drawable.ic_wb_sunny_black_24dp);
-        builder.setColor(ContextCompat.getColor(this,
-                R.color.colorPrimaryDark));
-        builder.setShowWhen(false);
-        builder.setPriority(NotificationCompat.PRIORITY_HIGH);
-        builder.setOnlyAlertOnce(true);
-        builder.setChannelId(NOTIFICATION_DEFAULT_CHANNEL_ID);
-
-        return builder.build();
+    private void updateMetadataFromClip(VideoClip videoClip) {
+        notificationPublisher.setClip(videoClip);
+
+        val track = new PlaybackState.Track(videoClip.getTitle(),
+                videoClip.getArtist(), videoClip.getAlbum().orElse(""), 0);
+
+        // the metadata is updated by the listener of the store
+        playbackStateStore.update(state -> state.withTrack(track));
+    }
+
+    private void activateSession() {
+        startService(new Intent(getApplicationContext(), PlayerService.class));
+
+        mediaSession.setActive(true);
+
+        if (!isBecomingNoisyReceiverRegistered) {
+            registerReceiver(becomingNoisyReceiver, new IntentFilter(
+                    AudioManager.ACTION_AUDIO_BECOMING_NOISY));
+
+            isBecomingNoisyReceiverRegistered = true;
+        }
+    }
+
+    private void deactivateSession() {
+        mediaSession.setActive(false);
+
+        if (isBecomingNoisyReceiverRegistered) {
+            unregisterReceiver(becomingNoisyReceiver);
+
+            isBecomingNoisyReceiverRegistered = false;
+        }
+
+        // the service lives on while the activities are bound to it
+        stopSelf();
+    }
+
+    private void updateDuration() {
+        val duration = player.getDuration();
+
+        if (duration == C.TIME_UNSET) {
+            return;
+        }
+
+        playbackStateStore.update(state -> state.getTrack() == null ? state :
+                state.withTrack(state.getTrack().withDuration(duration)));
+    }
+
+    private void updateMetadataFromTrack(PlaybackState.Track track) {
+        metadataBuilder.putString(MediaMetadataCompat.METADATA_KEY_TITLE,
+                track.getTitle());
+        metadataBuilder.putString(MediaMetadataCompat.METADATA_KEY_ALBUM,
+                track.getAlbum());
+        metadataBuilder.putString(MediaMetadataCompat.METADATA_KEY_ARTIST,
+                track.getArtist());
+        metadataBuilder.putLong(MediaMetadataCompat.METADATA_KEY_DURATION,
+                track.getDuration());
+
+        mediaSession.setMetadata(metadataBuilder.build());
+
+        // the states without a notification are not posted
+        val state = sessionStateTracker.getState();
+
+        if (state == PlaybackStateCompat.STATE_PLAYING ||
+                state == PlaybackStateCompat.STATE_PAUSED) {
+            notificationPublisher.update(state);
+        }
+    }
+
+    private void updatePlaybackState() {
+        val state = SessionStateTracker.toSessionState(
+                player.getPlaybackState(), player.getPlayWhenReady(),
+                playbackError != null);
+
+        val previousState = sessionStateTracker.getState();
+
+        // only the changes the controllers cannot extrapolate are sent
+        if (sessionStateTracker.update(state, player.getCurrentPosition(),
+                player.getPlaybackParameters().speed) &&
+                state != previousState) {
+            notificationPublisher.update(state);
+        }
+    }
+
+    private void sendPlaybackState(int state, long positionMs, float speed,
+                                   long updateTimeMs) {
+        // the controllers show the message only with the error state
+        stateBuilder.setErrorMessage(
+                PlaybackStateCompat.ERROR_CODE_UNKNOWN_ERROR,
+                state == PlaybackStateCompat.STATE_ERROR ?
+                        getString(R.string.playback_error) : null);
+
+        mediaSession.setPlaybackState(stateBuilder.setState(state,
+                positionMs, speed, updateTimeMs).build());
+
+        playbackStateStore.update(playbackState -> playbackState.withPlayback(
+                state, positionMs, speed, updateTimeMs));
     }
 
     public class PlayerServiceBinder extends Binder {
         public MediaSessionCompat.Token getMediaSessionToken() {
             return mediaSession.getSessionToken();
         }
+
+        /**
+         * Returns the player of the service, which should only be used on
+         * the main thread and must not be released.
+         *
+         * @return the player that is reused for all {@link VideoClip}s.
+         */
+        public Player getPlayer() {
+            return player;
+        }
+
+        /**
+         * Starts playing a {@link VideoClip} in the player of the service,
+         * replacing the current one.
+         *
+         * @param videoClip the {@link VideoClip} that should be played.
+         * @throws NullPointerException if the video clip is null.
+         */
+        public void play(@lombok.NonNull VideoClip videoClip) {
+            PlayerService.this.play(Collections.singletonList(videoClip), 0,
+                    SystemClock.elapsedRealtime());
+        }
+
+        /**
+         * Starts playing a playlist of {@link VideoClip}s from the given
+         * clip, replacing the current playback. The clips are played one
+         * after another without gaps.
+         *
+         * @param playlist      the {@link VideoClip}s that should be played.
+         * @param index         the index of the {@link VideoClip} to start
+         *                      with.
+         * @param requestTimeMs the time when the user asked to play the
+         *                      {@link VideoClip}, as
+         *                      {@link SystemClock#elapsedRealtime()}.
+         * @throws NullPointerException      if the playlist is null.
+         * @throws IndexOutOfBoundsException if the index is out of the
+         *                                   playlist bounds.
+         */
+        public void play(@lombok.NonNull List<VideoClip> playlist, int index,
+                         long requestTimeMs) {
+            PlayerService.this.play(playlist, index, requestTimeMs);
+        }
+
+        /**
+         * Reads the beginning of a {@link VideoClip} and finds its container
+         * in the background, so the clip starts faster if it is played in a
+         * few seconds.
+         *
+         * @param videoClip the {@link VideoClip} that is likely to be
+         *                  played.
+         * @throws NullPointerException if the video clip is null.
+         */
+        public void warmUp(@lombok.NonNull VideoClip videoClip) {
+            clipWarmUp.warmUp(videoClip);
+        }
+
+        /**
+         * Returns the cache of the trickplay sprite sheets generated by the
+         * service.
+         *
+         * @return the cache of the sprite sheets.
+         */
+        public TrickplayCache getTrickplayCache() {
+            return trickplayCache;
+        }
+
+        /**
+         * Enables or disables the rendering of the video. While the video
+         * is disabled, it is not decoded and only the audio is played.
+         *
+         * @param videoEnabled true if the video should be rendered,
+         *                     otherwise false.
+         */
+        public void setVideoEnabled(boolean videoEnabled) {
+            PlayerService.this.setVideoEnabled(videoEnabled);
+        }
     }
 }
@@ -0,0 +1,126 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import java.io.IOException;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Reads a file whose first bytes have already been read into memory,
+ * serving those bytes from the memory and only opening the file when the
+ * reading goes past them.
+ *
+ * @author Artyom Mameev
+ */
+final class PrefetchedDataSource implements DataSource {
+
+    private final DataSource upstream;
+    private final byte[] head;
+    private final long fileLength;
+
+    private DataSpec dataSpec;
+    private Uri uri;
+    private long position;
+    private long bytesRemaining;
+    private boolean isUpstreamOpen;
+
+    /**
+     * Instantiates a new Prefetched Data Source.
+     *
+     * @param upstream   the source of the file, used past the read bytes.
+     * @param head       the first bytes of the file.
+     * @param fileLength the length of the file.
+     * @throws NullPointerException if the upstream or the head is null.
+     */
+    PrefetchedDataSource(@NonNull DataSource upstream, @NonNull byte[] head,
+                         long fileLength) {
+        this.upstream = upstream;
+        this.head = head;
+        this.fileLength = fileLength;
+    }
+
+    @Override
+    public void addTransferListener(@NonNull TransferListener transferListener) {
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(@NonNull DataSpec dataSpec) throws IOException {
+        this.dataSpec = dataSpec;
+
+        uri = dataSpec.uri;
+        position = dataSpec.position;
+
+        if (position >= head.length) {
+            isUpstreamOpen = true;
+
+            return upstream.open(dataSpec);
+        }
+
+        bytesRemaining = dataSpec.length != C.LENGTH_UNSET ?
+                dataSpec.length : fileLength - position;
+
+        return bytesRemaining;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int readLength)
+            throws IOException {
+        if (readLength == 0) {
+            return 0;
+        }
+
+        if (isUpstreamOpen) {
+            return upstream.read(buffer, offset, readLength);
+        }
+
+        if (bytesRemaining == 0) {
+            return C.RESULT_END_OF_INPUT;
+        }
+
+        if (position < head.length) {
+            val length = (int) Math.min(Math.min(readLength,
+                    head.length - position), bytesRemaining);
+
+            System.arraycopy(head, (int) position, buffer, offset, length);
+
+            position += length;
+            bytesRemaining -= length;
+
+            return length;
+        }
+
+        // the rest is read from the file
+        upstream.open(dataSpec.subrange(position - dataSpec.position));
+
+        isUpstreamOpen = true;
+
+        return upstream.read(buffer, offset, readLength);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return uri;
+    }
+
+    @Override
+    public void close() throws IOException {
+        uri = null;
+
+        if (isUpstreamOpen) {
+            isUpstreamOpen = false;
+
+            upstream.close();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.artyommameev.sunflowerplayer.database.Database;
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+import com.artyommameev.sunflowerplayer.storage.SeekIndex;
+import com.artyommameev.sunflowerplayer.storage.SeekIndexScanner;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import lombok.Cleanup;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Scans the MPEG-TS and FLV {@link VideoClip}s for their key frames on a
+ * background thread of the lowest priority, one clip at a time, and saves
+ * their {@link SeekIndex}es to the database.
+ * <p>
+ * A scan only reads the file once from start to end, so unlike the
+ * generation of the trickplay previews it also runs while something is
+ * playing. The clips that are already scanned and not changed since then
+ * are skipped.
+ *
+ * @author Artyom Mameev
+ */
+final class SeekIndexer {
+
+    private static final String TAG = "SeekIndexer";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Database database;
+
+    private final Object lock = new Object();
+    private final Deque<VideoClip> queue = new ArrayDeque<>();
+    private boolean isReleased;
+
+    /**
+     * Instantiates a new Seek Indexer and starts its thread.
+     *
+     * @param database the database the indexes are saved to.
+     * @throws NullPointerException if the database is null.
+     */
+    SeekIndexer(@NonNull Database database) {
+        this.database = database;
+
+        new Thread(this::run, TAG).start();
+    }
+
+    /**
+     * Replaces the queued clips. The clip being scanned is finished.
+     *
+     * @param clips the clips which should be indexed, in order. The clips
+     *              of the other containers are skipped.
+     * @throws NullPointerException if the clips list is null.
+     */
+    void enqueue(@NonNull List<VideoClip> clips) {
+        synchronized (lock) {
+            queue.clear();
+
+            for (val clip : clips) {
+                if (findIndexedFormat(clip.getFileName()) != null) {
+                    queue.add(clip);
+                }
+            }
+
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the scanning. The clip being scanned is not saved.
+     */
+    void release() {
+        synchronized (lock) {
+            isReleased = true;
+
+            lock.notifyAll();
+        }
+    }
+
+    private void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+
+        try {
+            VideoClip clip;
+
+            while ((clip = takeNext()) != null) {
+                index(clip);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private VideoClip takeNext() throws InterruptedException {
+        synchronized (lock) {
+            while (!isReleased && queue.isEmpty()) {
+                lock.wait();
+            }
+
+            return isReleased ? null : queue.pollFirst();
+        }
+    }
+
+    private boolean isReleased() {
+        synchronized (lock) {
+            return isReleased;
+        }
+    }
+
+    private void index(VideoClip clip) {
+        try {
+            val clipMediaInfo = database.findClipMediaInfoByFileName(
+                    clip.getFileName());
+
+            if (clipMediaInfo != null && clipMediaInfo.isValidFor(clip) &&
+                    clipMediaInfo.getSeekIndex() != null) {
+                return;
+            }
+
+            // the sniffed container wins over the extension
+            ContainerFormat containerFormat = null;
+
+            if (clipMediaInfo != null && clipMediaInfo.isValidFor(clip)) {
+                containerFormat = ContainerFormat.fromName(
+                        clipMediaInfo.getContainer());
+            }
+
+            if (containerFormat == null) {
+                containerFormat = findIndexedFormat(clip.getFileName());
+            }
+
+            SeekIndex seekIndex = null;
+
+            if (containerFormat == ContainerFormat.TS ||
+                    containerFormat == ContainerFormat.FLV) {
+                @Cleanup val input = new BufferedInputStream(
+                        new FileInputStream(clip), BUFFER_SIZE);
+
+                seekIndex = containerFormat == ContainerFormat.TS ?
+                        SeekIndexScanner.scanTs(input) :
+                        SeekIndexScanner.scanFlv(input);
+            }
+
+            if (isReleased()) {
+                return;
+            }
+
+            // an empty index keeps the clip from being scanned again
+            val bytes = seekIndex == null ? new byte[0] : seekIndex.toBytes();
+
+            database.updateClipMediaInfo(clip, info ->
+                    info.setSeekIndex(bytes));
+        } catch (IOException | RuntimeException e) {
+            // the clip is scanned again the next time it is played
+            Log.w(TAG, "Cannot index " + clip, e);
+        }
+    }
+
+    private static ContainerFormat findIndexedFormat(String fileName) {
+        for (val containerFormat : ContainerFormat.forFileName(fileName)) {
+            if (containerFormat == ContainerFormat.TS ||
+                    containerFormat == ContainerFormat.FLV) {
+                return containerFormat;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,159 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import android.os.SystemClock;
+import android.support.v4.media.session.PlaybackStateCompat;
+
+import com.google.android.exoplayer2.Player;
+
+import java.util.function.LongSupplier;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Decides when the playback state of the media session should be sent to
+ * its controllers.
+ * <p>
+ * The controllers extrapolate the position from the position, the speed
+ * and the update time of the last sent state, so a state is only sent if it
+ * differs from the extrapolated one: the playback is started, paused or
+ * stopped, its speed changes, or the position jumps, as on a seek or on the
+ * transition to another clip. The player reports the same state many times
+ * while it plays, and those reports are dropped.
+ *
+ * @author Artyom Mameev
+ */
+final class SessionStateTracker {
+
+    // the drift of the player clock from the extrapolated position
+    static final long POSITION_TOLERANCE_MS = 250;
+
+    private final Sink sink;
+    private final LongSupplier clock;
+
+    private boolean isSent;
+    private int state = PlaybackStateCompat.STATE_NONE;
+    private long positionMs;
+    private float speed;
+    private long updateTimeMs;
+
+    /**
+     * Instantiates a new Session State Tracker that uses the time since the
+     * boot as its clock, like the media sessions do.
+     *
+     * @param sink the receiver of the states that should be sent.
+     * @throws NullPointerException if the sink is null.
+     */
+    SessionStateTracker(@NonNull Sink sink) {
+        this(sink, SystemClock::elapsedRealtime);
+    }
+
+    SessionStateTracker(@NonNull Sink sink, @NonNull LongSupplier clock) {
+        this.sink = sink;
+        this.clock = clock;
+    }
+
+    /**
+     * Reports the current state of the player, which is sent to the sink if
+     * the controllers cannot extrapolate it from the last sent state.
+     *
+     * @param state      the state, one of the {@link PlaybackStateCompat}
+     *                   states.
+     * @param positionMs the position in the current clip in milliseconds.
+     * @param speed      the speed of the playback, 1 for the normal one.
+     * @return true if the state was sent, otherwise false.
+     */
+    boolean update(int state, long positionMs, float speed) {
+        val nowMs = clock.getAsLong();
+
+        // the position only moves while playing
+        val sentSpeed = state == PlaybackStateCompat.STATE_PLAYING ? speed : 0;
+
+        if (isSent && state == this.state && sentSpeed == this.speed &&
+                Math.abs(extrapolatePosition(nowMs) - positionMs) <=
+                        POSITION_TOLERANCE_MS) {
+            return false;
+        }
+
+        isSent = true;
+        this.state = state;
+        this.positionMs = positionMs;
+        this.speed = sentSpeed;
+        updateTimeMs = nowMs;
+
+        sink.send(state, positionMs, sentSpeed, nowMs);
+
+        return true;
+    }
+
+    /**
+     * Makes the next reported state be sent, for the changes the position
+     * does not show, such as the transition to another clip at the same
+     * position.
+     */
+    void invalidate() {
+        isSent = false;
+    }
+
+    /**
+     * Returns the last sent state.
+     *
+     * @return the state, one of the {@link PlaybackStateCompat} states.
+     */
+    int getState() {
+        return state;
+    }
+
+    /**
+     * Returns the state of the media session for a state of the player.
+     *
+     * @param playbackState the state of the player, one of the
+     *                      {@link Player} states.
+     * @param playWhenReady whether the player plays when it is ready.
+     * @param isFailed      whether the playback was ended by an error, which
+     *                      the player itself forgets when it is stopped.
+     * @return the state, one of the {@link PlaybackStateCompat} states.
+     */
+    static int toSessionState(int playbackState, boolean playWhenReady,
+                              boolean isFailed) {
+        switch (playbackState) {
+            case Player.STATE_BUFFERING:
+                return playWhenReady ? PlaybackStateCompat.STATE_BUFFERING :
+                        PlaybackStateCompat.STATE_PAUSED;
+
+            case Player.STATE_READY:
+                return playWhenReady ? PlaybackStateCompat.STATE_PLAYING :
+                        PlaybackStateCompat.STATE_PAUSED;
+
+            case Player.STATE_ENDED:
+                return PlaybackStateCompat.STATE_STOPPED;
+
+            case Player.STATE_IDLE:
+            default:
+                return isFailed ? PlaybackStateCompat.STATE_ERROR :
+                        PlaybackStateCompat.STATE_NONE;
+        }
+    }
+
+    private long extrapolatePosition(long nowMs) {
+        return positionMs + (long) ((nowMs - updateTimeMs) * speed);
+    }
+
+    /**
+     * The receiver of the states that should be sent to the controllers.
+     */
+    interface Sink {
+
+        /**
+         * Sends a state to the controllers.
+         *
+         * @param state        the state, one of the
+         *                     {@link PlaybackStateCompat} states.
+         * @param positionMs   the position in milliseconds.
+         * @param speed        the speed of the playback, 0 unless playing.
+         * @param updateTimeMs the time of the position, as
+         *                     {@link SystemClock#elapsedRealtime()}.
+         */
+        void send(int state, long positionMs, float speed, long updateTimeMs);
+    }
+}
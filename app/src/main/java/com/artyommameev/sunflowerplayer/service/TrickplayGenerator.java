@@ -0,0 +1,230 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+import com.artyommameev.sunflowerplayer.storage.TrickplayCache;
+import com.artyommameev.sunflowerplayer.storage.TrickplayIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Generates the trickplay sprite sheets of {@link VideoClip}s on a
+ * background thread of the lowest priority, one clip at a time, and puts
+ * them to a {@link TrickplayCache}.
+ * <p>
+ * The frames are taken every {@link #INTERVAL_MS}, or further apart in the
+ * clips longer than {@link #MAX_FRAMES} such intervals, so the previews
+ * cover the whole clip.
+ * <p>
+ * The generation waits while something is playing, so it never competes
+ * with the decoders of the player.
+ *
+ * @author Artyom Mameev
+ */
+final class TrickplayGenerator {
+
+    static final long INTERVAL_MS = 10_000;
+    static final int MAX_FRAMES = 120;
+    static final int FRAME_WIDTH = 160;
+    static final int COLUMNS = 10;
+
+    private static final String TAG = "TrickplayGenerator";
+
+    private final TrickplayCache trickplayCache;
+
+    private final Object lock = new Object();
+    private final Deque<File> queue = new ArrayDeque<>();
+    private boolean isPlaying;
+    private boolean isReleased;
+
+    /**
+     * Instantiates a new Trickplay Generator and starts its thread.
+     *
+     * @param trickplayCache the cache of the generated sheets.
+     * @throws NullPointerException if the cache is null.
+     */
+    TrickplayGenerator(@NonNull TrickplayCache trickplayCache) {
+        this.trickplayCache = trickplayCache;
+
+        new Thread(this::run, TAG).start();
+    }
+
+    /**
+     * Replaces the queued clips. The clip being generated is finished.
+     *
+     * @param clips the clips which sheets should be generated, in order.
+     * @throws NullPointerException if the clips list is null.
+     */
+    void enqueue(@NonNull List<? extends File> clips) {
+        synchronized (lock) {
+            queue.clear();
+            queue.addAll(clips);
+
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Pauses the generation while something is playing.
+     *
+     * @param playing true if something is playing, otherwise false.
+     */
+    void setPlaying(boolean playing) {
+        synchronized (lock) {
+            isPlaying = playing;
+
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the generation. The partially generated sheet is discarded.
+     */
+    void release() {
+        synchronized (lock) {
+            isReleased = true;
+
+            lock.notifyAll();
+        }
+    }
+
+    private void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+
+        try {
+            File clip;
+
+            while ((clip = takeNext()) != null) {
+                if (!trickplayCache.contains(clip)) {
+                    generate(clip);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private File takeNext() throws InterruptedException {
+        synchronized (lock) {
+            while (!isReleased && queue.isEmpty()) {
+                lock.wait();
+            }
+
+            return isReleased ? null : queue.pollFirst();
+        }
+    }
+
+    private boolean awaitIdle() throws InterruptedException {
+        synchronized (lock) {
+            while (!isReleased && isPlaying) {
+                lock.wait();
+            }
+
+            return !isReleased;
+        }
+    }
+
+    private void generate(File clip) throws InterruptedException {
+        val retriever = new MediaMetadataRetriever();
+
+        Bitmap sheet = null;
+
+        try {
+            retriever.setDataSource(clip.getAbsolutePath());
+
+            val durationMs = parseLong(retriever.extractMetadata(
+                    MediaMetadataRetriever.METADATA_KEY_DURATION));
+            val videoWidth = parseLong(retriever.extractMetadata(
+                    MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+            val videoHeight = parseLong(retriever.extractMetadata(
+                    MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+
+            if (durationMs <= 0 || videoWidth <= 0 || videoHeight <= 0) {
+                return;
+            }
+
+            val frameHeight = (int) Math.max(1,
+                    FRAME_WIDTH * videoHeight / videoWidth);
+            val index = TrickplayIndex.forDuration(durationMs, INTERVAL_MS,
+                    MAX_FRAMES, FRAME_WIDTH, frameHeight, COLUMNS);
+            val frameCount = index.getFrameCount();
+            val intervalMs = index.getIntervalMs();
+
+            sheet = Bitmap.createBitmap(index.getColumns() * FRAME_WIDTH,
+                    index.getRows() * frameHeight, Bitmap.Config.RGB_565);
+
+            val canvas = new Canvas(sheet);
+            val destination = new Rect();
+
+            for (int frame = 0; frame < frameCount; frame++) {
+                if (!awaitIdle()) {
+                    return;
+                }
+
+                val bitmap = getFrame(retriever, frame * intervalMs * 1000,
+                        frameHeight);
+
+                if (bitmap == null) {
+                    continue;
+                }
+
+                val left = index.getFrameLeft(frame);
+                val top = index.getFrameTop(frame);
+
+                destination.set(left, top, left + FRAME_WIDTH,
+                        top + frameHeight);
+
+                canvas.drawBitmap(bitmap, null, destination, null);
+
+                bitmap.recycle();
+            }
+
+            trickplayCache.put(clip, index, sheet);
+        } catch (IOException | RuntimeException e) {
+            // an unsupported or broken clip just has no previews
+            Log.w(TAG, "Cannot generate the sprite sheet of " + clip, e);
+        } finally {
+            if (sheet != null) {
+                sheet.recycle();
+            }
+
+            retriever.release();
+        }
+    }
+
+    private Bitmap getFrame(MediaMetadataRetriever retriever, long timeUs,
+                            int frameHeight) {
+        // the closest key frame is decoded without decoding the frames
+        // after it
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            return retriever.getScaledFrameAtTime(timeUs,
+                    MediaMetadataRetriever.OPTION_CLOSEST_SYNC,
+                    FRAME_WIDTH, frameHeight);
+        }
+
+        return retriever.getFrameAtTime(timeUs,
+                MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value == null ? -1 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
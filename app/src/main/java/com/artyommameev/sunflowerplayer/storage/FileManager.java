@@ -54,19 +54,37 @@ public class FileManager {
      * otherwise returns an empty list.
      */
     public List<File> getFiles(@NonNull Comparator<File> comparator) {
-        val currentFiles = directory.listFiles();
+        return getFiles(comparator, true);
+    }
 
-        if (currentFiles == null) {
-            return Collections.emptyList();
-        }
+    /**
+     * Returns all files in the current directory without querying the
+     * database, so the artist and title of every {@link VideoClip} are
+     * extracted from its file name.
+     * <p>
+     * Can be used to show the directory before the database is opened.
+     *
+     * @param comparator the comparator to sort the files.
+     * @return the files in the current directory if they are present,
+     * otherwise returns an empty list.
+     */
+    public List<File> getUntaggedFiles(@NonNull Comparator<File> comparator) {
+        return getFiles(comparator, false);
+    }
 
-        val currentFilesList = Arrays.stream(currentFiles)
-                .sorted(comparator)
+    /**
+     * Returns only the {@link VideoClip}s in the current directory, with
+     * their tags, for example to play the directory as a playlist.
+     *
+     * @param comparator the comparator to sort the {@link VideoClip}s.
+     * @return the {@link VideoClip}s in the current directory if they are
+     * present, otherwise returns an empty list.
+     */
+    public List<VideoClip> getVideoClips(@NonNull Comparator<File> comparator) {
+        return getFiles(comparator, true).stream()
+                .filter(file -> file instanceof VideoClip)
+                .map(file -> (VideoClip) file)
                 .collect(Collectors.toList());
-
-        scanForVideoClips(currentFilesList);
-
-        return currentFilesList;
     }
 
     /**
@@ -98,7 +116,25 @@ public class FileManager {
         directory = newDirectory;
     }
 
-    private void scanForVideoClips(@NonNull List<File> files) {
+    private List<File> getFiles(Comparator<File> comparator,
+                                boolean withTags) {
+        val currentFiles = directory.listFiles();
+
+        if (currentFiles == null) {
+            return Collections.emptyList();
+        }
+
+        val currentFilesList = Arrays.stream(currentFiles)
+                .sorted(comparator)
+                .collect(Collectors.toList());
+
+        scanForVideoClips(currentFilesList, withTags);
+
+        return currentFilesList;
+    }
+
+    private void scanForVideoClips(@NonNull List<File> files,
+                                   boolean withTags) {
         for (int i = 0; i < files.size(); i++) {
             if (!isVideoClip(files.get(i).getName())) {
                 continue;
@@ -108,19 +144,29 @@ public class FileManager {
 
             val videoClip = new VideoClip(originalFile);
 
-            val tag = database.findTagByFileName(videoClip.getFileName());
+            if (withTags) {
+                val tag = database.findTagByFileName(
+                        videoClip.getFileName());
 
-            if (tag != null) {
-                videoClip.setArtist(tag.getArtist());
-                videoClip.setTitle(tag.getTitle());
-                videoClip.setAlbum(tag.getAlbum());
+                if (tag != null) {
+                    videoClip.setArtist(tag.getArtist());
+                    videoClip.setTitle(tag.getTitle());
+                    videoClip.setAlbum(tag.getAlbum());
+                }
             }
 
             files.set(i, videoClip);
         }
     }
 
-    private boolean isVideoClip(String name) {
+    /**
+     * Checks if the file with the given name is a {@link VideoClip}.
+     *
+     * @param name the file name.
+     * @return true if the name ends with one of the extensions specified in
+     * the constant {@link FileManager#VIDEO_EXTENSIONS}, otherwise false.
+     */
+    static boolean isVideoClip(String name) {
         for (String videoExtension : VIDEO_EXTENSIONS) {
             if (name.endsWith(videoExtension)) {
                 return true;
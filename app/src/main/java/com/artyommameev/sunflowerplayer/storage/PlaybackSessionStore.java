@@ -0,0 +1,207 @@
+package com.artyommameev.sunflowerplayer.storage;
+
+import com.artyommameev.sunflowerplayer.domain.PlaybackSession;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Keeps the last {@link PlaybackSession}s in a small JSON file, as a ring
+ * buffer that drops the oldest session when a new one is added to the full
+ * store.
+ * <p>
+ * The file is rewritten on every added session, which is cheap for a few
+ * dozens of sessions, so this should not be called on the main thread.
+ *
+ * @author Artyom Mameev
+ */
+public class PlaybackSessionStore {
+
+    public static final int CAPACITY = 50;
+
+    // the stores of the same file may be used from different components
+    private static final Object lock = new Object();
+
+    private final File file;
+    private final Gson gson = new Gson();
+
+    /**
+     * Instantiates a new Playback Session Store.
+     *
+     * @param file the file of the store, which is created when the first
+     *             session is added.
+     * @throws NullPointerException if the file is null.
+     */
+    public PlaybackSessionStore(@NonNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Adds the session to the store, dropping the oldest session if the
+     * store is full.
+     *
+     * @param playbackSession the session that should be added.
+     * @throws IOException          if the store cannot be written.
+     * @throws NullPointerException if the session is null.
+     */
+    public void add(@NonNull PlaybackSession playbackSession)
+            throws IOException {
+        synchronized (lock) {
+            val playbackSessions = new ArrayDeque<PlaybackSession>(read());
+
+            playbackSessions.addLast(playbackSession);
+
+            while (playbackSessions.size() > CAPACITY) {
+                playbackSessions.removeFirst();
+            }
+
+            write(new ArrayList<>(playbackSessions));
+        }
+    }
+
+    /**
+     * Returns the stored sessions.
+     *
+     * @return the list of the stored sessions from the oldest to the newest,
+     * empty if the store is empty or cannot be read.
+     */
+    public List<PlaybackSession> findAll() {
+        synchronized (lock) {
+            return read();
+        }
+    }
+
+    /**
+     * Writes all stored sessions to the writer as a JSON array.
+     *
+     * @param writer the writer of the exported sessions, which is not
+     *               closed.
+     * @throws IOException          if the sessions cannot be written.
+     * @throws NullPointerException if the writer is null.
+     */
+    public void exportTo(@NonNull Writer writer) throws IOException {
+        gson.toJson(findAll(), writer);
+
+        writer.flush();
+    }
+
+    /**
+     * Summarizes the stored sessions.
+     *
+     * @return the summary of the stored sessions.
+     */
+    public Summary getSummary() {
+        return new Summary(findAll());
+    }
+
+    private List<PlaybackSession> read() {
+        if (!file.exists()) {
+            return new ArrayList<>();
+        }
+
+        try {
+            @Cleanup
+            val reader = new InputStreamReader(new FileInputStream(file),
+                    StandardCharsets.UTF_8);
+
+            List<PlaybackSession> playbackSessions = gson.fromJson(reader,
+                    new TypeToken<List<PlaybackSession>>() {
+                    }.getType());
+
+            return playbackSessions == null ? new ArrayList<>() :
+                    playbackSessions;
+        } catch (IOException | JsonParseException e) {
+            // the telemetry is not worth failing for, a broken store is reset
+            return new ArrayList<>();
+        }
+    }
+
+    private void write(List<PlaybackSession> playbackSessions)
+            throws IOException {
+        val tempFile = new File(file.getPath() + ".tmp");
+
+        try (Writer writer = new OutputStreamWriter(
+                new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+            gson.toJson(playbackSessions, writer);
+        }
+
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    /**
+     * The averages and totals of the stored sessions.
+     */
+    public static class Summary {
+
+        @Getter
+        private final int sessions;
+        @Getter
+        private final long averageTimeToFirstFrameMs;
+        @Getter
+        private final long averageVideoDecoderInitMs;
+        @Getter
+        private final int droppedFrames;
+        @Getter
+        private final int rebuffers;
+        @Getter
+        private final long rebufferMs;
+
+        /**
+         * Instantiates a new Summary of the given sessions. The averages
+         * only count the sessions with the measurement taken, and are -1
+         * if no session has it.
+         *
+         * @param playbackSessions the sessions that should be summarized.
+         * @throws NullPointerException if the sessions list is null.
+         */
+        public Summary(@NonNull List<PlaybackSession> playbackSessions) {
+            sessions = playbackSessions.size();
+
+            averageTimeToFirstFrameMs = average(playbackSessions.stream()
+                    .mapToLong(PlaybackSession::getTimeToFirstFrameMs)
+                    .toArray());
+            averageVideoDecoderInitMs = average(playbackSessions.stream()
+                    .mapToLong(PlaybackSession::getVideoDecoderInitMs)
+                    .toArray());
+            droppedFrames = playbackSessions.stream()
+                    .mapToInt(PlaybackSession::getDroppedFrames).sum();
+            rebuffers = playbackSessions.stream()
+                    .mapToInt(PlaybackSession::getRebuffers).sum();
+            rebufferMs = playbackSessions.stream()
+                    .mapToLong(PlaybackSession::getRebufferMs).sum();
+        }
+
+        private static long average(long[] values) {
+            long total = 0;
+            int count = 0;
+
+            for (val value : values) {
+                if (value >= 0) {
+                    total += value;
+                    count++;
+                }
+            }
+
+            return count == 0 ? -1 : total / count;
+        }
+    }
+}
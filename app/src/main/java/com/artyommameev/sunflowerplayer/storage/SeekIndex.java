@@ -0,0 +1,288 @@
+package com.artyommameev.sunflowerplayer.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Maps the times of the key frames of a clip to the byte positions at which
+ * the reading should start to play from them, for the containers that have
+ * no seek table of their own.
+ * <p>
+ * The index also holds the header: the bytes an extractor expects before
+ * the first indexed position if it starts reading from one, or no bytes if
+ * it does not need any. The times and the positions are written as
+ * variable-length deltas, so an index of an hour of a clip takes a few
+ * kilobytes.
+ *
+ * @author Artyom Mameev
+ */
+public class SeekIndex {
+
+    private static final int VERSION = 1;
+
+    @Getter
+    private final long durationUs;
+    private final long[] timesUs;
+    private final long[] positions;
+    private final byte[] header;
+
+    private SeekIndex(long durationUs, long[] timesUs, long[] positions,
+                      byte[] header) {
+        this.durationUs = durationUs;
+        this.timesUs = timesUs;
+        this.positions = positions;
+        this.header = header;
+    }
+
+    /**
+     * Reads an index written by {@link SeekIndex#toBytes()}.
+     *
+     * @param bytes the bytes of the index.
+     * @return the read index.
+     * @throws IOException          if the bytes are not an index of a known
+     *                              version.
+     * @throws NullPointerException if the bytes are null.
+     */
+    public static SeekIndex fromBytes(@NonNull byte[] bytes) throws IOException {
+        val input = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        if (readVarLong(input) != VERSION) {
+            throw new IOException("Unknown seek index version");
+        }
+
+        val durationUs = readVarLong(input) - 1;
+        val size = (int) readVarLong(input);
+
+        if (size <= 0 || size > bytes.length) {
+            throw new IOException("Broken seek index");
+        }
+
+        val timesUs = new long[size];
+        val positions = new long[size];
+
+        long timeUs = 0;
+        long position = 0;
+
+        for (int i = 0; i < size; i++) {
+            timeUs += readVarLong(input);
+            position += readVarLong(input);
+
+            timesUs[i] = timeUs;
+            positions[i] = position;
+        }
+
+        val headerLength = (int) readVarLong(input);
+
+        if (headerLength < 0 || headerLength > input.available()) {
+            throw new IOException("Broken seek index");
+        }
+
+        val header = new byte[headerLength];
+
+        input.readFully(header);
+
+        return new SeekIndex(durationUs, timesUs, positions, header);
+    }
+
+    /**
+     * Writes the index.
+     *
+     * @return the bytes of the index.
+     */
+    public byte[] toBytes() {
+        val output = new ByteArrayOutputStream(16 + positions.length * 4 +
+                header.length);
+        val dataOutput = new DataOutputStream(output);
+
+        try {
+            writeVarLong(dataOutput, VERSION);
+            writeVarLong(dataOutput, durationUs + 1); // unknown is -1
+            writeVarLong(dataOutput, positions.length);
+
+            for (int i = 0; i < positions.length; i++) {
+                writeVarLong(dataOutput, timesUs[i] -
+                        (i == 0 ? 0 : timesUs[i - 1]));
+                writeVarLong(dataOutput, positions[i] -
+                        (i == 0 ? 0 : positions[i - 1]));
+            }
+
+            writeVarLong(dataOutput, header.length);
+
+            dataOutput.write(header);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // not thrown in memory
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Returns the number of the indexed key frames.
+     *
+     * @return the number of the key frames, at least one.
+     */
+    public int size() {
+        return positions.length;
+    }
+
+    /**
+     * Returns the last indexed key frame at or before a time.
+     *
+     * @param timeUs the time in microseconds.
+     * @return the index of the key frame, or -1 if the time is before the
+     * first key frame.
+     */
+    public int floorIndex(long timeUs) {
+        val index = Arrays.binarySearch(timesUs, timeUs);
+
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Returns the time of an indexed key frame.
+     *
+     * @param index the index of the key frame.
+     * @return the time of the key frame in microseconds.
+     */
+    public long getTimeUs(int index) {
+        return timesUs[index];
+    }
+
+    /**
+     * Returns the position of an indexed key frame.
+     *
+     * @param index the index of the key frame.
+     * @return the byte position in the file.
+     */
+    public long getPosition(int index) {
+        return positions[index];
+    }
+
+    /**
+     * Returns the bytes an extractor expects before an indexed position.
+     *
+     * @return a copy of the header, empty if the extractor can start
+     * reading from an indexed position as it is.
+     */
+    public byte[] getHeader() {
+        return header.clone();
+    }
+
+    private static void writeVarLong(DataOutputStream output, long value)
+            throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+
+            value >>>= 7;
+        }
+
+        output.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream input)
+            throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            val b = input.readUnsignedByte();
+
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Broken seek index");
+    }
+
+    /**
+     * Builds a {@link SeekIndex} from the key frames in the order of the
+     * file.
+     */
+    public static class Builder {
+
+        private final long minIntervalUs;
+
+        private long[] timesUs = new long[64];
+        private long[] positions = new long[64];
+        private int size;
+        private byte[] header = new byte[0];
+        private long durationUs = -1;
+
+        /**
+         * Instantiates a new Builder.
+         *
+         * @param minIntervalUs the minimum time between the indexed key
+         *                      frames, the key frames closer to the previous
+         *                      indexed one are skipped.
+         */
+        public Builder(long minIntervalUs) {
+            this.minIntervalUs = minIntervalUs;
+        }
+
+        /**
+         * Adds a key frame, unless it is too close to the previous one or
+         * is not after it.
+         *
+         * @param timeUs   the time of the key frame in microseconds.
+         * @param position the byte position of the key frame in the file.
+         */
+        public void addKeyFrame(long timeUs, long position) {
+            if (timeUs < 0 || (size > 0 && (timeUs < timesUs[size - 1] +
+                    minIntervalUs || position <= positions[size - 1]))) {
+                return;
+            }
+
+            if (size == positions.length) {
+                timesUs = Arrays.copyOf(timesUs, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+
+            timesUs[size] = timeUs;
+            positions[size] = position;
+            size++;
+        }
+
+        /**
+         * Sets the bytes an extractor expects before an indexed position.
+         *
+         * @param header the header.
+         * @throws NullPointerException if the header is null.
+         */
+        public void setHeader(@NonNull byte[] header) {
+            this.header = header.clone();
+        }
+
+        /**
+         * Sets the duration of the clip.
+         *
+         * @param durationUs the duration in microseconds.
+         */
+        public void setDurationUs(long durationUs) {
+            this.durationUs = durationUs;
+        }
+
+        /**
+         * Builds the index.
+         *
+         * @return the index, or null if no key frames were added.
+         */
+        public SeekIndex build() {
+            if (size == 0) {
+                return null;
+            }
+
+            return new SeekIndex(durationUs, Arrays.copyOf(timesUs, size),
+                    Arrays.copyOf(positions, size), header);
+        }
+    }
+}
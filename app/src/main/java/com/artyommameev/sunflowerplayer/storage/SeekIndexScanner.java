@@ -0,0 +1,431 @@
+package com.artyommameev.sunflowerplayer.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Scans the whole files of the containers without a seek table, MPEG-TS
+ * and FLV, and builds the {@link SeekIndex}es of their key frames.
+ * <p>
+ * A scan reads the file once from its start to its end, so it should be
+ * done on a background thread and its result should be stored.
+ *
+ * @author Artyom Mameev
+ */
+public final class SeekIndexScanner {
+
+    // a key frame every second is enough to seek instantly
+    public static final long MIN_INTERVAL_US = 1_000_000;
+
+    private static final int TS_PACKET_SIZE = 188;
+    private static final int TS_SYNC_BYTE = 0x47;
+    private static final long PTS_WRAP = 1L << 33;
+
+    private static final int FLV_HEADER_SIZE = 9;
+    private static final int FLV_TAG_HEADER_SIZE = 11;
+    private static final int FLV_TAG_TYPE_AUDIO = 8;
+    private static final int FLV_TAG_TYPE_VIDEO = 9;
+    private static final int FLV_KEY_FRAME = 1;
+    private static final int FLV_AAC = 10;
+    private static final int FLV_AVC = 7;
+
+    private SeekIndexScanner() {
+    }
+
+    /**
+     * Builds the index of an MPEG-TS file.
+     * <p>
+     * The times are relative to the first presentation timestamp of the
+     * program, and the positions are those of the packets starting the key
+     * frames of its video stream. A key frame is recognized by the random
+     * access indicator of its packet or, for H.264 and H.265, by the type of
+     * its first NAL unit.
+     *
+     * @param input the input of the file, at its start.
+     * @return the index, or null if the file is not an MPEG-TS file or has
+     * no key frames.
+     * @throws IOException          if the file cannot be read.
+     * @throws NullPointerException if the input is null.
+     */
+    public static SeekIndex scanTs(@NonNull InputStream input)
+            throws IOException {
+        val dataInput = new DataInputStream(input);
+        val packet = new byte[TS_PACKET_SIZE];
+        val builder = new SeekIndex.Builder(MIN_INTERVAL_US);
+
+        val mediaPids = new HashSet<Integer>();
+        val streamTypes = new int[8192];
+
+        int pmtPid = -1;
+        int videoPid = -1;
+        int videoStreamType = -1;
+        long firstPts = -1;
+        long lastTimeUs = -1;
+
+        for (long position = 0; ; position += TS_PACKET_SIZE) {
+            try {
+                dataInput.readFully(packet);
+            } catch (EOFException e) {
+                break;
+            }
+
+            if ((packet[0] & 0xFF) != TS_SYNC_BYTE) {
+                return null; // not a TS file, or not a plain one
+            }
+
+            val payloadUnitStart = (packet[1] & 0x40) != 0;
+            val pid = ((packet[1] & 0x1F) << 8) | (packet[2] & 0xFF);
+            val adaptationFieldControl = (packet[3] >> 4) & 0x03;
+
+            int payloadOffset = 4;
+            boolean randomAccess = false;
+
+            if ((adaptationFieldControl & 0x02) != 0) {
+                val adaptationFieldLength = packet[4] & 0xFF;
+
+                randomAccess = adaptationFieldLength > 0 &&
+                        (packet[5] & 0x40) != 0;
+                payloadOffset += 1 + adaptationFieldLength;
+            }
+
+            if ((adaptationFieldControl & 0x01) == 0 ||
+                    payloadOffset >= TS_PACKET_SIZE || !payloadUnitStart) {
+                continue;
+            }
+
+            if (pid == 0 && pmtPid < 0) {
+                pmtPid = readPmtPid(packet, payloadOffset);
+            } else if (pid == pmtPid && videoPid < 0) {
+                readPmt(packet, payloadOffset, mediaPids, streamTypes);
+
+                for (val mediaPid : mediaPids) {
+                    if (isVideoStreamType(streamTypes[mediaPid])) {
+                        videoPid = mediaPid;
+                        videoStreamType = streamTypes[mediaPid];
+                    }
+                }
+            } else if (mediaPids.contains(pid)) {
+                val pts = readPts(packet, payloadOffset);
+
+                if (pts < 0) {
+                    continue;
+                }
+
+                if (firstPts < 0) {
+                    firstPts = pts;
+                }
+
+                val timeUs = ((pts - firstPts + PTS_WRAP) % PTS_WRAP) *
+                        100 / 9;
+
+                lastTimeUs = Math.max(lastTimeUs, timeUs);
+
+                if (pid == videoPid && (randomAccess || isKeyFrameNalUnit(
+                        packet, payloadOffset, videoStreamType))) {
+                    builder.addKeyFrame(timeUs, position);
+                }
+            }
+        }
+
+        builder.setDurationUs(lastTimeUs);
+
+        return builder.build();
+    }
+
+    /**
+     * Builds the index of an FLV file.
+     * <p>
+     * The times are the timestamps of the video tags of the key frames, and
+     * the positions are those of the tags. The header of the index is an FLV
+     * header followed by the codec configuration tags of the file, which a
+     * new extractor needs before the first key frame it reads.
+     *
+     * @param input the input of the file, at its start.
+     * @return the index, or null if the file is not an FLV file or has no
+     * key frames.
+     * @throws IOException          if the file cannot be read.
+     * @throws NullPointerException if the input is null.
+     */
+    public static SeekIndex scanFlv(@NonNull InputStream input)
+            throws IOException {
+        val dataInput = new DataInputStream(input);
+        val fileHeader = new byte[FLV_HEADER_SIZE];
+
+        try {
+            dataInput.readFully(fileHeader);
+        } catch (EOFException e) {
+            return null;
+        }
+
+        if (fileHeader[0] != 'F' || fileHeader[1] != 'L' ||
+                fileHeader[2] != 'V') {
+            return null;
+        }
+
+        val dataOffset = readInt(fileHeader, 5);
+
+        if (dataOffset < FLV_HEADER_SIZE) {
+            return null;
+        }
+
+        if (!skip(dataInput, dataOffset - FLV_HEADER_SIZE + 4)) {
+            return null;
+        }
+
+        val builder = new SeekIndex.Builder(MIN_INTERVAL_US);
+
+        // the header of the file without its extra data, and the first
+        // previous tag size
+        val header = new ByteArrayOutputStream();
+        header.write(fileHeader, 0, 5);
+        header.write(new byte[]{0, 0, 0, FLV_HEADER_SIZE, 0, 0, 0, 0}, 0, 8);
+
+        val configurationTypes = new HashSet<Integer>();
+        val tagHeader = new byte[FLV_TAG_HEADER_SIZE];
+
+        long lastTimeUs = -1;
+
+        for (long position = dataOffset + 4; ; ) {
+            try {
+                dataInput.readFully(tagHeader);
+            } catch (EOFException e) {
+                break;
+            }
+
+            val tagType = tagHeader[0] & 0x1F;
+            val dataSize = readInt24(tagHeader, 1);
+            val timestampMs = readInt24(tagHeader, 4) |
+                    ((tagHeader[7] & 0xFF) << 24);
+            val timeUs = (timestampMs & 0xFFFFFFFFL) * 1000;
+
+            if (dataSize == 0) {
+                if (!skip(dataInput, 4)) {
+                    break;
+                }
+
+                position += FLV_TAG_HEADER_SIZE + 4;
+
+                continue;
+            }
+
+            val firstBytes = new byte[Math.min(dataSize, 2)];
+
+            try {
+                dataInput.readFully(firstBytes);
+            } catch (EOFException e) {
+                break;
+            }
+
+            if (tagType == FLV_TAG_TYPE_VIDEO ||
+                    tagType == FLV_TAG_TYPE_AUDIO) {
+                lastTimeUs = Math.max(lastTimeUs, timeUs);
+            }
+
+            if (isFlvConfigurationTag(tagType, firstBytes) &&
+                    configurationTypes.add(tagType)) {
+                val data = new byte[dataSize];
+
+                System.arraycopy(firstBytes, 0, data, 0, firstBytes.length);
+
+                try {
+                    dataInput.readFully(data, firstBytes.length,
+                            dataSize - firstBytes.length);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                // the configuration is written with the zero timestamp
+                header.write(tagHeader[0]);
+                header.write(tagHeader, 1, 3);
+                header.write(new byte[7], 0, 7);
+                header.write(data, 0, data.length);
+                writeInt(header, FLV_TAG_HEADER_SIZE + dataSize);
+
+                if (!skip(dataInput, 4)) {
+                    break;
+                }
+            } else {
+                if (tagType == FLV_TAG_TYPE_VIDEO &&
+                        ((firstBytes[0] & 0xFF) >> 4) == FLV_KEY_FRAME) {
+                    builder.addKeyFrame(timeUs, position);
+                }
+
+                if (!skip(dataInput, dataSize - firstBytes.length + 4)) {
+                    break;
+                }
+            }
+
+            position += FLV_TAG_HEADER_SIZE + dataSize + 4;
+        }
+
+        builder.setHeader(header.toByteArray());
+        builder.setDurationUs(lastTimeUs);
+
+        return builder.build();
+    }
+
+    private static int readPmtPid(byte[] packet, int payloadOffset) {
+        val section = payloadOffset + 1 + (packet[payloadOffset] & 0xFF);
+
+        if (section + 8 > TS_PACKET_SIZE || packet[section] != 0x00) {
+            return -1;
+        }
+
+        val sectionEnd = Math.min(TS_PACKET_SIZE - 4, section + 3 +
+                (((packet[section + 1] & 0x0F) << 8) |
+                        (packet[section + 2] & 0xFF)) - 4);
+
+        for (int i = section + 8; i + 4 <= sectionEnd; i += 4) {
+            val programNumber = ((packet[i] & 0xFF) << 8) |
+                    (packet[i + 1] & 0xFF);
+
+            if (programNumber != 0) { // not the network information
+                return ((packet[i + 2] & 0x1F) << 8) | (packet[i + 3] & 0xFF);
+            }
+        }
+
+        return -1;
+    }
+
+    private static void readPmt(byte[] packet, int payloadOffset,
+                                Set<Integer> mediaPids, int[] streamTypes) {
+        val section = payloadOffset + 1 + (packet[payloadOffset] & 0xFF);
+
+        if (section + 12 > TS_PACKET_SIZE || packet[section] != 0x02) {
+            return;
+        }
+
+        val sectionEnd = Math.min(TS_PACKET_SIZE, section + 3 +
+                (((packet[section + 1] & 0x0F) << 8) |
+                        (packet[section + 2] & 0xFF)) - 4);
+        val programInfoLength = ((packet[section + 10] & 0x0F) << 8) |
+                (packet[section + 11] & 0xFF);
+
+        for (int i = section + 12 + programInfoLength; i + 5 <= sectionEnd; ) {
+            val streamType = packet[i] & 0xFF;
+            val pid = ((packet[i + 1] & 0x1F) << 8) | (packet[i + 2] & 0xFF);
+            val esInfoLength = ((packet[i + 3] & 0x0F) << 8) |
+                    (packet[i + 4] & 0xFF);
+
+            // the other streams are not read by the player
+            if (isVideoStreamType(streamType) ||
+                    isAudioStreamType(streamType)) {
+                mediaPids.add(pid);
+                streamTypes[pid] = streamType;
+            }
+
+            i += 5 + esInfoLength;
+        }
+    }
+
+    private static long readPts(byte[] packet, int payloadOffset) {
+        val p = payloadOffset;
+
+        if (p + 14 > TS_PACKET_SIZE || packet[p] != 0 || packet[p + 1] != 0 ||
+                packet[p + 2] != 1 || (packet[p + 7] & 0x80) == 0) {
+            return -1; // not a PES start, or no PTS
+        }
+
+        return (((long) (packet[p + 9] & 0x0E)) << 29) |
+                ((packet[p + 10] & 0xFF) << 22) |
+                ((packet[p + 11] & 0xFE) << 14) |
+                ((packet[p + 12] & 0xFF) << 7) |
+                ((packet[p + 13] & 0xFE) >> 1);
+    }
+
+    private static boolean isVideoStreamType(int streamType) {
+        return streamType == 0x01 || streamType == 0x02 ||
+                streamType == 0x10 || streamType == 0x1B ||
+                streamType == 0x24;
+    }
+
+    private static boolean isAudioStreamType(int streamType) {
+        return streamType == 0x03 || streamType == 0x04 ||
+                streamType == 0x0F || streamType == 0x11 ||
+                streamType == 0x81 || streamType == 0x87;
+    }
+
+    private static boolean isKeyFrameNalUnit(byte[] packet, int payloadOffset,
+                                             int streamType) {
+        if (streamType != 0x1B && streamType != 0x24) {
+            return false;
+        }
+
+        val esOffset = payloadOffset + 9 + (packet[payloadOffset + 8] & 0xFF);
+
+        for (int i = esOffset; i + 3 < TS_PACKET_SIZE; i++) {
+            if (packet[i] != 0 || packet[i + 1] != 0 || packet[i + 2] != 1) {
+                continue;
+            }
+
+            val nalHeader = packet[i + 3] & 0xFF;
+
+            if (streamType == 0x1B) {
+                val type = nalHeader & 0x1F;
+
+                if (type == 5) { // IDR
+                    return true;
+                } else if (type == 1) { // a non-IDR slice
+                    return false;
+                }
+            } else {
+                val type = (nalHeader >> 1) & 0x3F;
+
+                if (type >= 16 && type <= 21) { // IRAP
+                    return true;
+                } else if (type < 16) {
+                    return false;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isFlvConfigurationTag(int tagType,
+                                                 byte[] firstBytes) {
+        if (firstBytes.length < 2) {
+            return false;
+        }
+
+        if (tagType == FLV_TAG_TYPE_VIDEO) {
+            return (firstBytes[0] & 0x0F) == FLV_AVC && firstBytes[1] == 0;
+        }
+
+        return tagType == FLV_TAG_TYPE_AUDIO &&
+                ((firstBytes[0] & 0xFF) >> 4) == FLV_AAC && firstBytes[1] == 0;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) |
+                ((bytes[offset + 1] & 0xFF) << 16) |
+                ((bytes[offset + 2] & 0xFF) << 8) |
+                (bytes[offset + 3] & 0xFF);
+    }
+
+    private static int readInt24(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 16) |
+                ((bytes[offset + 1] & 0xFF) << 8) |
+                (bytes[offset + 2] & 0xFF);
+    }
+
+    private static void writeInt(ByteArrayOutputStream output, int value) {
+        output.write(value >>> 24);
+        output.write(value >>> 16);
+        output.write(value >>> 8);
+        output.write(value);
+    }
+
+    private static boolean skip(DataInputStream input, int length)
+            throws IOException {
+        return input.skipBytes(length) == length;
+    }
+}
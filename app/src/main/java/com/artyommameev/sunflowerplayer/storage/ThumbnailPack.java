@@ -0,0 +1,315 @@
+package com.artyommameev.sunflowerplayer.storage;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Cleanup;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * A size-bounded disk cache of small images packed into a single file, so
+ * hundreds of thumbnails take one file instead of hundreds of tiny files.
+ * <p>
+ * The file is a header followed by records of a key, a length and the bytes
+ * of an image, which are only appended. The index of the records is read
+ * once, when the pack is first used, and a record that was not completely
+ * written is cut off. When the file grows over its size, it is rewritten
+ * with the most recently used images only.
+ * <p>
+ * The methods read and write the file, so they should not be called on the
+ * main thread.
+ *
+ * @author Artyom Mameev
+ */
+public class ThumbnailPack {
+
+    private static final int MAGIC = 0x53465448; // "SFTH"
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+
+    // the images are small, a larger length means a broken record
+    private static final int MAX_RECORD_LENGTH = 1024 * 1024;
+
+    private final File file;
+    private final long maxBytes;
+
+    // the records by keys in the order of use, the eldest first
+    private final LinkedHashMap<String, Record> records =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private boolean isIndexed;
+    private long length;
+
+    /**
+     * Instantiates a new Thumbnail Pack.
+     *
+     * @param file     the file of the pack, which is created when the first
+     *                 image is put.
+     * @param maxBytes the maximum size of the file in bytes.
+     * @throws NullPointerException if the file is null.
+     */
+    public ThumbnailPack(@NonNull File file, long maxBytes) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Reads an image and marks it as recently used.
+     *
+     * @param key the key of the image.
+     * @return the bytes of the image, or null if it is not in the pack or
+     * cannot be read.
+     * @throws NullPointerException if the key is null.
+     */
+    public synchronized byte[] get(@NonNull String key) {
+        index();
+
+        val record = records.get(key);
+
+        if (record == null) {
+            return null;
+        }
+
+        try {
+            @Cleanup
+            val randomAccessFile = new RandomAccessFile(file, "r");
+
+            val bytes = new byte[record.length];
+
+            randomAccessFile.seek(record.offset);
+            randomAccessFile.readFully(bytes);
+
+            return bytes;
+        } catch (IOException e) {
+            records.remove(key);
+
+            return null;
+        }
+    }
+
+    /**
+     * Appends an image, replacing the previous image of the key, and
+     * rewrites the pack if it has grown over its size.
+     *
+     * @param key   the key of the image.
+     * @param bytes the bytes of the image.
+     * @throws IOException              if the image cannot be written.
+     * @throws IllegalArgumentException if the image is larger than a
+     *                                  thumbnail can be.
+     * @throws NullPointerException     if any parameter is null.
+     */
+    public synchronized void put(@NonNull String key, @NonNull byte[] bytes)
+            throws IOException {
+        if (bytes.length > MAX_RECORD_LENGTH) {
+            throw new IllegalArgumentException("The image is too large");
+        }
+
+        index();
+
+        if (length > 0 &&
+                length + recordLength(key, bytes.length) > maxBytes) {
+            compact(maxBytes / 2);
+        }
+
+        val parent = file.getParentFile();
+
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+
+        @Cleanup
+        val randomAccessFile = new RandomAccessFile(file, "rw");
+
+        if (length == 0) {
+            randomAccessFile.setLength(0);
+            randomAccessFile.writeInt(MAGIC);
+            randomAccessFile.writeInt(VERSION);
+
+            length = HEADER_LENGTH;
+        }
+
+        randomAccessFile.seek(length);
+        randomAccessFile.writeUTF(key);
+        randomAccessFile.writeInt(bytes.length);
+
+        val offset = randomAccessFile.getFilePointer();
+
+        randomAccessFile.write(bytes);
+
+        records.put(key, new Record(offset, bytes.length));
+
+        length = randomAccessFile.getFilePointer();
+
+        // cuts off what is left of a record that was not written
+        randomAccessFile.setLength(length);
+    }
+
+    /**
+     * Returns the number of the images in the pack.
+     *
+     * @return the number of the images.
+     */
+    public synchronized int size() {
+        index();
+
+        return records.size();
+    }
+
+    private void index() {
+        if (isIndexed) {
+            return;
+        }
+
+        isIndexed = true;
+        length = 0;
+
+        if (!file.exists()) {
+            return;
+        }
+
+        try {
+            @Cleanup
+            val input = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return; // an unknown pack is overwritten
+            }
+
+            long offset = HEADER_LENGTH;
+
+            length = offset;
+
+            while (true) {
+                val key = input.readUTF();
+                val recordLength = input.readInt();
+
+                if (recordLength < 0 || recordLength > MAX_RECORD_LENGTH) {
+                    break;
+                }
+
+                val recordOffset = offset + recordLength(key, 0);
+
+                if (input.skipBytes(recordLength) != recordLength) {
+                    break;
+                }
+
+                records.put(key, new Record(recordOffset, recordLength));
+
+                offset = recordOffset + recordLength;
+                length = offset;
+            }
+        } catch (EOFException e) {
+            // the end of the pack, or of a record that was not written
+        } catch (IOException e) {
+            records.clear();
+            length = 0;
+        }
+    }
+
+    private void compact(long targetBytes) throws IOException {
+        val kept = new ArrayList<Map.Entry<String, byte[]>>();
+
+        long keptBytes = HEADER_LENGTH;
+
+        // the most recently used images are kept
+        val entries = new ArrayList<Map.Entry<String, Record>>(
+                records.entrySet());
+
+        Collections.reverse(entries);
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            for (val entry : entries) {
+                val record = entry.getValue();
+
+                keptBytes += recordLength(entry.getKey(), record.length);
+
+                if (keptBytes > targetBytes) {
+                    break;
+                }
+
+                val bytes = new byte[record.length];
+
+                input.seek(record.offset);
+                input.readFully(bytes);
+
+                kept.add(new AbstractMap.SimpleEntry<>(entry.getKey(), bytes));
+            }
+        }
+
+        records.clear();
+        length = 0;
+
+        val tempFile = new File(file.getPath() + ".tmp");
+
+        try (RandomAccessFile output = new RandomAccessFile(tempFile, "rw")) {
+            output.setLength(0);
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+
+            // written back in the order of use, the eldest first
+            for (int i = kept.size() - 1; i >= 0; i--) {
+                val entry = kept.get(i);
+
+                output.writeUTF(entry.getKey());
+                output.writeInt(entry.getValue().length);
+
+                val offset = output.getFilePointer();
+
+                output.write(entry.getValue());
+
+                records.put(entry.getKey(), new Record(offset,
+                        entry.getValue().length));
+            }
+
+            length = output.getFilePointer();
+        }
+
+        if (!tempFile.renameTo(file)) {
+            records.clear();
+            length = 0;
+
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private static long recordLength(String key, int length) {
+        long keyLength = 0;
+
+        // the length of the modified UTF-8 written by writeUTF()
+        for (int i = 0; i < key.length(); i++) {
+            val c = key.charAt(i);
+
+            if (c >= 0x0001 && c <= 0x007F) {
+                keyLength += 1;
+            } else if (c <= 0x07FF) {
+                keyLength += 2;
+            } else {
+                keyLength += 3;
+            }
+        }
+
+        return 2 + keyLength + 4 + length;
+    }
+
+    private static class Record {
+
+        final long offset;
+        final int length;
+
+        Record(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
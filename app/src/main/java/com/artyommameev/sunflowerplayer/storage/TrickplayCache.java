@@ -0,0 +1,217 @@
+package com.artyommameev.sunflowerplayer.storage;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * A size-bounded disk cache of trickplay sprite sheets, one file per clip.
+ * <p>
+ * A file is keyed by the path and the modification time of its clip, so a
+ * replaced clip gets a new sheet, and holds the {@link TrickplayIndex}
+ * followed by the JPEG image of the sheet. When the cache grows over its
+ * size, the least recently used sheets are removed.
+ *
+ * @author Artyom Mameev
+ */
+public class TrickplayCache {
+
+    private static final String EXTENSION = ".sheet";
+    private static final int JPEG_QUALITY = 70;
+
+    private final File directory;
+    private final long maxBytes;
+
+    /**
+     * Instantiates a new Trickplay Cache.
+     *
+     * @param directory the directory of the cache, which is created when the
+     *                  first sheet is put.
+     * @param maxBytes  the maximum size of the cache in bytes.
+     * @throws NullPointerException if the directory is null.
+     */
+    public TrickplayCache(@NonNull File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Checks if the cache has the sheet of a clip.
+     *
+     * @param clip the file of the clip.
+     * @return true if the sheet of the current version of the clip is
+     * cached, otherwise false.
+     * @throws NullPointerException if the clip is null.
+     */
+    public boolean contains(@NonNull File clip) {
+        return getFile(clip).exists();
+    }
+
+    /**
+     * Reads the sheet of a clip and marks it as recently used.
+     *
+     * @param clip the file of the clip.
+     * @return the sheet of the clip, or null if it is not cached or cannot
+     * be read, in which case the sheet is removed to be generated again.
+     * @throws NullPointerException if the clip is null.
+     */
+    public Sheet get(@NonNull File clip) {
+        val file = getFile(clip);
+
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            @Cleanup
+            val input = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+
+            val index = TrickplayIndex.readFrom(input);
+
+            // the sheet has no alpha, so it takes half of the memory
+            val options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+
+            val bitmap = BitmapFactory.decodeStream(input, null, options);
+
+            if (bitmap == null) {
+                return null;
+            }
+
+            @SuppressWarnings("unused")
+            val ignored = file.setLastModified(System.currentTimeMillis());
+
+            return new Sheet(index, bitmap);
+        } catch (IOException e) {
+            // a sheet of an older layout is generated again
+            @SuppressWarnings("unused")
+            val ignored = file.delete();
+
+            return null;
+        }
+    }
+
+    /**
+     * Writes the sheet of a clip and removes the least recently used sheets
+     * if the cache has grown over its size.
+     *
+     * @param clip   the file of the clip.
+     * @param index  the index of the sheet.
+     * @param bitmap the image of the sheet.
+     * @throws IOException          if the sheet cannot be written.
+     * @throws NullPointerException if any parameter is null.
+     */
+    public void put(@NonNull File clip, @NonNull TrickplayIndex index,
+                    @NonNull Bitmap bitmap) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        val file = getFile(clip);
+        val tempFile = new File(directory, file.getName() + ".tmp");
+
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            index.writeTo(output);
+
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, output);
+        }
+
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+
+        trim();
+    }
+
+    private void trim() {
+        val files = directory.listFiles((dir, name) ->
+                name.endsWith(EXTENSION));
+
+        if (files == null) {
+            return;
+        }
+
+        long totalBytes = 0;
+
+        for (val file : files) {
+            totalBytes += file.length();
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+        for (int i = 0; i < files.length && totalBytes > maxBytes; i++) {
+            val length = files[i].length();
+
+            if (files[i].delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+
+    private File getFile(File clip) {
+        return new File(directory, getKey(clip) + EXTENSION);
+    }
+
+    /**
+     * Returns the cache key of a file, which changes when the file is
+     * modified.
+     *
+     * @param file the file.
+     * @return the hex string of the hash of the path and the modification
+     * time of the file.
+     * @throws NullPointerException if the file is null.
+     */
+    public static String getKey(@NonNull File file) {
+        try {
+            val digest = MessageDigest.getInstance("SHA-1").digest(
+                    (file.getAbsolutePath() + ":" + file.lastModified())
+                            .getBytes(StandardCharsets.UTF_8));
+
+            val key = new StringBuilder(digest.length * 2);
+
+            for (val b : digest) {
+                key.append(String.format("%02x", b));
+            }
+
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported", e);
+        }
+    }
+
+    /**
+     * A cached sprite sheet.
+     */
+    public static class Sheet {
+
+        @Getter
+        private final TrickplayIndex index;
+        @Getter
+        private final Bitmap bitmap;
+
+        Sheet(TrickplayIndex index, Bitmap bitmap) {
+            this.index = index;
+            this.bitmap = bitmap;
+        }
+    }
+}
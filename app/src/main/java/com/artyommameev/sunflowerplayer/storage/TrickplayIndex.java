@@ -0,0 +1,179 @@
+package com.artyommameev.sunflowerplayer.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Describes a trickplay sprite sheet: a grid of low-resolution frames of a
+ * clip taken at a fixed interval, row by row. The interval grows with the
+ * duration of the clip, so the frames of a sheet always span the whole
+ * clip.
+ * <p>
+ * The index is written in front of the image of the sheet in the sprite
+ * sheet file, so a single file holds everything needed to show a preview.
+ *
+ * @author Artyom Mameev
+ */
+public class TrickplayIndex {
+
+    private static final int MAGIC = 0x53465450; // "SFTP"
+    private static final int VERSION = 2;
+
+    @Getter
+    private final long intervalMs;
+    @Getter
+    private final int frameWidth;
+    @Getter
+    private final int frameHeight;
+    @Getter
+    private final int columns;
+    @Getter
+    private final int frameCount;
+
+    /**
+     * Instantiates a new Trickplay Index.
+     *
+     * @param intervalMs  the interval between the frames in milliseconds.
+     * @param frameWidth  the width of a frame in pixels.
+     * @param frameHeight the height of a frame in pixels.
+     * @param columns     the number of the frames in a row of the sheet.
+     * @param frameCount  the number of the frames in the sheet.
+     * @throws IllegalArgumentException if any parameter is not positive.
+     */
+    public TrickplayIndex(long intervalMs, int frameWidth, int frameHeight,
+                          int columns, int frameCount) {
+        if (intervalMs <= 0 || frameWidth <= 0 || frameHeight <= 0 ||
+                columns <= 0 || frameCount <= 0) {
+            throw new IllegalArgumentException("The trickplay index " +
+                    "parameters must be positive");
+        }
+
+        this.intervalMs = intervalMs;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.columns = columns;
+        this.frameCount = frameCount;
+    }
+
+    /**
+     * Lays out the sheet of a clip. The frames are taken every
+     * {@code minIntervalMs}, unless the clip is too long to be covered by
+     * {@code maxFrames} frames, in which case the interval is stretched to
+     * spread the frames over the whole clip.
+     *
+     * @param durationMs    the duration of the clip in milliseconds.
+     * @param minIntervalMs the shortest interval between the frames in
+     *                      milliseconds.
+     * @param maxFrames     the largest number of the frames in the sheet.
+     * @param frameWidth    the width of a frame in pixels.
+     * @param frameHeight   the height of a frame in pixels.
+     * @param maxColumns    the largest number of the frames in a row.
+     * @return the index of the sheet.
+     * @throws IllegalArgumentException if any parameter is not positive.
+     */
+    public static TrickplayIndex forDuration(long durationMs,
+                                             long minIntervalMs,
+                                             int maxFrames, int frameWidth,
+                                             int frameHeight,
+                                             int maxColumns) {
+        if (durationMs <= 0 || minIntervalMs <= 0 || maxFrames <= 0) {
+            throw new IllegalArgumentException("The trickplay index " +
+                    "parameters must be positive");
+        }
+
+        // rounded up, so the last frame is not before the end of the clip
+        // minus one interval
+        val intervalMs = Math.max(minIntervalMs,
+                (durationMs + maxFrames - 1) / maxFrames);
+        val frameCount = (int) Math.min(maxFrames,
+                durationMs / intervalMs + 1);
+
+        return new TrickplayIndex(intervalMs, frameWidth, frameHeight,
+                Math.min(maxColumns, frameCount), frameCount);
+    }
+
+    /**
+     * Reads an index written by {@link TrickplayIndex#writeTo(DataOutput)}.
+     *
+     * @param input the input positioned at the index.
+     * @return the read index.
+     * @throws IOException          if the index cannot be read or is not a
+     *                              trickplay index of a known version.
+     * @throws NullPointerException if the input is null.
+     */
+    public static TrickplayIndex readFrom(@NonNull DataInput input)
+            throws IOException {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+            throw new IOException("Not a trickplay sprite sheet");
+        }
+
+        try {
+            return new TrickplayIndex(input.readLong(), input.readInt(),
+                    input.readInt(), input.readInt(), input.readInt());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Broken trickplay index", e);
+        }
+    }
+
+    /**
+     * Writes the index.
+     *
+     * @param output the output of the index.
+     * @throws IOException          if the index cannot be written.
+     * @throws NullPointerException if the output is null.
+     */
+    public void writeTo(@NonNull DataOutput output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(intervalMs);
+        output.writeInt(frameWidth);
+        output.writeInt(frameHeight);
+        output.writeInt(columns);
+        output.writeInt(frameCount);
+    }
+
+    /**
+     * Returns the number of the rows of the sheet.
+     *
+     * @return the number of the rows.
+     */
+    public int getRows() {
+        return (frameCount + columns - 1) / columns;
+    }
+
+    /**
+     * Returns the frame that is the closest to a position before it.
+     *
+     * @param positionMs the position in the clip in milliseconds.
+     * @return the index of the frame, clamped to the frames of the sheet.
+     */
+    public int getFrame(long positionMs) {
+        return (int) Math.max(0, Math.min(frameCount - 1,
+                positionMs / intervalMs));
+    }
+
+    /**
+     * Returns the left edge of a frame in the sheet.
+     *
+     * @param frame the index of the frame.
+     * @return the x coordinate of the frame in pixels.
+     */
+    public int getFrameLeft(int frame) {
+        return (frame % columns) * frameWidth;
+    }
+
+    /**
+     * Returns the top edge of a frame in the sheet.
+     *
+     * @param frame the index of the frame.
+     * @return the y coordinate of the frame in pixels.
+     */
+    public int getFrameTop(int frame) {
+        return (frame / columns) * frameHeight;
+    }
+}
@@ -0,0 +1,156 @@
+package com.artyommameev.sunflowerplayer.storage;
+
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Walks the directory trees of one or more roots, such as the storage
+ * volumes, and collects the files or the file names of all
+ * {@link VideoClip}s found in them.
+ * <p>
+ * Every directory is listed exactly once (symbolic link loops are skipped),
+ * and no file is opened, so the I/O is bounded by the number of
+ * directories in the trees.
+ * <p>
+ * The file names are used to find what no longer exists, so they are only
+ * returned if every directory could be listed, while the files skip the
+ * directories that cannot be listed.
+ *
+ * @author Artyom Mameev
+ */
+public class VideoClipScanner {
+
+    private final List<File> roots;
+
+    /**
+     * Instantiates a new Video Clip Scanner of a single directory tree.
+     *
+     * @param root the directory which tree should be scanned.
+     * @throws NullPointerException if the root is null.
+     */
+    public VideoClipScanner(@NonNull File root) {
+        this(Collections.singletonList(root));
+    }
+
+    /**
+     * Instantiates a new Video Clip Scanner of several directory trees.
+     *
+     * @param roots the directories which trees should be scanned.
+     * @throws NullPointerException if the roots are null.
+     */
+    public VideoClipScanner(@NonNull List<File> roots) {
+        this.roots = new ArrayList<>(roots);
+    }
+
+    /**
+     * Returns the file names of all {@link VideoClip}s in the directory
+     * trees.
+     *
+     * @param isCancelled checked before every directory is listed.
+     * @return the set of file names, empty if the trees contain no
+     * {@link VideoClip}s.
+     * @throws NullPointerException  if isCancelled is null.
+     * @throws IllegalStateException if a root directory or any directory
+     *                               in the trees cannot be read, for
+     *                               example when the storage is not
+     *                               mounted.
+     * @throws CancellationException if the scan was cancelled.
+     */
+    public Set<String> scanFileNames(@NonNull BooleanSupplier isCancelled) {
+        val fileNames = new HashSet<String>();
+
+        walk(isCancelled, true, file -> fileNames.add(file.getName()));
+
+        return fileNames;
+    }
+
+    /**
+     * Returns the files of all {@link VideoClip}s in the directory trees,
+     * skipping the directories that cannot be listed.
+     *
+     * @param isCancelled checked before every directory is listed.
+     * @return the list of files in the order they were found, empty if the
+     * trees contain no {@link VideoClip}s.
+     * @throws NullPointerException  if isCancelled is null.
+     * @throws IllegalStateException if a root directory cannot be read,
+     *                               for example when the storage is not
+     *                               mounted.
+     * @throws CancellationException if the scan was cancelled.
+     */
+    public List<File> scanFiles(@NonNull BooleanSupplier isCancelled) {
+        val files = new ArrayList<File>();
+
+        walk(isCancelled, false, files::add);
+
+        return files;
+    }
+
+    private void walk(BooleanSupplier isCancelled, boolean isComplete,
+                      Consumer<File> consumer) {
+        for (val root : roots) {
+            if (!root.isDirectory() || !root.canRead()) {
+                throw new IllegalStateException("Cannot read " + root);
+            }
+        }
+
+        val visitedDirectories = new HashSet<String>();
+        val directories = new ArrayDeque<File>();
+
+        for (val root : roots) {
+            directories.push(root);
+        }
+
+        while (!directories.isEmpty()) {
+            if (isCancelled.getAsBoolean()) {
+                throw new CancellationException();
+            }
+
+            val directory = directories.pop();
+
+            if (!visitedDirectories.add(canonicalPath(directory))) {
+                continue;
+            }
+
+            val files = directory.listFiles();
+
+            if (files == null) {
+                if (isComplete) {
+                    throw new IllegalStateException("Cannot list " +
+                            directory);
+                }
+
+                continue;
+            }
+
+            for (val file : files) {
+                if (file.isDirectory()) {
+                    directories.push(file);
+                } else if (FileManager.isVideoClip(file.getName())) {
+                    consumer.accept(file);
+                }
+            }
+        }
+    }
+
+    private String canonicalPath(File directory) {
+        try {
+            return directory.getCanonicalPath();
+        } catch (IOException e) {
+            return directory.getAbsolutePath();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.artyommameev.sunflowerplayer.util;
+
+import android.os.SystemClock;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import lombok.val;
+
+/**
+ * Records the peak memory held by the buffer of the player and the time
+ * from the preparation of a clip to the moment it is ready to play, per
+ * buffering profile, so the profiles can be compared in the application.
+ *
+ * @author Artyom Mameev
+ */
+public final class BufferProfileTrace {
+
+    private static final Object lock = new Object();
+
+    private static final Map<String, Totals> totalsByProfile =
+            new LinkedHashMap<>();
+
+    private static String currentProfile;
+    private static long prepareStartMs = -1;
+
+    /**
+     * Records the start of the preparation of a clip.
+     *
+     * @param profile the name of the buffering profile of the player.
+     */
+    public static void preparing(String profile) {
+        synchronized (lock) {
+            currentProfile = profile;
+            prepareStartMs = SystemClock.elapsedRealtime();
+
+            getTotals(profile);
+        }
+    }
+
+    /**
+     * Records that the prepared clip is ready to play. Does nothing if no
+     * clip is being prepared.
+     */
+    public static void ready() {
+        synchronized (lock) {
+            if (prepareStartMs < 0) {
+                return;
+            }
+
+            val totals = getTotals(currentProfile);
+
+            totals.readyTotalMs += SystemClock.elapsedRealtime() -
+                    prepareStartMs;
+            totals.readyCount++;
+
+            prepareStartMs = -1;
+        }
+    }
+
+    /**
+     * Records the memory currently held by the buffer of the player, which
+     * is kept if it is the peak of the profile.
+     *
+     * @param profile        the name of the buffering profile of the player.
+     * @param allocatedBytes the number of the allocated bytes.
+     */
+    public static void bufferAllocated(String profile, long allocatedBytes) {
+        synchronized (lock) {
+            val totals = getTotals(profile);
+
+            if (allocatedBytes > totals.peakBytes) {
+                totals.peakBytes = allocatedBytes;
+            }
+        }
+    }
+
+    /**
+     * Returns the recorded measurements in a human-readable form.
+     *
+     * @return the string with the peak buffer memory and the average time
+     * to ready of every used profile, or an empty string if no clip was
+     * prepared.
+     */
+    public static String getSummary() {
+        synchronized (lock) {
+            val summary = new StringBuilder();
+
+            for (val entry : totalsByProfile.entrySet()) {
+                val totals = entry.getValue();
+
+                summary.append(String.format(Locale.ROOT,
+                        "%s: peak buffer %d KiB", entry.getKey(),
+                        totals.peakBytes / 1024));
+
+                if (totals.readyCount > 0) {
+                    summary.append(String.format(Locale.ROOT,
+                            ", ready in %d ms (average of %d)",
+                            totals.readyTotalMs / totals.readyCount,
+                            totals.readyCount));
+                }
+
+                summary.append('\n');
+            }
+
+            return summary.toString().trim();
+        }
+    }
+
+    private static Totals getTotals(String profile) {
+        return totalsByProfile.computeIfAbsent(profile, key -> new Totals());
+    }
+
+    private static final class Totals {
+        private long peakBytes;
+        private long readyTotalMs;
+        private int readyCount;
+    }
+}
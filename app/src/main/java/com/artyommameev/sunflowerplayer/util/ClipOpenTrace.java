@@ -0,0 +1,136 @@
+package com.artyommameev.sunflowerplayer.util;
+
+import android.os.SystemClock;
+import android.os.Trace;
+
+import lombok.val;
+
+/**
+ * Records the time from the request to play a {@link VideoClip}, that is the
+ * tap on it, to its first rendered frame, both as systrace markers and as
+ * timings that can be read back in the application.
+ * <p>
+ * The first clip opened by the process is kept apart from the later ones,
+ * which reuse the already created player. The clips that were warmed up
+ * before the request are also kept apart from the cold ones.
+ *
+ * @author Artyom Mameev
+ */
+public final class ClipOpenTrace {
+
+    private static final String OPEN_SECTION = "CLIP_OPEN";
+    private static final String FIRST_FRAME_SECTION = "CLIP_FIRST_FRAME";
+
+    private static final Object lock = new Object();
+
+    private static long openStartMs = -1;
+    private static boolean isOpeningWarm;
+    private static long firstClipMs = -1;
+    private static long laterClipsTotalMs;
+    private static int laterClips;
+    private static long coldClipsTotalMs;
+    private static int coldClips;
+    private static long warmClipsTotalMs;
+    private static int warmClips;
+
+    /**
+     * Records the request to play a clip. A clip that is replaced before its
+     * first frame is not recorded.
+     *
+     * @param requestTimeMs the time of the request, as
+     *                      {@link SystemClock#elapsedRealtime()}.
+     * @param isWarmedUp    true if the clip was warmed up before the
+     *                      request, otherwise false.
+     */
+    public static void clipOpening(long requestTimeMs, boolean isWarmedUp) {
+        Trace.beginSection(OPEN_SECTION);
+        Trace.endSection();
+
+        synchronized (lock) {
+            openStartMs = Math.min(requestTimeMs,
+                    SystemClock.elapsedRealtime());
+            isOpeningWarm = isWarmedUp;
+        }
+    }
+
+    /**
+     * Records the first rendered frame of the requested clip. Does nothing
+     * if no clip is being opened.
+     */
+    public static void firstFrameRendered() {
+        Trace.beginSection(FIRST_FRAME_SECTION);
+        Trace.endSection();
+
+        synchronized (lock) {
+            if (openStartMs < 0) {
+                return;
+            }
+
+            val durationMs = SystemClock.elapsedRealtime() - openStartMs;
+
+            if (firstClipMs < 0) {
+                firstClipMs = durationMs;
+            } else {
+                laterClipsTotalMs += durationMs;
+                laterClips++;
+            }
+
+            if (isOpeningWarm) {
+                warmClipsTotalMs += durationMs;
+                warmClips++;
+            } else {
+                coldClipsTotalMs += durationMs;
+                coldClips++;
+            }
+
+            openStartMs = -1;
+        }
+    }
+
+    /**
+     * Returns the recorded timings in a human-readable form.
+     *
+     * @return the string with the time to the first frame of the first clip
+     * and the averages of the later clips, and of the cold and the warmed up
+     * clips, or an empty string if no clip was opened.
+     */
+    public static String getSummary() {
+        synchronized (lock) {
+            if (firstClipMs < 0) {
+                return "";
+            }
+
+            val summary = new StringBuilder("FIRST_CLIP_FRAME: +")
+                    .append(firstClipMs)
+                    .append(" ms");
+
+            if (laterClips > 0) {
+                summary.append("\nLATER_CLIP_FRAME: +")
+                        .append(laterClipsTotalMs / laterClips)
+                        .append(" ms (average of ")
+                        .append(laterClips)
+                        .append(")");
+            }
+
+            appendAverage(summary, "\nCOLD_CLIP_FRAME: +", coldClipsTotalMs,
+                    coldClips);
+            appendAverage(summary, "\nWARM_CLIP_FRAME: +", warmClipsTotalMs,
+                    warmClips);
+
+            return summary.toString();
+        }
+    }
+
+    private static void appendAverage(StringBuilder summary, String label,
+                                      long totalMs, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        summary.append(label)
+                .append(totalMs / count)
+                .append(" ms (average of ")
+                .append(count)
+                .append(")");
+    }
+}
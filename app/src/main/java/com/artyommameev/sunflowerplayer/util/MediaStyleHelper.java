@@ -30,24 +30,45 @@ public class MediaStyleHelper {
     @SuppressWarnings("deprecation")
     public static NotificationCompat.Builder from(Context context,
                                                   MediaSessionCompat mediaSession) {
-        val controller = mediaSession.getController();
-        val mediaMetadata = controller.getMetadata();
-        val description = mediaMetadata.getDescription();
-
         val builder = new NotificationCompat.Builder(context);
 
         builder
-                .setContentTitle(description.getTitle())
-                .setContentText(description.getSubtitle())
-                .setSubText(description.getDescription())
-                .setLargeIcon(description.getIconBitmap())
-                .setContentIntent(controller.getSessionActivity())
                 .setDeleteIntent(
                         MediaButtonReceiver.buildMediaButtonPendingIntent(
                                 context, PlaybackStateCompat.ACTION_STOP))
                 .setVisibility(NotificationCompat.VISIBILITY_PUBLIC);
 
-        return builder;
+        return update(builder, mediaSession);
+    }
+
+    /**
+     * Updates a notification built by {@link MediaStyleHelper#from} with the
+     * current information from the media session, so the same builder can
+     * be kept for the whole session.
+     *
+     * @param builder      the builder of the notification.
+     * @param mediaSession Media session to get information.
+     * @return the updated builder.
+     */
+    public static NotificationCompat.Builder update(
+            NotificationCompat.Builder builder,
+            MediaSessionCompat mediaSession) {
+        val controller = mediaSession.getController();
+        val mediaMetadata = controller.getMetadata();
+
+        builder.setContentIntent(controller.getSessionActivity());
+
+        if (mediaMetadata == null) {
+            return builder;
+        }
+
+        val description = mediaMetadata.getDescription();
+
+        return builder
+                .setContentTitle(description.getTitle())
+                .setContentText(description.getSubtitle())
+                .setSubText(description.getDescription())
+                .setLargeIcon(description.getIconBitmap());
     }
 }
 
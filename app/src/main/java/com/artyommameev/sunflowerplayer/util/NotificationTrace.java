@@ -0,0 +1,79 @@
+package com.artyommameev.sunflowerplayer.util;
+
+import android.os.Trace;
+
+import java.util.Locale;
+
+/**
+ * Counts the requested and the actually posted updates of the playback
+ * notification and records how long the notifications take to build, both
+ * as systrace markers and as numbers that can be read back in the
+ * application.
+ *
+ * @author Artyom Mameev
+ */
+public final class NotificationTrace {
+
+    private static final String BUILD_SECTION = "NOTIFICATION_BUILD";
+
+    private static final Object lock = new Object();
+
+    private static int requests;
+    private static int posts;
+    private static long buildTotalNs;
+    private static long buildMaxNs;
+
+    /**
+     * Records a request to update the notification, which may be coalesced
+     * with the other requests of the same frame.
+     */
+    public static void updateRequested() {
+        synchronized (lock) {
+            requests++;
+        }
+    }
+
+    /**
+     * Records the start of the building of a notification.
+     */
+    public static void buildStarted() {
+        Trace.beginSection(BUILD_SECTION);
+    }
+
+    /**
+     * Records a built and posted notification.
+     *
+     * @param buildTimeNs the time the notification took to build, in
+     *                    nanoseconds.
+     */
+    public static void posted(long buildTimeNs) {
+        Trace.endSection();
+
+        synchronized (lock) {
+            posts++;
+            buildTotalNs += buildTimeNs;
+            buildMaxNs = Math.max(buildMaxNs, buildTimeNs);
+        }
+    }
+
+    /**
+     * Returns the recorded numbers in a human-readable form.
+     *
+     * @return the string with the numbers of the requested and the posted
+     * updates and the average and the maximum build times, or an empty
+     * string if no notification was posted.
+     */
+    public static String getSummary() {
+        synchronized (lock) {
+            if (posts == 0) {
+                return "";
+            }
+
+            return String.format(Locale.ROOT,
+                    "Requested updates: %d\nPosted notifications: %d\n" +
+                            "Build time: %d µs (average), %d µs (max)",
+                    requests, posts, buildTotalNs / posts / 1000,
+                    buildMaxNs / 1000);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.artyommameev.sunflowerplayer.util;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+import lombok.NonNull;
+
+/**
+ * Measures the CPU time of the process per minute of playback, separately
+ * for the playback with video and for the audio-only playback, so the CPU
+ * time saved by the audio-only mode can be read back in the application.
+ * <p>
+ * Only the CPU time of the application process is measured, as
+ * {@link Process#getElapsedCpuTime()} reports it. The codecs run in the
+ * separate media codec process of the system, so the time spent decoding
+ * the video is not included, and the saving shows the work of the player
+ * and of the rendering in the application process only.
+ *
+ * @author Artyom Mameev
+ */
+public final class PlaybackCpuMeter {
+
+    private static final Object lock = new Object();
+
+    private static final Totals videoTotals = new Totals();
+    private static final Totals audioOnlyTotals = new Totals();
+
+    private static LongSupplier cpuClock = Process::getElapsedCpuTime;
+    private static LongSupplier realtimeClock = SystemClock::elapsedRealtime;
+
+    private static Totals currentTotals;
+    private static long segmentStartCpuMs;
+    private static long segmentStartRealtimeMs;
+
+    /**
+     * Records the start of the playback, or the switch between the playback
+     * with video and the audio-only playback.
+     *
+     * @param videoEnabled true if the video is rendered, otherwise false.
+     */
+    public static void playbackStarted(boolean videoEnabled) {
+        synchronized (lock) {
+            endSegment();
+
+            currentTotals = videoEnabled ? videoTotals : audioOnlyTotals;
+            segmentStartCpuMs = cpuClock.getAsLong();
+            segmentStartRealtimeMs = realtimeClock.getAsLong();
+        }
+    }
+
+    /**
+     * Records the pause or the end of the playback. Does nothing if the
+     * playback is not started.
+     */
+    public static void playbackStopped() {
+        synchronized (lock) {
+            endSegment();
+        }
+    }
+
+    /**
+     * Returns the measured CPU time in a human-readable form.
+     *
+     * @return the string with the CPU time per minute of the playback with
+     * video, of the audio-only playback and the difference between them, or
+     * an empty string if nothing was played.
+     */
+    public static String getSummary() {
+        synchronized (lock) {
+            if (videoTotals.realtimeMs == 0 && audioOnlyTotals.realtimeMs == 0) {
+                return "";
+            }
+
+            StringBuilder summary = new StringBuilder();
+
+            appendTotals(summary, "VIDEO", videoTotals);
+            appendTotals(summary, "AUDIO_ONLY", audioOnlyTotals);
+
+            if (videoTotals.realtimeMs > 0 && audioOnlyTotals.realtimeMs > 0) {
+                summary.append(String.format(Locale.ROOT,
+                        "SAVED: %d ms CPU per minute\n",
+                        videoTotals.getCpuMsPerMinute() -
+                                audioOnlyTotals.getCpuMsPerMinute()));
+            }
+
+            return summary.toString().trim();
+        }
+    }
+
+    /**
+     * Drops the measured time and replaces the clocks, for the tests.
+     *
+     * @param cpuClock      the CPU time of the process in milliseconds.
+     * @param realtimeClock the time since the boot in milliseconds.
+     * @throws NullPointerException if any clock is null.
+     */
+    static void reset(@NonNull LongSupplier cpuClock,
+                      @NonNull LongSupplier realtimeClock) {
+        synchronized (lock) {
+            PlaybackCpuMeter.cpuClock = cpuClock;
+            PlaybackCpuMeter.realtimeClock = realtimeClock;
+
+            videoTotals.cpuMs = 0;
+            videoTotals.realtimeMs = 0;
+            audioOnlyTotals.cpuMs = 0;
+            audioOnlyTotals.realtimeMs = 0;
+
+            currentTotals = null;
+        }
+    }
+
+    private static void endSegment() {
+        if (currentTotals == null) {
+            return;
+        }
+
+        currentTotals.cpuMs += cpuClock.getAsLong() - segmentStartCpuMs;
+        currentTotals.realtimeMs += realtimeClock.getAsLong() -
+                segmentStartRealtimeMs;
+
+        currentTotals = null;
+    }
+
+    private static void appendTotals(StringBuilder summary, String name,
+                                     Totals totals) {
+        if (totals.realtimeMs == 0) {
+            return;
+        }
+
+        summary.append(String.format(Locale.ROOT,
+                "%s: %d ms CPU per minute (%d s played)\n", name,
+                totals.getCpuMsPerMinute(), totals.realtimeMs / 1000));
+    }
+
+    private static final class Totals {
+        private long cpuMs;
+        private long realtimeMs;
+
+        private long getCpuMsPerMinute() {
+            return realtimeMs == 0 ? 0 : cpuMs * 60_000 / realtimeMs;
+        }
+    }
+}
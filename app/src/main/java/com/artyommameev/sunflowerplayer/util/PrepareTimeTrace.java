@@ -0,0 +1,114 @@
+package com.artyommameev.sunflowerplayer.util;
+
+import android.os.SystemClock;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import lombok.val;
+
+/**
+ * Records the time from the preparation of a clip to the moment it is ready
+ * to play, per container format of the clip and per the way the format was
+ * found: by sniffing the file or from the format remembered on a previous
+ * playback.
+ *
+ * @author Artyom Mameev
+ */
+public final class PrepareTimeTrace {
+
+    private static final String UNKNOWN_CONTAINER = "UNKNOWN";
+
+    private static final Object lock = new Object();
+
+    private static final Map<String, Totals> totalsByContainer =
+            new LinkedHashMap<>();
+
+    private static long prepareStartMs = -1;
+    private static String currentContainer;
+
+    /**
+     * Records the start of the preparation of a clip.
+     */
+    public static void preparing() {
+        synchronized (lock) {
+            prepareStartMs = SystemClock.elapsedRealtime();
+            currentContainer = null;
+        }
+    }
+
+    /**
+     * Records the container format of the clip being prepared. Only the
+     * first format after the start of the preparation is recorded, the
+     * formats of the clips prepared ahead are not.
+     *
+     * @param container the name of the container format, or null if the
+     *                  format of the clip is not one of the known formats.
+     * @param sniffed   true if the format was found by sniffing the file,
+     *                  false if it was remembered.
+     */
+    public static void containerResolved(String container, boolean sniffed) {
+        synchronized (lock) {
+            if (prepareStartMs < 0 || currentContainer != null) {
+                return;
+            }
+
+            currentContainer = (container == null ? UNKNOWN_CONTAINER :
+                    container) + (sniffed ? " (sniffed)" : " (remembered)");
+        }
+    }
+
+    /**
+     * Records that the prepared clip is ready to play. Does nothing if no
+     * clip is being prepared.
+     */
+    public static void ready() {
+        synchronized (lock) {
+            if (prepareStartMs < 0) {
+                return;
+            }
+
+            val container = currentContainer == null ? UNKNOWN_CONTAINER :
+                    currentContainer;
+
+            val totals = totalsByContainer.computeIfAbsent(container,
+                    key -> new Totals());
+
+            totals.readyTotalMs += SystemClock.elapsedRealtime() -
+                    prepareStartMs;
+            totals.readyCount++;
+
+            prepareStartMs = -1;
+        }
+    }
+
+    /**
+     * Returns the recorded timings in a human-readable form.
+     *
+     * @return the string with the average time to ready of every container
+     * format, or an empty string if no clip was prepared.
+     */
+    public static String getSummary() {
+        synchronized (lock) {
+            val summary = new StringBuilder();
+
+            for (val entry : totalsByContainer.entrySet()) {
+                val totals = entry.getValue();
+
+                summary.append(String.format(Locale.ROOT,
+                        "%s: ready in %d ms (average of %d)\n",
+                        entry.getKey(),
+                        totals.readyTotalMs / totals.readyCount,
+                        totals.readyCount));
+            }
+
+            return summary.toString().trim();
+        }
+    }
+
+    private static final class Totals {
+        private long readyTotalMs;
+        private int readyCount;
+    }
+}
@@ -0,0 +1,178 @@
+package com.artyommameev.sunflowerplayer.util;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Records the phases of the application cold start, both as systrace
+ * sections and as timestamps that can be read back in the application or
+ * from a test.
+ * <p>
+ * Only the first occurrence of every {@link Phase} is recorded, so later
+ * activity recreations don't overwrite the cold start timings.
+ *
+ * @author Artyom Mameev
+ */
+public final class StartupTrace {
+
+    private static final Map<Phase, Timing> timings =
+            new EnumMap<>(Phase.class);
+
+    /**
+     * Begins the systrace section of the phase and records its start time.
+     * Must be followed by {@link StartupTrace#endSection(Phase)} on the same
+     * thread.
+     *
+     * @param phase the phase that begins.
+     * @throws NullPointerException if the phase is null.
+     */
+    public static void beginSection(@NonNull Phase phase) {
+        Trace.beginSection(phase.name());
+
+        synchronized (timings) {
+            if (!timings.containsKey(phase)) {
+                timings.put(phase, new Timing(sinceProcessStart()));
+            }
+        }
+    }
+
+    /**
+     * Ends the systrace section of the phase and records its end time.
+     *
+     * @param phase the phase that ends.
+     * @throws NullPointerException if the phase is null.
+     */
+    public static void endSection(@NonNull Phase phase) {
+        Trace.endSection();
+
+        synchronized (timings) {
+            val timing = timings.get(phase);
+
+            if (timing != null && timing.endMs < 0) {
+                timing.endMs = sinceProcessStart();
+            }
+        }
+    }
+
+    /**
+     * Records a phase that happens at a single moment, such as the first
+     * drawn frame.
+     *
+     * @param phase the phase that happened.
+     * @throws NullPointerException if the phase is null.
+     */
+    public static void mark(@NonNull Phase phase) {
+        beginSection(phase);
+        endSection(phase);
+    }
+
+    /**
+     * Returns the recorded timings.
+     *
+     * @return the map of the recorded phases to their {@link Timing}s, in
+     * the order of the {@link Phase} declaration.
+     */
+    public static Map<Phase, Timing> getTimings() {
+        synchronized (timings) {
+            return Collections.unmodifiableMap(new EnumMap<>(timings));
+        }
+    }
+
+    /**
+     * Returns the recorded timings in a human-readable form.
+     *
+     * @return the string with one 'phase: start +duration ms' line per
+     * recorded phase.
+     */
+    public static String getSummary() {
+        val summary = new StringBuilder();
+
+        for (val entry : getTimings().entrySet()) {
+            val timing = entry.getValue();
+
+            if (summary.length() > 0) {
+                summary.append('\n');
+            }
+
+            summary.append(entry.getKey().name())
+                    .append(": ")
+                    .append(timing.getStartMs())
+                    .append(" ms");
+
+            if (timing.getDurationMs() > 0) {
+                summary.append(" +")
+                        .append(timing.getDurationMs())
+                        .append(" ms");
+            }
+        }
+
+        return summary.toString();
+    }
+
+    /**
+     * Drops the recorded timings, for the tests.
+     */
+    static void reset() {
+        synchronized (timings) {
+            timings.clear();
+        }
+    }
+
+    private static long sinceProcessStart() {
+        return SystemClock.elapsedRealtime() -
+                Process.getStartElapsedRealtime();
+    }
+
+    /**
+     * A phase of the application cold start.
+     */
+    public enum Phase {
+        APP_CREATE,
+        DATABASE_OPEN,
+        FIRST_LISTING,
+        FIRST_FRAME
+    }
+
+    /**
+     * The timing of a single {@link Phase}, in milliseconds since the process
+     * start.
+     */
+    public static final class Timing {
+
+        @Getter
+        private final long startMs;
+        private long endMs = -1;
+
+        private Timing(long startMs) {
+            this.startMs = startMs;
+        }
+
+        /**
+         * Returns the end of the phase.
+         *
+         * @return the end of the phase, or -1 if the phase has not ended yet.
+         */
+        public long getEndMs() {
+            return endMs;
+        }
+
+        /**
+         * Returns the duration of the phase.
+         *
+         * @return the duration of the phase, or 0 if the phase has not ended
+         * yet.
+         */
+        public long getDurationMs() {
+            return endMs < 0 ? 0 : endMs - startMs;
+        }
+    }
+}
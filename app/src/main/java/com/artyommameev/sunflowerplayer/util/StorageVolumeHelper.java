@@ -0,0 +1,68 @@
+package com.artyommameev.sunflowerplayer.util;
+
+import android.content.Context;
+import android.os.Environment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Utility class for finding the root directories of the storage volumes,
+ * such as the internal shared storage and the SD cards.
+ *
+ * @author Artyom Mameev
+ */
+public final class StorageVolumeHelper {
+
+    private static final String APP_DIRECTORY = File.separator + "Android" +
+            File.separator + "data" + File.separator;
+
+    private StorageVolumeHelper() {
+    }
+
+    /**
+     * Returns the root directories of all the storage volumes of the device.
+     * The roots are found from the directories of the application on the
+     * volumes, which are listed for every volume the device knows of.
+     *
+     * @param context the context of the application.
+     * @return the root directories, the primary volume first.
+     * @throws NullPointerException  if the context is null.
+     * @throws IllegalStateException if any volume is not mounted, so the
+     *                               roots would not be complete.
+     */
+    public static List<File> getVolumeRoots(@NonNull Context context) {
+        val roots = new ArrayList<File>();
+
+        for (val appDirectory : context.getExternalFilesDirs(null)) {
+            if (appDirectory == null) {
+                throw new IllegalStateException(
+                        "A storage volume is not available");
+            }
+
+            val state = Environment.getExternalStorageState(appDirectory);
+
+            if (!Environment.MEDIA_MOUNTED.equals(state) &&
+                    !Environment.MEDIA_MOUNTED_READ_ONLY.equals(state)) {
+                throw new IllegalStateException("The storage volume of " +
+                        appDirectory + " is " + state);
+            }
+
+            val path = appDirectory.getAbsolutePath();
+            val appDirectoryIndex = path.indexOf(APP_DIRECTORY);
+
+            if (appDirectoryIndex < 0) {
+                throw new IllegalStateException("Unknown volume layout of " +
+                        appDirectory);
+            }
+
+            roots.add(new File(path.substring(0, appDirectoryIndex)));
+        }
+
+        return roots;
+    }
+}
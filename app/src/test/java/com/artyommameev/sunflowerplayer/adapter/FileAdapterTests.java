@@ -0,0 +1,98 @@
+package com.artyommameev.sunflowerplayer.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.artyommameev.sunflowerplayer.domain.PlaybackPosition;
+
+import org.junit.Test;
+
+import java.io.File;
+
+public class FileAdapterTests {
+
+    private final File file = new File("/music/artist - title.mp4");
+
+    @Test
+    public void rowsWithSameIdAreSameItems() {
+        assertTrue(FileAdapter.DIFF_CALLBACK.areItemsTheSame(
+                row(1, "label", FileAdapter.Row.Kind.FILE, 0),
+                row(1, "other", FileAdapter.Row.Kind.DIRECTORY, 10)));
+        assertFalse(FileAdapter.DIFF_CALLBACK.areItemsTheSame(
+                row(1, "label", FileAdapter.Row.Kind.FILE, 0),
+                row(2, "label", FileAdapter.Row.Kind.FILE, 0)));
+    }
+
+    @Test
+    public void rowsWithSameLabelKindAndProgressHaveSameContents() {
+        assertTrue(FileAdapter.DIFF_CALLBACK.areContentsTheSame(
+                row(1, "label", FileAdapter.Row.Kind.VIDEO_CLIP, 500),
+                row(1, "label", FileAdapter.Row.Kind.VIDEO_CLIP, 500)));
+    }
+
+    @Test
+    public void rowsWithChangedLabelKindOrProgressHaveOtherContents() {
+        FileAdapter.Row shownRow = row(1, "label",
+                FileAdapter.Row.Kind.VIDEO_CLIP, 500);
+
+        assertFalse(FileAdapter.DIFF_CALLBACK.areContentsTheSame(shownRow,
+                row(1, "other", FileAdapter.Row.Kind.VIDEO_CLIP, 500)));
+        assertFalse(FileAdapter.DIFF_CALLBACK.areContentsTheSame(shownRow,
+                row(1, "label", FileAdapter.Row.Kind.FILE, 500)));
+        assertFalse(FileAdapter.DIFF_CALLBACK.areContentsTheSame(shownRow,
+                row(1, "label", FileAdapter.Row.Kind.VIDEO_CLIP, 600)));
+    }
+
+    @Test
+    public void directoriesShareOneSectionBeforeInitialsOfFiles() {
+        SectionIndex.Builder builder = new SectionIndex.Builder();
+
+        builder.add(FileAdapter.getSectionLabel("Abba",
+                FileAdapter.Row.Kind.DIRECTORY));
+        builder.add(FileAdapter.getSectionLabel("Beatles",
+                FileAdapter.Row.Kind.DIRECTORY));
+        builder.add(FileAdapter.getSectionLabel("abba - song.mp4",
+                FileAdapter.Row.Kind.VIDEO_CLIP));
+        builder.add(FileAdapter.getSectionLabel("about.txt",
+                FileAdapter.Row.Kind.FILE));
+
+        SectionIndex sectionIndex = builder.build();
+
+        assertEquals(sectionIndex.getSectionCount(), 2);
+        assertEquals(sectionIndex.getLabel(0), SectionIndex.DIRECTORY_LABEL);
+        assertEquals(sectionIndex.getLabel(1), "A");
+        assertEquals(sectionIndex.getPositionForSection(1), 2);
+    }
+
+    @Test
+    public void toProgressReturnsNoProgressIfPositionIsUnknown() {
+        assertEquals(FileAdapter.toProgress(null),
+                FileAdapter.Row.NO_PROGRESS);
+    }
+
+    @Test
+    public void toProgressReturnsNoProgressIfDurationIsUnknown() {
+        assertEquals(FileAdapter.toProgress(new PlaybackPosition("fileName",
+                1000, 0)), FileAdapter.Row.NO_PROGRESS);
+    }
+
+    @Test
+    public void toProgressReturnsWatchedPartInThousandths() {
+        assertEquals(FileAdapter.toProgress(new PlaybackPosition("fileName",
+                0, 60_000)), 0);
+        assertEquals(FileAdapter.toProgress(new PlaybackPosition("fileName",
+                15_000, 60_000)), 250);
+    }
+
+    @Test
+    public void toProgressReturnsMaxProgressIfClipIsFinished() {
+        assertEquals(FileAdapter.toProgress(new PlaybackPosition("fileName",
+                56_000, 60_000)), FileAdapter.Row.MAX_PROGRESS);
+    }
+
+    private FileAdapter.Row row(long id, String label,
+                                FileAdapter.Row.Kind kind, int progress) {
+        return new FileAdapter.Row(id, file, label, kind, progress);
+    }
+}
@@ -0,0 +1,120 @@
+package com.artyommameev.sunflowerplayer.adapter;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SectionIndexTests {
+
+    @Test
+    public void labelIsUpperCaseFirstLetterOrHash() {
+        assertEquals("A", SectionIndex.getLabel("abba - song.mp4"));
+        assertEquals("Ö", SectionIndex.getLabel("öhm"));
+        assertEquals("#", SectionIndex.getLabel("2pac - song.mp4"));
+        assertEquals("#", SectionIndex.getLabel(".hidden"));
+        assertEquals("#", SectionIndex.getLabel(""));
+    }
+
+    @Test
+    public void sectionsAreRunsOfEqualLabels() {
+        SectionIndex sectionIndex = build("#", "#", "A", "B", "B", "B", "C");
+
+        assertEquals(4, sectionIndex.getSectionCount());
+        assertEquals(7, sectionIndex.getItemCount());
+        assertEquals("#", sectionIndex.getLabel(0));
+        assertEquals("C", sectionIndex.getLabel(3));
+        assertEquals(0, sectionIndex.getPositionForSection(0));
+        assertEquals(2, sectionIndex.getPositionForSection(1));
+        assertEquals(3, sectionIndex.getPositionForSection(2));
+        assertEquals(6, sectionIndex.getPositionForSection(3));
+    }
+
+    @Test
+    public void labelCanRepeatAfterAnotherSection() {
+        // the runs apart from each other are not merged
+        SectionIndex sectionIndex = build("A", "B", "A");
+
+        assertEquals(3, sectionIndex.getSectionCount());
+        assertEquals(2, sectionIndex.getPositionForSection(2));
+    }
+
+    @Test
+    public void sectionForPositionIsTheSectionThatContainsIt() {
+        SectionIndex sectionIndex = build("#", "#", "A", "B", "B", "B", "C");
+
+        assertEquals(0, sectionIndex.getSectionForPosition(1));
+        assertEquals(1, sectionIndex.getSectionForPosition(2));
+        assertEquals(2, sectionIndex.getSectionForPosition(3));
+        assertEquals(2, sectionIndex.getSectionForPosition(5));
+        assertEquals(3, sectionIndex.getSectionForPosition(6));
+    }
+
+    @Test
+    public void everySectionTakesAnEqualPartOfTheTrack() {
+        SectionIndex sectionIndex = build("A", "B", "B", "B", "B", "B", "B",
+                "B", "B", "B");
+
+        assertEquals(0, sectionIndex.getSectionForFraction(0));
+        assertEquals(0, sectionIndex.getSectionForFraction(0.49f));
+        assertEquals(1, sectionIndex.getSectionForFraction(0.5f));
+        assertEquals(1, sectionIndex.getSectionForFraction(1));
+
+        assertEquals(0, sectionIndex.getPositionForFraction(0.4f));
+        assertEquals(1, sectionIndex.getPositionForFraction(0.5f));
+        assertEquals(5, sectionIndex.getPositionForFraction(0.75f));
+        assertEquals(9, sectionIndex.getPositionForFraction(1));
+    }
+
+    @Test
+    public void fractionIsClamped() {
+        SectionIndex sectionIndex = build("A", "B");
+
+        assertEquals(0, sectionIndex.getPositionForFraction(-1));
+        assertEquals(1, sectionIndex.getPositionForFraction(2));
+    }
+
+    @Test
+    public void emptyIndexHasNoSections() {
+        SectionIndex sectionIndex = new SectionIndex.Builder().build();
+
+        assertEquals(0, sectionIndex.getSectionCount());
+        assertEquals(-1, sectionIndex.getSectionForFraction(0.5f));
+        assertEquals(-1, sectionIndex.getPositionForFraction(0.5f));
+        assertEquals(0, SectionIndex.EMPTY.getSectionCount());
+    }
+
+    @Test
+    public void builderGrowsPastItsInitialCapacity() {
+        SectionIndex.Builder builder = new SectionIndex.Builder();
+
+        for (int i = 0; i < 10_000; i++) {
+            builder.add(String.valueOf(i / 10));
+        }
+
+        SectionIndex sectionIndex = builder.build();
+
+        assertEquals(1_000, sectionIndex.getSectionCount());
+        assertEquals(9_990, sectionIndex.getPositionForSection(999));
+        assertEquals(999, sectionIndex.getSectionForPosition(9_999));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getPositionForSectionThrowsIfSectionIsOutOfBounds() {
+        build("A").getPositionForSection(1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getSectionForPositionThrowsIfPositionIsOutOfBounds() {
+        build("A").getSectionForPosition(1);
+    }
+
+    private static SectionIndex build(String... labels) {
+        SectionIndex.Builder builder = new SectionIndex.Builder();
+
+        for (String label : labels) {
+            builder.add(label);
+        }
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,62 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@SuppressWarnings("ConstantConditions")
+public class BackupChainTests {
+
+    @Test(expected = NullPointerException.class)
+    public void orderThrowsNullPointerExceptionIfLinksListIsNull() {
+        BackupChain.order(null);
+    }
+
+    @Test
+    public void orderPutsFullBackupFirstAndDeltasBySeq() {
+        List<BackupChain.Link<String>> chain = BackupChain.order(
+                Arrays.asList(
+                        new BackupChain.Link<>("delta2", 30, 20),
+                        new BackupChain.Link<>("full", 10, -1),
+                        new BackupChain.Link<>("delta1", 20, 10)));
+
+        assertEquals(chain.get(0).getSource(), "full");
+        assertEquals(chain.get(1).getSource(), "delta1");
+        assertEquals(chain.get(2).getSource(), "delta2");
+    }
+
+    @Test
+    public void orderAcceptsFullBackupWithoutSeq() {
+        List<BackupChain.Link<String>> chain = BackupChain.order(
+                Arrays.asList(
+                        new BackupChain.Link<>("delta", 20, 10),
+                        new BackupChain.Link<>("full", -1, -1)));
+
+        assertEquals(chain.get(0).getSource(), "full");
+        assertEquals(chain.get(1).getSource(), "delta");
+    }
+
+    @Test
+    public void orderAcceptsSingleBackup() {
+        assertEquals(BackupChain.order(Collections.singletonList(
+                new BackupChain.Link<>("full", 10, -1))).size(), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void orderThrowsIllegalArgumentExceptionIfDeltaIsMissing() {
+        BackupChain.order(Arrays.asList(
+                new BackupChain.Link<>("full", 10, -1),
+                new BackupChain.Link<>("delta2", 30, 20)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void orderThrowsIllegalArgumentExceptionIfThereAreTwoFullBackups() {
+        BackupChain.order(Arrays.asList(
+                new BackupChain.Link<>("full1", 10, -1),
+                new BackupChain.Link<>("full2", 20, -1)));
+    }
+}
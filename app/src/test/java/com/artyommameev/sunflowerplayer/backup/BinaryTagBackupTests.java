@@ -0,0 +1,226 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+@SuppressWarnings("ConstantConditions")
+public class BinaryTagBackupTests {
+
+    @Test(expected = NullPointerException.class)
+    public void writerConstructorThrowsNullPointerExceptionIfStreamIsNull()
+            throws Exception {
+        new BinaryTagBackupWriter(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void readerConstructorThrowsNullPointerExceptionIfStreamIsNull() {
+        new BinaryTagBackupReader(null);
+    }
+
+    @Test
+    public void readerReadsTagsWrittenByWriter() throws Exception {
+        List<Tag> tags = new ArrayList<>();
+
+        tags.add(new Tag("Артист - Название.mkv", "Артист", "Название",
+                "Альбом"));
+        tags.add(new Tag("artist - title 2.mkv", "artist", "title 2",
+                "Артист"));
+        tags.add(new Tag("artist - title 3.mkv", "artist", "title 3",
+                "album"));
+
+        List<Tag> readTags = readAll(write(tags));
+
+        assertEquals(readTags, tags);
+    }
+
+    @Test
+    public void repeatedArtistsAndAlbumsAreWrittenOnce() throws Exception {
+        List<Tag> tags = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            tags.add(new Tag("f" + i, "some long artist name",
+                    "t" + i, "some long album name"));
+        }
+
+        byte[] backup = write(tags);
+
+        // less than half of the bytes of the repeated strings alone
+        assertTrue(backup.length < 100 * ("some long artist name".length() +
+                "some long album name".length()) / 2);
+        assertEquals(readAll(backup), tags);
+    }
+
+    @Test(expected = IOException.class)
+    public void readerThrowsIOExceptionIfBackupIsCorrupted() throws Exception {
+        List<Tag> tags = new ArrayList<>();
+
+        tags.add(new Tag("fileName", "artist", "title", "album"));
+
+        byte[] backup = write(tags);
+
+        backup[backup.length - 6] ^= 1; // a byte of the album
+
+        readAll(backup);
+    }
+
+    @Test(expected = IOException.class)
+    public void readerThrowsIOExceptionIfBackupIsTruncated() throws Exception {
+        List<Tag> tags = new ArrayList<>();
+
+        tags.add(new Tag("fileName", "artist", "title", "album"));
+
+        byte[] backup = write(tags);
+
+        byte[] truncated = new byte[backup.length - 3];
+
+        System.arraycopy(backup, 0, truncated, 0, truncated.length);
+
+        readAll(truncated);
+    }
+
+    @Test(expected = IOException.class)
+    public void readerThrowsIOExceptionIfLengthIsNegative() throws Exception {
+        // a file name length that overflows an int
+        readAll(withHeader(0xff, 0xff, 0xff, 0xff, 0x0f));
+    }
+
+    @Test(expected = IOException.class)
+    public void readerThrowsIOExceptionIfLengthIsHuge() throws Exception {
+        // the file name length of Integer.MAX_VALUE - 1
+        readAll(withHeader(0xff, 0xff, 0xff, 0xff, 0x07));
+    }
+
+    @Test(expected = IOException.class)
+    public void readerThrowsIOExceptionIfVarintIsTooLong() throws Exception {
+        readAll(withHeader(0x80, 0x80, 0x80, 0x80, 0x80, 0x01));
+    }
+
+    @Test
+    public void readerReadsSeqOfFullBackup() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (BinaryTagBackupWriter binaryTagBackupWriter =
+                     BinaryTagBackupWriter.full(outputStream, 300)) {
+            binaryTagBackupWriter.write(new Tag("fileName", "artist",
+                    "title", "album"));
+        }
+
+        TagBackupInput tagBackupInput = TagBackupInput.open(
+                new ByteArrayInputStream(outputStream.toByteArray()));
+
+        // a chain of backups is checked before any tag is read
+        assertEquals(tagBackupInput.getSeq(), 300);
+        assertEquals(tagBackupInput.getBaseSeq(), -1);
+        assertEquals(tagBackupInput.read().getFileName(), "fileName");
+        assertNull(tagBackupInput.read());
+    }
+
+    @Test
+    public void readerReadsBackupWithoutSeq() throws Exception {
+        TagBackupInput tagBackupInput = TagBackupInput.open(
+                new ByteArrayInputStream(write(new ArrayList<>())));
+
+        assertEquals(tagBackupInput.getSeq(), -1);
+        assertNull(tagBackupInput.read());
+    }
+
+    @Test
+    public void readerReadsBackupOfPreviousVersion() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        outputStream.write(BinaryTagBackupWriter.MAGIC, 0,
+                BinaryTagBackupWriter.MAGIC.length);
+        outputStream.write(1); // the version without a sequence number
+        outputStream.write(0); // the end of the tags
+
+        // the CRC32 of the previous bytes
+        CRC32 crc32 = new CRC32();
+        crc32.update(outputStream.toByteArray());
+
+        long checksum = crc32.getValue();
+
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            outputStream.write((int) (checksum >>> shift) & 0xff);
+        }
+
+        TagBackupInput tagBackupInput = TagBackupInput.open(
+                new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertEquals(tagBackupInput.getSeq(), -1);
+        assertNull(tagBackupInput.read());
+    }
+
+    @Test
+    public void openDetectsBinaryAndJsonBackups() throws Exception {
+        List<Tag> tags = new ArrayList<>();
+
+        tags.add(new Tag("fileName", "artist", "title", "album"));
+
+        assertTrue(TagBackupInput.open(new ByteArrayInputStream(write(tags)))
+                instanceof BinaryTagBackupReader);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        new TagBackupWriter(outputStream).close();
+
+        assertTrue(TagBackupInput.open(new ByteArrayInputStream(
+                outputStream.toByteArray())) instanceof TagBackupReader);
+    }
+
+    private byte[] write(List<Tag> tags) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (BinaryTagBackupWriter binaryTagBackupWriter =
+                     new BinaryTagBackupWriter(outputStream)) {
+            for (Tag tag : tags) {
+                binaryTagBackupWriter.write(tag);
+            }
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private byte[] withHeader(int... bytes) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        outputStream.write(BinaryTagBackupWriter.MAGIC, 0,
+                BinaryTagBackupWriter.MAGIC.length);
+        outputStream.write(BinaryTagBackupWriter.VERSION);
+        outputStream.write(0); // no sequence number
+
+        for (int b : bytes) {
+            outputStream.write(b);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private List<Tag> readAll(byte[] backup) throws Exception {
+        List<Tag> tags = new ArrayList<>();
+
+        try (TagBackupInput tagBackupInput = TagBackupInput.open(
+                new ByteArrayInputStream(backup))) {
+            Tag tag;
+
+            while ((tag = tagBackupInput.read()) != null) {
+                tags.add(tag);
+            }
+
+            assertNull(tagBackupInput.read());
+        }
+
+        return tags;
+    }
+}
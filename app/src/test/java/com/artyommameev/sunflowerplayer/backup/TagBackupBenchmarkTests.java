@@ -0,0 +1,265 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.artyommameev.sunflowerplayer.database.Database;
+import com.artyommameev.sunflowerplayer.domain.Tag;
+import com.google.gson.Gson;
+
+import org.greenrobot.greendao.query.LazyList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the time and the peak heap of the backup export paths, and the
+ * throughput and the size of the backup formats, and measures the dry-run
+ * diff of a backup.
+ * <p>
+ * Skipped unless the tests are run with {@code -Dbenchmark=true}.
+ */
+@SuppressWarnings("unchecked")
+public class TagBackupBenchmarkTests {
+
+    static final int TAGS = 200_000;
+
+    private File backupFile;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+
+        backupFile = File.createTempFile("tags-backup", ".tmp");
+        backupFile.deleteOnExit();
+    }
+
+    @Test
+    public void gsonStringExport() throws Exception {
+        report("Gson toJson + FileWriter", () -> {
+            // the whole table is loaded, as Database#findAll() does
+            List<Tag> tags = new ArrayList<>(TAGS);
+
+            for (int i = 0; i < TAGS; i++) {
+                tags.add(createTag(i));
+            }
+
+            String backupJson = new Gson().toJson(tags);
+
+            try (BufferedWriter writer = new BufferedWriter(
+                    new FileWriter(backupFile))) {
+                writer.write(backupJson);
+            }
+        });
+    }
+
+    @Test
+    public void streamingGzipExport() throws Exception {
+        report("TagBackupWriter (gzip)", () -> {
+            // tags are created one at a time, as a lazy cursor reads them
+            try (TagBackupWriter tagBackupWriter = new TagBackupWriter(
+                    new FileOutputStream(backupFile))) {
+                for (int i = 0; i < TAGS; i++) {
+                    tagBackupWriter.write(createTag(i));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void jsonFormatThroughput() throws Exception {
+        reportFormat("JSON (gzip)", () ->
+                new TagBackupWriter(new FileOutputStream(backupFile)));
+    }
+
+    @Test
+    public void binaryFormatThroughput() throws Exception {
+        reportFormat("Binary", () ->
+                new BinaryTagBackupWriter(new FileOutputStream(backupFile)));
+    }
+
+    @Test
+    public void mergeJoinDiff() throws Exception {
+        int diffTags = 100_000;
+
+        // every other backup tag is stored, every fourth with a new title
+        try (TagBackupWriter tagBackupWriter = TagBackupWriter.full(
+                new FileOutputStream(backupFile), 1)) {
+            for (int i = 0; i < diffTags; i++) {
+                tagBackupWriter.write(createSortedTag(i * 2, ""));
+            }
+        }
+
+        LazyList<Tag> tagsInDatabase = mock(LazyList.class);
+        when(tagsInDatabase.iterator()).thenAnswer(invocation ->
+                new Iterator<Tag>() {
+                    private int i;
+
+                    @Override
+                    public boolean hasNext() {
+                        return i < diffTags;
+                    }
+
+                    @Override
+                    public Tag next() {
+                        int index = i++;
+
+                        return createSortedTag(index,
+                                index % 4 == 0 ? " (edited)" : "");
+                    }
+                });
+
+        Database database = mock(Database.class);
+        when(database.findAllOrderedByFileNameLazily())
+                .thenReturn(tagsInDatabase);
+
+        TagBackupDiff.Result[] result = new TagBackupDiff.Result[1];
+
+        report("TagBackupDiff (merge join, 100k vs 100k)", () ->
+                result[0] = new TagBackupDiff(database).compute(
+                        new BufferedInputStream(
+                                new FileInputStream(backupFile))));
+
+        System.out.printf("new %d, unchanged %d, conflicting %d%n",
+                result[0].getNewTags(), result[0].getUnchangedTags(),
+                result[0].getConflictingTags());
+    }
+
+    private void reportFormat(String name, OutputFactory outputFactory)
+            throws Exception {
+        long encodeStart = System.nanoTime();
+
+        try (TagBackupOutput tagBackupOutput = outputFactory.create()) {
+            for (int i = 0; i < TAGS; i++) {
+                tagBackupOutput.write(createTag(i));
+            }
+        }
+
+        long encodeNanos = System.nanoTime() - encodeStart;
+
+        long decodeStart = System.nanoTime();
+
+        int readTags = 0;
+
+        try (TagBackupInput tagBackupInput = TagBackupInput.open(
+                new BufferedInputStream(new FileInputStream(backupFile)))) {
+            while (tagBackupInput.read() != null) {
+                readTags++;
+            }
+        }
+
+        long decodeNanos = System.nanoTime() - decodeStart;
+
+        System.out.printf("%s: %d tags, %d KiB, encode %.0f tags/s, " +
+                        "decode %.0f tags/s%n", name, readTags,
+                backupFile.length() / 1024, TAGS * 1e9 / encodeNanos,
+                TAGS * 1e9 / decodeNanos);
+    }
+
+    static Tag createTag(int i) {
+        return new Tag((long) i, "Artist " + (i % 500) + " - Title " + i +
+                ".mkv", "Artist " + (i % 500), "Title " + i,
+                "Album " + (i % 2000));
+    }
+
+    static Tag createSortedTag(int i, String titleSuffix) {
+        return new Tag(String.format(Locale.ROOT, "clip-%07d.mkv", i),
+                "Artist " + (i % 500), "Title " + i + titleSuffix,
+                "Album " + (i % 2000));
+    }
+
+    static void report(String name, Benchmark benchmark) throws Exception {
+        HeapSampler heapSampler = new HeapSampler();
+
+        long start = System.nanoTime();
+
+        heapSampler.start();
+
+        try {
+            benchmark.run();
+        } finally {
+            heapSampler.stop();
+        }
+
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("%s: %d tags, %d ms, peak heap +%d KiB%n", name,
+                TAGS, durationMs, heapSampler.getPeakBytes() / 1024);
+    }
+
+    interface OutputFactory {
+        TagBackupOutput create() throws Exception;
+    }
+
+    interface Benchmark {
+        void run() throws Exception;
+    }
+
+    /**
+     * Samples the used heap every millisecond and remembers the peak above
+     * the baseline measured after a full collection.
+     */
+    static final class HeapSampler {
+
+        private final Runtime runtime = Runtime.getRuntime();
+
+        private volatile boolean running;
+        private volatile long peakBytes;
+        private long baselineBytes;
+        private Thread thread;
+
+        void start() {
+            System.gc();
+
+            baselineBytes = runtime.totalMemory() - runtime.freeMemory();
+            running = true;
+
+            thread = new Thread(() -> {
+                while (running) {
+                    sample();
+
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+
+            thread.join();
+
+            sample();
+        }
+
+        long getPeakBytes() {
+            return peakBytes;
+        }
+
+        private void sample() {
+            long usedBytes = runtime.totalMemory() - runtime.freeMemory() -
+                    baselineBytes;
+
+            if (usedBytes > peakBytes) {
+                peakBytes = usedBytes;
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.artyommameev.sunflowerplayer.database.Database;
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+import org.greenrobot.greendao.query.LazyList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+@SuppressWarnings({"ConstantConditions", "unchecked"})
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class TagBackupDiffTests {
+
+    @Mock
+    private Database database;
+    @Mock
+    private LazyList<Tag> lazyList;
+
+    private List<Tag> tagsInDatabase;
+    private TagBackupDiff tagBackupDiff;
+
+    @Before
+    public void setUp() {
+        tagsInDatabase = new ArrayList<>();
+
+        when(database.findAllOrderedByFileNameLazily()).thenReturn(lazyList);
+        when(lazyList.iterator()).thenAnswer(invocation ->
+                tagsInDatabase.iterator());
+        when(database.findTagsByFileNames(anyCollection())).thenAnswer(
+                invocation -> {
+                    Collection<String> fileNames = invocation.getArgument(0);
+
+                    List<Tag> found = new ArrayList<>();
+
+                    for (Tag tag : tagsInDatabase) {
+                        if (fileNames.contains(tag.getFileName())) {
+                            found.add(tag);
+                        }
+                    }
+
+                    return found;
+                });
+
+        tagBackupDiff = new TagBackupDiff(database);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsNullPointerExceptionIfDatabaseIsNull() {
+        new TagBackupDiff(null);
+    }
+
+    @Test
+    public void computeClassifiesSortedBackupByMergeJoin() throws Exception {
+        tagsInDatabase.addAll(Arrays.asList(
+                new Tag("a.mp4", "artist", "title", "album"),
+                new Tag("b.mp4", "artist", "title", "album"),
+                new Tag("d.mp4", "artist", "title", "album")));
+
+        TagBackupDiff.Result result = tagBackupDiff.compute(backupOf(
+                new Tag("a.mp4", "artist", "title", "album"),
+                new Tag("c.mp4", "artist", "title", "album"),
+                new Tag("d.mp4", "artist2", "title", "album"),
+                new Tag("e.mp4", "artist", "title", "album")));
+
+        assertEquals(result.getNewTags(), 2);
+        assertEquals(result.getUnchangedTags(), 1);
+        assertEquals(result.getConflictingTags(), 1);
+        assertTrue(result.isMergeJoined());
+        assertTrue(result.isCompleted());
+        verify(database, never()).findTagsByFileNames(anyCollection());
+    }
+
+    @Test
+    public void computeComparesUnsortedRestByLookups() throws Exception {
+        tagsInDatabase.addAll(Arrays.asList(
+                new Tag("a.mp4", "artist", "title", "album"),
+                new Tag("b.mp4", "artist", "title", "album")));
+
+        TagBackupDiff.Result result = tagBackupDiff.compute(backupOf(
+                new Tag("b.mp4", "artist", "title", "album"),
+                new Tag("a.mp4", "artist2", "title", "album"),
+                new Tag("c.mp4", "artist", "title", "album")));
+
+        assertEquals(result.getNewTags(), 1);
+        assertEquals(result.getUnchangedTags(), 1);
+        assertEquals(result.getConflictingTags(), 1);
+        assertFalse(result.isMergeJoined());
+    }
+
+    @Test
+    public void computeCountsRemovedTagsOfDelta() throws Exception {
+        tagsInDatabase.add(new Tag("a.mp4", "artist", "title", "album"));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (TagBackupWriter tagBackupWriter =
+                     TagBackupWriter.delta(outputStream, 1, 2)) {
+            tagBackupWriter.writeDeleted("a.mp4");
+            tagBackupWriter.writeDeleted("b.mp4");
+        }
+
+        TagBackupDiff.Result result = tagBackupDiff.compute(
+                new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertEquals(result.getRemovedTags(), 1);
+    }
+
+    @Test
+    public void computeComparesRepeatedFileNamesWithSameTag()
+            throws Exception {
+        tagsInDatabase.add(new Tag("a.mp4", "artist", "title", "album"));
+
+        TagBackupDiff.Result result = tagBackupDiff.compute(backupOf(
+                new Tag("a.mp4", "artist", "title", "album"),
+                new Tag("a.mp4", "artist2", "title", "album")));
+
+        assertEquals(result.getUnchangedTags(), 1);
+        assertEquals(result.getConflictingTags(), 1);
+    }
+
+    private ByteArrayInputStream backupOf(Tag... tags) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (TagBackupWriter tagBackupWriter =
+                     TagBackupWriter.full(outputStream, 1)) {
+            for (Tag tag : tags) {
+                tagBackupWriter.write(tag);
+            }
+        }
+
+        return new ByteArrayInputStream(outputStream.toByteArray());
+    }
+}
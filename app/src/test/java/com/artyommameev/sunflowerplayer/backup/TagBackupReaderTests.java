@@ -0,0 +1,155 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+@SuppressWarnings("ConstantConditions")
+public class TagBackupReaderTests {
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsNullPointerExceptionIfInputStreamIsNull()
+            throws Exception {
+        new TagBackupReader(null);
+    }
+
+    @Test
+    public void readsGzippedBackup() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (TagBackupWriter tagBackupWriter =
+                     new TagBackupWriter(outputStream)) {
+            tagBackupWriter.write(new Tag("fileName1", "artist1", "title1",
+                    "album1"));
+        }
+
+        TagBackupReader tagBackupReader = new TagBackupReader(
+                new ByteArrayInputStream(outputStream.toByteArray()));
+
+        Tag tag = tagBackupReader.read();
+
+        assertEquals(tag.getFileName(), "fileName1");
+        assertEquals(tag.getArtist(), "artist1");
+        assertEquals(tag.getTitle(), "title1");
+        assertEquals(tag.getAlbum(), "album1");
+        assertNull(tagBackupReader.read());
+    }
+
+    @Test
+    public void readsSeqOfFullBackup() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (TagBackupWriter tagBackupWriter =
+                     TagBackupWriter.full(outputStream, 42)) {
+            tagBackupWriter.write(new Tag("fileName1", "artist1", "title1",
+                    "album1"));
+        }
+
+        TagBackupReader tagBackupReader = new TagBackupReader(
+                new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertEquals(tagBackupReader.getSeq(), 42);
+        assertEquals(tagBackupReader.getBaseSeq(), -1);
+        assertNull(tagBackupReader.readDeleted());
+        assertEquals(tagBackupReader.read().getFileName(), "fileName1");
+        assertNull(tagBackupReader.read());
+    }
+
+    @Test
+    public void readsDeltaBackup() throws Exception {
+        TagBackupReader tagBackupReader = new TagBackupReader(
+                new ByteArrayInputStream(deltaBackup()));
+
+        assertEquals(tagBackupReader.getSeq(), 20);
+        assertEquals(tagBackupReader.getBaseSeq(), 10);
+        assertEquals(tagBackupReader.readDeleted(), "fileName2");
+        assertEquals(tagBackupReader.readDeleted(), "fileName3");
+        assertNull(tagBackupReader.readDeleted());
+        assertEquals(tagBackupReader.read().getFileName(), "fileName1");
+        assertNull(tagBackupReader.read());
+    }
+
+    @Test
+    public void readSkipsUnreadDeletedFileNames() throws Exception {
+        TagBackupReader tagBackupReader = new TagBackupReader(
+                new ByteArrayInputStream(deltaBackup()));
+
+        assertEquals(tagBackupReader.read().getFileName(), "fileName1");
+        assertNull(tagBackupReader.read());
+    }
+
+    @Test
+    public void legacyBackupHasNoSeq() throws Exception {
+        TagBackupReader tagBackupReader = readerOf("[]");
+
+        assertEquals(tagBackupReader.getSeq(), -1);
+        assertEquals(tagBackupReader.getBaseSeq(), -1);
+        assertNull(tagBackupReader.readDeleted());
+        assertNull(tagBackupReader.read());
+    }
+
+    @Test
+    public void readsUncompressedBackupAndIgnoresId() throws Exception {
+        TagBackupReader tagBackupReader = readerOf("[{\"id\":5," +
+                "\"fileName\":\"fileName1\",\"artist\":\"artist1\"," +
+                "\"title\":\"title1\",\"album\":\"album1\"}]");
+
+        Tag tag = tagBackupReader.read();
+
+        assertNull(tag.getId());
+        assertEquals(tag.getFileName(), "fileName1");
+        assertNull(tagBackupReader.read());
+    }
+
+    @Test
+    public void skipsIncompleteTags() throws Exception {
+        TagBackupReader tagBackupReader = readerOf("[" +
+                "{\"fileName\":\"fileName1\",\"artist\":\"artist1\"}," +
+                "{\"fileName\":\"fileName2\",\"artist\":\"artist2\"," +
+                "\"title\":\"title2\",\"album\":null}," +
+                "42," +
+                "{\"fileName\":\"fileName3\",\"artist\":\"artist3\"," +
+                "\"title\":\"title3\",\"album\":\"album3\"}]");
+
+        assertEquals(tagBackupReader.read().getFileName(), "fileName3");
+        assertNull(tagBackupReader.read());
+        assertEquals(tagBackupReader.getSkippedTags(), 3);
+    }
+
+    @Test
+    public void readReturnsNullForEmptyBackup() throws Exception {
+        assertNull(readerOf("[]").read());
+    }
+
+    private byte[] deltaBackup() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (TagBackupWriter tagBackupWriter =
+                     TagBackupWriter.delta(outputStream, 10, 20)) {
+            tagBackupWriter.writeDeleted("fileName2");
+            tagBackupWriter.writeDeleted("fileName3");
+            tagBackupWriter.write(new Tag("fileName1", "artist1", "title1",
+                    "album1"));
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    @Test(expected = IOException.class)
+    public void readThrowsIOExceptionIfStreamIsNotBackup() throws Exception {
+        readerOf("{\"fileName\":\"fileName1\"}").read();
+    }
+
+    private TagBackupReader readerOf(String json) throws Exception {
+        return new TagBackupReader(new ByteArrayInputStream(
+                json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
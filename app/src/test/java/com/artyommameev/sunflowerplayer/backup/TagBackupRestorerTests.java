@@ -0,0 +1,234 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.artyommameev.sunflowerplayer.database.Database;
+import com.artyommameev.sunflowerplayer.domain.Tag;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@SuppressWarnings("ConstantConditions")
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class TagBackupRestorerTests {
+
+    @Mock
+    private Database database;
+
+    private TagBackupRestorer tagBackupRestorer;
+    private List<Integer> chunkSizes;
+
+    @Before
+    public void setUp() {
+        chunkSizes = new ArrayList<>();
+
+        when(database.saveAll(anyList(), anyBoolean())).thenAnswer(invocation -> {
+            List<Tag> chunk = invocation.getArgument(0);
+
+            chunkSizes.add(chunk.size());
+
+            return new Database.SaveResult(chunk.size() - 1, 1, 0);
+        });
+
+        tagBackupRestorer = new TagBackupRestorer(database);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsNullPointerExceptionIfDatabaseIsNull() {
+        new TagBackupRestorer(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsNullPointerExceptionIfMergePolicyIsNull() {
+        new TagBackupRestorer(database, null);
+    }
+
+    @Test
+    public void restoreSavesTagsInChunks() throws Exception {
+        int tags = TagBackupRestorer.CHUNK_SIZE * 2 + 1;
+
+        List<Integer> percents = new ArrayList<>();
+
+        TagBackupRestorer.Result result = tagBackupRestorer.restore(
+                sourceOf(backupOf(tags)), -1, (restoredTags, percent) ->
+                        percents.add(percent));
+
+        assertEquals(chunkSizes.size(), 3);
+        assertEquals((int) chunkSizes.get(0), TagBackupRestorer.CHUNK_SIZE);
+        assertEquals((int) chunkSizes.get(2), 1);
+        assertEquals(result.getInserted(), tags - 3);
+        assertEquals(result.getUpdated(), 3);
+        assertTrue(result.isCompleted());
+        assertEquals((int) percents.get(0), -1);
+    }
+
+    @Test
+    public void restoreReportsProgressInPercentIfSizeIsKnown()
+            throws Exception {
+        byte[] backup = backupOf(1);
+
+        List<Integer> percents = new ArrayList<>();
+
+        tagBackupRestorer.restore(sourceOf(backup), backup.length,
+                (restoredTags, percent) -> percents.add(percent));
+
+        assertEquals((int) percents.get(0), 100);
+    }
+
+    @Test
+    public void restoreSavesNothingIfCancelled() throws Exception {
+        tagBackupRestorer.cancel();
+
+        TagBackupRestorer.Result result = tagBackupRestorer.restore(
+                sourceOf(backupOf(1)), -1, (restoredTags, percent) -> {
+                });
+
+        verify(database, never()).saveAll(anyList(), anyBoolean());
+        assertFalse(result.isCompleted());
+    }
+
+    @Test
+    public void restoreSavesNothingIfBinaryBackupIsCorrupted()
+            throws Exception {
+        byte[] backup = binaryBackupOf(TagBackupRestorer.CHUNK_SIZE * 2);
+
+        // the checksum at the end of the backup does not match
+        backup[backup.length - 1] ^= 1;
+
+        try {
+            tagBackupRestorer.restore(sourceOf(backup), -1,
+                    (restoredTags, percent) -> {
+                    });
+
+            fail("The corrupted backup is restored");
+        } catch (IOException e) {
+            verify(database, never()).saveAll(anyList(), anyBoolean());
+        }
+    }
+
+    @Test
+    public void restoreSavesNothingIfBackupIsTruncated() throws Exception {
+        byte[] backup = binaryBackupOf(TagBackupRestorer.CHUNK_SIZE * 2);
+
+        try {
+            tagBackupRestorer.restore(sourceOf(Arrays.copyOf(backup,
+                    backup.length / 2)), -1, (restoredTags, percent) -> {
+            });
+
+            fail("The truncated backup is restored");
+        } catch (IOException e) {
+            verify(database, never()).saveAll(anyList(), anyBoolean());
+        }
+    }
+
+    @Test
+    public void restoreRemovesDeletedTagsBeforeSavingTags() throws Exception {
+        when(database.deleteTagsByFileNames(anyCollection())).thenReturn(2);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (TagBackupWriter tagBackupWriter =
+                     TagBackupWriter.delta(outputStream, 1, 2)) {
+            tagBackupWriter.writeDeleted("fileName1");
+            tagBackupWriter.writeDeleted("fileName2");
+            tagBackupWriter.write(new Tag("fileName3", "artist", "title",
+                    "album"));
+        }
+
+        TagBackupRestorer.Result result = tagBackupRestorer.restore(
+                sourceOf(outputStream.toByteArray()), -1,
+                (restoredTags, percent) -> {
+                });
+
+        InOrder inOrder = inOrder(database);
+        inOrder.verify(database).deleteTagsByFileNames(
+                Arrays.asList("fileName1", "fileName2"));
+        inOrder.verify(database).saveAll(anyList(), anyBoolean());
+        assertEquals(result.getDeleted(), 2);
+    }
+
+    @Test
+    public void restoreKeepsExistingTagsIfPolicyIsKeepExisting()
+            throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (TagBackupWriter tagBackupWriter =
+                     TagBackupWriter.delta(outputStream, 1, 2)) {
+            tagBackupWriter.writeDeleted("fileName1");
+            tagBackupWriter.write(new Tag("fileName2", "artist", "title",
+                    "album"));
+        }
+
+        new TagBackupRestorer(database, MergePolicy.KEEP_EXISTING).restore(
+                sourceOf(outputStream.toByteArray()), -1,
+                (restoredTags, percent) -> {
+                });
+
+        verify(database, never()).deleteTagsByFileNames(anyCollection());
+        verify(database, times(1)).saveAll(anyList(), eq(false));
+    }
+
+    @Test
+    public void restoreSavesNothingForEmptyBackup() throws Exception {
+        tagBackupRestorer.restore(sourceOf(backupOf(0)), -1,
+                (restoredTags, percent) -> {
+                });
+
+        verify(database, times(0)).saveAll(anyList(), anyBoolean());
+    }
+
+    private byte[] backupOf(int tags) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (TagBackupWriter tagBackupWriter =
+                     new TagBackupWriter(outputStream)) {
+            for (int i = 0; i < tags; i++) {
+                tagBackupWriter.write(new Tag("fileName" + i, "artist",
+                        "title" + i, "album"));
+            }
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private byte[] binaryBackupOf(int tags) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (BinaryTagBackupWriter binaryTagBackupWriter =
+                     new BinaryTagBackupWriter(outputStream)) {
+            for (int i = 0; i < tags; i++) {
+                binaryTagBackupWriter.write(new Tag("fileName" + i,
+                        "artist", "title" + i, "album"));
+            }
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private static TagBackupRestorer.StreamSource sourceOf(byte[] backup) {
+        return () -> new ByteArrayInputStream(backup);
+    }
+}
@@ -0,0 +1,117 @@
+package com.artyommameev.sunflowerplayer.backup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+@SuppressWarnings("ConstantConditions")
+public class TagBackupWriterTests {
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsNullPointerExceptionIfOutputStreamIsNull()
+            throws Exception {
+        new TagBackupWriter(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void writeThrowsNullPointerExceptionIfTagIsNull() throws Exception {
+        new TagBackupWriter(new ByteArrayOutputStream()).write(null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void writeDeletedThrowsIllegalStateExceptionForFullBackup()
+            throws Exception {
+        TagBackupWriter.full(new ByteArrayOutputStream(), 1)
+                .writeDeleted("fileName1");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void writeDeletedThrowsIllegalStateExceptionAfterTags()
+            throws Exception {
+        TagBackupWriter tagBackupWriter = TagBackupWriter.delta(
+                new ByteArrayOutputStream(), 1, 2);
+
+        tagBackupWriter.write(new Tag("fileName1", "artist1", "title1",
+                "album1"));
+        tagBackupWriter.writeDeleted("fileName2");
+    }
+
+    @Test
+    public void writesGzippedJsonArrayReadableByGson() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (TagBackupWriter tagBackupWriter =
+                     new TagBackupWriter(outputStream)) {
+            tagBackupWriter.write(new Tag(1L, "fileName1", "artist1",
+                    "title1", "album1"));
+            tagBackupWriter.write(new Tag(2L, "fileName2", "artist2",
+                    "title2", "album2"));
+
+            assertEquals(tagBackupWriter.getWrittenTags(), 2);
+        }
+
+        List<Tag> tags = readWithGson(outputStream.toByteArray());
+
+        assertEquals(tags.size(), 2);
+        assertNull(tags.get(0).getId());
+        assertEquals(tags.get(0).getFileName(), "fileName1");
+        assertEquals(tags.get(0).getArtist(), "artist1");
+        assertEquals(tags.get(0).getTitle(), "title1");
+        assertEquals(tags.get(0).getAlbum(), "album1");
+        assertEquals(tags.get(1).getFileName(), "fileName2");
+    }
+
+    @Test
+    public void writesEmptyArrayIfNoTagsAreWritten() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        new TagBackupWriter(outputStream).close();
+
+        assertEquals(readWithGson(outputStream.toByteArray()).size(), 0);
+    }
+
+    @Test
+    public void writtenBackupIsRestorable() throws Exception {
+        // every export has to be read by the restore of the same build
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (TagBackupWriter tagBackupWriter =
+                     new TagBackupWriter(outputStream)) {
+            tagBackupWriter.write(new Tag(1L, "fileName1", "artist1",
+                    "title1", "album1"));
+        }
+
+        TagBackupReader tagBackupReader = new TagBackupReader(
+                new ByteArrayInputStream(outputStream.toByteArray()));
+
+        Tag tag = tagBackupReader.read();
+
+        assertEquals(tag.getFileName(), "fileName1");
+        assertEquals(tag.getArtist(), "artist1");
+        assertEquals(tag.getTitle(), "title1");
+        assertEquals(tag.getAlbum(), "album1");
+        assertNull(tagBackupReader.read());
+    }
+
+    private List<Tag> readWithGson(byte[] backup) throws Exception {
+        Type tagListType = new TypeToken<List<Tag>>() {
+        }.getType();
+
+        return new Gson().fromJson(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(backup)),
+                StandardCharsets.UTF_8), tagListType);
+    }
+}
@@ -0,0 +1,53 @@
+package com.artyommameev.sunflowerplayer.comparator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("ConstantConditions")
+public class CodePointComparatorTests {
+
+    private CodePointComparator codePointComparator;
+
+    @Before
+    public void setUp() {
+        codePointComparator = new CodePointComparator();
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void throwsNullPointerExceptionIfString1IsNull() {
+        codePointComparator.compare(null, "string");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void throwsNullPointerExceptionIfString2IsNull() {
+        codePointComparator.compare("string", null);
+    }
+
+    @Test
+    public void returnsZeroForEqualStrings() {
+        assertEquals(codePointComparator.compare("a.mp4", "a.mp4"), 0);
+    }
+
+    @Test
+    public void sortsPrefixFirst() {
+        assertTrue(codePointComparator.compare("a", "a.mp4") < 0);
+        assertTrue(codePointComparator.compare("a.mp4", "a") > 0);
+    }
+
+    @Test
+    public void isCaseSensitive() {
+        assertTrue(codePointComparator.compare("B.mp4", "a.mp4") < 0);
+    }
+
+    @Test
+    public void sortsSupplementaryCharactersAfterBasicPlane() {
+        // U+1F33B is stored as surrogates, which are less than U+FF21
+        String sunflower = new String(Character.toChars(0x1F33B));
+
+        assertTrue(sunflower.compareTo("Ａ") < 0);
+        assertTrue(codePointComparator.compare(sunflower, "Ａ") > 0);
+    }
+}
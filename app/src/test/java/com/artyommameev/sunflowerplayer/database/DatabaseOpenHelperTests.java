@@ -0,0 +1,122 @@
+package com.artyommameev.sunflowerplayer.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import com.artyommameev.sunflowerplayer.domain.ClipMediaInfoDao;
+import com.artyommameev.sunflowerplayer.domain.DaoMaster;
+
+import org.greenrobot.greendao.database.Database;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class DatabaseOpenHelperTests {
+
+    // the table of the first version of the schema
+    private static final String VERSION_1_TAG_TABLE = "CREATE TABLE " +
+            "\"TAG\" (\"_id\" INTEGER PRIMARY KEY AUTOINCREMENT ," +
+            "\"FILE_NAME\" TEXT,\"ARTIST\" TEXT,\"TITLE\" TEXT," +
+            "\"ALBUM\" TEXT);";
+
+    @Test
+    public void migrationFromVersion1MatchesFreshSchema() {
+        Schema upgraded = new Schema();
+
+        upgraded.database.execSQL(VERSION_1_TAG_TABLE);
+
+        DatabaseOpenHelper.migrate(upgraded.database, 1);
+
+        Schema fresh = new Schema();
+
+        DaoMaster.createAllTables(fresh.database, false);
+
+        assertEquals(fresh.tables, upgraded.tables);
+    }
+
+    @Test
+    public void migrationFromVersion1AddsSeekIndex() {
+        Schema upgraded = new Schema();
+
+        upgraded.database.execSQL(VERSION_1_TAG_TABLE);
+
+        DatabaseOpenHelper.migrate(upgraded.database, 1);
+
+        assertTrue(upgraded.tables.get(ClipMediaInfoDao.TABLENAME)
+                .contains("SEEK_INDEX"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void schemaRejectsDuplicateColumns() {
+        Schema schema = new Schema();
+
+        schema.database.execSQL(VERSION_1_TAG_TABLE);
+        schema.database.execSQL(
+                "ALTER TABLE \"TAG\" ADD COLUMN \"ARTIST\" TEXT");
+    }
+
+    /**
+     * Follows the tables and the columns created by the executed
+     * statements, and fails like SQLite on a duplicate column.
+     */
+    private static class Schema {
+
+        private static final Pattern CREATE_TABLE = Pattern.compile(
+                "CREATE TABLE (IF NOT EXISTS )?\"(\\w+)\" \\((.*)\\);?");
+        private static final Pattern ALTER_TABLE = Pattern.compile(
+                "ALTER TABLE \"(\\w+)\" ADD COLUMN \"(\\w+)\".*");
+        private static final Pattern COLUMN = Pattern.compile(
+                "\\s*\"(\\w+)\".*");
+
+        private final Map<String, Set<String>> tables = new HashMap<>();
+        private final Database database = mock(Database.class);
+
+        Schema() {
+            doAnswer(invocation -> {
+                execute(invocation.getArgument(0));
+
+                return null;
+            }).when(database).execSQL(anyString());
+        }
+
+        private void execute(String sql) {
+            Matcher createTable = CREATE_TABLE.matcher(sql);
+
+            if (createTable.matches()) {
+                if (tables.containsKey(createTable.group(2))) {
+                    return;
+                }
+
+                Set<String> columns = new LinkedHashSet<>();
+
+                for (String column : createTable.group(3).split(",")) {
+                    Matcher name = COLUMN.matcher(column);
+
+                    if (name.matches()) {
+                        columns.add(name.group(1));
+                    }
+                }
+
+                tables.put(createTable.group(2), columns);
+
+                return;
+            }
+
+            Matcher alterTable = ALTER_TABLE.matcher(sql);
+
+            if (alterTable.matches() && !tables.get(alterTable.group(1))
+                    .add(alterTable.group(2))) {
+                throw new IllegalStateException("duplicate column name: " +
+                        alterTable.group(2));
+            }
+        }
+    }
+}
@@ -2,8 +2,16 @@ package com.artyommameev.sunflowerplayer.database;
 
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -12,8 +20,11 @@ import android.app.Activity;
 
 import com.artyommameev.sunflowerplayer.SunflowerPlayer;
 import com.artyommameev.sunflowerplayer.domain.DaoSession;
+import com.artyommameev.sunflowerplayer.domain.DeletedTag;
+import com.artyommameev.sunflowerplayer.domain.DeletedTagDao;
 import com.artyommameev.sunflowerplayer.domain.Tag;
 import com.artyommameev.sunflowerplayer.domain.TagDao;
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
 
 import org.greenrobot.greendao.Property;
 import org.greenrobot.greendao.query.QueryBuilder;
@@ -21,12 +32,16 @@ import org.greenrobot.greendao.query.WhereCondition;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -41,6 +56,10 @@ public class DatabaseTests {
     private DaoSession daoSession;
     @Mock
     private TagDao tagDao;
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private DeletedTagDao deletedTagDao;
+    @Mock
+    private org.greenrobot.greendao.database.Database greenDaoDatabase;
     @Mock
     private QueryBuilder<Tag> queryBuilder;
     @Mock
@@ -51,21 +70,75 @@ public class DatabaseTests {
     private Tag tag;
 
     private Database database;
+    private List<TagChange> publishedChanges;
 
     @Before
     public void setUp() {
+        TagChangePublisher tagChangePublisher = new TagChangePublisher();
+        publishedChanges = new ArrayList<>();
+        tagChangePublisher.addListener(publishedChanges::add);
+
         when(context.getApplication()).thenReturn(sunflowerPlayer);
         when(sunflowerPlayer.getDaoSession()).thenReturn(daoSession);
+        when(sunflowerPlayer.getTagChangePublisher())
+                .thenReturn(tagChangePublisher);
+        when(sunflowerPlayer.getModificationSequence())
+                .thenReturn(new ModificationSequence(0));
         when(daoSession.getTagDao()).thenReturn(tagDao);
+        when(daoSession.getDeletedTagDao()).thenReturn(deletedTagDao);
         when(tagDao.queryBuilder()).thenReturn(queryBuilder);
 
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+
+            return null;
+        }).when(daoSession).runInTx(any());
+
 
         database = new Database(context);
     }
 
     @Test(expected = NullPointerException.class)
     public void constructorThrowsNullPointerExceptionIfContextIsNull() {
-        new Database(null);
+        new Database((Activity) null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsNullPointerExceptionIfApplicationIsNull() {
+        new Database((SunflowerPlayer) null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void savePlaybackPositionsThrowsNullPointerExceptionIfPlaybackPositionsAreNull() {
+        database.savePlaybackPositions(null);
+    }
+
+    @Test
+    public void savePlaybackPositionsDoesNotStartTransactionIfPlaybackPositionsAreEmpty() {
+        database.savePlaybackPositions(Collections.emptyList());
+
+        verify(daoSession, never()).runInTx(any());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void findClipMediaInfoByFileNameThrowsNullPointerExceptionIfFileNameIsNull() {
+        database.findClipMediaInfoByFileName(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void updateClipMediaInfoThrowsNullPointerExceptionIfVideoClipIsNull() {
+        database.updateClipMediaInfo(null, clipMediaInfo -> {
+        });
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void updateClipMediaInfoThrowsNullPointerExceptionIfUpdateIsNull() {
+        database.updateClipMediaInfo(mock(VideoClip.class), null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void deleteClipMediaInfoByFileNameThrowsNullPointerExceptionIfFileNameIsNull() {
+        database.deleteClipMediaInfoByFileName(null);
     }
 
     @Test(expected = NullPointerException.class)
@@ -129,6 +202,27 @@ public class DatabaseTests {
         verify(tagDao, times(1)).insert(tag);
     }
 
+    @Test
+    public void insertTagAssignsNextModSeq() {
+        Tag tag = new Tag("fileName1", "artist1", "title1", "album1");
+
+        database.insertTag(tag);
+        database.insertTag(new Tag("fileName2", "artist2", "title2",
+                "album2"));
+
+        assertEquals(tag.getModSeq(), 1);
+    }
+
+    @Test
+    public void insertTagPublishesInsertedChange() {
+        database.insertTag(tag);
+
+        assertEquals(publishedChanges.size(), 1);
+        assertEquals(publishedChanges.get(0).getType(),
+                TagChange.Type.INSERTED);
+        assertSame(publishedChanges.get(0).getTags().get(0), tag);
+    }
+
     @Test(expected = NullPointerException.class)
     public void updateTagThrowsNullPointerExceptionIfTagIsNull() {
         database.updateTag(null);
@@ -141,8 +235,57 @@ public class DatabaseTests {
         verify(tagDao, times(1)).update(tag);
     }
 
+    @Test
+    public void updateTagPublishesUpdatedChange() {
+        database.updateTag(tag);
+
+        assertEquals(publishedChanges.size(), 1);
+        assertEquals(publishedChanges.get(0).getType(),
+                TagChange.Type.UPDATED);
+        assertSame(publishedChanges.get(0).getTags().get(0), tag);
+    }
+
+    @Test
+    public void deleteTagsRecordsDeletedTags() {
+        database.deleteTags(Collections.singletonList(new Tag(1L,
+                "fileName1", "artist1", "title1", "album1")));
+
+        ArgumentCaptor<List<DeletedTag>> captor =
+                ArgumentCaptor.forClass(List.class);
+        verify(deletedTagDao, times(1)).insertOrReplaceInTx(
+                captor.capture());
+
+        assertEquals(captor.getValue().size(), 1);
+        assertEquals(captor.getValue().get(0).getFileName(), "fileName1");
+        assertEquals(captor.getValue().get(0).getModSeq(), 1);
+    }
+
+    @Test
+    public void deleteAllTagsRecordsDeletedTags() {
+        when(daoSession.getDatabase()).thenReturn(greenDaoDatabase);
+
+        database.deleteAllTags();
+
+        verify(greenDaoDatabase, times(1)).execSQL(any(),
+                eq(new Object[]{1L}));
+    }
+
+    @Test
+    public void deleteAllTagsPublishesClearedChange() {
+        when(daoSession.getDatabase()).thenReturn(greenDaoDatabase);
+
+        database.deleteAllTags();
+
+        assertEquals(publishedChanges.size(), 1);
+        assertEquals(publishedChanges.get(0).getType(),
+                TagChange.Type.CLEARED);
+        assertTrue(publishedChanges.get(0).getTags().isEmpty());
+    }
+
     @Test
     public void deleteAllTagsRemovesAllTagsInDatabase() {
+        when(daoSession.getDatabase()).thenReturn(greenDaoDatabase);
+
         database.deleteAllTags();
 
         verify(tagDao, times(1)).deleteAll();
@@ -157,41 +300,27 @@ public class DatabaseTests {
 
     @Test
     public void saveAllUpdatesTagIntoTheDatabase() throws Exception {
-        QueryBuilder<Tag> queryBuilder2 = mock(QueryBuilder.class);
-        when(queryBuilder2.unique()).thenReturn(new Tag(
-                "fileName1", "artist2", "title2",
-                "album2"));
-
-        Class<?> properties = TagDao.Properties.class;
-        Field fileName = properties.getField("FileName");
-        setFinalStatic(fileName, property);
-
-        when(property.eq("fileName1")).thenReturn(whereCondition);
-        when(queryBuilder.where(whereCondition)).thenReturn(queryBuilder2);
+        mockFindTagsByFileNames(Collections.singletonList(new Tag(1L,
+                "fileName1", "artist2", "title2", "album2")));
 
         List<Tag> tags = new ArrayList<>();
 
-        Tag tag = new Tag("fileName1", "artist1", "title1",
+        Tag tag = new Tag(1L, "fileName1", "artist1", "title1",
                 "album1");
 
         tags.add(tag);
 
-        database.saveAll(tags);
+        Database.SaveResult saveResult = database.saveAll(tags);
 
-        verify(tagDao, times(1)).update(tag);
+        tag.setModSeq(1);
+
+        verify(tagDao, times(1)).updateInTx(Collections.singletonList(tag));
+        assertEquals(saveResult.getUpdated(), 1);
     }
 
     @Test
     public void saveAllInsertsNewTagIntoTheDatabase() throws Exception {
-        QueryBuilder<Tag> queryBuilder2 = mock(QueryBuilder.class);
-        when(queryBuilder2.unique()).thenReturn(null);
-
-        Class<?> properties = TagDao.Properties.class;
-        Field fileName = properties.getField("FileName");
-        setFinalStatic(fileName, property);
-
-        when(property.eq("fileName1")).thenReturn(whereCondition);
-        when(queryBuilder.where(whereCondition)).thenReturn(queryBuilder2);
+        mockFindTagsByFileNames(Collections.emptyList());
 
         List<Tag> tags = new ArrayList<>();
 
@@ -200,9 +329,70 @@ public class DatabaseTests {
 
         tags.add(tag);
 
+        Database.SaveResult saveResult = database.saveAll(tags);
+
+        verify(tagDao, times(1)).insertInTx(Collections.singletonList(tag));
+        assertEquals(saveResult.getInserted(), 1);
+    }
+
+    @Test
+    public void saveAllAssignsOneModSeqPerChunk() throws Exception {
+        mockFindTagsByFileNames(Collections.emptyList());
+
+        Tag tag1 = new Tag("fileName1", "artist1", "title1", "album1");
+        Tag tag2 = new Tag("fileName2", "artist2", "title2", "album2");
+
+        database.saveAll(Arrays.asList(tag1, tag2));
+
+        assertEquals(tag1.getModSeq(), 1);
+        assertEquals(tag2.getModSeq(), 1);
+    }
+
+    @Test
+    public void saveAllSkipsTagWithSameContent() throws Exception {
+        mockFindTagsByFileNames(Collections.singletonList(new Tag(1L,
+                "fileName1", "artist1", "title1", "album1")));
+
+        Database.SaveResult saveResult = database.saveAll(
+                Collections.singletonList(new Tag("fileName1", "artist1",
+                        "title1", "album1")));
+
+        verify(tagDao, never()).updateInTx(anyList());
+        verify(tagDao, never()).insertInTx(anyList());
+        assertEquals(saveResult.getUnchanged(), 1);
+        assertTrue(publishedChanges.isEmpty());
+    }
+
+    @Test
+    public void saveAllPublishesOneChangePerType() throws Exception {
+        mockFindTagsByFileNames(Collections.emptyList());
+
+        List<Tag> tags = new ArrayList<>();
+
+        tags.add(new Tag("fileName1", "artist1", "title1",
+                "album1"));
+        tags.add(new Tag("fileName2", "artist2", "title2",
+                "album2"));
+
         database.saveAll(tags);
 
-        verify(tagDao, times(1)).insert(tag);
+        assertEquals(publishedChanges.size(), 1);
+        assertEquals(publishedChanges.get(0).getType(),
+                TagChange.Type.INSERTED);
+        assertEquals(publishedChanges.get(0).getTags(), tags);
+    }
+
+    private void mockFindTagsByFileNames(List<Tag> tagsInDatabase)
+            throws Exception {
+        QueryBuilder<Tag> queryBuilder2 = mock(QueryBuilder.class);
+        when(queryBuilder2.list()).thenReturn(tagsInDatabase);
+
+        Class<?> properties = TagDao.Properties.class;
+        Field fileName = properties.getField("FileName");
+        setFinalStatic(fileName, property);
+
+        when(property.in(anyCollection())).thenReturn(whereCondition);
+        when(queryBuilder.where(whereCondition)).thenReturn(queryBuilder2);
     }
 
     private void setFinalStatic(Field field, Object newValue) throws Exception {
@@ -0,0 +1,130 @@
+package com.artyommameev.sunflowerplayer.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.SharedPreferences;
+
+import com.artyommameev.sunflowerplayer.domain.Tag;
+import com.artyommameev.sunflowerplayer.storage.VideoClipScanner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+@SuppressWarnings("ConstantConditions")
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class OrphanTagCollectorTests {
+
+    @Mock
+    private Database database;
+    @Mock
+    private VideoClipScanner videoClipScanner;
+    @Mock
+    private SharedPreferences sharedPreferences;
+    @Mock
+    private SharedPreferences.Editor editor;
+
+    private OrphanTagCollector orphanTagCollector;
+
+    private Tag existingTag;
+    private Tag orphanTag;
+
+    @Before
+    public void setUp() {
+        when(sharedPreferences.edit()).thenReturn(editor);
+        when(editor.putLong(anyString(), anyLong())).thenReturn(editor);
+        when(editor.remove(anyString())).thenReturn(editor);
+
+        when(videoClipScanner.scanFileNames(any())).thenReturn(
+                new HashSet<>(Collections.singletonList("existing.mkv")));
+
+        existingTag = new Tag(1L, "existing.mkv", "artist1", "title1",
+                "album1");
+        orphanTag = new Tag(2L, "removed.mkv", "artist2", "title2",
+                "album2");
+
+        orphanTagCollector = new OrphanTagCollector(database,
+                videoClipScanner, sharedPreferences);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsNullPointerExceptionIfDatabaseIsNull() {
+        new OrphanTagCollector(null, videoClipScanner, sharedPreferences);
+    }
+
+    @Test
+    public void collectDeletesOnlyTagsOfMissingVideoClips() {
+        when(database.findTagsAfterId(0, OrphanTagCollector.BATCH_SIZE))
+                .thenReturn(Arrays.asList(existingTag, orphanTag));
+        when(database.findTagsAfterId(2, OrphanTagCollector.BATCH_SIZE))
+                .thenReturn(Collections.emptyList());
+
+        OrphanTagCollector.Result result = orphanTagCollector.collect();
+
+        verify(database).deleteTags(Collections.singletonList(orphanTag));
+        assertEquals(result.getReclaimedTags(), 1);
+        assertTrue(result.isCompleted());
+    }
+
+    @Test
+    public void collectSavesCheckpointAfterBatchAndRemovesItWhenCompleted() {
+        when(database.findTagsAfterId(0, OrphanTagCollector.BATCH_SIZE))
+                .thenReturn(Arrays.asList(existingTag, orphanTag));
+        when(database.findTagsAfterId(2, OrphanTagCollector.BATCH_SIZE))
+                .thenReturn(Collections.emptyList());
+
+        orphanTagCollector.collect();
+
+        verify(editor).putLong(OrphanTagCollector.CHECKPOINT_KEY, 2);
+        verify(editor).remove(OrphanTagCollector.CHECKPOINT_KEY);
+    }
+
+    @Test
+    public void collectContinuesFromSavedCheckpoint() {
+        when(sharedPreferences.getLong(OrphanTagCollector.CHECKPOINT_KEY, 0))
+                .thenReturn(1L);
+        when(database.findTagsAfterId(1, OrphanTagCollector.BATCH_SIZE))
+                .thenReturn(Collections.singletonList(orphanTag));
+        when(database.findTagsAfterId(2, OrphanTagCollector.BATCH_SIZE))
+                .thenReturn(Collections.emptyList());
+
+        orphanTagCollector.collect();
+
+        verify(database, never()).findTagsAfterId(0,
+                OrphanTagCollector.BATCH_SIZE);
+        verify(database).deleteTags(Collections.singletonList(orphanTag));
+    }
+
+    @Test
+    public void collectDoesNothingIfCancelled() {
+        orphanTagCollector.cancel();
+
+        OrphanTagCollector.Result result = orphanTagCollector.collect();
+
+        verify(database, never()).deleteTags(any());
+        verify(editor, never()).remove(anyString());
+        assertFalse(result.isCompleted());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void collectThrowsIllegalStateExceptionIfLibraryIsNotReadable() {
+        when(videoClipScanner.scanFileNames(any()))
+                .thenThrow(new IllegalStateException());
+
+        orphanTagCollector.collect();
+    }
+}
@@ -0,0 +1,182 @@
+package com.artyommameev.sunflowerplayer.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.artyommameev.sunflowerplayer.domain.PlaybackPosition;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@RunWith(MockitoJUnitRunner.class)
+@SuppressWarnings("unchecked")
+public class PlaybackPositionWriterTests {
+
+    @Mock
+    private Database database;
+
+    private long nowMs;
+    private PlaybackPositionWriter playbackPositionWriter;
+
+    @Before
+    public void setUp() {
+        // runs the writes on the calling thread
+        playbackPositionWriter = new PlaybackPositionWriter(database,
+                Runnable::run, () -> nowMs);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsNullPointerExceptionIfDatabaseIsNull() {
+        new PlaybackPositionWriter(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void recordThrowsNullPointerExceptionIfFileNameIsNull() {
+        playbackPositionWriter.record(null, 0, 0);
+    }
+
+    @Test
+    public void recordDoesNotWriteBeforeFlushInterval() {
+        playbackPositionWriter.record("fileName", 1000, 60000);
+
+        nowMs = PlaybackPositionWriter.FLUSH_INTERVAL_MS - 1;
+
+        playbackPositionWriter.record("fileName", 2000, 60000);
+
+        verify(database, never()).savePlaybackPositions(anyCollection());
+    }
+
+    @Test
+    public void recordWritesLastPositionsInOneBatchAfterFlushInterval() {
+        playbackPositionWriter.record("fileName1", 1000, 60000);
+        playbackPositionWriter.record("fileName2", 1000, 60000);
+        playbackPositionWriter.record("fileName1", 2000, 60000);
+
+        nowMs = PlaybackPositionWriter.FLUSH_INTERVAL_MS;
+
+        playbackPositionWriter.record("fileName1", 3000, 60000);
+
+        List<PlaybackPosition> batch = captureBatches().get(0);
+
+        assertEquals(batch.size(), 2);
+        assertEquals(batch.get(0).getFileName(), "fileName1");
+        assertEquals(batch.get(0).getPosition(), 3000);
+        assertEquals(batch.get(1).getFileName(), "fileName2");
+    }
+
+    @Test
+    public void flushWritesRecordedPositions() {
+        playbackPositionWriter.record("fileName", 1000, 60000);
+
+        playbackPositionWriter.flush();
+
+        List<PlaybackPosition> batch = captureBatches().get(0);
+
+        assertEquals(batch.size(), 1);
+        assertEquals(batch.get(0).getPosition(), 1000);
+        assertEquals(batch.get(0).getDuration(), 60000);
+    }
+
+    @Test
+    public void flushDoesNotWriteIfNothingWasRecorded() {
+        playbackPositionWriter.record("fileName", 1000, 60000);
+
+        playbackPositionWriter.flush();
+        playbackPositionWriter.flush();
+
+        verify(database, times(1)).savePlaybackPositions(anyCollection());
+    }
+
+    @Test
+    public void flushRestartsFlushInterval() {
+        nowMs = PlaybackPositionWriter.FLUSH_INTERVAL_MS - 1;
+
+        playbackPositionWriter.flush();
+
+        nowMs = PlaybackPositionWriter.FLUSH_INTERVAL_MS;
+
+        playbackPositionWriter.record("fileName", 1000, 60000);
+
+        verify(database, never()).savePlaybackPositions(anyCollection());
+    }
+
+    @Test
+    public void findPlaybackPositionReturnsRecordedPositionBeforeDatabase() {
+        playbackPositionWriter.record("fileName", 1000, 60000);
+
+        assertEquals(playbackPositionWriter.findPlaybackPosition("fileName")
+                .getPosition(), 1000);
+        verify(database, never()).findPlaybackPositionByFileName("fileName");
+    }
+
+    @Test
+    public void findPlaybackPositionQueriesDatabaseIfNothingWasRecorded() {
+        PlaybackPosition playbackPosition = new PlaybackPosition("fileName",
+                1000, 60000);
+
+        when(database.findPlaybackPositionByFileName("fileName"))
+                .thenReturn(playbackPosition);
+
+        assertSame(playbackPositionWriter.findPlaybackPosition("fileName"),
+                playbackPosition);
+        assertNull(playbackPositionWriter.findPlaybackPosition("other"));
+    }
+
+    @Test
+    public void findPlaybackPositionQueriesDatabaseAfterPositionIsWritten() {
+        playbackPositionWriter.record("fileName", 1000, 60000);
+
+        playbackPositionWriter.flush();
+
+        playbackPositionWriter.findPlaybackPosition("fileName");
+
+        verify(database).findPlaybackPositionByFileName("fileName");
+    }
+
+    @Test
+    public void findPlaybackPositionReturnsPositionRecordedDuringWrite() {
+        List<Runnable> writes = new ArrayList<>();
+
+        playbackPositionWriter = new PlaybackPositionWriter(database,
+                writes::add, () -> nowMs);
+
+        playbackPositionWriter.record("fileName", 1000, 60000);
+        playbackPositionWriter.flush();
+        playbackPositionWriter.record("fileName", 2000, 60000);
+
+        writes.get(0).run();
+
+        assertEquals(playbackPositionWriter.findPlaybackPosition("fileName")
+                .getPosition(), 2000);
+        verify(database, never()).findPlaybackPositionByFileName("fileName");
+    }
+
+    private List<List<PlaybackPosition>> captureBatches() {
+        ArgumentCaptor<Collection<PlaybackPosition>> captor =
+                ArgumentCaptor.forClass(Collection.class);
+
+        verify(database).savePlaybackPositions(captor.capture());
+
+        List<List<PlaybackPosition>> batches = new ArrayList<>();
+
+        for (Collection<PlaybackPosition> batch : captor.getAllValues()) {
+            batches.add(new ArrayList<>(batch));
+        }
+
+        return batches;
+    }
+}
@@ -0,0 +1,45 @@
+package com.artyommameev.sunflowerplayer.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PlaybackPositionTests {
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsNullPointerExceptionIfFileNameIsNull() {
+        new PlaybackPosition(null, 0, 0);
+    }
+
+    @Test
+    public void isFinishedReturnsTrueIfPositionIsCloseToEnd() {
+        assertTrue(new PlaybackPosition("fileName", 58000, 60000)
+                .isFinished());
+    }
+
+    @Test
+    public void isFinishedReturnsFalseIfPositionIsFarFromEnd() {
+        assertFalse(new PlaybackPosition("fileName", 30000, 60000)
+                .isFinished());
+    }
+
+    @Test
+    public void isFinishedReturnsFalseIfDurationIsUnknown() {
+        assertFalse(new PlaybackPosition("fileName", 30000, 0)
+                .isFinished());
+    }
+
+    @Test
+    public void getResumePositionReturnsPositionIfNotFinished() {
+        assertEquals(new PlaybackPosition("fileName", 30000, 60000)
+                .getResumePosition(), 30000);
+    }
+
+    @Test
+    public void getResumePositionReturnsZeroIfFinished() {
+        assertEquals(new PlaybackPosition("fileName", 60000, 60000)
+                .getResumePosition(), 0);
+    }
+}
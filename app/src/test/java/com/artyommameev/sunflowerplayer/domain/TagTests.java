@@ -1,6 +1,8 @@
 package com.artyommameev.sunflowerplayer.domain;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -81,4 +83,21 @@ public class TagTests {
         assertEquals(tagWithFirstConstructor.toString(),
                 "artist - title (album)");
     }
+
+    @Test(expected = NullPointerException.class)
+    public void hasSameContentThrowsNullPointerExceptionIfTagIsNull() {
+        tagWithFirstConstructor.hasSameContent(null);
+    }
+
+    @Test
+    public void hasSameContentIgnoresFileNameAndId() {
+        assertTrue(tagWithSecondConstructor.hasSameContent(new Tag(
+                "fileName2", "artist", "title", "album")));
+    }
+
+    @Test
+    public void hasSameContentDetectsDifferentAlbum() {
+        assertFalse(tagWithFirstConstructor.hasSameContent(new Tag(
+                "fileName", "artist", "title", "album2")));
+    }
 }
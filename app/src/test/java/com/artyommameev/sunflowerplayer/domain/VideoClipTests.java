@@ -86,6 +86,19 @@ public class VideoClipTests {
         assertEquals(videoClip.getAlbum().get(), "album");
     }
 
+    @Test
+    public void resetTagsRestoresTagsFromFileName() {
+        videoClip.setArtist("tagArtist");
+        videoClip.setTitle("tagTitle");
+        videoClip.setAlbum("tagAlbum");
+
+        videoClip.resetTags();
+
+        assertEquals(videoClip.getArtist(), "artist");
+        assertEquals(videoClip.getTitle(), "title");
+        assertFalse(videoClip.getAlbum().isPresent());
+    }
+
     @Test(expected = NullPointerException.class)
     public void setTitleThrowsNullPointerExceptionIfTitleIsNull() {
         videoClip.setTitle(null);
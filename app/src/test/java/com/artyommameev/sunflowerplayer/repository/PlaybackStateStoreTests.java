@@ -0,0 +1,241 @@
+package com.artyommameev.sunflowerplayer.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PlaybackStateStoreTests {
+
+    private static final int THREADS = 8;
+    private static final int UPDATES_PER_THREAD = 10_000;
+
+    private final PlaybackState.Track track = new PlaybackState.Track(
+            "title", "artist", "album", 0);
+
+    private PlaybackStateStore playbackStateStore;
+
+    @Before
+    public void setUp() {
+        playbackStateStore = new PlaybackStateStore();
+    }
+
+    @Test
+    public void initialStateIsEmpty() {
+        PlaybackState state = playbackStateStore.getState();
+
+        assertSame(PlaybackState.EMPTY, state);
+        assertNull(state.getTrack());
+        assertTrue(state.getQueue().isEmpty());
+        assertNull(state.getCurrentClip());
+    }
+
+    @Test
+    public void updateNotifiesListenersWithDelta() {
+        List<PlaybackStateStore.Change> changes = new ArrayList<>();
+
+        playbackStateStore.addListener(changes::add);
+
+        playbackStateStore.update(state -> state.withTrack(track));
+
+        assertEquals(1, changes.size());
+        assertSame(PlaybackState.EMPTY, changes.get(0).getPrevious());
+        assertSame(track, changes.get(0).getCurrent().getTrack());
+        assertTrue(changes.get(0).isTrackChanged());
+        assertFalse(changes.get(0).isQueueChanged());
+        assertFalse(changes.get(0).isPlaybackChanged());
+    }
+
+    @Test
+    public void unchangedStateIsNotPublished() {
+        List<PlaybackStateStore.Change> changes = new ArrayList<>();
+
+        playbackStateStore.update(state -> state.withTrack(track));
+        playbackStateStore.addListener(changes::add);
+
+        playbackStateStore.update(state -> state.withTrack(
+                new PlaybackState.Track("title", "artist", "album", 0)));
+        playbackStateStore.update(state -> state);
+
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void removedListenerIsNotNotified() {
+        List<PlaybackStateStore.Change> changes = new ArrayList<>();
+        PlaybackStateStore.Listener listener = changes::add;
+
+        playbackStateStore.addListener(listener);
+        playbackStateStore.removeListener(listener);
+
+        playbackStateStore.update(state -> state.withTrack(track));
+
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void queueIsCopiedAndIndexIsTracked() {
+        List<VideoClip> queue = new ArrayList<>(Arrays.asList(
+                new VideoClip(new File("/music/A - 1.mp4")),
+                new VideoClip(new File("/music/A - 2.mp4"))));
+
+        List<PlaybackStateStore.Change> changes = new ArrayList<>();
+
+        playbackStateStore.update(state -> state.withQueue(queue, 0));
+        playbackStateStore.addListener(changes::add);
+
+        queue.clear();
+
+        playbackStateStore.update(state -> state.withQueueIndex(1));
+
+        PlaybackState state = playbackStateStore.getState();
+
+        assertEquals(2, state.getQueue().size());
+        assertEquals("2", state.getCurrentClip().getTitle());
+        assertTrue(changes.get(0).isQueueIndexChanged());
+        assertFalse(changes.get(0).isQueueChanged());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void withQueueIndexThrowsIfIndexIsOutOfBounds() {
+        PlaybackState.EMPTY.withQueueIndex(0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void updateThrowsIfUpdateReturnsNull() {
+        playbackStateStore.update(state -> null);
+    }
+
+    @Test
+    public void positionIsExtrapolatedFromTheSpeed() {
+        PlaybackState state = PlaybackState.EMPTY.withPlayback(3, 1_000, 2,
+                10_000);
+
+        assertEquals(1_000, state.getPositionMs(10_000));
+        assertEquals(3_000, state.getPositionMs(11_000));
+    }
+
+    @Test
+    public void concurrentUpdatesAreNotLost() throws Exception {
+        Queue<PlaybackStateStore.Change> changes =
+                new ConcurrentLinkedQueue<>();
+
+        playbackStateStore.addListener(changes::add);
+
+        runConcurrently(() -> {
+            for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                playbackStateStore.update(state -> state.withPlayback(
+                        state.getState(), state.getPositionMs() + 1,
+                        state.getSpeed(), state.getUpdateTimeMs()));
+            }
+        });
+
+        assertEquals(THREADS * UPDATES_PER_THREAD,
+                playbackStateStore.getState().getPositionMs());
+        assertEquals(THREADS * UPDATES_PER_THREAD, changes.size());
+
+        // every delta is exactly one update, whatever the order of delivery
+        for (PlaybackStateStore.Change change : changes) {
+            assertEquals(change.getPrevious().getPositionMs() + 1,
+                    change.getCurrent().getPositionMs());
+        }
+    }
+
+    @Test
+    public void readersNeverSeeHalfWrittenSnapshot() throws Exception {
+        List<VideoClip> queue = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            queue.add(new VideoClip(new File("/music/A - " + i + ".mp4")));
+        }
+
+        playbackStateStore.update(state -> state.withQueue(queue, 0)
+                .withTrack(trackOf(queue.get(0))));
+
+        AtomicBoolean isInconsistent = new AtomicBoolean();
+        AtomicBoolean isDone = new AtomicBoolean();
+
+        ExecutorService readers = Executors.newSingleThreadExecutor();
+
+        Future<?> reader = readers.submit(() -> {
+            while (!isDone.get()) {
+                PlaybackState state = playbackStateStore.getState();
+
+                // the track is always the one of the playing clip
+                if (!state.getTrack().equals(
+                        trackOf(state.getCurrentClip()))) {
+                    isInconsistent.set(true);
+                }
+            }
+        });
+
+        try {
+            runConcurrently(() -> {
+                for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                    int index = i % THREADS;
+
+                    playbackStateStore.update(state -> state
+                            .withQueueIndex(index)
+                            .withTrack(trackOf(queue.get(index))));
+                }
+            });
+        } finally {
+            isDone.set(true);
+
+            reader.get(10, TimeUnit.SECONDS);
+            readers.shutdown();
+        }
+
+        assertFalse(isInconsistent.get());
+    }
+
+    private static PlaybackState.Track trackOf(VideoClip videoClip) {
+        return new PlaybackState.Track(videoClip.getTitle(),
+                videoClip.getArtist(), "", 0);
+    }
+
+    private static void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+
+                task.run();
+
+                return null;
+            }));
+        }
+
+        start.countDown();
+
+        try {
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
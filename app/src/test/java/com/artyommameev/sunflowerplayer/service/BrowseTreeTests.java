@@ -0,0 +1,219 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.artyommameev.sunflowerplayer.domain.VideoClip;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class BrowseTreeTests {
+
+    private static final int LARGE_ARTIST_CLIPS = 10_000;
+    private static final String SALT = "salt";
+
+    private BrowseTree browseTree;
+
+    @Before
+    public void setUp() {
+        List<VideoClip> videoClips = new ArrayList<>();
+
+        VideoClip tagged = new VideoClip(
+                new File("/music/rock/Queen - Bohemian Rhapsody.mp4"));
+        tagged.setAlbum("A Night at the Opera");
+
+        videoClips.add(tagged);
+        videoClips.add(new VideoClip(
+                new File("/music/rock/Queen - Another One.mp4")));
+        videoClips.add(new VideoClip(new File("/music/pop/Abba - SOS.mkv")));
+        videoClips.add(new VideoClip(new File("/music/pop/untitled.webm")));
+
+        for (int i = 0; i < LARGE_ARTIST_CLIPS; i++) {
+            videoClips.add(new VideoClip(new File(String.format(
+                    "/music/large/Prolific - Clip %05d.mp4", i))));
+        }
+
+        browseTree = new BrowseTree(videoClips, SALT);
+    }
+
+    @Test
+    public void categoriesListSortedGroups() {
+        assertEquals(Arrays.asList("Abba", "Prolific", "Queen",
+                "Unknown Artist"),
+                titles(browseTree.getChildren(BrowseTree.ARTISTS_ID)));
+        assertEquals(Collections.singletonList("A Night at the Opera"),
+                titles(browseTree.getChildren(BrowseTree.ALBUMS_ID)));
+        assertEquals(Arrays.asList("large", "pop", "rock"),
+                titles(browseTree.getChildren(BrowseTree.FOLDERS_ID)));
+    }
+
+    @Test
+    public void mediaIdsDoNotDisclosePaths() {
+        String folderId = groupId(BrowseTree.FOLDERS_ID, "pop");
+        String clipId = browseTree.getChildren(folderId).get(0)
+                .getMediaId();
+
+        assertTrue(folderId.startsWith(BrowseTree.FOLDERS_ID + "/"));
+        assertFalse(folderId.contains("music"));
+        assertFalse(clipId.contains("music"));
+        assertFalse(clipId.contains("SOS"));
+    }
+
+    @Test
+    public void mediaIdsDependOnTheSalt() {
+        BrowseTree otherTree = new BrowseTree(Collections.singletonList(
+                new VideoClip(new File("/music/pop/Abba - SOS.mkv"))),
+                "other salt");
+
+        String otherFolderId = otherTree.getChildren(
+                BrowseTree.FOLDERS_ID).get(0).getMediaId();
+
+        assertFalse(otherFolderId.equals(
+                groupId(BrowseTree.FOLDERS_ID, "pop")));
+        assertNull(browseTree.getChildren(otherFolderId));
+    }
+
+    @Test
+    public void groupsAreBrowsableAndClipsArePlayable() {
+        BrowseTree.Item folder = browseTree.getChildren(
+                BrowseTree.FOLDERS_ID).get(1);
+
+        assertEquals("pop", folder.getTitle());
+        assertFalse(folder.isPlayable());
+
+        BrowseTree.Item clip = browseTree.getChildren(
+                folder.getMediaId()).get(0);
+
+        assertEquals("SOS", clip.getTitle());
+        assertEquals("Abba", clip.getSubtitle());
+        assertTrue(clip.isPlayable());
+    }
+
+    @Test
+    public void largeGroupIsPaged() {
+        String artistId = groupId(BrowseTree.ARTISTS_ID, "Prolific");
+
+        List<BrowseTree.Item> firstPage = browseTree.getChildren(artistId,
+                0, 50);
+        List<BrowseTree.Item> lastPage = browseTree.getChildren(artistId,
+                199, 50);
+
+        assertEquals(50, firstPage.size());
+        assertEquals("Clip 00000", firstPage.get(0).getTitle());
+        assertEquals("Clip 00049", firstPage.get(49).getTitle());
+        assertEquals(50, lastPage.size());
+        assertEquals("Clip 09999", lastPage.get(49).getTitle());
+        assertTrue(browseTree.getChildren(artistId, 200, 50).isEmpty());
+    }
+
+    @Test
+    public void firstPageOfLargeGroupIsFast() {
+        String artistId = groupId(BrowseTree.ARTISTS_ID, "Prolific");
+        long startNs = System.nanoTime();
+
+        for (int i = 0; i < 1_000; i++) {
+            browseTree.getChildren(artistId, 0, 50);
+        }
+
+        long averageNs = (System.nanoTime() - startNs) / 1_000;
+
+        // the page is a slice of a sorted list, not a sort of the group
+        assertTrue("A page takes " + averageNs + " ns",
+                averageNs < 1_000_000);
+    }
+
+    @Test
+    public void unknownNodeHasNoChildren() {
+        assertNull(browseTree.getChildren("artists/0123456789abcdef"));
+        assertNull(browseTree.getChildren("unknown"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getChildrenThrowsIfPageSizeIsNotPositive() {
+        browseTree.getChildren(BrowseTree.ARTISTS_ID, 0, 0);
+    }
+
+    @Test
+    public void selectingGroupQueuesItsClipsFromTheFirst() {
+        BrowseTree.Selection selection = browseTree.select(
+                groupId(BrowseTree.ARTISTS_ID, "Queen"));
+
+        assertEquals(0, selection.getIndex());
+        assertEquals(2, selection.getPlaylist().size());
+        // the clips without an album come first
+        assertEquals("Another One",
+                selection.getPlaylist().get(0).getTitle());
+        assertEquals("Bohemian Rhapsody",
+                selection.getPlaylist().get(1).getTitle());
+    }
+
+    @Test
+    public void selectingClipQueuesItsNodeFromTheClip() {
+        String mediaId = browseTree.getChildren(groupId(
+                BrowseTree.ARTISTS_ID, "Prolific"), 2, 50).get(10)
+                .getMediaId();
+
+        BrowseTree.Selection selection = browseTree.select(mediaId);
+
+        assertEquals(LARGE_ARTIST_CLIPS, selection.getPlaylist().size());
+        assertEquals(110, selection.getIndex());
+        assertEquals("Clip 00110", selection.getPlaylist().get(110)
+                .getTitle());
+    }
+
+    @Test
+    public void selectingCategoryOrUnknownNodeReturnsNull() {
+        assertNull(browseTree.select(BrowseTree.ARTISTS_ID));
+        assertNull(browseTree.select(BrowseTree.RECENTS_ID));
+        assertNull(browseTree.select("artists/0123456789abcdef"));
+        assertNull(browseTree.select(groupId(BrowseTree.ARTISTS_ID,
+                "Queen") + "\u001F0123456789abcdef"));
+        // a raw path is not a clip id
+        assertNull(browseTree.select(groupId(BrowseTree.ARTISTS_ID,
+                "Queen") + "\u001F/music/rock/Queen - Another One.mp4"));
+    }
+
+    @Test
+    public void recentsAreDistinctAndSkipUnknownClips() {
+        BrowseTree withRecents = browseTree.withRecents(Arrays.asList(
+                "Abba - SOS.mkv", "deleted.mp4", "Queen - Another One.mp4",
+                "Abba - SOS.mkv"));
+
+        List<BrowseTree.Item> recents = withRecents.getChildren(
+                BrowseTree.RECENTS_ID);
+
+        assertEquals(2, recents.size());
+        assertEquals("SOS", recents.get(0).getTitle());
+        assertEquals("Another One", recents.get(1).getTitle());
+        assertTrue(browseTree.getChildren(BrowseTree.RECENTS_ID).isEmpty());
+    }
+
+    private String groupId(String category, String title) {
+        for (BrowseTree.Item item : browseTree.getChildren(category)) {
+            if (item.getTitle().equals(title)) {
+                return item.getMediaId();
+            }
+        }
+
+        throw new AssertionError("No group " + title + " in " + category);
+    }
+
+    private static List<String> titles(List<BrowseTree.Item> items) {
+        List<String> titles = new ArrayList<>();
+
+        for (BrowseTree.Item item : items) {
+            titles.add(item.getTitle());
+        }
+
+        return titles;
+    }
+}
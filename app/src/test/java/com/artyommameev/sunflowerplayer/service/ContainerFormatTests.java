@@ -0,0 +1,68 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ContainerFormatTests {
+
+    @Test(expected = NullPointerException.class)
+    public void forFileNameThrowsNullPointerExceptionIfFileNameIsNull() {
+        ContainerFormat.forFileName(null);
+    }
+
+    @Test
+    public void forFileNameReturnsPlainMp4BeforeFragmentedMp4() {
+        assertEquals(ContainerFormat.forFileName("Artist - Title.mp4"),
+                Arrays.asList(ContainerFormat.MP4,
+                        ContainerFormat.FRAGMENTED_MP4));
+    }
+
+    @Test
+    public void forFileNameIgnoresCaseOfExtension() {
+        assertEquals(ContainerFormat.forFileName("clip.WEBM"),
+                Collections.singletonList(ContainerFormat.MATROSKA));
+        assertEquals(ContainerFormat.forFileName("clip.Ts"),
+                Collections.singletonList(ContainerFormat.TS));
+    }
+
+    @Test
+    public void forFileNameReturnsEmptyListIfExtensionIsUnknown() {
+        assertTrue(ContainerFormat.forFileName("clip.avi").isEmpty());
+        assertTrue(ContainerFormat.forFileName("clip").isEmpty());
+    }
+
+    @Test
+    public void fromNameReturnsFormatWithName() {
+        for (ContainerFormat containerFormat : ContainerFormat.values()) {
+            assertEquals(ContainerFormat.fromName(containerFormat.name()),
+                    containerFormat);
+        }
+    }
+
+    @Test
+    public void fromNameReturnsNullIfNameIsUnknownOrNull() {
+        assertNull(ContainerFormat.fromName("AVI"));
+        assertNull(ContainerFormat.fromName(null));
+    }
+
+    @Test
+    public void forExtractorReturnsFormatOfCreatedExtractor() {
+        for (ContainerFormat containerFormat : ContainerFormat.values()) {
+            assertEquals(ContainerFormat.forExtractor(
+                    containerFormat.createExtractor()), containerFormat);
+        }
+    }
+
+    @Test
+    public void forExtractorReturnsNullIfExtractorReadsNoFormat() {
+        assertNull(ContainerFormat.forExtractor(new Mp3Extractor()));
+    }
+}
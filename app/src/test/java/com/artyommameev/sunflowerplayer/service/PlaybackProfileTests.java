@@ -0,0 +1,90 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+
+import org.junit.Test;
+
+public class PlaybackProfileTests {
+
+    @Test(expected = NullPointerException.class)
+    public void fromValueThrowsNullPointerExceptionIfValueIsNull() {
+        PlaybackProfile.fromValue(null);
+    }
+
+    @Test
+    public void fromValueReturnsProfileWithValue() {
+        for (PlaybackProfile playbackProfile : PlaybackProfile.values()) {
+            assertEquals(PlaybackProfile.fromValue(playbackProfile.getValue()),
+                    playbackProfile);
+        }
+    }
+
+    @Test
+    public void fromValueReturnsLocalLowMemoryIfValueIsUnknown() {
+        assertEquals(PlaybackProfile.fromValue("unknown"),
+                PlaybackProfile.LOCAL_LOW_MEMORY);
+    }
+
+    @Test
+    public void createLoadControlCreatesLoadControlOfEveryProfile() {
+        for (PlaybackProfile playbackProfile : PlaybackProfile.values()) {
+            assertNotNull(playbackProfile.createLoadControl().getAllocator());
+        }
+    }
+
+    @Test
+    public void localLowMemoryLoadControlBuffersBetweenFiveAndTenSeconds() {
+        LoadControl loadControl = createLoadControl(
+                PlaybackProfile.LOCAL_LOW_MEMORY);
+
+        assertTrue(loadControl.shouldContinueLoading(4_999_000, 1));
+        assertTrue(loadControl.shouldContinueLoading(9_999_000, 1));
+        assertFalse(loadControl.shouldContinueLoading(10_000_000, 1));
+    }
+
+    @Test
+    public void localLowMemoryLoadControlStartsPlaybackAfterQuarterSecond() {
+        LoadControl loadControl = createLoadControl(
+                PlaybackProfile.LOCAL_LOW_MEMORY);
+
+        assertFalse(loadControl.shouldStartPlayback(249_000, 1, false));
+        assertTrue(loadControl.shouldStartPlayback(250_000, 1, false));
+        assertFalse(loadControl.shouldStartPlayback(499_000, 1, true));
+        assertTrue(loadControl.shouldStartPlayback(500_000, 1, true));
+    }
+
+    @Test
+    public void localLowMemoryLoadControlPrioritizesTimeOverSize() {
+        LoadControl loadControl = createLoadControl(
+                PlaybackProfile.LOCAL_LOW_MEMORY);
+
+        // fills the buffer up to its size limit of 8 MiB
+        while (loadControl.getAllocator().getTotalBytesAllocated() <
+                8 * 1024 * 1024) {
+            loadControl.getAllocator().allocate();
+        }
+
+        assertTrue(loadControl.shouldContinueLoading(4_999_000, 1));
+        assertFalse(loadControl.shouldContinueLoading(5_000_000, 1));
+        assertFalse(loadControl.shouldStartPlayback(249_000, 1, false));
+    }
+
+    private static LoadControl createLoadControl(
+            PlaybackProfile playbackProfile) {
+        LoadControl loadControl = playbackProfile.createLoadControl();
+
+        loadControl.onPrepared();
+        loadControl.onTracksSelected(new Renderer[0], TrackGroupArray.EMPTY,
+                new TrackSelectionArray());
+
+        return loadControl;
+    }
+}
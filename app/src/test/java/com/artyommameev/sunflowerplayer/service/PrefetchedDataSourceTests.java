@@ -0,0 +1,102 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrefetchedDataSourceTests {
+
+    private static final byte[] HEAD = {1, 2, 3, 4, 5, 6, 7, 8};
+    private static final long FILE_LENGTH = 20;
+
+    private DataSource upstream;
+    private PrefetchedDataSource prefetchedDataSource;
+    private Uri uri;
+
+    @Before
+    public void setUp() {
+        upstream = mock(DataSource.class);
+        uri = mock(Uri.class);
+
+        prefetchedDataSource = new PrefetchedDataSource(upstream, HEAD,
+                FILE_LENGTH);
+    }
+
+    @Test
+    public void openReturnsLengthOfFileFromPosition() throws Exception {
+        assertEquals(prefetchedDataSource.open(new DataSpec(uri, 3,
+                C.LENGTH_UNSET, null)), FILE_LENGTH - 3);
+    }
+
+    @Test
+    public void readServesHeadWithoutOpeningUpstream() throws Exception {
+        prefetchedDataSource.open(new DataSpec(uri, 2, C.LENGTH_UNSET, null));
+
+        byte[] buffer = new byte[4];
+
+        assertEquals(prefetchedDataSource.read(buffer, 0, 4), 4);
+        assertArrayEquals(buffer, new byte[]{3, 4, 5, 6});
+
+        verify(upstream, never()).open(any());
+    }
+
+    @Test
+    public void readDoesNotGoPastHeadInSingleRead() throws Exception {
+        prefetchedDataSource.open(new DataSpec(uri, 6, C.LENGTH_UNSET, null));
+
+        assertEquals(prefetchedDataSource.read(new byte[10], 0, 10), 2);
+    }
+
+    @Test
+    public void readOpensUpstreamAtEndOfHead() throws Exception {
+        when(upstream.read(any(), anyInt(), anyInt())).thenReturn(5);
+
+        prefetchedDataSource.open(new DataSpec(uri, 0, C.LENGTH_UNSET, null));
+        prefetchedDataSource.read(new byte[HEAD.length], 0, HEAD.length);
+
+        assertEquals(prefetchedDataSource.read(new byte[10], 0, 10), 5);
+
+        verify(upstream).open(argThat(dataSpec ->
+                dataSpec.position == HEAD.length));
+    }
+
+    @Test
+    public void openPastHeadOpensUpstream() throws Exception {
+        DataSpec dataSpec = new DataSpec(uri, 10, C.LENGTH_UNSET, null);
+
+        when(upstream.open(dataSpec)).thenReturn(10L);
+
+        assertEquals(prefetchedDataSource.open(dataSpec), 10);
+
+        verify(upstream).open(dataSpec);
+    }
+
+    @Test
+    public void readReturnsEndOfInputAtEndOfLimitedSpec() throws Exception {
+        prefetchedDataSource.open(new DataSpec(uri, 0, 2, null));
+        prefetchedDataSource.read(new byte[2], 0, 2);
+
+        assertEquals(prefetchedDataSource.read(new byte[2], 0, 2),
+                C.RESULT_END_OF_INPUT);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsNullPointerExceptionIfHeadIsNull() {
+        new PrefetchedDataSource(upstream, null, FILE_LENGTH);
+    }
+}
@@ -0,0 +1,157 @@
+package com.artyommameev.sunflowerplayer.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.support.v4.media.session.PlaybackStateCompat;
+
+import com.google.android.exoplayer2.Player;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SessionStateTrackerTests {
+
+    private static final int PLAYING = PlaybackStateCompat.STATE_PLAYING;
+    private static final int PAUSED = PlaybackStateCompat.STATE_PAUSED;
+    private static final int BUFFERING = PlaybackStateCompat.STATE_BUFFERING;
+
+    private final List<long[]> sentStates = new ArrayList<>();
+
+    private long nowMs;
+    private SessionStateTracker sessionStateTracker;
+
+    @Before
+    public void setUp() {
+        sessionStateTracker = new SessionStateTracker(
+                (state, positionMs, speed, updateTimeMs) -> sentStates.add(
+                        new long[]{state, positionMs, (long) (speed * 1000),
+                                updateTimeMs}), () -> nowMs);
+    }
+
+    @Test
+    public void tenMinutePlaybackSendsOnlyDiscontinuities() {
+        long positionMs = 0;
+
+        sessionStateTracker.update(BUFFERING, positionMs, 1);
+
+        nowMs += 300;
+
+        sessionStateTracker.update(PLAYING, positionMs, 1);
+
+        // the player reports its state every 100 ms for ten minutes, with
+        // a seek at the fifth minute and a pause of a minute at the eighth
+        for (int tick = 1; tick <= 6_000; tick++) {
+            nowMs += 100;
+
+            if (tick == 3_000) {
+                positionMs = 60_000;
+            } else if (tick < 4_800 || tick > 5_400) {
+                positionMs += 100;
+            }
+
+            int state = tick >= 4_800 && tick <= 5_400 ? PAUSED : PLAYING;
+
+            sessionStateTracker.update(state, positionMs, 1);
+        }
+
+        // buffering, playing, the seek, the pause and the resume
+        assertEquals(sentStates.size(), 5);
+    }
+
+    @Test
+    public void updateSendsFirstState() {
+        assertTrue(sessionStateTracker.update(PAUSED, 1_000, 1));
+
+        assertEquals(sentStates.size(), 1);
+        assertEquals(sentStates.get(0)[1], 1_000);
+    }
+
+    @Test
+    public void updateDoesNotSendExtrapolatedPosition() {
+        sessionStateTracker.update(PLAYING, 1_000, 1);
+
+        nowMs += 10_000;
+
+        assertFalse(sessionStateTracker.update(PLAYING, 11_100, 1));
+    }
+
+    @Test
+    public void updateSendsPositionJump() {
+        sessionStateTracker.update(PLAYING, 1_000, 1);
+
+        nowMs += 10_000;
+
+        assertTrue(sessionStateTracker.update(PLAYING, 40_000, 1));
+    }
+
+    @Test
+    public void updateSendsSpeedChange() {
+        sessionStateTracker.update(PLAYING, 1_000, 1);
+
+        assertTrue(sessionStateTracker.update(PLAYING, 1_000, 2));
+        assertEquals(sentStates.get(1)[2], 2_000);
+    }
+
+    @Test
+    public void updateSendsZeroSpeedUnlessPlaying() {
+        sessionStateTracker.update(PAUSED, 1_000, 1);
+
+        assertEquals(sentStates.get(0)[2], 0);
+    }
+
+    @Test
+    public void updateSendsStateAfterInvalidate() {
+        sessionStateTracker.update(PLAYING, 0, 1);
+
+        sessionStateTracker.invalidate();
+
+        assertTrue(sessionStateTracker.update(PLAYING, 0, 1));
+    }
+
+    @Test
+    public void updateSendsUpdateTimeOfPosition() {
+        nowMs = 12_345;
+
+        sessionStateTracker.update(PLAYING, 0, 1);
+
+        assertEquals(sentStates.get(0)[3], 12_345);
+    }
+
+    @Test
+    public void playerStoppedAfterErrorSendsErrorState() {
+        sessionStateTracker.update(PLAYING, 1_000, 1);
+
+        // the stopped player is idle and no longer reports the error
+        assertTrue(sessionStateTracker.update(SessionStateTracker
+                .toSessionState(Player.STATE_IDLE, true, true), 1_000, 1));
+
+        assertEquals(sentStates.get(1)[0], PlaybackStateCompat.STATE_ERROR);
+        assertEquals(sentStates.get(1)[2], 0);
+    }
+
+    @Test
+    public void toSessionStateReturnsNoneForIdlePlayerWithoutError() {
+        assertEquals(SessionStateTracker.toSessionState(Player.STATE_IDLE,
+                true, false), PlaybackStateCompat.STATE_NONE);
+    }
+
+    @Test
+    public void toSessionStateReturnsPausedUnlessPlayWhenReady() {
+        assertEquals(SessionStateTracker.toSessionState(Player.STATE_READY,
+                false, false), PAUSED);
+        assertEquals(SessionStateTracker.toSessionState(
+                Player.STATE_BUFFERING, false, false), PAUSED);
+        assertEquals(SessionStateTracker.toSessionState(Player.STATE_READY,
+                true, false), PLAYING);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsNullPointerExceptionIfSinkIsNull() {
+        new SessionStateTracker(null, () -> 0);
+    }
+}
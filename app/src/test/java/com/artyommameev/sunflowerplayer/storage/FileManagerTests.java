@@ -145,6 +145,21 @@ public class FileManagerTests {
         assertEquals(videoClips.get(2).getTitle(), "TitleC");
     }
 
+    @Test
+    public void getVideoClipsReturnsOnlySortedVideoClips() {
+        File fileD = mock(File.class);
+        when(fileD.getName()).thenReturn("dFile.zip");
+
+        when(file.listFiles()).thenReturn(new File[]{fileD, fileC, fileA});
+
+        List<VideoClip> videoClips = fileManager.getVideoClips(
+                new FileNameComparator());
+
+        assertEquals(videoClips.size(), 2);
+        assertEquals(videoClips.get(0).getFileName(), "aArtist - TitleA.mkv");
+        assertEquals(videoClips.get(1).getFileName(), "cArtist - TitleC.mkv");
+    }
+
     @Test
     public void getFilesReturnsEmptyListIfFilesAreNotPresent() {
         File emptyPath = mock(File.class);
@@ -0,0 +1,125 @@
+package com.artyommameev.sunflowerplayer.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.artyommameev.sunflowerplayer.domain.PlaybackSession;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PlaybackSessionStoreTests {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File file;
+    private PlaybackSessionStore playbackSessionStore;
+
+    @Before
+    public void setUp() {
+        file = new File(temporaryFolder.getRoot(), "sessions.json");
+
+        playbackSessionStore = new PlaybackSessionStore(file);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsNullPointerExceptionIfFileIsNull() {
+        new PlaybackSessionStore(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void addThrowsNullPointerExceptionIfSessionIsNull() throws Exception {
+        playbackSessionStore.add(null);
+    }
+
+    @Test
+    public void findAllReturnsEmptyListIfStoreDoesNotExist() {
+        assertTrue(playbackSessionStore.findAll().isEmpty());
+    }
+
+    @Test
+    public void findAllReturnsEmptyListIfStoreIsBroken() throws Exception {
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("[{broken");
+        }
+
+        assertTrue(playbackSessionStore.findAll().isEmpty());
+    }
+
+    @Test
+    public void addedSessionsAreReadByAnotherStore() throws Exception {
+        PlaybackSession playbackSession = new PlaybackSession("fileName", 1);
+        playbackSession.setTimeToFirstFrameMs(120);
+        playbackSession.setDroppedFrames(3);
+
+        playbackSessionStore.add(playbackSession);
+
+        List<PlaybackSession> playbackSessions =
+                new PlaybackSessionStore(file).findAll();
+
+        assertEquals(playbackSessions, Collections.singletonList(
+                playbackSession));
+    }
+
+    @Test
+    public void addDropsOldestSessionsIfStoreIsFull() throws Exception {
+        for (int i = 0; i < PlaybackSessionStore.CAPACITY + 2; i++) {
+            playbackSessionStore.add(new PlaybackSession("fileName" + i, i));
+        }
+
+        List<PlaybackSession> playbackSessions =
+                playbackSessionStore.findAll();
+
+        assertEquals(playbackSessions.size(), PlaybackSessionStore.CAPACITY);
+        assertEquals(playbackSessions.get(0).getFileName(), "fileName2");
+        assertEquals(playbackSessions.get(PlaybackSessionStore.CAPACITY - 1)
+                .getFileName(), "fileName" + (PlaybackSessionStore.CAPACITY + 1));
+    }
+
+    @Test
+    public void exportToWritesJsonArray() throws Exception {
+        playbackSessionStore.add(new PlaybackSession("fileName", 1));
+
+        StringWriter writer = new StringWriter();
+
+        playbackSessionStore.exportTo(writer);
+
+        assertTrue(writer.toString().startsWith("[{"));
+        assertTrue(writer.toString().contains("\"fileName\":\"fileName\""));
+    }
+
+    @Test
+    public void summaryAveragesOnlyMeasuredSessions() {
+        PlaybackSession playbackSession1 = new PlaybackSession("fileName1", 1);
+        playbackSession1.setTimeToFirstFrameMs(100);
+        playbackSession1.setRebuffers(1);
+        playbackSession1.setRebufferMs(500);
+
+        PlaybackSession playbackSession2 = new PlaybackSession("fileName2", 2);
+        playbackSession2.setTimeToFirstFrameMs(300);
+        playbackSession2.setDroppedFrames(4);
+
+        PlaybackSession playbackSession3 = new PlaybackSession("fileName3", 3);
+
+        PlaybackSessionStore.Summary summary = new PlaybackSessionStore.Summary(
+                Arrays.asList(playbackSession1, playbackSession2,
+                        playbackSession3));
+
+        assertEquals(summary.getSessions(), 3);
+        assertEquals(summary.getAverageTimeToFirstFrameMs(), 200);
+        assertEquals(summary.getAverageVideoDecoderInitMs(), -1);
+        assertEquals(summary.getDroppedFrames(), 4);
+        assertEquals(summary.getRebuffers(), 1);
+        assertEquals(summary.getRebufferMs(), 500);
+    }
+}
@@ -0,0 +1,173 @@
+package com.artyommameev.sunflowerplayer.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+public class SeekIndexScannerTests {
+
+    private static final int TS_PACKET_SIZE = 188;
+    private static final int PMT_PID = 0x100;
+    private static final int VIDEO_PID = 0x101;
+
+    @Test
+    public void scanTsIndexesRandomAccessAndIdrPackets() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        output.write(patPacket());
+        output.write(pmtPacket());
+        output.write(videoPacket(90_000, true, 0x65));
+        output.write(videoPacket(90_000 + 45_000, false, 0x41));
+        output.write(videoPacket(90_000 + 180_000, false, 0x65));
+
+        SeekIndex seekIndex = SeekIndexScanner.scanTs(
+                new ByteArrayInputStream(output.toByteArray()));
+
+        assertEquals(seekIndex.size(), 2);
+        assertEquals(seekIndex.getTimeUs(0), 0);
+        assertEquals(seekIndex.getPosition(0), 2 * TS_PACKET_SIZE);
+        assertEquals(seekIndex.getTimeUs(1), 2_000_000);
+        assertEquals(seekIndex.getPosition(1), 4 * TS_PACKET_SIZE);
+        assertEquals(seekIndex.getDurationUs(), 2_000_000);
+        assertEquals(seekIndex.getHeader().length, 0);
+    }
+
+    @Test
+    public void scanTsReturnsNullIfInputIsNotTs() throws Exception {
+        assertNull(SeekIndexScanner.scanTs(new ByteArrayInputStream(
+                new byte[TS_PACKET_SIZE])));
+    }
+
+    @Test
+    public void scanFlvIndexesKeyFrameTags() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        output.write(new byte[]{'F', 'L', 'V', 1, 1, 0, 0, 0, 9, 0, 0, 0, 0});
+        writeFlvTag(output, 9, 0, new byte[]{0x17, 0, 0, 0, 0});
+
+        int firstKeyFramePosition = output.size();
+
+        writeFlvTag(output, 9, 0, new byte[]{0x17, 1, 0, 0, 0});
+        writeFlvTag(output, 9, 500, new byte[]{0x27, 1, 0, 0, 0});
+
+        int secondKeyFramePosition = output.size();
+
+        writeFlvTag(output, 9, 2_000, new byte[]{0x17, 1, 0, 0, 0});
+
+        byte[] file = output.toByteArray();
+
+        SeekIndex seekIndex = SeekIndexScanner.scanFlv(
+                new ByteArrayInputStream(file));
+
+        assertEquals(seekIndex.size(), 2);
+        assertEquals(seekIndex.getTimeUs(0), 0);
+        assertEquals(seekIndex.getPosition(0), firstKeyFramePosition);
+        assertEquals(seekIndex.getTimeUs(1), 2_000_000);
+        assertEquals(seekIndex.getPosition(1), secondKeyFramePosition);
+        assertEquals(seekIndex.getDurationUs(), 2_000_000);
+
+        // the file header and the configuration tag
+        assertArrayEquals(seekIndex.getHeader(),
+                Arrays.copyOf(file, firstKeyFramePosition));
+    }
+
+    @Test
+    public void scanFlvReturnsNullIfInputIsNotFlv() throws Exception {
+        assertNull(SeekIndexScanner.scanFlv(new ByteArrayInputStream(
+                new byte[]{'F', 'W', 'S', 1, 1, 0, 0, 0, 9, 0, 0, 0, 0})));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void scanTsThrowsNullPointerExceptionIfInputIsNull()
+            throws Exception {
+        SeekIndexScanner.scanTs(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void scanFlvThrowsNullPointerExceptionIfInputIsNull()
+            throws Exception {
+        SeekIndexScanner.scanFlv(null);
+    }
+
+    private byte[] patPacket() {
+        byte[] packet = emptyPacket(0, 0x10);
+
+        System.arraycopy(new byte[]{0, 0x00, (byte) 0xB0, 13, 0, 1,
+                (byte) 0xC1, 0, 0, 0, 1, (byte) 0xE1, 0x00}, 0, packet, 4, 13);
+
+        return packet;
+    }
+
+    private byte[] pmtPacket() {
+        byte[] packet = emptyPacket(PMT_PID, 0x10);
+
+        System.arraycopy(new byte[]{0, 0x02, (byte) 0xB0, 18, 0, 1,
+                (byte) 0xC1, 0, 0, (byte) 0xE1, 0x01, (byte) 0xF0, 0,
+                0x1B, (byte) 0xE1, 0x01, (byte) 0xF0, 0}, 0, packet, 4, 18);
+
+        return packet;
+    }
+
+    private byte[] videoPacket(long pts, boolean randomAccess, int nalHeader) {
+        byte[] packet = emptyPacket(VIDEO_PID, randomAccess ? 0x30 : 0x10);
+
+        int offset = 4;
+
+        if (randomAccess) {
+            packet[4] = 1;
+            packet[5] = 0x40;
+            offset = 6;
+        }
+
+        System.arraycopy(new byte[]{0, 0, 1, (byte) 0xE0, 0, 0,
+                (byte) 0x80, (byte) 0x80, 5,
+                (byte) (0x21 | ((pts >> 29) & 0x0E)),
+                (byte) (pts >> 22),
+                (byte) (((pts >> 14) & 0xFE) | 1),
+                (byte) (pts >> 7),
+                (byte) (((pts << 1) & 0xFE) | 1),
+                0, 0, 1, (byte) nalHeader}, 0, packet, offset, 18);
+
+        return packet;
+    }
+
+    private byte[] emptyPacket(int pid, int adaptationFieldControl) {
+        byte[] packet = new byte[TS_PACKET_SIZE];
+
+        Arrays.fill(packet, (byte) 0xFF);
+
+        packet[0] = 0x47;
+        packet[1] = (byte) (0x40 | (pid >> 8));
+        packet[2] = (byte) pid;
+        packet[3] = (byte) adaptationFieldControl;
+
+        return packet;
+    }
+
+    private void writeFlvTag(ByteArrayOutputStream output, int type,
+                             int timestampMs, byte[] data) {
+        output.write(type);
+        writeInt24(output, data.length);
+        writeInt24(output, timestampMs);
+        output.write(timestampMs >> 24);
+        writeInt24(output, 0);
+        output.write(data, 0, data.length);
+
+        int tagSize = 11 + data.length;
+
+        output.write(tagSize >> 24);
+        writeInt24(output, tagSize);
+    }
+
+    private void writeInt24(ByteArrayOutputStream output, int value) {
+        output.write(value >> 16);
+        output.write(value >> 8);
+        output.write(value);
+    }
+}
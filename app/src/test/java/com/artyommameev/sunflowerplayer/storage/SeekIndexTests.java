@@ -0,0 +1,128 @@
+package com.artyommameev.sunflowerplayer.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class SeekIndexTests {
+
+    private SeekIndex buildIndex() {
+        SeekIndex.Builder builder = new SeekIndex.Builder(1_000_000);
+
+        builder.addKeyFrame(0, 13);
+        builder.addKeyFrame(2_000_000, 40_000);
+        builder.addKeyFrame(4_500_000, 95_000);
+        builder.setHeader(new byte[]{1, 2, 3});
+        builder.setDurationUs(6_000_000);
+
+        return builder.build();
+    }
+
+    @Test
+    public void buildReturnsNullIfNoKeyFramesAdded() {
+        assertNull(new SeekIndex.Builder(1_000_000).build());
+    }
+
+    @Test
+    public void addKeyFrameSkipsKeyFramesCloserThanMinInterval() {
+        SeekIndex.Builder builder = new SeekIndex.Builder(1_000_000);
+
+        builder.addKeyFrame(0, 0);
+        builder.addKeyFrame(500_000, 1_000);
+        builder.addKeyFrame(1_000_000, 2_000);
+
+        SeekIndex seekIndex = builder.build();
+
+        assertEquals(seekIndex.size(), 2);
+        assertEquals(seekIndex.getTimeUs(1), 1_000_000);
+        assertEquals(seekIndex.getPosition(1), 2_000);
+    }
+
+    @Test
+    public void addKeyFrameSkipsKeyFramesNotAfterPrevious() {
+        SeekIndex.Builder builder = new SeekIndex.Builder(0);
+
+        builder.addKeyFrame(1_000_000, 2_000);
+        builder.addKeyFrame(2_000_000, 2_000);
+        builder.addKeyFrame(-1, 3_000);
+
+        assertEquals(builder.build().size(), 1);
+    }
+
+    @Test
+    public void floorIndexReturnsLastKeyFrameAtOrBeforeTime() {
+        SeekIndex seekIndex = buildIndex();
+
+        assertEquals(seekIndex.floorIndex(0), 0);
+        assertEquals(seekIndex.floorIndex(1_999_999), 0);
+        assertEquals(seekIndex.floorIndex(2_000_000), 1);
+        assertEquals(seekIndex.floorIndex(10_000_000), 2);
+    }
+
+    @Test
+    public void floorIndexReturnsMinusOneIfTimeIsBeforeFirstKeyFrame() {
+        SeekIndex.Builder builder = new SeekIndex.Builder(0);
+
+        builder.addKeyFrame(1_000_000, 100);
+
+        assertEquals(builder.build().floorIndex(500_000), -1);
+    }
+
+    @Test
+    public void writtenIndexIsRead() throws Exception {
+        SeekIndex seekIndex = buildIndex();
+
+        SeekIndex readIndex = SeekIndex.fromBytes(seekIndex.toBytes());
+
+        assertEquals(readIndex.getDurationUs(), 6_000_000);
+        assertEquals(readIndex.size(), 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(readIndex.getTimeUs(i), seekIndex.getTimeUs(i));
+            assertEquals(readIndex.getPosition(i), seekIndex.getPosition(i));
+        }
+
+        assertArrayEquals(readIndex.getHeader(), new byte[]{1, 2, 3});
+    }
+
+    @Test
+    public void writtenIndexWithUnknownDurationIsRead() throws Exception {
+        SeekIndex.Builder builder = new SeekIndex.Builder(0);
+
+        builder.addKeyFrame(0, 0);
+
+        assertEquals(SeekIndex.fromBytes(builder.build().toBytes())
+                .getDurationUs(), -1);
+    }
+
+    @Test(expected = IOException.class)
+    public void fromBytesThrowsIOExceptionIfVersionIsUnknown()
+            throws Exception {
+        byte[] bytes = buildIndex().toBytes();
+
+        bytes[0] = 99;
+
+        SeekIndex.fromBytes(bytes);
+    }
+
+    @Test(expected = IOException.class)
+    public void fromBytesThrowsIOExceptionIfBytesAreTruncated()
+            throws Exception {
+        byte[] bytes = buildIndex().toBytes();
+        byte[] truncated = new byte[bytes.length - 5];
+
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+        SeekIndex.fromBytes(truncated);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void fromBytesThrowsNullPointerExceptionIfBytesAreNull()
+            throws Exception {
+        SeekIndex.fromBytes(null);
+    }
+}
@@ -0,0 +1,128 @@
+package com.artyommameev.sunflowerplayer.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+public class ThumbnailPackTests {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File file;
+    private ThumbnailPack thumbnailPack;
+
+    @Before
+    public void setUp() {
+        file = new File(temporaryFolder.getRoot(), "thumbnails.pack");
+
+        thumbnailPack = new ThumbnailPack(file, 1024 * 1024);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsNullPointerExceptionIfFileIsNull() {
+        new ThumbnailPack(null, 1024);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void putThrowsNullPointerExceptionIfBytesAreNull() throws Exception {
+        thumbnailPack.put("key", null);
+    }
+
+    @Test
+    public void getReturnsNullIfPackDoesNotExist() {
+        assertNull(thumbnailPack.get("key"));
+    }
+
+    @Test
+    public void putImagesAreReadByAnotherPack() throws Exception {
+        thumbnailPack.put("key1", new byte[]{1, 2, 3});
+        thumbnailPack.put("key2", new byte[]{4, 5});
+
+        ThumbnailPack anotherPack = new ThumbnailPack(file, 1024 * 1024);
+
+        assertEquals(anotherPack.size(), 2);
+        assertArrayEquals(anotherPack.get("key1"), new byte[]{1, 2, 3});
+        assertArrayEquals(anotherPack.get("key2"), new byte[]{4, 5});
+    }
+
+    @Test
+    public void putReplacesImageOfKey() throws Exception {
+        thumbnailPack.put("key", new byte[]{1, 2, 3});
+        thumbnailPack.put("key", new byte[]{4});
+
+        assertArrayEquals(thumbnailPack.get("key"), new byte[]{4});
+        assertArrayEquals(new ThumbnailPack(file, 1024 * 1024).get("key"),
+                new byte[]{4});
+    }
+
+    @Test
+    public void recordThatWasNotWrittenIsCutOff() throws Exception {
+        thumbnailPack.put("key1", new byte[]{1, 2, 3});
+        thumbnailPack.put("key2", new byte[]{4, 5, 6});
+
+        try (RandomAccessFile randomAccessFile =
+                     new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(randomAccessFile.length() - 2);
+        }
+
+        ThumbnailPack anotherPack = new ThumbnailPack(file, 1024 * 1024);
+
+        assertEquals(anotherPack.size(), 1);
+        assertNull(anotherPack.get("key2"));
+
+        anotherPack.put("key3", new byte[]{7});
+
+        ThumbnailPack thirdPack = new ThumbnailPack(file, 1024 * 1024);
+
+        assertArrayEquals(thirdPack.get("key1"), new byte[]{1, 2, 3});
+        assertArrayEquals(thirdPack.get("key3"), new byte[]{7});
+    }
+
+    @Test
+    public void unknownFileIsOverwritten() throws Exception {
+        try (RandomAccessFile randomAccessFile =
+                     new RandomAccessFile(file, "rw")) {
+            randomAccessFile.writeLong(42);
+        }
+
+        assertEquals(thumbnailPack.size(), 0);
+
+        thumbnailPack.put("key", new byte[]{1});
+
+        assertArrayEquals(new ThumbnailPack(file, 1024 * 1024).get("key"),
+                new byte[]{1});
+    }
+
+    @Test
+    public void putKeepsMostRecentlyUsedImagesIfPackIsFull() throws Exception {
+        ThumbnailPack smallPack = new ThumbnailPack(file, 400);
+
+        for (int i = 0; i < 9; i++) {
+            smallPack.put("key" + i, new byte[30]);
+        }
+
+        smallPack.get("key0");
+
+        smallPack.put("key9", new byte[30]);
+
+        assertTrue(file.length() <= 400);
+        assertEquals(smallPack.get("key0").length, 30);
+        assertEquals(smallPack.get("key9").length, 30);
+        assertNull(smallPack.get("key1"));
+
+        ThumbnailPack anotherPack = new ThumbnailPack(file, 400);
+
+        assertEquals(anotherPack.size(), smallPack.size());
+        assertEquals(anotherPack.get("key0").length, 30);
+    }
+}
@@ -0,0 +1,124 @@
+package com.artyommameev.sunflowerplayer.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class TrickplayIndexTests {
+
+    private final TrickplayIndex trickplayIndex = new TrickplayIndex(10_000,
+            160, 90, 10, 25);
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsIllegalArgumentExceptionIfIntervalIsNotPositive() {
+        new TrickplayIndex(0, 160, 90, 10, 25);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsIllegalArgumentExceptionIfFrameCountIsNotPositive() {
+        new TrickplayIndex(10_000, 160, 90, 10, 0);
+    }
+
+    @Test
+    public void forDurationTakesFramesEveryMinIntervalInShortClips() {
+        TrickplayIndex index = TrickplayIndex.forDuration(95_000, 10_000,
+                120, 160, 90, 10);
+
+        assertEquals(index.getIntervalMs(), 10_000);
+        assertEquals(index.getFrameCount(), 10);
+        assertEquals(index.getColumns(), 10);
+    }
+
+    @Test
+    public void forDurationFitsColumnsToFewFrames() {
+        TrickplayIndex index = TrickplayIndex.forDuration(5_000, 10_000,
+                120, 160, 90, 10);
+
+        assertEquals(index.getFrameCount(), 1);
+        assertEquals(index.getColumns(), 1);
+    }
+
+    @Test
+    public void forDurationSpreadsFramesOverClipsLongerThanTwentyMinutes() {
+        long durationMs = 90 * 60 * 1000;
+
+        TrickplayIndex index = TrickplayIndex.forDuration(durationMs, 10_000,
+                120, 160, 90, 10);
+
+        assertEquals(index.getIntervalMs(), 45_000);
+        assertEquals(index.getFrameCount(), 120);
+        assertEquals(index.getFrame(durationMs - 1), 119);
+        assertEquals(index.getFrame(60 * 60 * 1000), 80);
+    }
+
+    @Test
+    public void forDurationCoversClipsNotDividedByMaxFrames() {
+        long durationMs = 20 * 60 * 1000 + 1;
+
+        TrickplayIndex index = TrickplayIndex.forDuration(durationMs, 10_000,
+                120, 160, 90, 10);
+
+        assertEquals(index.getFrameCount(), 120);
+        assertTrue((index.getFrameCount() - 1) * index.getIntervalMs() >=
+                durationMs - index.getIntervalMs());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void forDurationThrowsIllegalArgumentExceptionIfDurationIsNotPositive() {
+        TrickplayIndex.forDuration(0, 10_000, 120, 160, 90, 10);
+    }
+
+    @Test
+    public void getRowsRoundsUp() {
+        assertEquals(trickplayIndex.getRows(), 3);
+    }
+
+    @Test
+    public void getFrameReturnsFrameBeforePosition() {
+        assertEquals(trickplayIndex.getFrame(0), 0);
+        assertEquals(trickplayIndex.getFrame(9_999), 0);
+        assertEquals(trickplayIndex.getFrame(10_000), 1);
+        assertEquals(trickplayIndex.getFrame(123_000), 12);
+    }
+
+    @Test
+    public void getFrameClampsPositionToFrames() {
+        assertEquals(trickplayIndex.getFrame(-1), 0);
+        assertEquals(trickplayIndex.getFrame(10_000_000), 24);
+    }
+
+    @Test
+    public void getFrameLeftAndTopReturnGridPosition() {
+        assertEquals(trickplayIndex.getFrameLeft(12), 2 * 160);
+        assertEquals(trickplayIndex.getFrameTop(12), 90);
+    }
+
+    @Test
+    public void writtenIndexIsRead() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        trickplayIndex.writeTo(new DataOutputStream(outputStream));
+
+        TrickplayIndex readIndex = TrickplayIndex.readFrom(new DataInputStream(
+                new ByteArrayInputStream(outputStream.toByteArray())));
+
+        assertEquals(readIndex.getIntervalMs(), 10_000);
+        assertEquals(readIndex.getFrameWidth(), 160);
+        assertEquals(readIndex.getFrameHeight(), 90);
+        assertEquals(readIndex.getColumns(), 10);
+        assertEquals(readIndex.getFrameCount(), 25);
+    }
+
+    @Test(expected = IOException.class)
+    public void readFromThrowsIOExceptionIfInputIsNotIndex() throws Exception {
+        TrickplayIndex.readFrom(new DataInputStream(new ByteArrayInputStream(
+                new byte[]{1, 2, 3, 4, 5, 6, 7, 8})));
+    }
+}
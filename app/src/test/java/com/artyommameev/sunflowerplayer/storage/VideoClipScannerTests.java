@@ -0,0 +1,97 @@
+package com.artyommameev.sunflowerplayer.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class VideoClipScannerTests {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void scanFileNamesCoversAllRoots() throws Exception {
+        File internal = temporaryFolder.newFolder("internal");
+        File sdCard = temporaryFolder.newFolder("sdcard");
+
+        createFile(internal, "Movies/A - 1.mp4");
+        createFile(sdCard, "Music/Video/B - 2.mkv");
+        createFile(sdCard, "notes.txt");
+
+        VideoClipScanner videoClipScanner = new VideoClipScanner(
+                Arrays.asList(internal, sdCard));
+
+        assertEquals(new HashSet<>(Arrays.asList("A - 1.mp4", "B - 2.mkv")),
+                videoClipScanner.scanFileNames(() -> false));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void scanFileNamesThrowsIfAnyRootCannotBeRead() throws Exception {
+        File internal = temporaryFolder.newFolder("internal");
+
+        new VideoClipScanner(Arrays.asList(internal,
+                new File(temporaryFolder.getRoot(), "unmounted")))
+                .scanFileNames(() -> false);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void scanFileNamesThrowsIfAnyDirectoryCannotBeListed()
+            throws Exception {
+        File root = temporaryFolder.newFolder("root");
+        File locked = new File(root, "locked");
+
+        createFile(locked, "A - 1.mp4");
+
+        assumeTrue(locked.setReadable(false));
+        // the permissions are not enforced for the superuser
+        assumeTrue(locked.listFiles() == null);
+
+        try {
+            new VideoClipScanner(root).scanFileNames(() -> false);
+        } finally {
+            locked.setReadable(true);
+        }
+    }
+
+    @Test
+    public void scanFilesSkipsDirectoriesThatCannotBeListed()
+            throws Exception {
+        File root = temporaryFolder.newFolder("root");
+        File locked = new File(root, "locked");
+
+        createFile(root, "A - 1.mp4");
+        createFile(locked, "B - 2.mp4");
+
+        assumeTrue(locked.setReadable(false));
+        assumeTrue(locked.listFiles() == null);
+
+        try {
+            assertEquals(1, new VideoClipScanner(root)
+                    .scanFiles(() -> false).size());
+        } finally {
+            locked.setReadable(true);
+        }
+    }
+
+    private static void createFile(File root, String path)
+            throws IOException {
+        File file = new File(root, path);
+
+        if (!file.getParentFile().mkdirs() && !file.getParentFile()
+                .isDirectory()) {
+            throw new IOException("Cannot create " + file.getParent());
+        }
+
+        if (!file.createNewFile()) {
+            throw new IOException("Cannot create " + file);
+        }
+    }
+}
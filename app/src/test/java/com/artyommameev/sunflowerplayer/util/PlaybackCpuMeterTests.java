@@ -0,0 +1,99 @@
+package com.artyommameev.sunflowerplayer.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlaybackCpuMeterTests {
+
+    private long cpuMs;
+    private long realtimeMs;
+
+    @Before
+    public void setUp() {
+        PlaybackCpuMeter.reset(() -> cpuMs, () -> realtimeMs);
+    }
+
+    @Test
+    public void getSummaryReturnsEmptyStringIfNothingWasPlayed() {
+        assertEquals(PlaybackCpuMeter.getSummary(), "");
+    }
+
+    @Test
+    public void playbackStoppedDoesNothingIfPlaybackIsNotStarted() {
+        PlaybackCpuMeter.playbackStopped();
+
+        assertEquals(PlaybackCpuMeter.getSummary(), "");
+    }
+
+    @Test
+    public void getSummaryReturnsCpuTimePerMinuteOfPlayback() {
+        PlaybackCpuMeter.playbackStarted(true);
+
+        cpuMs = 3000;
+        realtimeMs = 30_000;
+
+        PlaybackCpuMeter.playbackStopped();
+
+        assertEquals(PlaybackCpuMeter.getSummary(),
+                "VIDEO: 6000 ms CPU per minute (30 s played)");
+    }
+
+    @Test
+    public void playbackStartedEndsPreviousSegment() {
+        PlaybackCpuMeter.playbackStarted(true);
+
+        cpuMs = 6000;
+        realtimeMs = 60_000;
+
+        PlaybackCpuMeter.playbackStarted(false);
+
+        cpuMs = 8000;
+        realtimeMs = 120_000;
+
+        PlaybackCpuMeter.playbackStopped();
+
+        assertEquals(PlaybackCpuMeter.getSummary(),
+                "VIDEO: 6000 ms CPU per minute (60 s played)\n" +
+                        "AUDIO_ONLY: 2000 ms CPU per minute (60 s played)\n" +
+                        "SAVED: 4000 ms CPU per minute");
+    }
+
+    @Test
+    public void getSummaryExcludesTimeWhilePaused() {
+        PlaybackCpuMeter.playbackStarted(true);
+
+        cpuMs = 1000;
+        realtimeMs = 10_000;
+
+        PlaybackCpuMeter.playbackStopped();
+
+        cpuMs = 5000;
+        realtimeMs = 100_000;
+
+        PlaybackCpuMeter.playbackStarted(true);
+
+        cpuMs = 6000;
+        realtimeMs = 110_000;
+
+        PlaybackCpuMeter.playbackStopped();
+
+        assertEquals(PlaybackCpuMeter.getSummary(),
+                "VIDEO: 6000 ms CPU per minute (20 s played)");
+    }
+
+    @Test
+    public void resetDropsMeasuredTime() {
+        PlaybackCpuMeter.playbackStarted(true);
+
+        cpuMs = 1000;
+        realtimeMs = 10_000;
+
+        PlaybackCpuMeter.reset(() -> cpuMs, () -> realtimeMs);
+
+        PlaybackCpuMeter.playbackStopped();
+
+        assertEquals(PlaybackCpuMeter.getSummary(), "");
+    }
+}
@@ -0,0 +1,151 @@
+package com.artyommameev.sunflowerplayer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Process.class, SystemClock.class, Trace.class})
+public class StartupTraceTests {
+
+    private static final long PROCESS_START_MS = 1000;
+
+    private long nowMs;
+
+    @Before
+    public void setUp() {
+        PowerMockito.mockStatic(Process.class);
+        PowerMockito.mockStatic(SystemClock.class);
+        PowerMockito.mockStatic(Trace.class);
+
+        PowerMockito.when(Process.getStartElapsedRealtime())
+                .thenReturn(PROCESS_START_MS);
+        PowerMockito.when(SystemClock.elapsedRealtime())
+                .thenAnswer(invocation -> nowMs);
+
+        StartupTrace.reset();
+    }
+
+    @Test
+    public void recordedColdStartIsReadBackInOrder() {
+        traceColdStart();
+
+        Map<StartupTrace.Phase, StartupTrace.Timing> timings =
+                StartupTrace.getTimings();
+
+        assertEquals(new ArrayList<>(timings.keySet()), Arrays.asList(
+                StartupTrace.Phase.APP_CREATE,
+                StartupTrace.Phase.DATABASE_OPEN,
+                StartupTrace.Phase.FIRST_LISTING,
+                StartupTrace.Phase.FIRST_FRAME));
+
+        long previousStartMs = -1;
+
+        for (StartupTrace.Timing timing : timings.values()) {
+            assertTrue(timing.getStartMs() >= previousStartMs);
+            assertTrue(timing.getEndMs() >= timing.getStartMs());
+
+            previousStartMs = timing.getStartMs();
+        }
+    }
+
+    @Test
+    public void timingsAreMeasuredFromProcessStart() {
+        traceColdStart();
+
+        Map<StartupTrace.Phase, StartupTrace.Timing> timings =
+                StartupTrace.getTimings();
+
+        assertEquals(timings.get(StartupTrace.Phase.APP_CREATE)
+                .getStartMs(), 50);
+        assertEquals(timings.get(StartupTrace.Phase.APP_CREATE)
+                .getDurationMs(), 70);
+        assertEquals(timings.get(StartupTrace.Phase.DATABASE_OPEN)
+                .getStartMs(), 100);
+        assertEquals(timings.get(StartupTrace.Phase.DATABASE_OPEN)
+                .getDurationMs(), 200);
+        assertEquals(timings.get(StartupTrace.Phase.FIRST_LISTING)
+                .getStartMs(), 250);
+        assertEquals(timings.get(StartupTrace.Phase.FIRST_LISTING)
+                .getDurationMs(), 0);
+        assertEquals(timings.get(StartupTrace.Phase.FIRST_FRAME)
+                .getStartMs(), 400);
+    }
+
+    @Test
+    public void onlyFirstOccurrenceOfPhaseIsRecorded() {
+        traceColdStart();
+
+        // a recreated activity lists the directory again
+        nowMs = PROCESS_START_MS + 5000;
+
+        StartupTrace.mark(StartupTrace.Phase.FIRST_LISTING);
+
+        assertEquals(StartupTrace.getTimings()
+                .get(StartupTrace.Phase.FIRST_LISTING).getStartMs(), 250);
+    }
+
+    @Test
+    public void phaseThatHasNotEndedHasNoDuration() {
+        nowMs = PROCESS_START_MS + 50;
+
+        StartupTrace.beginSection(StartupTrace.Phase.APP_CREATE);
+
+        StartupTrace.Timing timing = StartupTrace.getTimings()
+                .get(StartupTrace.Phase.APP_CREATE);
+
+        assertEquals(timing.getEndMs(), -1);
+        assertEquals(timing.getDurationMs(), 0);
+    }
+
+    @Test
+    public void getSummaryListsPhasesInOrder() {
+        traceColdStart();
+
+        assertEquals(StartupTrace.getSummary(),
+                "APP_CREATE: 50 ms +70 ms\n" +
+                        "DATABASE_OPEN: 100 ms +200 ms\n" +
+                        "FIRST_LISTING: 250 ms\n" +
+                        "FIRST_FRAME: 400 ms");
+    }
+
+    @Test
+    public void getSummaryReturnsEmptyStringIfNothingWasRecorded() {
+        assertEquals(StartupTrace.getSummary(), "");
+    }
+
+    private void traceColdStart() {
+        nowMs = PROCESS_START_MS + 50;
+        StartupTrace.beginSection(StartupTrace.Phase.APP_CREATE);
+
+        // the database is opened on a background thread
+        nowMs = PROCESS_START_MS + 100;
+        StartupTrace.beginSection(StartupTrace.Phase.DATABASE_OPEN);
+
+        nowMs = PROCESS_START_MS + 120;
+        StartupTrace.endSection(StartupTrace.Phase.APP_CREATE);
+
+        nowMs = PROCESS_START_MS + 250;
+        StartupTrace.mark(StartupTrace.Phase.FIRST_LISTING);
+
+        nowMs = PROCESS_START_MS + 300;
+        StartupTrace.endSection(StartupTrace.Phase.DATABASE_OPEN);
+
+        nowMs = PROCESS_START_MS + 400;
+        StartupTrace.mark(StartupTrace.Phase.FIRST_FRAME);
+    }
+}